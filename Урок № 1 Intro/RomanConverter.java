@@ -1,31 +1,144 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 public class RomanConverter {
 
+    public static final int MIN_VALUE = 1;
+    public static final int MAX_VALUE = 3999;
+    // Самая длинная запись: MMMDCCCLXXXVIII (3888)
+    public static final int MAX_LENGTH = 15;
+
+    private static final int[] VALUES =    {1000, 900, 500, 400, 100,  90,  50,  40,  10,   9,   5,   4,  1};
+    private static final String[] ROMANS = {"M",  "CM","D", "CD", "C", "XC", "L", "XL", "X", "IX", "V", "IV","I"};
+
+    // Все 3999 записей считаются один раз при загрузке класса; индекс - само число
+    private static final String[] TABLE = new String[MAX_VALUE + 1];
+    // Те же записи в ASCII - для записи в ByteBuffer без кодирования строк
+    private static final byte[][] TABLE_BYTES = new byte[MAX_VALUE + 1][];
+
+    // Значение римской цифры по коду символа (0 - не римская цифра)
+    private static final int[] DIGIT_VALUES = new int[128];
+
+    static {
+        StringBuilder sb = new StringBuilder(MAX_LENGTH);
+        for (int n = MIN_VALUE; n <= MAX_VALUE; n++) {
+            sb.setLength(0);
+            int num = n;
+            for (int i = 0; i < VALUES.length; i++) {
+                // пока текущее значение помещается в num, добавляем соответствующий символ
+                while (num >= VALUES[i]) {
+                    sb.append(ROMANS[i]);
+                    num -= VALUES[i];
+                }
+            }
+            TABLE[n] = sb.toString();
+            TABLE_BYTES[n] = TABLE[n].getBytes(StandardCharsets.US_ASCII);
+        }
+
+        DIGIT_VALUES['I'] = 1;
+        DIGIT_VALUES['V'] = 5;
+        DIGIT_VALUES['X'] = 10;
+        DIGIT_VALUES['L'] = 50;
+        DIGIT_VALUES['C'] = 100;
+        DIGIT_VALUES['D'] = 500;
+        DIGIT_VALUES['M'] = 1000;
+    }
+
     public static String intToRoman(int num) {
-        if (num <= 0 || num > 3999) {
-            throw new IllegalArgumentException("Число должно быть в диапазоне 1..3999");
+        checkRange(num);
+        return TABLE[num];
+    }
+
+    /**
+     * Строгий разбор: принимается только каноническая запись (заглавные буквы, без пробелов),
+     * то есть ровно то, что возвращает intToRoman. "IIII", "IC", "VX", "MMMM" - ошибка.
+     */
+    public static int romanToInt(String roman) {
+        if (roman == null || roman.isEmpty() || roman.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Некорректное римское число: " + roman);
         }
+        int total = 0;
+        int prev = 0;
+        // Справа налево: цифра меньше правой соседки вычитается (IV = 5 - 1)
+        for (int i = roman.length() - 1; i >= 0; i--) {
+            char c = roman.charAt(i);
+            int value = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : 0;
+            if (value == 0) {
+                throw new IllegalArgumentException("Некорректное римское число: " + roman);
+            }
+            total += value < prev ? -value : value;
+            prev = Math.max(prev, value);
+        }
+        // Сумма считается и для неправильных записей ("IIII" = 4) - сверяем с канонической
+        if (total < MIN_VALUE || total > MAX_VALUE || !TABLE[total].equals(roman)) {
+            throw new IllegalArgumentException("Некорректное римское число: " + roman);
+        }
+        return total;
+    }
 
-        int[] values =    {1000, 900, 500, 400, 100,  90,  50,  40,  10,   9,   5,   4,  1};
-        String[] romans = {"M",  "CM","D", "CD", "C", "XC", "L", "XL", "X", "IX", "V", "IV","I"};
+    // --- Пакетная обработка ---
 
-        StringBuilder sb = new StringBuilder();
+    /** Перевод массива чисел; строки берутся из таблицы, новые не создаются. */
+    public static String[] intToRoman(int[] nums) {
+        String[] result = new String[nums.length];
+        for (int i = 0; i < nums.length; i++) {
+            result[i] = intToRoman(nums[i]);
+        }
+        return result;
+    }
+
+    /** То же, что intToRoman(int[]), но по частям в общем ForkJoinPool - для больших массивов. */
+    public static String[] intToRomanParallel(int[] nums) {
+        String[] result = new String[nums.length];
+        Arrays.parallelSetAll(result, i -> intToRoman(nums[i]));
+        return result;
+    }
 
-        for (int i = 0; i < values.length; i++) {
-            // пока текущее значение помещается в num, добавляем соответствующий символ
-            while (num >= values[i]) {
-                sb.append(romans[i]);
-                num -= values[i];
+    /**
+     * Записывает число римскими цифрами (ASCII) в буфер с текущей позиции.
+     * Возвращает количество записанных байт. Если места не хватает - BufferOverflowException,
+     * буфер не меняется.
+     */
+    public static int encode(int num, ByteBuffer out) {
+        checkRange(num);
+        byte[] bytes = TABLE_BYTES[num];
+        out.put(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Записывает все числа в буфер через разделитель (например, '\n').
+     * Возвращает количество записанных байт. Чтобы буфера точно хватило, достаточно
+     * nums.length * (MAX_LENGTH + 1) байт.
+     */
+    public static int encodeAll(int[] nums, ByteBuffer out, byte separator) {
+        int start = out.position();
+        for (int i = 0; i < nums.length; i++) {
+            if (i > 0) {
+                out.put(separator);
             }
+            encode(nums[i], out);
         }
+        return out.position() - start;
+    }
 
-        return sb.toString();
+    private static void checkRange(int num) {
+        if (num < MIN_VALUE || num > MAX_VALUE) {
+            throw new IllegalArgumentException("Число должно быть в диапазоне 1..3999");
+        }
     }
 
     //main для демонстрации
     public static void main(String[] args) {
-        int[] tests = {15};
+        int[] tests = {15, 1994, 3999};
         for (int t : tests) {
-            System.out.printf("%d -> %s%n", t, intToRoman(t));
+            String roman = intToRoman(t);
+            System.out.printf("%d -> %s -> %d%n", t, roman, romanToInt(roman));
         }
+
+        ByteBuffer buffer = ByteBuffer.allocate(tests.length * (MAX_LENGTH + 1));
+        encodeAll(tests, buffer, (byte) ' ');
+        System.out.println(new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
     }
 }
@@ -0,0 +1,73 @@
+package bench;
+
+import model.Student;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Воспроизводимые наборы данных: одинаковый seed - одинаковые студенты при каждом запуске.
+ */
+public final class BenchmarkData {
+
+    public static final long SEED = 20240901L;
+
+    private static final String[] NAMES = {
+            "Иван", "Петр", "Анна", "Мария", "Алексей", "Ольга", "Дмитрий", "Елена",
+            "Сергей", "Наталья", "Андрей", "Татьяна", "Михаил", "Ирина", "Николай", "Светлана"
+    };
+    private static final String[] SURNAMES = {
+            "Иванов", "Петров", "Сидоров", "Смирнов", "Кузнецов", "Попов", "Васильев", "Соколов",
+            "Михайлов", "Новиков", "Федоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семенов"
+    };
+    private static final String[] DOMAINS = {"mail.ru", "gmail.com", "yandex.ru", "student.edu", "inbox.ru"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * size студентов с Id от 1 до size и уникальными email.
+     */
+    public static List<Student> students(int size) {
+        Random random = new Random(SEED);
+        List<Student> students = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+            int age = 16 + random.nextInt(85);
+            String phone = random.nextInt(4) == 0 ? null : "+7" + (9000000000L + random.nextInt(999_999_999));
+            String email = "user" + id + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            students.add(new Student(id, name, surname, age, phone, email));
+        }
+        return students;
+    }
+
+    /**
+     * count email-адресов: примерно три четверти корректных, остальные с типичными ошибками.
+     */
+    public static String[] emails(int count) {
+        Random random = new Random(SEED);
+        String[] broken = {"user@", "@mail.ru", "user.mail.ru", "user@mail", "user@mail.r", "us er@mail.ru", ""};
+        String[] emails = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(4) == 0) {
+                emails[i] = broken[random.nextInt(broken.length)];
+            } else {
+                emails[i] = "user" + i + "." + NAMES[random.nextInt(NAMES.length)].length()
+                        + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            }
+        }
+        return emails;
+    }
+
+    /** Случайные Id из диапазона [1, size] в фиксированном порядке. */
+    public static int[] ids(int size, int count) {
+        Random random = new Random(SEED + 1);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = 1 + random.nextInt(size);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,104 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сравнивает результаты JMH (формат CSV, -rf csv) с сохраненной базовой линией.
+ * Для режима AverageTime меньше - лучше. Код выхода 1, если хотя бы один
+ * бенчмарк стал медленнее больше чем на порог (по умолчанию 10%).
+ *
+ * Использование: CompareWithBaseline baseline.csv results.csv [порог, %]
+ */
+public class CompareWithBaseline {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Использование: CompareWithBaseline <baseline.csv> <results.csv> [порог, %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        Map<String, Double> baseline = read(Path.of(args[0]));
+        Map<String, Double> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> e : current.entrySet()) {
+            Double before = baseline.get(e.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %12.3f  (нет в базовой линии)%n", e.getKey(), e.getValue());
+                continue;
+            }
+            double change = (e.getValue() - before) / before;
+            String mark = change > threshold ? "  <-- РЕГРЕССИЯ" : "";
+            if (change > threshold) {
+                regressions++;
+            }
+            System.out.printf("%-70s %12.3f -> %12.3f  %+7.1f%%%s%n",
+                    e.getKey(), before, e.getValue(), change * 100, mark);
+        }
+        System.out.println(regressions == 0 ? "Регрессий нет." : "Регрессий: " + regressions);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * Бенчмарк (с параметрами) -> значение Score.
+     */
+    private static Map<String, Double> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, Double> scores = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return scores;
+        }
+        List<String> header = parseCsvLine(lines.get(0));
+        int nameCol = header.indexOf("Benchmark");
+        int scoreCol = header.indexOf("Score");
+        int unitCol = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> cols = parseCsvLine(line);
+            StringBuilder key = new StringBuilder(cols.get(nameCol));
+            // Колонки после Unit - значения @Param
+            for (int i = unitCol + 1; i < cols.size(); i++) {
+                if (!cols.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i)).append('=').append(cols.get(i));
+                }
+            }
+            key.append(" [").append(cols.get(unitCol)).append(']');
+            scores.put(key.toString(), Double.parseDouble(cols.get(scoreCol)));
+        }
+        return scores;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                cols.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        cols.add(cur.toString());
+        return cols;
+    }
+}
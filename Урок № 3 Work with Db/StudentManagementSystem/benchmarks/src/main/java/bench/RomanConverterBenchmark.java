@@ -0,0 +1,50 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RomanConverter из первого урока лежит в пакете по умолчанию, а JMH требует
+ * именованный пакет у бенчмарка. Поэтому метод вызывается через MethodHandle
+ * из static final поля - JIT встраивает такой вызов как обычный.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RomanConverterBenchmark {
+
+    private static final MethodHandle INT_TO_ROMAN = findIntToRoman();
+
+    private int number;
+
+    private static MethodHandle findIntToRoman() {
+        try {
+            Class<?> converter = Class.forName("RomanConverter");
+            return MethodHandles.publicLookup().findStatic(converter, "intToRoman",
+                    MethodType.methodType(String.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Benchmark
+    public String intToRoman() throws Throwable {
+        number = number % 3999 + 1; // обходим весь диапазон 1..3999
+        return (String) INT_TO_ROMAN.invokeExact(number);
+    }
+}
@@ -0,0 +1,141 @@
+package bench;
+
+import dao.DatabaseConfig;
+import dao.StudentDAO;
+import dao.StudentQuery;
+import model.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRUD и поиск StudentDAO на встроенной H2 в режиме совместимости с MySQL.
+ * Абсолютные цифры отличаются от MySQL по сети, но изменения в коде DAO
+ * (маппинг, пул, подготовка запросов) видны.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StudentDaoBenchmark {
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE Students ("
+                    + " Id INT NOT NULL PRIMARY KEY,"
+                    + " Name VARCHAR(100) NOT NULL,"
+                    + " Surname VARCHAR(100) NOT NULL,"
+                    + " Age INT NOT NULL,"
+                    + " Phone VARCHAR(20) NULL,"
+                    + " Email VARCHAR(255) NOT NULL UNIQUE,"
+                    + " Version BIGINT NOT NULL DEFAULT 1)";
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private StudentDAO dao;
+    private int[] ids;
+    private List<Student> students;
+    private int cursor;
+    private int nextNewId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        // Свойства читаются при загрузке DatabaseConfig - задаем их до первого обращения
+        System.setProperty("db.url", "jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_UPPER=FALSE;DB_CLOSE_DELAY=-1");
+        System.setProperty("db.user", "sa");
+        System.setProperty("db.password", "");
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DROP TABLE IF EXISTS Students");
+            stmt.executeUpdate(CREATE_TABLE_SQL);
+            stmt.executeUpdate("CREATE INDEX idx_students_age ON Students (Age)");
+        }
+
+        dao = new StudentDAO();
+        students = BenchmarkData.students(size);
+        dao.addStudents(students);
+        ids = BenchmarkData.ids(size, 4096);
+        nextNewId = size + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseConfig.shutdown();
+    }
+
+    private int nextIndex() {
+        cursor = (cursor + 1) & (ids.length - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public Student getStudentById() throws SQLException {
+        return dao.getStudentById(ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public Student getStudentByEmail() throws SQLException {
+        return dao.getStudentByEmail(students.get(ids[nextIndex()] - 1).getEmail());
+    }
+
+    @Benchmark
+    public boolean isEmailExists() throws SQLException {
+        return dao.isEmailExists(students.get(ids[nextIndex()] - 1).getEmail());
+    }
+
+    @Benchmark
+    public List<Student> searchByName() throws SQLException {
+        return dao.searchByName("ван");
+    }
+
+    @Benchmark
+    public List<Student> filterByAge() throws SQLException {
+        return dao.filterByAge(16 + (nextIndex() % 85));
+    }
+
+    @Benchmark
+    public List<Student> findStudentsAgeRangePage() throws SQLException {
+        return dao.findStudents(new StudentQuery().ageBetween(20, 30).namePrefix("И").limit(50));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int forEachStudent() throws SQLException {
+        int[] sum = new int[1];
+        dao.forEachStudent(s -> sum[0] += s.getAge());
+        return sum[0];
+    }
+
+    @Benchmark
+    public boolean updateStudent() throws SQLException {
+        Student s = new Student(students.get(ids[nextIndex()] - 1));
+        s.setAge(16 + (s.getAge() + 1) % 85);
+        return dao.updateStudent(s);
+    }
+
+    @Benchmark
+    public boolean addAndDeleteStudent() throws SQLException {
+        int id = nextNewId++;
+        dao.addStudent(new Student(id, "Новый", "Студент", 20, null, "new" + id + "@bench.ru"));
+        return dao.deleteStudent(id);
+    }
+}
@@ -1,20 +1,56 @@
 package app;
 
-import dao.StudentDAO;
+import dao.CachedStudentDAO;
+import dao.DatabaseConfig;
+import dao.ReadSession;
+import dao.SchemaInitializer;
+import dao.StaleStudentException;
+import dao.StudentStats;
 import model.Student;
+import server.StudentHttpServer;
+import transfer.StudentExporter;
+import transfer.StudentFormat;
+import transfer.StudentImporter;
+import transfer.TransferReport;
 import util.Validator;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
 
 public class MainApp {
-    private static final StudentDAO studentDAO = new StudentDAO();
+    private static final CachedStudentDAO studentDAO = new CachedStudentDAO();
     private static final Scanner scanner = new Scanner(System.in);
+    private static final int DEFAULT_SERVER_PORT = 8080;
+    private static final int REPORT_AGE_BUCKET = 5;
+    private static final int REPORT_TOP_DOMAINS = 10;
 
     public static void main(String[] args) {
         System.out.println("=== STUDENT MANAGEMENT SYSTEM LAUNCHED ===");
+        try {
+            // Таблица и уникальный индекс по Email, на который опирается проверка дубликатов
+            SchemaInitializer.ensureSchema();
+            if (DatabaseConfig.OUTBOX_ENABLED) {
+                // Журнал изменений для внешних потребителей
+                SchemaInitializer.ensureOutbox();
+            }
+            // Поиск по имени/фамилии - через триграммный индекс в памяти
+            studentDAO.enableNameIndex();
+        } catch (SQLException e) {
+            System.err.println("\n[ОШИБКА БАЗЫ ДАННЫХ]: Не удалось подготовить БД: " + e.getMessage());
+        }
+        // Режим сервера: java app.MainApp --server [порт] - HTTP/JSON вместо меню
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SERVER_PORT);
+            return;
+        }
+        // Меню - одна сессия: после записи ее результат сразу виден и при чтении с реплик
+        ReadSession.Scope consoleSession = new ReadSession().open();
         boolean running = true;
 
         while (running) {
@@ -34,6 +70,11 @@ public class MainApp {
                         case 7: searchStudentsByEmail(); break;
                         case 8: filterStudentsByAge(); break;
                         case 9: deleteAllStudentsWithConfirmation(); break;
+                        case 10: showStatistics(); break;
+                        case 11: exportMetrics(); break;
+                        case 12: exportStudentsToFile(); break;
+                        case 13: importStudentsFromFile(); break;
+                        case 14: showStudentReport(); break;
                         case 0: running = false; break;
                         default: System.out.println("Неверный выбор. Попробуйте снова.");
                     }
@@ -52,6 +93,8 @@ public class MainApp {
                 System.err.println("\n[НЕОЖИДАННАЯ ОШИБКА]: " + e.getMessage());
             }
         }
+        consoleSession.close();
+        DatabaseConfig.shutdown();
         System.out.println("Программа завершена.");
     }
 
@@ -66,6 +109,11 @@ public class MainApp {
         System.out.println("7. Поиск по email");
         System.out.println("8. Фильтр по возрасту");
         System.out.println("9. Удалить ВСЕ записи (с подтверждением)");
+        System.out.println("10. Статистика работы с БД");
+        System.out.println("11. Экспорт метрик (формат Prometheus)");
+        System.out.println("12. Экспорт студентов в файл (CSV/JSON Lines)");
+        System.out.println("13. Импорт студентов из файла (CSV/JSON Lines)");
+        System.out.println("14. Отчет по студентам (возраст, домены email)");
         System.out.println("0. Выход");
         System.out.print("Выберите опцию: ");
     }
@@ -123,13 +171,14 @@ public class MainApp {
     // --- 2. ЧИТАТЬ ---
 
     private static void showAllStudents() throws SQLException {
-        List<Student> students = studentDAO.getAllStudents();
-        if (students.isEmpty()) {
-            System.out.println("\nБаза данных студентов пуста.");
+        // Выводим записи по мере чтения из БД, не дожидаясь всего списка
+        System.out.println("\n--- СПИСОК СТУДЕНТОВ ---");
+        int count = studentDAO.forEachStudent(System.out::println);
+        if (count == 0) {
+            System.out.println("База данных студентов пуста.");
             return;
         }
-        System.out.println("\n--- СПИСОК СТУДЕНТОВ (" + students.size() + ") ---");
-        students.forEach(System.out::println);
+        System.out.println("--- ВСЕГО: " + count + " ---");
     }
 
     private static void findStudentById() throws SQLException {
@@ -281,10 +330,18 @@ public class MainApp {
             studentToUpdate.setEmail(newEmail);
         }
 
-        if (studentDAO.updateStudent(studentToUpdate)) {
-            System.out.println("\n[УСПЕХ]: Данные студента успешно обновлены.");
-        } else {
-            System.out.println("Обновление не выполнено (либо данные не изменились, либо произошла ошибка).");
+        // Пока вводились данные, студента мог изменить кто-то другой: запись пройдет,
+        // только если версия в базе осталась той, что была при чтении
+        try {
+            if (studentDAO.updateStudent(studentToUpdate)) {
+                System.out.println("\n[УСПЕХ]: Данные студента успешно обновлены.");
+            } else {
+                System.out.println("Обновление не выполнено: студент с ID " + id + " уже удален.");
+            }
+        } catch (StaleStudentException e) {
+            System.out.println("\n[КОНФЛИКТ]: Пока вы редактировали, данные студента изменил другой пользователь."
+                    + " Ваши изменения не сохранены - откройте запись заново.");
+            System.out.println("Текущие данные: " + studentDAO.getStudentById(id));
         }
     }
 
@@ -318,4 +375,92 @@ public class MainApp {
             System.out.println("Удаление отменено.");
         }
     }
-}
\ No newline at end of file
+
+    // --- 5. СТАТИСТИКА ---
+
+    private static void showStatistics() {
+        System.out.println("\n--- СТАТИСТИКА ---");
+        System.out.println(DatabaseConfig.getPoolStats());
+        System.out.println(DatabaseConfig.getReplicaStats());
+        System.out.println(studentDAO.getCacheStats());
+        System.out.println(studentDAO.getMetrics());
+    }
+
+    // --- 5.1 Отчет по студентам ---
+    private static void showStudentReport() throws SQLException {
+        // Итоги считает БД: по сети приходят только сгруппированные строки
+        StudentStats stats = new StudentStats(studentDAO);
+        System.out.println("\n--- ОТЧЕТ ПО СТУДЕНТАМ ---");
+        System.out.println(stats.getSummary());
+        System.out.println("По возрасту (интервалы по 5 лет):");
+        stats.countByAgeBucket(REPORT_AGE_BUCKET).forEach((from, count) ->
+                System.out.printf("  %d-%d: %d%n", from, from + REPORT_AGE_BUCKET - 1, count));
+        System.out.println("Домены email (топ " + REPORT_TOP_DOMAINS + "):");
+        stats.countByEmailDomain(REPORT_TOP_DOMAINS).forEach((domain, count) ->
+                System.out.printf("  %s: %d%n", domain, count));
+    }
+
+    // --- 5.2 Экспорт метрик ---
+    private static void exportMetrics() throws IOException {
+        System.out.print("Файл для метрик (Enter - вывести на экран): ");
+        String fileName = scanner.nextLine().trim();
+        String text = studentDAO.getMetrics().toPrometheus();
+        if (fileName.isEmpty()) {
+            System.out.println(text);
+            return;
+        }
+        Files.writeString(Path.of(fileName), text, StandardCharsets.UTF_8);
+        System.out.println("Метрики записаны в " + fileName);
+    }
+
+    // --- 6. Экспорт и импорт ---
+
+    private static void exportStudentsToFile() throws IOException, SQLException {
+        System.out.print("Файл для выгрузки (.csv или .jsonl): ");
+        String fileName = scanner.nextLine().trim();
+        StudentFormat format = StudentFormat.fromFileName(fileName);
+        TransferReport report = new StudentExporter(studentDAO).export(Path.of(fileName), format);
+        System.out.println("Выгрузка завершена. " + report);
+    }
+
+    private static void importStudentsFromFile() throws IOException, SQLException {
+        System.out.print("Файл для загрузки (.csv или .jsonl): ");
+        String fileName = scanner.nextLine().trim();
+        StudentFormat format = StudentFormat.fromFileName(fileName);
+        System.out.print("Обновлять существующих студентов? (ДА/НЕТ): ");
+        boolean upsert = scanner.nextLine().trim().equalsIgnoreCase("ДА");
+
+        StudentImporter importer = new StudentImporter(studentDAO, StudentImporter.DEFAULT_CHUNK_SIZE,
+                Runtime.getRuntime().availableProcessors(), upsert);
+        TransferReport report = importer.importFile(Path.of(fileName), format);
+        System.out.println("Загрузка завершена. " + report);
+        for (String error : report.getErrors()) {
+            System.out.println("  " + error);
+        }
+        if (report.getRejected() > report.getErrors().size()) {
+            System.out.println("  ... и еще " + (report.getRejected() - report.getErrors().size()) + " ошибок.");
+        }
+    }
+
+    // --- 7. Режим сервера ---
+
+    private static void runServer(int port) {
+        StudentHttpServer server;
+        try {
+            server = new StudentHttpServer(studentDAO, port);
+        } catch (IOException e) {
+            System.err.println("\n[ОШИБКА СЕРВЕРА]: Не удалось открыть порт " + port + ": " + e.getMessage());
+            DatabaseConfig.shutdown();
+            return;
+        }
+        // Остановка по Ctrl+C: сначала перестаем принимать запросы, потом закрываем пул
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            DatabaseConfig.shutdown();
+            System.out.println("Сервер остановлен.");
+        }));
+        server.start();
+        System.out.println("HTTP-сервер запущен: http://localhost:" + server.getPort() + "/students"
+                + (server.isUsingVirtualThreads() ? " (виртуальные потоки)" : " (пул потоков)"));
+    }
+}
@@ -0,0 +1,125 @@
+package app;
+
+import dao.DatabaseConfig;
+import dao.ReadSession;
+import dao.SchemaInitializer;
+import dao.StudentDAO;
+import model.Student;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Проверка чтения с реплик на локальных серверах: основной и хотя бы одна реплика
+ * задаются как обычно (db.url, db.replicas - см. DatabaseConfig). Пишет одного
+ * тестового студента и удаляет его в конце. Код выхода 0 - все проверки прошли,
+ * 1 - есть ошибки, 2 - реплики не настроены.
+ *
+ * Пример:
+ *   java -Ddb.url=jdbc:mysql://localhost:3306/student_db -Ddb.replicas=jdbc:mysql://localhost:3307/student_db
+ *        -cp target/classes:mysql-connector-j.jar app.ReplicaCheck
+ *
+ * Пока идет проверка занятого пула, чтения ждут соединение до таймаута пула (5 с).
+ */
+public class ReplicaCheck {
+
+    // Больше соединений, чем в пулах всех реплик при любых разумных настройках
+    private static final int MAX_HELD_CONNECTIONS = 1000;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        if (!DatabaseConfig.hasReplicas()) {
+            System.err.println("Реплики не настроены: укажите -Ddb.replicas=<JDBC URL через запятую>.");
+            System.exit(2);
+        }
+        try {
+            run();
+        } catch (SQLException e) {
+            System.err.println("[ОШИБКА БАЗЫ ДАННЫХ]: " + e.getMessage());
+            failures++;
+        } finally {
+            System.out.println(DatabaseConfig.getReplicaStats());
+            DatabaseConfig.shutdown();
+        }
+        System.out.println(failures == 0 ? "Все проверки пройдены." : "Проверок не пройдено: " + failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void run() throws SQLException {
+        SchemaInitializer.ensureSchema();
+        StudentDAO dao = new StudentDAO();
+        String primary;
+        try (Connection conn = DatabaseConfig.getPrimaryReadConnection()) {
+            primary = serverOf(conn);
+        }
+
+        check("чтение вне сессии идет на реплику", !readsFromPrimary(primary));
+
+        ReadSession session = new ReadSession();
+        Student student = new Student(0, "Проверка", "Реплик", 20, null,
+                "replica-check-" + System.currentTimeMillis() + "@example.com");
+        session.call(() -> {
+            dao.addStudent(student);
+            return null;
+        });
+        try {
+            check("после записи чтение сессии идет на основной сервер",
+                    session.call(() -> readsFromPrimary(primary)));
+            check("сессия сразу видит свою запись",
+                    session.call(() -> dao.getStudentById(student.getId())) != null);
+            check("проверка email видит запись без сессии (основной сервер)",
+                    dao.isEmailExists(student.getEmail()));
+            check("маркер сессии переносит чтение своих записей",
+                    ReadSession.fromToken(session.token()).call(() -> readsFromPrimary(primary)));
+            check("новая сессия читает с реплики",
+                    !ReadSession.fromToken(null).call(() -> readsFromPrimary(primary)));
+
+            checkExhaustedPool(primary);
+        } finally {
+            dao.deleteStudent(student.getId());
+        }
+    }
+
+    /** Занимает все соединения реплик: следующее чтение уходит на основной сервер, реплики остаются доступны. */
+    private static void checkExhaustedPool(String primary) throws SQLException {
+        List<Connection> held = new ArrayList<>();
+        boolean spilled = false;
+        try {
+            while (held.size() < MAX_HELD_CONNECTIONS) {
+                Connection conn = DatabaseConfig.getReadConnection();
+                held.add(conn);
+                if (serverOf(conn).equals(primary)) {
+                    spilled = true;
+                    break;
+                }
+            }
+        } finally {
+            for (Connection conn : held) {
+                conn.close();
+            }
+        }
+        check("при занятом пуле реплик чтение уходит на основной сервер", spilled);
+        check("занятая реплика не исключается из чтения", !DatabaseConfig.getReplicaStats().contains("НЕДОСТУПНА"));
+        check("после освобождения пула чтение снова идет на реплику", !readsFromPrimary(primary));
+    }
+
+    private static boolean readsFromPrimary(String primary) throws SQLException {
+        try (Connection conn = DatabaseConfig.getReadConnection()) {
+            return serverOf(conn).equals(primary);
+        }
+    }
+
+    private static String serverOf(Connection conn) throws SQLException {
+        return conn.getMetaData().getURL();
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "[OK]     " : "[ОШИБКА] ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dao;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс возраст -> Id для InMemoryStudentRepository без упаковки в Long/Integer:
+ * встречавшиеся возрасты лежат в отсортированном int[], для каждого - множество Id
+ * (NameSearchIndex.IntHashSet). Различных возрастов немного, поэтому диапазон - двоичный
+ * поиск и обход соседних ячеек, а запись - операция с хеш-множеством под общей блокировкой.
+ * Ячейка опустевшего возраста остается до clear().
+ */
+final class AgeIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] ages = new int[8];
+    private NameSearchIndex.IntHashSet[] ids = new NameSearchIndex.IntHashSet[8];
+    private int count;
+
+    void add(int age, int id) {
+        lock.writeLock().lock();
+        try {
+            bucket(age).add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int age, int id) {
+        lock.writeLock().lock();
+        try {
+            int i = Arrays.binarySearch(ages, 0, count, age);
+            if (i >= 0) {
+                ids[i].remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Переносит id из oldAge в newAge за одно взятие блокировки. */
+    void move(int oldAge, int newAge, int id) {
+        if (oldAge == newAge) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int i = Arrays.binarySearch(ages, 0, count, oldAge);
+            if (i >= 0) {
+                ids[i].remove(id);
+            }
+            bucket(newAge).add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Id с возрастом в [min, max], в произвольном порядке. */
+    int[] idsBetween(int min, int max) {
+        lock.readLock().lock();
+        try {
+            int from = Arrays.binarySearch(ages, 0, count, min);
+            if (from < 0) {
+                from = -from - 1;
+            }
+            int size = 0;
+            int to = from;
+            for (; to < count && ages[to] <= max; to++) {
+                size += ids[to].size();
+            }
+            int[] result = new int[size];
+            int[] n = {0};
+            for (int i = from; i < to; i++) {
+                ids[i].forEach(id -> result[n[0]++] = id);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(ids, 0, count, null);
+            count = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Под блокировкой записи: множество Id возраста age, при необходимости - новая ячейка
+    private NameSearchIndex.IntHashSet bucket(int age) {
+        int i = Arrays.binarySearch(ages, 0, count, age);
+        if (i >= 0) {
+            return ids[i];
+        }
+        i = -i - 1;
+        if (count == ages.length) {
+            ages = Arrays.copyOf(ages, count * 2);
+            ids = Arrays.copyOf(ids, count * 2);
+        }
+        System.arraycopy(ages, i, ages, i + 1, count - i);
+        System.arraycopy(ids, i, ids, i + 1, count - i);
+        ages[i] = age;
+        ids[i] = new NameSearchIndex.IntHashSet();
+        count++;
+        return ids[i];
+    }
+}
@@ -0,0 +1,207 @@
+package dao;
+
+import model.Student;
+import model.StudentSummary;
+import util.ThreadPools;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный фасад над хранилищем студентов (StudentDAO или другой StudentRepository): каждый метод возвращает CompletableFuture,
+ * а блокирующий JDBC-вызов выполняется в отдельном исполнителе.
+ * Одновременно выполняется не больше запросов, чем соединений в пуле, -
+ * лишние ждут разрешения, а не соединения с таймаутом.
+ * Ошибки БД приходят как CompletionException с SQLException внутри.
+ *
+ * Запросы выполняются в потоках исполнителя, поэтому чтение своих записей нужно задать
+ * явно: inSession(session) возвращает фасад, все вызовы которого идут в этой ReadSession.
+ */
+public class AsyncStudentDAO implements AutoCloseable {
+
+    private final StudentRepository dao;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final ReadSession session;   // null - вызовы вне сессии
+    private final boolean ownsExecutor;
+
+    /**
+     * Фасад над dao с лимитом, равным размеру пула соединений.
+     */
+    public AsyncStudentDAO(StudentRepository dao) {
+        this(dao, DatabaseConfig.getPool().getMaxSize());
+    }
+
+    public AsyncStudentDAO(StudentRepository dao, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Лимит параллельных запросов должен быть положительным.");
+        }
+        this.dao = dao;
+        this.permits = new Semaphore(maxConcurrency);
+        // На Java 21+ - виртуальные потоки, иначе maxConcurrency обычных
+        this.executor = ThreadPools.virtualOrDaemonPool("student-dao-async", maxConcurrency);
+        this.session = null;
+        this.ownsExecutor = true;
+    }
+
+    private AsyncStudentDAO(AsyncStudentDAO parent, ReadSession session) {
+        this.dao = parent.dao;
+        this.permits = parent.permits;
+        this.executor = parent.executor;
+        this.session = session;
+        this.ownsExecutor = false;
+    }
+
+    /**
+     * Фасад с тем же исполнителем и лимитом, вызовы которого идут в session:
+     * после записи через него его же чтения видят ее, даже если выполняются в другом потоке.
+     * Закрывать его не нужно - исполнитель закрывает исходный фасад.
+     */
+    public AsyncStudentDAO inSession(ReadSession session) {
+        return new AsyncStudentDAO(this, session);
+    }
+
+    /** Вызов DAO, который может бросить SQLException. */
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    private <T> CompletableFuture<T> submit(SqlCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return session != null ? session.call(call::call) : call.call();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    // --- Добавление ---
+
+    public CompletableFuture<Void> addStudent(Student student) {
+        return submit(() -> {
+            dao.addStudent(student);
+            return null;
+        });
+    }
+
+    public CompletableFuture<BatchResult> addStudents(Iterable<Student> students, int batchSize) {
+        return submit(() -> dao.addStudents(students, batchSize));
+    }
+
+    // --- Чтение ---
+
+    public CompletableFuture<Boolean> isEmailExists(String email) {
+        return submit(() -> dao.isEmailExists(email));
+    }
+
+    public CompletableFuture<List<Student>> getAllStudents() {
+        return submit(dao::getAllStudents);
+    }
+
+    /** Обход всех студентов; результат - количество обработанных записей. */
+    public CompletableFuture<Integer> forEachStudent(Consumer<Student> action) {
+        return submit(() -> dao.forEachStudent(action));
+    }
+
+    public CompletableFuture<List<Student>> getStudentsAfterId(int lastId, int limit) {
+        return submit(() -> dao.getStudentsAfterId(lastId, limit));
+    }
+
+    public CompletableFuture<Student> getStudentById(int id) {
+        return submit(() -> dao.getStudentById(id));
+    }
+
+    public CompletableFuture<Student> getStudentByEmail(String email) {
+        return submit(() -> dao.getStudentByEmail(email));
+    }
+
+    public CompletableFuture<List<Student>> searchByName(String query) {
+        return submit(() -> dao.searchByName(query));
+    }
+
+    public CompletableFuture<List<Student>> searchByName(String query, int limit) {
+        return submit(() -> dao.searchByName(query, limit));
+    }
+
+    public CompletableFuture<List<StudentSummary>> searchSummariesByName(String query, int limit) {
+        return submit(() -> dao.searchSummariesByName(query, limit));
+    }
+
+    public CompletableFuture<List<Student>> filterByAge(int age) {
+        return submit(() -> dao.filterByAge(age));
+    }
+
+    public CompletableFuture<List<Student>> filterByAgeRange(int minAge, int maxAge) {
+        return submit(() -> dao.filterByAgeRange(minAge, maxAge));
+    }
+
+    public CompletableFuture<List<Student>> findStudents(StudentQuery query) {
+        return submit(() -> dao.findStudents(query));
+    }
+
+    /**
+     * Загружает студентов по списку Id: список режется на куски по MAX_IN_LIST_SIZE,
+     * куски запрашиваются параллельно (каждый - одним запросом IN (...)).
+     * В результате только найденные, в порядке входного списка.
+     */
+    public CompletableFuture<Map<Integer, Student>> getStudentsByIds(Collection<Integer> ids) {
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<CompletableFuture<Map<Integer, Student>>> parts = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += StudentDAO.MAX_IN_LIST_SIZE) {
+            List<Integer> chunk = distinct.subList(from, Math.min(from + StudentDAO.MAX_IN_LIST_SIZE, distinct.size()));
+            parts.add(submit(() -> dao.getStudentsByIds(chunk)));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<Integer, Student> result = new LinkedHashMap<>();
+                    for (CompletableFuture<Map<Integer, Student>> part : parts) {
+                        result.putAll(part.join());
+                    }
+                    return result;
+                });
+    }
+
+    public CompletableFuture<Map<String, Student>> getStudentsByEmails(Collection<String> emails) {
+        return submit(() -> dao.getStudentsByEmails(emails));
+    }
+
+    // --- Обновление и удаление ---
+
+    public CompletableFuture<Boolean> updateStudent(Student student) {
+        return submit(() -> dao.updateStudent(student));
+    }
+
+    public CompletableFuture<Boolean> deleteStudent(int id) {
+        return submit(() -> dao.deleteStudent(id));
+    }
+
+    public CompletableFuture<Integer> deleteAllStudents() {
+        return submit(dao::deleteAllStudents);
+    }
+
+    /**
+     * Останавливает исполнитель; уже запущенные запросы доработают.
+     * Для фасада из inSession ничего не делает.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package dao;
+
+import model.Student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Итог пакетной загрузки студентов: сколько строк записано
+ * и какие строки отклонены (с причиной).
+ */
+public class BatchResult {
+
+    private int written;
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    void addWritten(int count) {
+        written += count;
+    }
+
+    void reject(int index, Student student, String reason) {
+        rejections.add(new Rejection(index, student, reason));
+    }
+
+    /** Количество успешно записанных строк. */
+    public int getWritten() { return written; }
+
+    /** Отклоненные строки в порядке их следования во входных данных. */
+    public List<Rejection> getRejections() {
+        rejections.sort((a, b) -> Integer.compare(a.index, b.index));
+        return Collections.unmodifiableList(rejections);
+    }
+
+    public int getRejectedCount() { return rejections.size(); }
+
+    @Override
+    public String toString() {
+        return "Записано: " + written + ", отклонено: " + rejections.size();
+    }
+
+    /** Отклоненная строка: порядковый номер во входных данных (с 0), студент и причина. */
+    public static class Rejection {
+        private final int index;
+        private final Student student;
+        private final String reason;
+
+        Rejection(int index, Student student, String reason) {
+            this.index = index;
+            this.student = student;
+            this.reason = reason;
+        }
+
+        public int getIndex() { return index; }
+        public Student getStudent() { return student; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return "#" + index + " (ID " + (student != null ? student.getId() : "?") + "): " + reason;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package dao;
+
+import model.Student;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * StudentDAO с кэшем чтения: getStudentById и getStudentByEmail сначала
+ * смотрят в StudentCache, а операции записи точечно сбрасывают кэш.
+ * Промахи дочитываются с основного сервера, а не с реплики: отставшая копия
+ * осталась бы в кэше до истечения TTL, хотя реплика давно догнала бы запись.
+ */
+public class CachedStudentDAO extends StudentDAO {
+
+    // Настройки кэша по умолчанию
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+    private static final long DEFAULT_TTL_MS = 5 * 60_000;
+
+    private final StudentCache cache;
+
+    public CachedStudentDAO() {
+        this(new StudentCache(DEFAULT_MAX_SIZE, DEFAULT_TTL_MS));
+    }
+
+    public CachedStudentDAO(StudentCache cache) {
+        this.cache = cache;
+    }
+
+    /** Кэширующий DAO отдельного узла БД (см. StudentDAO(ConnectionPool)). */
+    public CachedStudentDAO(StudentCache cache, ConnectionPool pool) {
+        super(pool);
+        this.cache = cache;
+    }
+
+    public StudentCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+
+    @Override
+    Connection lookupConnection() throws SQLException {
+        return primaryReadConnection();
+    }
+
+    // --- Чтение через кэш ---
+
+    @Override
+    public Student getStudentById(int id) throws SQLException {
+        Student cached = cache.getById(id);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = cache.beginLoad();
+        Student student = super.getStudentById(id);
+        cache.put(student, stamp);
+        return student;
+    }
+
+    @Override
+    public Student getStudentByEmail(String email) throws SQLException {
+        Student cached = cache.getByEmail(email);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = cache.beginLoad();
+        Student student = super.getStudentByEmail(email);
+        cache.put(student, stamp);
+        return student;
+    }
+
+    /**
+     * Берет из кэша все, что там есть, и одним пакетом запросов дочитывает промахи.
+     */
+    @Override
+    public Map<Integer, Student> getStudentsByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, Student> result = new LinkedHashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (Integer id : ids) {
+            if (result.containsKey(id)) {
+                continue;
+            }
+            Student cached = cache.getById(id);
+            result.put(id, cached); // null - место в порядке результата, заполним после загрузки
+            if (cached == null) {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long stamp = cache.beginLoad();
+            Map<Integer, Student> loaded = super.getStudentsByIds(misses);
+            for (Student s : loaded.values()) {
+                cache.put(s, stamp);
+            }
+            result.putAll(loaded);
+        }
+        result.values().removeIf(Objects::isNull);
+        return result;
+    }
+
+    /**
+     * Email сравниваются без учета регистра, как в StudentDAO: ключ результата - email
+     * в том виде, в каком он впервые встретился во входном списке.
+     */
+    @Override
+    public Map<String, Student> getStudentsByEmails(Collection<String> emails) throws SQLException {
+        Map<String, Student> result = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String email : emails) {
+            if (email == null || !seen.add(email.toLowerCase())) {
+                continue;
+            }
+            Student cached = cache.getByEmail(email);
+            result.put(email, cached);
+            if (cached == null) {
+                misses.add(email);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long stamp = cache.beginLoad();
+            Map<String, Student> loaded = super.getStudentsByEmails(misses);
+            for (Student s : loaded.values()) {
+                cache.put(s, stamp);
+            }
+            result.putAll(loaded);
+        }
+        result.values().removeIf(Objects::isNull);
+        return result;
+    }
+
+    // --- Запись со сбросом кэша ---
+
+    @Override
+    public boolean updateStudent(Student student) throws SQLException {
+        // Сбрасываем и до, и после: запись со старым email уйдет из обоих индексов,
+        // а параллельное чтение, начатое до коммита, не вернет старые данные в кэш
+        cache.invalidate(student.getId());
+        try {
+            return super.updateStudent(student);
+        } finally {
+            cache.invalidate(student.getId());
+        }
+    }
+
+    @Override
+    public BatchResult upsertStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        // Входные данные могут читаться только один раз - запоминаем Id по ходу обхода
+        List<Integer> touched = new ArrayList<>();
+        Iterable<Student> tracking = () -> {
+            Iterator<Student> it = students.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() { return it.hasNext(); }
+
+                @Override
+                public Student next() {
+                    Student s = it.next();
+                    touched.add(s.getId());
+                    cache.invalidate(s.getId());
+                    return s;
+                }
+            };
+        };
+        try {
+            return super.upsertStudents(tracking, batchSize);
+        } finally {
+            for (int id : touched) {
+                cache.invalidate(id);
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteStudent(int id) throws SQLException {
+        cache.invalidate(id);
+        try {
+            return super.deleteStudent(id);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    protected BatchResult applyWrites(List<Student> updates, List<Integer> deletes) throws SQLException {
+        invalidateWrites(updates, deletes);
+        try {
+            return super.applyWrites(updates, deletes);
+        } finally {
+            invalidateWrites(updates, deletes);
+        }
+    }
+
+    private void invalidateWrites(List<Student> updates, List<Integer> deletes) {
+        for (Student s : updates) {
+            cache.invalidate(s.getId());
+        }
+        for (int id : deletes) {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public int deleteAllStudents() throws SQLException {
+        cache.invalidateAll();
+        try {
+            return super.deleteAllStudents();
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package dao;
+
+import model.Student;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Список подписчиков хранилища и рассылка им уведомлений. Ошибка одного подписчика
+ * не мешает остальным и не отменяет уже зафиксированную запись - она только сообщается.
+ * Общий для StudentDAO, InMemoryStudentRepository и ShardedStudentRepository.
+ */
+final class ChangeListeners {
+
+    private static final Logger LOG = Logger.getLogger(ChangeListeners.class.getName());
+
+    private final List<StudentChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(StudentChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    void remove(StudentChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    void fireSaved(Student student) {
+        for (StudentChangeListener l : listeners) {
+            try {
+                l.onStudentSaved(student);
+            } catch (RuntimeException e) {
+                report("изменения", e);
+            }
+        }
+    }
+
+    void fireCreated(Student student) {
+        for (StudentChangeListener l : listeners) {
+            try {
+                l.onStudentCreated(student);
+            } catch (RuntimeException e) {
+                report("добавления", e);
+            }
+        }
+    }
+
+    /** Строка с версией 1 после записи - новая (вставка или upsert без совпадения). */
+    void fireWritten(Student student) {
+        if (student.getVersion() == 1) {
+            fireCreated(student);
+        } else {
+            fireSaved(student);
+        }
+    }
+
+    void fireDeleted(int id, long version) {
+        for (StudentChangeListener l : listeners) {
+            try {
+                l.onStudentDeleted(id, version);
+            } catch (RuntimeException e) {
+                report("удаления", e);
+            }
+        }
+    }
+
+    void fireAllDeleted() {
+        for (StudentChangeListener l : listeners) {
+            try {
+                l.onAllStudentsDeleted();
+            } catch (RuntimeException e) {
+                report("очистки", e);
+            }
+        }
+    }
+
+    private static void report(String what, RuntimeException e) {
+        LOG.log(Level.WARNING, "Ошибка подписчика при обработке " + what, e);
+    }
+}
@@ -0,0 +1,572 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ограниченный пул соединений с MySQL.
+ * Соединения открываются один раз и переиспользуются: close() у выданного
+ * соединения возвращает его в пул, а не закрывает физически.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+
+    // Соединение, вернувшееся в пул совсем недавно, не проверяем повторно (экономим ping)
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis; // 0 - поиск утечек выключен
+    private final int validationTimeoutSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    // Свободные соединения: последнее возвращенное выдается первым (оно "теплее")
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    // Выданные соединения -> информация о выдаче (для поиска утечек)
+    private final Map<Connection, Lease> leased = new ConcurrentHashMap<>();
+    // Кэш подготовленных запросов для каждого физического соединения
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    // Исходные настройки сеанса каждого физического соединения - к ним оно возвращается в пул
+    private final Map<Connection, SessionDefaults> sessionDefaults = new ConcurrentHashMap<>();
+    // Запросы, которые готовятся заранее на каждом новом соединении
+    private final Set<String> warmUpStatements = ConcurrentHashMap.newKeySet();
+    private volatile int statementCacheSize = 64;
+    private int totalCount;
+    private boolean closed;
+
+    private final ScheduledExecutorService housekeeper;
+
+    // Метрики
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Некорректные размеры пула: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.validationTimeoutSeconds = 2;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long shortest = leakThresholdMillis > 0 ? Math.min(idleTimeoutMillis, leakThresholdMillis) : idleTimeoutMillis;
+        long period = Math.max(1000, shortest / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдает соединение из пула. Если свободных нет и пул заполнен,
+     * ждет не дольше borrowTimeout, затем бросает PoolExhaustedException.
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+
+        while (true) {
+            Connection physical = null;
+            long idleSince = 0;
+            boolean mustCreate = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Пул соединений закрыт.");
+                    }
+                    if (!idle.isEmpty()) {
+                        IdleConnection ic = idle.pollFirst();
+                        physical = ic.connection;
+                        idleSince = ic.idleSince;
+                        break;
+                    }
+                    if (totalCount < maxSize) {
+                        totalCount++;
+                        mustCreate = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount.incrementAndGet();
+                        throw new PoolExhaustedException(borrowTimeoutMillis, maxSize);
+                    }
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Ожидание соединения прервано.", "08001", e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (mustCreate) {
+                try {
+                    physical = createPhysical();
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (System.currentTimeMillis() - idleSince > VALIDATION_BYPASS_MILLIS && !isValid(physical)) {
+                // Проверка при выдаче: "мертвое" соединение выбрасываем и пробуем снова
+                validationFailures.incrementAndGet();
+                destroy(physical);
+                continue;
+            }
+
+            totalWaitNanos.addAndGet(System.nanoTime() - start);
+            borrowCount.incrementAndGet();
+            return lease(physical);
+        }
+    }
+
+    private Connection createPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        try {
+            sessionDefaults.put(conn, new SessionDefaults(conn.getTransactionIsolation(), conn.getCatalog()));
+        } catch (SQLException e) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // соединение все равно не будет использовано
+            }
+            throw e;
+        }
+        createdCount.incrementAndGet();
+        StatementCache cache = new StatementCache(conn, warmUpStatements, statementCacheSize,
+                statementHits, statementMisses);
+        for (String sql : warmUpStatements) {
+            cache.warmUp(sql);
+        }
+        statementCaches.put(conn, cache);
+        return conn;
+    }
+
+    /**
+     * Регистрирует постоянные запросы: они будут подготовлены на каждом новом соединении
+     * сразу после его открытия, и только они кэшируются при prepareStatement(String).
+     * Повторная регистрация того же текста ничего не меняет.
+     */
+    public void registerStatements(Collection<String> sqls) {
+        warmUpStatements.addAll(sqls);
+    }
+
+    /**
+     * Сколько подготовленных запросов держать на одном соединении (для новых соединений).
+     */
+    public void setStatementCacheSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Размер кэша запросов должен быть положительным: " + size);
+        }
+        this.statementCacheSize = size;
+    }
+
+    private boolean isValid(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection lease(Connection physical) {
+        Lease lease = new Lease(physical);
+        Connection proxy = (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                lease);
+        leased.put(physical, lease);
+        return proxy;
+    }
+
+    /**
+     * Возвращает соединение в пул (вызывается из close() выданного соединения).
+     */
+    private void giveBack(Lease lease) {
+        leased.remove(lease.physical);
+        Connection physical = lease.physical;
+
+        // Сбрасываем состояние, оставленное вызывающим кодом
+        StatementCache cache = statementCaches.get(physical);
+        if (cache != null) {
+            cache.releaseAll();
+        }
+        try {
+            // Закрытое (например, после обрыва связи) соединение в пул не возвращаем: проверка
+            // при выдаче пропускается для недавно возвращенных, и его выдали бы без проверки
+            if (physical.isClosed()) {
+                destroy(physical);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (lease.sessionChanged) {
+                SessionDefaults defaults = sessionDefaults.get(physical);
+                physical.setReadOnly(false);
+                physical.setTransactionIsolation(defaults.isolation);
+                if (defaults.catalog != null) {
+                    physical.setCatalog(defaults.catalog);
+                }
+            }
+        } catch (SQLException e) {
+            destroy(physical);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                totalCount--;
+                closeQuietly(physical);
+                destroyedCount.incrementAndGet();
+                return;
+            }
+            idle.offerFirst(new IdleConnection(physical, System.currentTimeMillis()));
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void destroy(Connection physical) {
+        closeQuietly(physical);
+        destroyedCount.incrementAndGet();
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            totalCount--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        sessionDefaults.remove(conn);
+        StatementCache cache = statementCaches.remove(conn);
+        if (cache != null) {
+            cache.closeAll();
+        }
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // соединение уже не нужно
+        }
+    }
+
+    /**
+     * Фоновая задача: вытесняет долго простаивающие соединения сверх minSize,
+     * дополняет пул до minSize и сообщает о соединениях, которые держат слишком долго.
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // Самые "старые" свободные соединения лежат в конце очереди
+            Iterator<IdleConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalCount > minSize) {
+                IdleConnection ic = it.next();
+                if (now - ic.idleSince >= idleTimeoutMillis) {
+                    it.remove();
+                    totalCount--;
+                    closeQuietly(ic.connection);
+                    destroyedCount.incrementAndGet();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        fillToMinimum();
+
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        for (Lease lease : leased.values()) {
+            if (!lease.leakReported && now - lease.borrowedAt >= leakThresholdMillis) {
+                lease.leakReported = true;
+                leakCount.incrementAndGet();
+                LOG.log(Level.WARNING, "Возможная утечка — соединение удерживается более "
+                        + leakThresholdMillis + " мс. Место получения:", lease.origin);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || totalCount >= minSize) {
+                    return;
+                }
+                totalCount++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                Connection conn = createPhysical();
+                lock.lock();
+                try {
+                    idle.offerLast(new IdleConnection(conn, System.currentTimeMillis()));
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                releaseSlot();
+                return; // попробуем в следующий раз
+            }
+        }
+    }
+
+    /**
+     * Закрывает все свободные соединения; выданные закроются при возврате.
+     */
+    @Override
+    public void close() {
+        housekeeper.shutdownNow();
+        lock.lock();
+        try {
+            closed = true;
+            for (IdleConnection ic : idle) {
+                closeQuietly(ic.connection);
+                destroyedCount.incrementAndGet();
+                totalCount--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Сколько соединений сейчас выдано (без блокировки пула - для балансировки). */
+    public int getActiveCount() {
+        return leased.size();
+    }
+
+    // --- Метрики ---
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(totalCount, idle.size(), leased.size(), maxSize,
+                    borrowCount.get(), createdCount.get(), destroyedCount.get(),
+                    timeoutCount.get(), validationFailures.get(), leakCount.get(),
+                    TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()),
+                    statementHits.get(), statementMisses.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Снимок метрик пула. */
+    public static class Stats {
+        private final int total;
+        private final int idle;
+        private final int active;
+        private final int max;
+        private final long borrowed;
+        private final long created;
+        private final long destroyed;
+        private final long timeouts;
+        private final long validationFailures;
+        private final long leaks;
+        private final long totalWaitMicros;
+        private final long statementHits;
+        private final long statementMisses;
+
+        Stats(int total, int idle, int active, int max, long borrowed, long created, long destroyed,
+              long timeouts, long validationFailures, long leaks, long totalWaitMicros,
+              long statementHits, long statementMisses) {
+            this.total = total;
+            this.idle = idle;
+            this.active = active;
+            this.max = max;
+            this.borrowed = borrowed;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+            this.leaks = leaks;
+            this.totalWaitMicros = totalWaitMicros;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        public int getTotal() { return total; }
+        public int getIdle() { return idle; }
+        public int getActive() { return active; }
+        public int getMax() { return max; }
+        public long getBorrowed() { return borrowed; }
+        public long getCreated() { return created; }
+        public long getDestroyed() { return destroyed; }
+        public long getTimeouts() { return timeouts; }
+        public long getValidationFailures() { return validationFailures; }
+        public long getLeaks() { return leaks; }
+        public long getTotalWaitMicros() { return totalWaitMicros; }
+        public long getStatementHits() { return statementHits; }
+        public long getStatementMisses() { return statementMisses; }
+
+        public double getStatementHitRate() {
+            long total = statementHits + statementMisses;
+            return total == 0 ? 0.0 : (double) statementHits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Пул: всего %d/%d | занято %d | свободно %d | выдано %d | создано %d | закрыто %d"
+                            + " | таймаутов %d | невалидных %d | утечек %d | ср. ожидание %d мкс"
+                            + "%nЗапросы: из кэша %d | подготовлено заново %d (%.1f%% из кэша)",
+                    total, max, active, idle, borrowed, created, destroyed,
+                    timeouts, validationFailures, leaks,
+                    borrowed == 0 ? 0 : totalWaitMicros / borrowed,
+                    statementHits, statementMisses, getStatementHitRate() * 100);
+        }
+    }
+
+    // --- Внутренние классы ---
+
+    private static class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private static class SessionDefaults {
+        final int isolation;
+        final String catalog;
+
+        SessionDefaults(int isolation, String catalog) {
+            this.isolation = isolation;
+            this.catalog = catalog;
+        }
+    }
+
+    /**
+     * Обработчик прокси выданного соединения: перехватывает close()
+     * и запрещает использование соединения после возврата в пул.
+     */
+    private class Lease implements InvocationHandler {
+        final Connection physical;
+        final long borrowedAt = System.currentTimeMillis();
+        // Стек вызова сохраняем только при включенном поиске утечек: это недешево
+        final Throwable origin = leakThresholdMillis > 0 ? new Throwable("Соединение получено здесь") : null;
+        volatile boolean leakReported;
+        // Вызывающий код менял readOnly, уровень изоляции или каталог - при возврате сбрасываем
+        boolean sessionChanged;
+        private boolean returned;
+
+        Lease(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "prepareStatement":
+                    // Только prepareStatement(String): варианты с флагами не кэшируем
+                    if (args.length == 1 && !returned) {
+                        StatementCache cache = statementCaches.get(physical);
+                        if (cache != null) {
+                            return cache.prepare((String) args[0], (Connection) proxy);
+                        }
+                    }
+                    break;
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                case "setCatalog":
+                    sessionChanged = true;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Соединение уже возвращено в пул.");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
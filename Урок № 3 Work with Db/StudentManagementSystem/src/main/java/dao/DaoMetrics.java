@@ -0,0 +1,354 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики операций DAO: количество вызовов, ошибки по SQLState, число строк,
+ * время по фазам (получение соединения, выполнение запроса, разбор результата)
+ * и перцентили задержки по лог-линейной гистограмме (как в HdrHistogram, точность ~2%).
+ * Запись - без блокировок (LongAdder и AtomicLongArray), снимок берется по запросу.
+ *
+ * Использование в методе DAO:
+ * <pre>
+ * DaoMetrics.Sample m = metrics.start("getStudentById");
+ * try (...) { m.acquired(); ... executeQuery(); m.executed(); ... m.rows(n); }
+ * catch (SQLException e) { throw m.failed(e); }
+ * finally { m.stop(); }
+ * </pre>
+ */
+public class DaoMetrics {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    /** Начинает замер вызова операции name. */
+    public Sample start(String name) {
+        Operation op = operations.get(name);
+        if (op == null) {
+            op = operations.computeIfAbsent(name, Operation::new);
+        }
+        return new Sample(op);
+    }
+
+    /** Снимок всех операций, по имени. */
+    public List<OperationStats> snapshot() {
+        List<OperationStats> result = new ArrayList<>();
+        for (Operation op : new TreeMap<>(operations).values()) {
+            result.add(op.snapshot());
+        }
+        return result;
+    }
+
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * Метрики в текстовом формате Prometheus (exposition format 0.0.4).
+     */
+    public String toPrometheus() {
+        List<OperationStats> stats = snapshot();
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("# HELP student_dao_calls_total Количество вызовов операции DAO.\n");
+        sb.append("# TYPE student_dao_calls_total counter\n");
+        for (OperationStats s : stats) {
+            sb.append("student_dao_calls_total{operation=\"").append(s.name).append("\"} ")
+                    .append(s.calls).append('\n');
+        }
+
+        sb.append("# HELP student_dao_errors_total Ошибки операции DAO по SQLState.\n");
+        sb.append("# TYPE student_dao_errors_total counter\n");
+        for (OperationStats s : stats) {
+            for (Map.Entry<String, Long> e : s.errorsBySqlState.entrySet()) {
+                sb.append("student_dao_errors_total{operation=\"").append(s.name)
+                        .append("\",sqlstate=\"").append(e.getKey()).append("\"} ")
+                        .append(e.getValue()).append('\n');
+            }
+        }
+
+        sb.append("# HELP student_dao_rows_total Строк прочитано или записано операцией DAO.\n");
+        sb.append("# TYPE student_dao_rows_total counter\n");
+        for (OperationStats s : stats) {
+            sb.append("student_dao_rows_total{operation=\"").append(s.name).append("\"} ")
+                    .append(s.rows).append('\n');
+        }
+
+        sb.append("# HELP student_dao_phase_seconds_total Суммарное время по фазам вызова.\n");
+        sb.append("# TYPE student_dao_phase_seconds_total counter\n");
+        for (OperationStats s : stats) {
+            appendPhase(sb, s.name, "acquire", s.acquireNanos);
+            appendPhase(sb, s.name, "execute", s.executeNanos);
+            appendPhase(sb, s.name, "map", s.mapNanos);
+        }
+
+        sb.append("# HELP student_dao_latency_seconds Задержка вызова операции DAO.\n");
+        sb.append("# TYPE student_dao_latency_seconds summary\n");
+        for (OperationStats s : stats) {
+            for (int i = 0; i < QUANTILES.length; i++) {
+                sb.append("student_dao_latency_seconds{operation=\"").append(s.name)
+                        .append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+                        .append(s.quantileNanos[i] / NANOS_PER_SECOND).append('\n');
+            }
+            sb.append("student_dao_latency_seconds_sum{operation=\"").append(s.name).append("\"} ")
+                    .append(s.totalNanos / NANOS_PER_SECOND).append('\n');
+            sb.append("student_dao_latency_seconds_count{operation=\"").append(s.name).append("\"} ")
+                    .append(s.calls).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendPhase(StringBuilder sb, String operation, String phase, long nanos) {
+        sb.append("student_dao_phase_seconds_total{operation=\"").append(operation)
+                .append("\",phase=\"").append(phase).append("\"} ")
+                .append(nanos / NANOS_PER_SECOND).append('\n');
+    }
+
+    /**
+     * Таблица для вывода в консоль: по строке на операцию.
+     */
+    @Override
+    public String toString() {
+        List<OperationStats> stats = snapshot();
+        if (stats.isEmpty()) {
+            return "Метрики DAO: вызовов еще не было.";
+        }
+        StringBuilder sb = new StringBuilder("Метрики DAO (время в мс):\n");
+        sb.append(String.format("%-22s %8s %6s %9s %8s %8s %8s %8s %8s %8s%n",
+                "Операция", "Вызовы", "Ошибки", "Строки", "p50", "p99", "p99.9", "Соед.%", "Запрос%", "Разбор%"));
+        for (OperationStats s : stats) {
+            sb.append(s).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Замер одного вызова. Фазы отмечаются по ходу: acquired() - соединение получено
+     * и запрос подготовлен, executed() - запрос выполнен; остаток до stop() - разбор результата.
+     * Неотмеченное время относится к выполнению (например, несколько запросов в одном вызове).
+     * Не потокобезопасен: принадлежит одному вызову.
+     */
+    public static class Sample {
+        private final Operation op;
+        private final long startNanos = System.nanoTime();
+        private long acquiredNanos;
+        private long executedNanos;
+        private long rows;
+        private boolean stopped;
+
+        private Sample(Operation op) {
+            this.op = op;
+        }
+
+        public void acquired() {
+            acquiredNanos = System.nanoTime();
+        }
+
+        public void executed() {
+            executedNanos = System.nanoTime();
+        }
+
+        public void rows(long count) {
+            rows += count;
+        }
+
+        /** Учитывает ошибку по ее SQLState и возвращает ее для повторного выброса. */
+        public <E extends SQLException> E failed(E e) {
+            op.errors.computeIfAbsent(e.getSQLState() != null ? e.getSQLState() : "unknown",
+                    k -> new LongAdder()).increment();
+            return e;
+        }
+
+        /** Завершает замер; повторный вызов ничего не делает. */
+        public void stop() {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            long end = System.nanoTime();
+            long acquired = acquiredNanos != 0 ? acquiredNanos : startNanos;
+            long executed = executedNanos != 0 ? executedNanos : end;
+            op.record(end - startNanos, acquired - startNanos, executed - acquired, end - executed, rows);
+        }
+    }
+
+    private static class Operation {
+        final String name;
+        final Histogram latency = new Histogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder acquireNanos = new LongAdder();
+        final LongAdder executeNanos = new LongAdder();
+        final LongAdder mapNanos = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void record(long total, long acquire, long execute, long map, long rowCount) {
+            latency.record(total);
+            acquireNanos.add(acquire);
+            executeNanos.add(execute);
+            mapNanos.add(map);
+            rows.add(rowCount);
+        }
+
+        OperationStats snapshot() {
+            Map<String, Long> errorCounts = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> e : errors.entrySet()) {
+                errorCounts.put(e.getKey(), e.getValue().sum());
+            }
+            long[] quantiles = new long[QUANTILES.length];
+            long[] counts = latency.counts();
+            for (int i = 0; i < QUANTILES.length; i++) {
+                quantiles[i] = Histogram.valueAt(counts, QUANTILES[i], latency.max.get());
+            }
+            return new OperationStats(name, latency.count.sum(), errorCounts, rows.sum(),
+                    acquireNanos.sum(), executeNanos.sum(), mapNanos.sum(), latency.total.sum(),
+                    latency.max.get(), quantiles);
+        }
+    }
+
+    /**
+     * Лог-линейная гистограмма значений в наносекундах: каждая степень двойки
+     * делится на SUB_BUCKETS равных интервалов, поэтому относительная ошибка
+     * перцентиля не больше 1/SUB_BUCKETS на всем диапазоне от 1 нс до часов.
+     */
+    static class Histogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final LongAdder count = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            long v = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(v));
+            count.increment();
+            total.add(v);
+            max.accumulate(v);
+        }
+
+        long[] counts() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = buckets.get(i);
+            }
+            return copy;
+        }
+
+        static int bucketOf(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+            int sub = (int) (v >>> shift) & (SUB_BUCKETS - 1);
+            return (shift + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        }
+
+        /** Значение q-перцентиля: середина интервала, не больше наблюдавшегося максимума. */
+        static long valueAt(long[] counts, double q, long max) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long low = lowerBound(i);
+                    long width = i < SUB_BUCKETS ? 1 : 1L << (i / SUB_BUCKETS - 1);
+                    return Math.min(low + width / 2, max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /** Снимок метрик одной операции. */
+    public static class OperationStats {
+        private final String name;
+        private final long calls;
+        private final Map<String, Long> errorsBySqlState;
+        private final long rows;
+        private final long acquireNanos;
+        private final long executeNanos;
+        private final long mapNanos;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] quantileNanos;
+
+        OperationStats(String name, long calls, Map<String, Long> errorsBySqlState, long rows,
+                       long acquireNanos, long executeNanos, long mapNanos, long totalNanos,
+                       long maxNanos, long[] quantileNanos) {
+            this.name = name;
+            this.calls = calls;
+            this.errorsBySqlState = Collections.unmodifiableMap(errorsBySqlState);
+            this.rows = rows;
+            this.acquireNanos = acquireNanos;
+            this.executeNanos = executeNanos;
+            this.mapNanos = mapNanos;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.quantileNanos = quantileNanos;
+        }
+
+        public String getName() { return name; }
+        public long getCalls() { return calls; }
+        public Map<String, Long> getErrorsBySqlState() { return errorsBySqlState; }
+        public long getRows() { return rows; }
+        public long getAcquireNanos() { return acquireNanos; }
+        public long getExecuteNanos() { return executeNanos; }
+        public long getMapNanos() { return mapNanos; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getMaxNanos() { return maxNanos; }
+        public long getP50Nanos() { return quantileNanos[0]; }
+        public long getP90Nanos() { return quantileNanos[1]; }
+        public long getP99Nanos() { return quantileNanos[2]; }
+        public long getP999Nanos() { return quantileNanos[3]; }
+
+        public long getErrors() {
+            long sum = 0;
+            for (long c : errorsBySqlState.values()) {
+                sum += c;
+            }
+            return sum;
+        }
+
+        @Override
+        public String toString() {
+            long phases = Math.max(1, acquireNanos + executeNanos + mapNanos);
+            return String.format("%-22s %8d %6d %9d %8.2f %8.2f %8.2f %7.0f%% %7.0f%% %7.0f%%",
+                    name, calls, getErrors(), rows,
+                    quantileNanos[0] / 1e6, quantileNanos[2] / 1e6, quantileNanos[3] / 1e6,
+                    100.0 * acquireNanos / phases, 100.0 * executeNanos / phases, 100.0 * mapNanos / phases)
+                    + (errorsBySqlState.isEmpty() ? "" : " " + errorsBySqlState);
+        }
+    }
+}
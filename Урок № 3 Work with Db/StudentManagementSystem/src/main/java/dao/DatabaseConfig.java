@@ -1,18 +1,303 @@
 package dao;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
+/**
+ * Подключение к БД: пул основного сервера (все записи) и, если заданы, пулы реплик для чтения.
+ *
+ * Настройки читаются один раз при загрузке класса: из файла -Ddb.config=путь
+ * (или db.properties в classpath, если он есть), системные свойства -Dключ=значение
+ * имеют приоритет над файлом. Ключи:
+ *   db.url, db.user, db.password    - основной сервер
+ *   db.replicas                     - JDBC URL реплик через запятую (пусто - реплик нет)
+ *   db.replica.user, db.replica.password - учетная запись для реплик (по умолчанию как у основного)
+ *   db.pool.minSize, db.pool.maxSize - размеры каждого пула
+ *   db.readYourWritesMs             - сколько после записи ReadSession читает с основного сервера
+ *   db.replicaCheckMs               - период проверки доступности реплик
+ *   db.outbox                       - журнал изменений в таблице StudentChanges
+ *   db.shards                       - JDBC URL шардов через запятую (для ShardedStudentRepository)
+ *   db.shard.user, db.shard.password - учетная запись для шардов (по умолчанию как у основного)
+ *   db.shardRanges                  - границы диапазонов Id через запятую (пусто - шарды по хешу Id)
+ *
+ * Чтение с реплик (getReadConnection) видит данные с задержкой репликации. Чтобы вызывающий
+ * код видел собственные записи, он выполняет запросы в ReadSession: после выдачи соединения
+ * с основным сервером для записи чтения этой сессии еще db.readYourWritesMs идут туда же.
+ * Чтения вне сессии всегда идут на реплики.
+ */
 public class DatabaseConfig {
 
-    // URL для локальной базы данных MySQL
-    private static final String URL = "jdbc:mysql://localhost:3306/student_db?useSSL=false&serverTimezone=UTC";
-    private static final String USER = "root";
-    private static final String PASSWORD = "Ruslanboleev123";
+    private static final Properties CONFIG = loadConfig();
 
+    // URL для локальной базы данных MySQL (rewriteBatchedStatements - пакеты INSERT уходят одним запросом,
+    // useServerPrepStmts - запросы готовятся на сервере; постоянные пул держит открытыми, см. StatementCache;
+    // cachePrepStmts - драйвер не закрывает на сервере и остальные, например списки IN, а переиспользует
+    // до prepStmtCacheSize запросов длиной до prepStmtCacheSqlLimit символов на соединение).
+    // Можно переопределить в файле настроек или системными свойствами -Ddb.url, -Ddb.user, -Ddb.password
+    // (например, для бенчмарков со встроенной БД)
+    private static final String URL = setting("db.url",
+            "jdbc:mysql://localhost:3306/student_db?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true&useServerPrepStmts=true"
+                    + "&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048");
+    private static final String USER = setting("db.user", "root");
+    private static final String PASSWORD = setting("db.password", "Ruslanboleev123");
 
+    private static final List<String> REPLICA_URLS = listSetting("db.replicas");
+    private static final String REPLICA_USER = setting("db.replica.user", USER);
+    private static final String REPLICA_PASSWORD = setting("db.replica.password", PASSWORD);
+
+    private static final List<String> SHARD_URLS = listSetting("db.shards");
+    private static final String SHARD_USER = setting("db.shard.user", USER);
+    private static final String SHARD_PASSWORD = setting("db.shard.password", PASSWORD);
+    private static final List<String> SHARD_RANGES = listSetting("db.shardRanges");
+
+    // db.outbox=true - вести журнал изменений в таблице StudentChanges (см. SchemaInitializer.ensureOutbox)
+    public static final boolean OUTBOX_ENABLED = Boolean.parseBoolean(setting("db.outbox", "false"));
+
+    // Настройки пула соединений
+    private static final int POOL_MIN_SIZE = intSetting("db.pool.minSize", 2);
+    private static final int POOL_MAX_SIZE = intSetting("db.pool.maxSize", 10);
+    private static final long BORROW_TIMEOUT_MS = 5_000;      // сколько ждать свободное соединение
+    private static final long IDLE_TIMEOUT_MS = 5 * 60_000;   // простой, после которого лишнее соединение закрывается
+    private static final long LEAK_THRESHOLD_MS = 60_000;     // удержание дольше этого считается утечкой
+
+    // Чтение своих записей: окно должно быть больше обычной задержки репликации
+    private static final long READ_YOUR_WRITES_MS = intSetting("db.readYourWritesMs", 5_000);
+    private static final long REPLICA_CHECK_MS = intSetting("db.replicaCheckMs", 5_000);
+
+    private static volatile ConnectionPool pool;
+    private static volatile ReplicaRouter replicas;
+    private static volatile List<ConnectionPool> shards;
+    // Запросы для подготовки на каждом соединении - и основного сервера, и реплик
+    private static final Set<String> registeredStatements = new LinkedHashSet<>();
+
+
+    /**
+     * Выдает соединение с основным сервером из общего пула для записи. Вызов close() возвращает его в пул.
+     * Если вызов идет в ReadSession, ее чтения следующие db.readYourWritesMs тоже пойдут на основной сервер.
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        Connection conn = getPool().getConnection();
+        ReadSession session = ReadSession.current();
+        if (session != null) {
+            session.markWrite();
+        }
+        return conn;
+    }
+
+    /**
+     * Соединение с основным сервером только для чтения (проверки перед записью, загрузка в кэш):
+     * видит все сделанные записи, но сессию чтения не отмечает.
+     */
+    public static Connection getPrimaryReadConnection() throws SQLException {
+        return getPool().getConnection();
+    }
+
+    /**
+     * Соединение только для чтения: с наименее загруженной доступной репликой.
+     * Основной сервер - если реплик нет, все недоступны или заняты, либо текущая ReadSession
+     * недавно писала.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        ReplicaRouter router = getReplicas();
+        ReadSession session = ReadSession.current();
+        if (router == null || (session != null && session.readsFromPrimary(READ_YOUR_WRITES_MS))) {
+            return getPool().getConnection();
+        }
+        Connection conn = router.getConnection();
+        return conn != null ? conn : getPool().getConnection();
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConfig.class) {
+                p = pool;
+                if (p == null) {
+                    p = newPool(URL, USER, PASSWORD);
+                    p.registerStatements(registeredStatements);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    private static ReplicaRouter getReplicas() {
+        if (REPLICA_URLS.isEmpty()) {
+            return null;
+        }
+        ReplicaRouter r = replicas;
+        if (r == null) {
+            synchronized (DatabaseConfig.class) {
+                r = replicas;
+                if (r == null) {
+                    List<ConnectionPool> pools = new ArrayList<>(REPLICA_URLS.size());
+                    for (String url : REPLICA_URLS) {
+                        pools.add(newPool(url, REPLICA_USER, REPLICA_PASSWORD));
+                    }
+                    r = new ReplicaRouter(REPLICA_URLS, pools, REPLICA_CHECK_MS);
+                    r.registerStatements(registeredStatements);
+                    replicas = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    private static ConnectionPool newPool(String url, String user, String password) {
+        return new ConnectionPool(url, user, password,
+                POOL_MIN_SIZE, POOL_MAX_SIZE,
+                BORROW_TIMEOUT_MS, IDLE_TIMEOUT_MS, LEAK_THRESHOLD_MS);
+    }
+
+    /**
+     * Регистрирует постоянные запросы во всех пулах (основном и репликах),
+     * в том числе в тех, что будут созданы позже.
+     */
+    public static synchronized void registerStatements(Collection<String> sqls) {
+        registeredStatements.addAll(sqls);
+        getPool().registerStatements(sqls);
+        ReplicaRouter r = getReplicas();
+        if (r != null) {
+            r.registerStatements(sqls);
+        }
+    }
+
+    /**
+     * Пулы шардов из db.shards в порядке перечисления (пустой список - шарды не настроены).
+     * Запросы для подготовки на соединениях регистрирует StudentDAO каждого шарда.
+     */
+    public static List<ConnectionPool> getShardPools() {
+        List<ConnectionPool> s = shards;
+        if (s == null) {
+            synchronized (DatabaseConfig.class) {
+                s = shards;
+                if (s == null) {
+                    List<ConnectionPool> pools = new ArrayList<>(SHARD_URLS.size());
+                    for (String url : SHARD_URLS) {
+                        pools.add(newPool(url, SHARD_USER, SHARD_PASSWORD));
+                    }
+                    s = List.copyOf(pools);
+                    shards = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /** Распределение по шардам: по диапазонам из db.shardRanges или по хешу Id. */
+    public static ShardMap getShardMap() {
+        if (SHARD_RANGES.isEmpty()) {
+            return ShardMap.byHash(Math.max(1, SHARD_URLS.size()));
+        }
+        int[] bounds = new int[SHARD_RANGES.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            try {
+                bounds[i] = Integer.parseInt(SHARD_RANGES.get(i));
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Настройка db.shardRanges должна содержать целые числа: " + SHARD_RANGES);
+            }
+        }
+        if (bounds.length + 1 != SHARD_URLS.size()) {
+            throw new IllegalStateException("Границ в db.shardRanges должно быть на одну меньше, чем шардов в db.shards.");
+        }
+        return ShardMap.byRange(bounds);
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /** Настроены ли реплики для чтения (db.replicas). */
+    public static boolean hasReplicas() {
+        return !REPLICA_URLS.isEmpty();
+    }
+
+    /** Состояние реплик для вывода в консоль. */
+    public static String getReplicaStats() {
+        ReplicaRouter r = getReplicas();
+        return r != null ? r.toString() : "Реплики не настроены: все запросы идут на основной сервер.";
+    }
+
+    /**
+     * Закрывает пулы (при завершении программы).
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (replicas != null) {
+            replicas.close();
+            replicas = null;
+        }
+        if (shards != null) {
+            for (ConnectionPool p : shards) {
+                p.close();
+            }
+            shards = null;
+        }
+    }
+
+    // --- Настройки ---
+
+    private static Properties loadConfig() {
+        Properties config = new Properties();
+        String file = System.getProperty("db.config");
+        try {
+            if (file != null) {
+                // Явно указанный файл обязан существовать
+                try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                    config.load(reader);
+                }
+            } else {
+                try (InputStream in = DatabaseConfig.class.getClassLoader().getResourceAsStream("db.properties")) {
+                    if (in != null) {
+                        config.load(in);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать настройки БД из " + file + ": " + e.getMessage(), e);
+        }
+        return config;
+    }
+
+    private static String setting(String key, String defaultValue) {
+        return System.getProperty(key, CONFIG.getProperty(key, defaultValue));
+    }
+
+    private static int intSetting(String key, int defaultValue) {
+        String value = setting(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Настройка " + key + " должна быть целым числом: " + value);
+        }
+    }
+
+    private static List<String> listSetting(String key) {
+        List<String> values = new ArrayList<>();
+        for (String value : setting(key, "").split(",")) {
+            if (!value.isBlank()) {
+                values.add(value.trim());
+            }
+        }
+        return List.copyOf(values);
     }
-}
\ No newline at end of file
+}
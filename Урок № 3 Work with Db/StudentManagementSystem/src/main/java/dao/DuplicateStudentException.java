@@ -0,0 +1,65 @@
+package dao;
+
+import java.sql.SQLException;
+
+/**
+ * Нарушение уникальности при записи студента: занят ID или занят Email.
+ * Создается из SQLException с SQLState 23xxx, которую вернула MySQL.
+ */
+public class DuplicateStudentException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Field { ID, EMAIL, UNKNOWN }
+
+    // SQLState "integrity constraint violation" - тот же класс 23, что возвращает MySQL
+    private static final String INTEGRITY_VIOLATION_STATE = "23000";
+
+    private final Field field;
+
+    DuplicateStudentException(String message, Field field, SQLException cause) {
+        super(message, cause.getSQLState(), cause.getErrorCode(), cause);
+        this.field = field;
+    }
+
+    /**
+     * Нарушение, обнаруженное без обращения к БД (например, хранилищем в памяти).
+     */
+    DuplicateStudentException(String message, Field field) {
+        super(message, INTEGRITY_VIOLATION_STATE);
+        this.field = field;
+    }
+
+    /** Какое уникальное поле оказалось занято. */
+    public Field getField() { return field; }
+
+    /**
+     * Является ли ошибка нарушением ограничения целостности (SQLState класса 23).
+     */
+    static boolean isIntegrityViolation(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    /**
+     * Определяет по тексту ошибки MySQL ("Duplicate entry 'x' for key 'Students.uq_students_email'"),
+     * какой ключ нарушен.
+     */
+    static Field detectField(SQLException e) {
+        String message = e.getMessage();
+        if (message == null) {
+            return Field.UNKNOWN;
+        }
+        int keyStart = message.lastIndexOf("for key '");
+        if (keyStart < 0) {
+            return Field.UNKNOWN;
+        }
+        String key = message.substring(keyStart + "for key '".length());
+        if (key.startsWith("PRIMARY") || key.contains(".PRIMARY")) {
+            return Field.ID;
+        }
+        if (key.contains(SchemaInitializer.EMAIL_INDEX) || key.toLowerCase().contains("email")) {
+            return Field.EMAIL;
+        }
+        return Field.UNKNOWN;
+    }
+}
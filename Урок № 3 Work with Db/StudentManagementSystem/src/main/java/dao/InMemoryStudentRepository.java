@@ -0,0 +1,559 @@
+package dao;
+
+import model.Student;
+import model.StudentSummary;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище студентов целиком в памяти процесса (например, для киосков, где почти только чтение).
+ * - основная таблица: Id -> Student в отображениях с открытой адресацией по int, разбитых
+ *   на STRIPES полос; у каждой полосы своя блокировка, поэтому записи с разными Id
+ *   почти не мешают друг другу;
+ * - индекс email (в нижнем регистре) -> Id; он же обеспечивает уникальность email;
+ * - индекс возраст -> Id (AgeIndex, без упаковки) для фильтров по возрасту;
+ * - триграммный индекс NameSearchIndex для поиска по имени и фамилии. Изменения для него
+ *   ставятся в очередь полосы под ее блокировкой, а применяются после ее снятия - в том же
+ *   порядке: версии после удаления и повторной вставки снова начинаются с 1, и одних версий
+ *   для упорядочивания недостаточно.
+ * Наружу отдаются копии, поэтому изменение полученного объекта не меняет хранилище.
+ */
+public class InMemoryStudentRepository implements StudentRepository {
+
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private final IntStudentMap[] stripes = new IntStudentMap[STRIPES];
+    private final ReadWriteLock[] locks = new ReadWriteLock[STRIPES];
+    private final Map<String, Integer> idByEmail = new ConcurrentHashMap<>();
+    private final AgeIndex byAge = new AgeIndex();
+    private final NameSearchIndex nameIndex = new NameSearchIndex();
+    private final IndexQueue[] indexQueues = new IndexQueue[STRIPES];
+    private final ChangeListeners listeners = new ChangeListeners();
+
+    public InMemoryStudentRepository() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new IntStudentMap();
+            locks[i] = new ReentrantReadWriteLock();
+            indexQueues[i] = new IndexQueue();
+        }
+    }
+
+    /**
+     * Изменения индекса имен одной полосы в порядке записей. Пополняется под блокировкой
+     * записи полосы; применяет их под drainLock тот писатель, который первым до нее дошел,
+     * поэтому запись возвращается, когда ее изменение уже в индексе.
+     */
+    private static final class IndexQueue {
+        final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        final ReentrantLock drainLock = new ReentrantLock();
+    }
+
+    /**
+     * Создает хранилище в памяти и заполняет его содержимым source (например, StudentDAO).
+     */
+    public static InMemoryStudentRepository copyOf(StudentRepository source) throws SQLException {
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+        source.forEachStudent(s -> {
+            Student copy = new Student(s);
+            try {
+                repository.store(copy, true, true);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Повторяющийся email в исходных данных: " + s.getEmail(), e);
+            }
+            // Хранилище еще никому не доступно - сохраненной копии можно вернуть исходную версию
+            copy.setVersion(s.getVersion());
+        });
+        return repository;
+    }
+
+    // --- Подписка на изменения ---
+
+    @Override
+    public void addChangeListener(StudentChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(StudentChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- Добавление ---
+
+    @Override
+    public void addStudent(Student student) throws SQLException {
+        Student copy = copyForWrite(student);
+        store(copy, true, false);
+        student.setVersion(copy.getVersion());
+        listeners.fireCreated(copy);
+    }
+
+    @Override
+    public BatchResult addStudents(Iterable<Student> students) throws SQLException {
+        return addStudents(students, StudentDAO.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Добавляет студентов по одному; batchSize проверяется для совместимости со StudentDAO.
+     * Занятые ID и email не прерывают загрузку, а попадают в отчет.
+     */
+    @Override
+    public BatchResult addStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        return writeAll(students, batchSize, false);
+    }
+
+    @Override
+    public BatchResult upsertStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        return writeAll(students, batchSize, true);
+    }
+
+    private BatchResult writeAll(Iterable<Student> students, int batchSize, boolean upsert) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пакета должен быть положительным: " + batchSize);
+        }
+        BatchResult result = new BatchResult();
+        int index = 0;
+        for (Student student : students) {
+            if (student.getEmail() == null) {
+                result.reject(index++, student, "Email не указан.");
+                continue;
+            }
+            Student copy = new Student(student);
+            try {
+                store(copy, true, upsert);
+                result.addWritten(1);
+                listeners.fireWritten(copy);
+            } catch (DuplicateStudentException | StaleStudentException e) {
+                result.reject(index, student, e.getMessage());
+            }
+            index++;
+        }
+        return result;
+    }
+
+    // --- Чтение ---
+
+    @Override
+    public boolean isEmailExists(String email) {
+        return email != null && idByEmail.containsKey(emailKey(email));
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherId(String email, int id) {
+        Integer owner = email == null ? null : idByEmail.get(emailKey(email));
+        return owner != null && owner != id;
+    }
+
+    @Override
+    public List<Student> getAllStudents() {
+        List<Student> all = snapshot();
+        all.sort(Comparator.comparingInt(Student::getId));
+        all.replaceAll(Student::new);
+        return all;
+    }
+
+    @Override
+    public int forEachStudent(Consumer<Student> action) {
+        List<Student> all = getAllStudents();
+        all.forEach(action);
+        return all.size();
+    }
+
+    @Override
+    public Stream<Student> streamAllStudents() {
+        return getAllStudents().stream();
+    }
+
+    @Override
+    public List<Student> getStudentsAfterId(int lastId, int limit) {
+        return findStudents(new StudentQuery().afterId(lastId).limit(limit));
+    }
+
+    @Override
+    public Student getStudentById(int id) {
+        Student s = read(id);
+        return s != null ? new Student(s) : null;
+    }
+
+    @Override
+    public Student getStudentByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        Integer id = idByEmail.get(emailKey(email));
+        Student s = id != null ? read(id) : null;
+        // Между двумя обращениями email мог перейти к другому студенту
+        return s != null && s.getEmail().equalsIgnoreCase(email) ? new Student(s) : null;
+    }
+
+    @Override
+    public Map<Integer, Student> getStudentsByIds(Collection<Integer> ids) {
+        Map<Integer, Student> result = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            if (id != null && !result.containsKey(id)) {
+                Student s = getStudentById(id);
+                if (s != null) {
+                    result.put(id, s);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Student> getStudentsByEmails(Collection<String> emails) {
+        Map<String, Student> result = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (String email : emails) {
+            if (email != null && seen.add(emailKey(email))) {
+                Student s = getStudentByEmail(email);
+                if (s != null) {
+                    result.put(email, s);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Student> searchByName(String query) {
+        return nameIndex.search(query, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Student> searchByName(String query, int limit) {
+        return nameIndex.search(query, limit);
+    }
+
+    @Override
+    public List<StudentSummary> searchSummariesByName(String query, int limit) {
+        List<StudentSummary> summaries = new ArrayList<>();
+        for (Student s : nameIndex.search(query, limit)) {
+            summaries.add(new StudentSummary(s.getId(), s.getName(), s.getSurname()));
+        }
+        return summaries;
+    }
+
+    @Override
+    public List<Student> filterByAge(int age) {
+        return findStudents(new StudentQuery().ageEquals(age));
+    }
+
+    @Override
+    public List<Student> filterByAgeRange(int minAge, int maxAge) {
+        return findStudents(new StudentQuery().ageBetween(minAge, maxAge));
+    }
+
+    /**
+     * Выполняет StudentQuery в памяти: кандидаты берутся из индекса возраста (если задан
+     * диапазон) или из всей таблицы, затем проверяются и сортируются как в SQL.
+     * С limit хранятся только offset + limit лучших записей.
+     */
+    @Override
+    public List<Student> findStudents(StudentQuery query) {
+        List<Student> candidates;
+        if (query.getMinAge() != null || query.getMaxAge() != null) {
+            candidates = byAgeRange(query.getMinAge() != null ? query.getMinAge() : Integer.MIN_VALUE,
+                    query.getMaxAge() != null ? query.getMaxAge() : Integer.MAX_VALUE);
+        } else {
+            candidates = snapshot();
+        }
+
+        Comparator<Student> order = query.comparator();
+        List<Student> sorted;
+        if (query.getLimit() >= 0) {
+            int keep = query.getOffset() + query.getLimit();
+            // В голове очереди - худший из отобранных
+            PriorityQueue<Student> best = new PriorityQueue<>(Math.max(1, Math.min(keep, candidates.size())),
+                    order.reversed());
+            for (Student s : candidates) {
+                if (!query.matches(s) || keep == 0) {
+                    continue;
+                }
+                if (best.size() < keep) {
+                    best.add(s);
+                } else if (order.compare(s, best.peek()) < 0) {
+                    best.poll();
+                    best.add(s);
+                }
+            }
+            sorted = new ArrayList<>(best);
+        } else {
+            sorted = new ArrayList<>();
+            for (Student s : candidates) {
+                if (query.matches(s)) {
+                    sorted.add(s);
+                }
+            }
+        }
+        sorted.sort(order);
+
+        int from = Math.min(query.getOffset(), sorted.size());
+        List<Student> page = new ArrayList<>(sorted.size() - from);
+        for (Student s : sorted.subList(from, sorted.size())) {
+            page.add(new Student(s));
+        }
+        return page;
+    }
+
+    // --- Обновление и удаление ---
+
+    /**
+     * Как в StudentDAO: при известной версии (getVersion() &gt; 0) она должна совпасть
+     * с текущей, иначе StaleStudentException; после записи версия в объекте увеличивается.
+     */
+    @Override
+    public boolean updateStudent(Student student) throws SQLException {
+        Student copy = copyForWrite(student);
+        boolean updated = store(copy, false, true);
+        if (updated) {
+            if (student.getVersion() > 0) {
+                student.setVersion(copy.getVersion());
+            }
+            listeners.fireSaved(copy);
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean deleteStudent(int id) {
+        Student removed;
+        ReadWriteLock lock = lockFor(id);
+        lock.writeLock().lock();
+        try {
+            removed = stripeFor(id).remove(id);
+            if (removed != null) {
+                idByEmail.remove(emailKey(removed.getEmail()), id);
+                byAge.remove(removed.getAge(), id);
+                long version = removed.getVersion();
+                indexQueueFor(id).pending.add(() -> nameIndex.onStudentDeleted(id, version));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        applyIndexChanges(id);
+        if (removed == null) {
+            return false;
+        }
+        listeners.fireDeleted(id, removed.getVersion());
+        return true;
+    }
+
+    @Override
+    public int deleteAllStudents() {
+        int count = 0;
+        // Все полосы блокируются в одном порядке - взаимоблокировки нет; затем очереди индекса
+        // имен: их не примененные изменения относятся к уже удаленным строкам
+        for (ReadWriteLock lock : locks) {
+            lock.writeLock().lock();
+        }
+        for (IndexQueue queue : indexQueues) {
+            queue.drainLock.lock();
+        }
+        try {
+            for (IntStudentMap stripe : stripes) {
+                count += stripe.size();
+                stripe.clear();
+            }
+            idByEmail.clear();
+            byAge.clear();
+            for (IndexQueue queue : indexQueues) {
+                queue.pending.clear();
+            }
+            nameIndex.onAllStudentsDeleted();
+        } finally {
+            for (int i = indexQueues.length - 1; i >= 0; i--) {
+                indexQueues[i].drainLock.unlock();
+            }
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].writeLock().unlock();
+            }
+        }
+        listeners.fireAllDeleted();
+        return count;
+    }
+
+    /** Количество студентов в хранилище. */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i].readLock().lock();
+            try {
+                size += stripes[i].size();
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    // --- Внутреннее ---
+
+    /**
+     * Записывает студента под блокировкой его полосы; индекс имен обновляется после ее снятия.
+     * insert - можно добавить нового, update - можно заменить существующего.
+     * Возвращает false, если записи нет, а добавлять нельзя.
+     * Версию записи выставляет сам: 1 для новой, следующая - для замененной. Известная версия
+     * проверяется только при обновлении без права вставки (updateStudent), как в StudentDAO.
+     */
+    private boolean store(Student student, boolean insert, boolean update)
+            throws DuplicateStudentException, StaleStudentException {
+        int id = student.getId();
+        String newKey = emailKey(student.getEmail());
+        ReadWriteLock lock = lockFor(id);
+        lock.writeLock().lock();
+        try {
+            IntStudentMap stripe = stripeFor(id);
+            Student old = stripe.get(id);
+            if (old == null) {
+                if (!insert) {
+                    return false;
+                }
+                claimEmail(newKey, student);
+                student.setVersion(1);
+            } else {
+                if (!update) {
+                    throw new DuplicateStudentException("Студент с ID " + id + " уже существует.",
+                            DuplicateStudentException.Field.ID);
+                }
+                long expectedVersion = student.getVersion();
+                if (!insert && expectedVersion > 0 && expectedVersion != old.getVersion()) {
+                    throw new StaleStudentException(id, expectedVersion, old.getVersion());
+                }
+                student.setVersion(old.getVersion() + 1);
+                String oldKey = emailKey(old.getEmail());
+                if (!oldKey.equals(newKey)) {
+                    claimEmail(newKey, student);
+                    idByEmail.remove(oldKey, id);
+                }
+            }
+            stripe.put(id, student);
+            if (old == null) {
+                byAge.add(student.getAge(), id);
+                indexQueueFor(id).pending.add(() -> nameIndex.onStudentCreated(student));
+            } else {
+                byAge.move(old.getAge(), student.getAge(), id);
+                indexQueueFor(id).pending.add(() -> nameIndex.onStudentSaved(student));
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            applyIndexChanges(id);
+        }
+    }
+
+    /**
+     * Применяет изменения индекса имен из очереди полосы id. Если очередь разбирает другой
+     * писатель, ждет его: после возврата изменения этого потока уже в индексе.
+     */
+    private void applyIndexChanges(int id) {
+        // Без проверки на пустую очередь: изменение этого потока мог забрать другой писатель
+        // и еще применять его
+        IndexQueue queue = indexQueueFor(id);
+        queue.drainLock.lock();
+        try {
+            for (Runnable change; (change = queue.pending.poll()) != null; ) {
+                change.run();
+            }
+        } finally {
+            queue.drainLock.unlock();
+        }
+    }
+
+    /** Закрепляет email за студентом; занятый другим Id email - ошибка. */
+    private void claimEmail(String key, Student student) throws DuplicateStudentException {
+        Integer owner = idByEmail.putIfAbsent(key, student.getId());
+        if (owner != null && owner != student.getId()) {
+            throw new DuplicateStudentException("Email '" + student.getEmail() + "' уже используется.",
+                    DuplicateStudentException.Field.EMAIL);
+        }
+    }
+
+    private static Student copyForWrite(Student student) throws SQLException {
+        if (student.getEmail() == null) {
+            // Как NOT NULL в таблице Students
+            throw new SQLException("Email не указан.", "23000");
+        }
+        return new Student(student);
+    }
+
+    private Student read(int id) {
+        ReadWriteLock lock = lockFor(id);
+        lock.readLock().lock();
+        try {
+            return stripeFor(id).get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Все записи (без копирования), в произвольном порядке. */
+    private List<Student> snapshot() {
+        List<Student> all = new ArrayList<>();
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i].readLock().lock();
+            try {
+                stripes[i].forEach(all::add);
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return all;
+    }
+
+    /** Студенты с возрастом в [min, max] по индексу возраста. */
+    private List<Student> byAgeRange(int min, int max) {
+        if (min > max) {
+            return Collections.emptyList();
+        }
+        int[] ids = byAge.idsBetween(min, max);
+        List<Student> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Student s = read(id);
+            // Запись могла измениться после чтения индекса - окончательно проверяет matches()
+            if (s != null) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    private static String emailKey(String email) {
+        return email.toLowerCase();
+    }
+
+    private static int stripeIndex(int id) {
+        // Старшие биты хеша: младшие использует IntStudentMap внутри полосы
+        return (id * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS);
+    }
+
+    private IntStudentMap stripeFor(int id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    private ReadWriteLock lockFor(int id) {
+        return locks[stripeIndex(id)];
+    }
+
+    private IndexQueue indexQueueFor(int id) {
+        return indexQueues[stripeIndex(id)];
+    }
+}
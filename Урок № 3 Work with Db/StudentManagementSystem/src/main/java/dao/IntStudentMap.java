@@ -0,0 +1,137 @@
+package dao;
+
+import model.Student;
+
+import java.util.function.Consumer;
+
+/**
+ * Отображение int Id -> Student с открытой адресацией и линейным пробированием:
+ * ключи лежат в int[] без упаковки в Integer, поиск - обычно одно-два обращения к массиву.
+ * Удаление сдвигает следующие элементы цепочки назад, поэтому "надгробий" нет.
+ * Не потокобезопасно: синхронизацию обеспечивает владелец.
+ */
+class IntStudentMap {
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private int[] keys;
+    private Student[] values; // null - ячейка свободна
+    private int mask;
+    private int size;
+
+    IntStudentMap() {
+        this(16);
+    }
+
+    IntStudentMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new int[capacity];
+        values = new Student[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Student get(int key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /** Кладет значение; возвращает прежнее или null. */
+    Student put(int key, Student value) {
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                Student old = values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > MAX_LOAD * values.length) {
+            resize(values.length << 1);
+        }
+        return null;
+    }
+
+    Student remove(int key) {
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                Student old = values[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+        }
+        return null;
+    }
+
+    void clear() {
+        keys = new int[16];
+        values = new Student[16];
+        mask = 15;
+        size = 0;
+    }
+
+    void forEach(Consumer<Student> action) {
+        for (Student s : values) {
+            if (s != null) {
+                action.accept(s);
+            }
+        }
+    }
+
+    /**
+     * Освобождает ячейку gap и переносит в нее элементы цепочки, которые
+     * иначе стали бы недостижимы от своей исходной ячейки.
+     */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            int home = slot(keys[i]);
+            // Элемент можно сдвинуть, если его исходная ячейка не лежит между gap и i (по кругу)
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Student[] oldValues = values;
+        keys = new int[capacity];
+        values = new Student[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private int slot(int key) {
+        // Перемешивание битов: последовательные Id не должны попадать в соседние ячейки
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,484 @@
+package dao;
+
+import model.Student;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Триграммный индекс в памяти для поиска по подстроке в имени и фамилии.
+ * Каждая пара "имя/фамилия" разбивается на тройки символов; запрос ищется
+ * пересечением списков студентов для своих триграмм, а затем проверяется точно.
+ * Для запросов из одного-двух символов в тех же списках хранятся все подстроки
+ * длиной 1 и 2, так что и короткий запрос не обходит всех студентов.
+ * Индекс подписывается на изменения StudentDAO и держится в актуальном состоянии.
+ * Уведомление с версией студента старше уже проиндексированной пропускается.
+ */
+public class NameSearchIndex implements StudentChangeListener {
+
+    private static final int GRAM = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Текущее содержимое; rebuild строит новое и подменяет его целиком
+    private Contents contents = new Contents();
+    // Изменения, пришедшие во время rebuild (null - перестройки нет): применяются к новому содержимому
+    private List<Change> pending;
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Перестраивает индекс по текущему содержимому хранилища. Обход идет без блокировки:
+     * поиск работает по старому индексу, а запись в хранилище не ждет конца обхода.
+     * Изменения, пришедшие за время обхода, применяются к новому индексу перед подменой.
+     */
+    public void rebuild(StudentRepository dao) throws SQLException {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Contents fresh = new Contents();
+            boolean done = false;
+            try {
+                dao.forEachStudent(s -> fresh.add(new Student(s)));
+                done = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (done) {
+                        for (Change change : pending) {
+                            change.applyTo(fresh);
+                        }
+                        contents = fresh;
+                    }
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return contents.docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет студентов, у которых имя или фамилия содержит query (без учета регистра).
+     * Результат упорядочен: полное совпадение, затем совпадение с начала, затем вхождение
+     * в середине; при равенстве - по Id. Возвращает не более limit записей.
+     */
+    public List<Student> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Лучшие limit кандидатов; в голове очереди - худший из них
+        Comparator<Hit> order = Comparator.comparingInt((Hit h) -> h.rank).thenComparingInt(h -> h.doc.student.getId());
+        PriorityQueue<Hit> best = new PriorityQueue<>(order.reversed());
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Doc> docs = contents.docs;
+            IntHashSet[] lists = contents.postingsFor(q);
+            if (lists == null) {
+                return new ArrayList<>();
+            }
+            // Обходим самый короткий список, остальные только проверяем
+            Arrays.sort(lists, Comparator.comparingInt(IntHashSet::size));
+            IntHashSet smallest = lists[0];
+            smallest.forEach(id -> {
+                for (int i = 1; i < lists.length; i++) {
+                    if (!lists[i].contains(id)) {
+                        return;
+                    }
+                }
+                offer(best, docs.get(id), q, limit, order);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Student> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(new Student(best.poll().doc.student));
+        }
+        // Очередь отдает от худшего к лучшему
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Hit> best, Doc doc, String q, int limit, Comparator<Hit> order) {
+        int rank = Math.min(rank(doc.name, q), rank(doc.surname, q));
+        if (rank == Integer.MAX_VALUE) {
+            return; // триграммы совпали, но подстроки нет (например, на стыке имени и фамилии)
+        }
+        Hit hit = new Hit(doc, rank);
+        if (best.size() < limit) {
+            best.add(hit);
+        } else if (order.compare(hit, best.peek()) < 0) {
+            best.poll();
+            best.add(hit);
+        }
+    }
+
+    private static int rank(String field, String q) {
+        if (field.equals(q)) {
+            return 0;
+        }
+        if (field.startsWith(q)) {
+            return 1;
+        }
+        return field.contains(q) ? 2 : Integer.MAX_VALUE;
+    }
+
+    // --- Синхронизация с записью в StudentDAO ---
+
+    @Override
+    public void onStudentSaved(Student student) {
+        Student copy = new Student(student);
+        apply(c -> c.save(copy, false));
+    }
+
+    @Override
+    public void onStudentCreated(Student student) {
+        Student copy = new Student(student);
+        apply(c -> c.save(copy, true));
+    }
+
+    @Override
+    public void onStudentDeleted(int id, long version) {
+        apply(c -> c.delete(id, version));
+    }
+
+    @Override
+    public void onAllStudentsDeleted() {
+        apply(Contents::clear);
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            change.applyTo(contents);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Изменение содержимого индекса (запоминается, пока идет rebuild). */
+    private interface Change {
+        void applyTo(Contents contents);
+    }
+
+    /** Документы и списки триграмм; меняется только под блокировкой записи. */
+    private static class Contents {
+        // Id -> проиндексированный студент
+        final Map<Integer, Doc> docs = new HashMap<>();
+        // Триграмма или подстрока из 1-2 символов (упакованные в long) -> множество Id
+        final Map<Long, IntHashSet> postings = new HashMap<>();
+        final Tombstones deleted = new Tombstones();
+
+        void save(Student student, boolean created) {
+            Doc current = docs.get(student.getId());
+            if (current != null && Tombstones.isOlder(student.getVersion(), current.student.getVersion())) {
+                return; // уже проиндексирована более новая версия
+            }
+            if (current == null && deleted.hides(student.getId(), student.getVersion(), created)) {
+                return; // опоздавшее уведомление об уже удаленном студенте
+            }
+            boolean createSeen = created || current != null && current.createSeen;
+            remove(student.getId());
+            add(student, createSeen);
+        }
+
+        void delete(int id, long version) {
+            Doc current = docs.get(id);
+            if (current != null && Tombstones.isOlder(version, current.student.getVersion())) {
+                return;
+            }
+            remove(id);
+            deleted.add(id, version, current != null && current.createSeen);
+        }
+
+        void clear() {
+            docs.clear();
+            postings.clear();
+            deleted.clear();
+        }
+
+        /** Студент из обхода хранилища: уведомление о его добавлении считается полученным. */
+        void add(Student student) {
+            add(student, true);
+        }
+
+        private void add(Student student, boolean createSeen) {
+            Doc doc = new Doc(student, normalize(student.getName()), normalize(student.getSurname()), createSeen);
+            docs.put(student.getId(), doc);
+            for (long gram : doc.grams()) {
+                postings.computeIfAbsent(gram, g -> new IntHashSet()).add(student.getId());
+            }
+        }
+
+        void remove(int id) {
+            Doc doc = docs.remove(id);
+            if (doc == null) {
+                return;
+            }
+            for (long gram : doc.grams()) {
+                IntHashSet list = postings.get(gram);
+                if (list != null) {
+                    list.remove(id);
+                    if (list.size() == 0) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+
+        IntHashSet[] postingsFor(String q) {
+            // Запрос короче триграммы - один список его подстроки
+            long[] grams = q.length() < GRAM ? new long[] {shortKey(q)} : grams(q);
+            IntHashSet[] lists = new IntHashSet[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                IntHashSet list = postings.get(grams[i]);
+                if (list == null) {
+                    return null; // какой-то триграммы нет ни у кого - совпадений нет
+                }
+                lists[i] = list;
+            }
+            return lists;
+        }
+    }
+
+    // --- Вспомогательное ---
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] grams(String s) {
+        if (s.length() < GRAM) {
+            return new long[0];
+        }
+        long[] result = new long[s.length() - GRAM + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        return result;
+    }
+
+    /**
+     * Все подстроки s длиной 1 и 2. Длина подстроки - в битах с 48-го,
+     * поэтому ключ не совпадает ни с одной триграммой.
+     */
+    private static long[] shortGrams(String s) {
+        if (s.isEmpty()) {
+            return new long[0];
+        }
+        long[] result = new long[2 * s.length() - 1];
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            result[n++] = (1L << 48) | s.charAt(i);
+            if (i + 1 < s.length()) {
+                result[n++] = (2L << 48) | ((long) s.charAt(i) << 16) | s.charAt(i + 1);
+            }
+        }
+        return result;
+    }
+
+    /** Ключ запроса из 1-2 символов - как в shortGrams. */
+    private static long shortKey(String s) {
+        long key = (long) s.length() << 48;
+        for (int i = 0; i < s.length(); i++) {
+            key |= (long) s.charAt(i) << (16 * (s.length() - 1 - i));
+        }
+        return key;
+    }
+
+    private static class Doc {
+        final Student student;
+        final String name;
+        final String surname;
+        // Получено ли уведомление о добавлении этой строки (см. Tombstones)
+        final boolean createSeen;
+
+        Doc(Student student, String name, String surname, boolean createSeen) {
+            this.student = student;
+            this.name = name;
+            this.surname = surname;
+            this.createSeen = createSeen;
+        }
+
+        /** Ключи всех списков, в которых есть этот документ. */
+        long[] grams() {
+            long[][] parts = {NameSearchIndex.grams(name), NameSearchIndex.grams(surname),
+                    shortGrams(name), shortGrams(surname)};
+            int length = 0;
+            for (long[] part : parts) {
+                length += part.length;
+            }
+            long[] all = new long[length];
+            int n = 0;
+            for (long[] part : parts) {
+                System.arraycopy(part, 0, all, n, part.length);
+                n += part.length;
+            }
+            return all;
+        }
+    }
+
+    private static class Hit {
+        final Doc doc;
+        final int rank;
+
+        Hit(Doc doc, int rank) {
+            this.doc = doc;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * Множество int с открытой адресацией (без упаковки в Integer).
+     */
+    static class IntHashSet {
+        private static final int FREE = Integer.MIN_VALUE;
+        private static final int REMOVED = Integer.MIN_VALUE + 1;
+
+        private int[] slots = newSlots(4);
+        private int size;
+        private int used; // занятые + удаленные ячейки
+        private boolean hasFree;    // само значение FREE хранится отдельно
+        private boolean hasRemoved; // и значение REMOVED тоже
+
+        int size() {
+            return size;
+        }
+
+        void add(int value) {
+            if (value == FREE || value == REMOVED) {
+                boolean had = value == FREE ? hasFree : hasRemoved;
+                if (!had) {
+                    if (value == FREE) hasFree = true; else hasRemoved = true;
+                    size++;
+                }
+                return;
+            }
+            if ((used + 1) * 2 > slots.length) {
+                rehash(size * 2 + 2 > slots.length / 2 ? slots.length * 2 : slots.length);
+            }
+            int mask = slots.length - 1;
+            int i = mix(value) & mask;
+            int firstRemoved = -1;
+            while (slots[i] != FREE) {
+                if (slots[i] == value) {
+                    return;
+                }
+                if (slots[i] == REMOVED && firstRemoved < 0) {
+                    firstRemoved = i;
+                }
+                i = (i + 1) & mask;
+            }
+            if (firstRemoved >= 0) {
+                slots[firstRemoved] = value;
+            } else {
+                slots[i] = value;
+                used++;
+            }
+            size++;
+        }
+
+        boolean contains(int value) {
+            if (value == FREE) return hasFree;
+            if (value == REMOVED) return hasRemoved;
+            int mask = slots.length - 1;
+            int i = mix(value) & mask;
+            while (slots[i] != FREE) {
+                if (slots[i] == value) {
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+            return false;
+        }
+
+        void remove(int value) {
+            if (value == FREE || value == REMOVED) {
+                boolean had = value == FREE ? hasFree : hasRemoved;
+                if (had) {
+                    if (value == FREE) hasFree = false; else hasRemoved = false;
+                    size--;
+                }
+                return;
+            }
+            int mask = slots.length - 1;
+            int i = mix(value) & mask;
+            while (slots[i] != FREE) {
+                if (slots[i] == value) {
+                    slots[i] = REMOVED;
+                    size--;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            if (hasFree) action.accept(FREE);
+            if (hasRemoved) action.accept(REMOVED);
+            for (int v : slots) {
+                if (v != FREE && v != REMOVED) {
+                    action.accept(v);
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] old = slots;
+            slots = newSlots(capacity);
+            used = 0;
+            int mask = capacity - 1;
+            for (int v : old) {
+                if (v != FREE && v != REMOVED) {
+                    int i = mix(v) & mask;
+                    while (slots[i] != FREE) {
+                        i = (i + 1) & mask;
+                    }
+                    slots[i] = v;
+                    used++;
+                }
+            }
+        }
+
+        private static int[] newSlots(int capacity) {
+            int[] a = new int[capacity];
+            Arrays.fill(a, FREE);
+            return a;
+        }
+
+        private static int mix(int x) {
+            x *= 0x9E3779B9;
+            return x ^ (x >>> 16);
+        }
+    }
+}
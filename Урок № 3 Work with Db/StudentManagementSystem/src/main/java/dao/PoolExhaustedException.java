@@ -0,0 +1,24 @@
+package dao;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Свободного соединения в пуле не нашлось за время ожидания: все заняты, сервер при этом
+ * может быть вполне доступен. В отличие от ошибки подключения, повтор позже имеет смысл,
+ * а реплику из-за такой ошибки не исключают из чтения.
+ */
+public class PoolExhaustedException extends SQLTransientConnectionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    PoolExhaustedException(long borrowTimeoutMillis, int maxSize) {
+        super("Не удалось получить соединение из пула за " + borrowTimeoutMillis + " мс (занято "
+                + maxSize + " из " + maxSize + ").", "08001");
+        this.maxSize = maxSize;
+    }
+
+    /** Размер пула, все соединения которого были заняты. */
+    public int getMaxSize() { return maxSize; }
+}
@@ -0,0 +1,121 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сессия чтения своих записей. Пока вызов идет внутри сессии (call или open),
+ * каждое соединение с основным сервером для записи отмечает в ней время, и следующие
+ * db.readYourWritesMs ее чтения тоже идут на основной сервер, а не на реплику.
+ * Чтения вне сессии всегда идут на реплики.
+ *
+ * Сессию передает вызывающий код: AsyncStudentDAO.inSession переносит ее в свои потоки,
+ * HTTP-сервер - между запросами клиента в виде маркера (token / fromToken).
+ * Маркер - время последней записи в мс от начала эпохи.
+ */
+public final class ReadSession {
+
+    // Сессия, в которой сейчас идет вызов этого потока (только на время call/open)
+    private static final ThreadLocal<ReadSession> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong lastWriteMillis;
+    private final boolean primaryOnly;
+
+    private ReadSession(long lastWriteMillis, boolean primaryOnly) {
+        this.lastWriteMillis = new AtomicLong(lastWriteMillis);
+        this.primaryOnly = primaryOnly;
+    }
+
+    /** Новая сессия: пока в ней нет записей, чтения идут на реплики. */
+    public ReadSession() {
+        this(0, false);
+    }
+
+    /**
+     * Сессия, все чтения которой идут на основной сервер (например, обход таблицы
+     * для построения индекса, который должен увидеть все уже сделанные записи).
+     */
+    public static ReadSession primaryOnly() {
+        return new ReadSession(0, true);
+    }
+
+    /**
+     * Сессия из маркера, выданного token(). Пустой или некорректный маркер - новая сессия;
+     * время из будущего считается текущим, чтобы клиент не закрепил себя за основным сервером.
+     */
+    public static ReadSession fromToken(String token) {
+        if (token == null || token.isBlank()) {
+            return new ReadSession();
+        }
+        try {
+            long millis = Long.parseLong(token.trim());
+            return new ReadSession(Math.max(0, Math.min(millis, System.currentTimeMillis())), false);
+        } catch (NumberFormatException e) {
+            return new ReadSession();
+        }
+    }
+
+    /** Маркер для передачи сессии дальше (например, клиенту HTTP); "0" - записей не было. */
+    public String token() {
+        return Long.toString(lastWriteMillis.get());
+    }
+
+    /** Вызов, который может бросить SQLException. */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws SQLException;
+    }
+
+    /** Выполняет call в этой сессии в текущем потоке. */
+    public <T> T call(Call<T> call) throws SQLException {
+        try (Scope ignored = open()) {
+            return call.call();
+        }
+    }
+
+    /**
+     * Делает сессию текущей для этого потока до закрытия Scope (try-with-resources);
+     * после закрытия текущей снова становится прежняя.
+     */
+    public Scope open() {
+        ReadSession previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /** Область действия сессии в потоке; закрывается в том же потоке, где открыта. */
+    public static final class Scope implements AutoCloseable {
+        private final ReadSession previous;
+
+        private Scope(ReadSession previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    // --- Для DatabaseConfig ---
+
+    static ReadSession current() {
+        return CURRENT.get();
+    }
+
+    void markWrite() {
+        lastWriteMillis.accumulateAndGet(System.currentTimeMillis(), Math::max);
+    }
+
+    boolean readsFromPrimary(long windowMillis) {
+        if (primaryOnly) {
+            return true;
+        }
+        long last = lastWriteMillis.get();
+        return last > 0 && System.currentTimeMillis() - last < windowMillis;
+    }
+}
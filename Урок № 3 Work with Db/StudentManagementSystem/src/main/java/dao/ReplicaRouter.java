@@ -0,0 +1,174 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Выбор реплики для чтения: из доступных берется та, у которой меньше всего выданных
+ * соединений (при равенстве - по кругу). Реплика, к которой не удалось подключиться,
+ * исключается до следующей успешной проверки; проверка всех реплик (isValid) идет в фоне
+ * каждые checkIntervalMillis. Занятый пул (PoolExhaustedException) - не сбой: реплика
+ * остается доступной, а чтение уходит на основной сервер - остальные реплики выбраны
+ * как не менее загруженные, ждать их пул еще раз нет смысла.
+ */
+class ReplicaRouter implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ReplicaRouter.class.getName());
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final Replica[] replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    ReplicaRouter(List<String> urls, List<ConnectionPool> pools, long checkIntervalMillis) {
+        this.replicas = new Replica[pools.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new Replica(i + 1, urls.get(i), pools.get(i));
+        }
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-health-check");
+            t.setDaemon(true);
+            return t;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkAll, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Соединение с наименее загруженной доступной репликой или null, если доступных нет
+     * (тогда читать нужно с основного сервера).
+     */
+    Connection getConnection() {
+        for (int attempt = 0; attempt < replicas.length; attempt++) {
+            Replica replica = pick();
+            if (replica == null) {
+                return null;
+            }
+            try {
+                Connection conn = replica.pool.getConnection();
+                replica.reads.incrementAndGet();
+                return conn;
+            } catch (PoolExhaustedException e) {
+                replica.busy.incrementAndGet();
+                return null;
+            } catch (SQLException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null; // ожидание прервано - реплика тут ни при чем
+                }
+                markDown(replica, e);
+            }
+        }
+        return null;
+    }
+
+    private Replica pick() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.length);
+        Replica best = null;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.length; i++) {
+            Replica r = replicas[(start + i) % replicas.length];
+            if (!r.healthy) {
+                continue;
+            }
+            int active = r.pool.getActiveCount();
+            if (active < bestActive) {
+                best = r;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+
+    void registerStatements(Collection<String> sqls) {
+        for (Replica r : replicas) {
+            r.pool.registerStatements(sqls);
+        }
+    }
+
+    private void checkAll() {
+        for (Replica r : replicas) {
+            try (Connection conn = r.pool.getConnection()) {
+                if (conn.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    markUp(r);
+                } else {
+                    markDown(r, null);
+                }
+            } catch (PoolExhaustedException e) {
+                // все соединения заняты чтениями - значит, реплика отвечает
+            } catch (SQLException e) {
+                markDown(r, e);
+            }
+        }
+    }
+
+    private static void markDown(Replica r, SQLException e) {
+        if (r.healthy) {
+            r.healthy = false;
+            LOG.warning("Реплика " + r.number + " недоступна, чтение идет с других серверов"
+                    + (e != null ? ": " + e.getMessage() : "."));
+        }
+        r.failures.incrementAndGet();
+    }
+
+    private static void markUp(Replica r) {
+        if (!r.healthy) {
+            r.healthy = true;
+            LOG.info("Реплика " + r.number + " снова доступна.");
+        }
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica r : replicas) {
+            r.pool.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Реплики:");
+        for (Replica r : replicas) {
+            sb.append(String.format("%n  %d. %s - %s | чтений %d | сбоев %d | пул занят %d | занято соединений %d",
+                    r.number, hostOf(r.url), r.healthy ? "доступна" : "НЕДОСТУПНА",
+                    r.reads.get(), r.failures.get(), r.busy.get(), r.pool.getActiveCount()));
+        }
+        return sb.toString();
+    }
+
+    /** Адрес сервера из JDBC URL - без параметров (?... у MySQL, ;... у H2), в которых может быть пароль. */
+    private static String hostOf(String url) {
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == ';') {
+                return url.substring(0, i);
+            }
+        }
+        return url;
+    }
+
+    private static class Replica {
+        final int number;
+        final String url;
+        final ConnectionPool pool;
+        volatile boolean healthy = true;
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong busy = new AtomicLong();   // чтений, ушедших на основной сервер из-за занятого пула
+
+        Replica(int number, String url, ConnectionPool pool) {
+            this.number = number;
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Подготовка схемы БД при запуске: таблица Students, уникальный индекс по Email
+ * и индексы для составных запросов.
+ * Проверка уникальности email при записи целиком держится на этом индексе.
+ */
+public class SchemaInitializer {
+
+    public static final String EMAIL_INDEX = "uq_students_email";
+    // Вспомогательные индексы для StudentQuery: диапазоны возраста и префиксы фамилии/имени
+    private static final String AGE_INDEX = "idx_students_age";
+    private static final String NAME_INDEX = "idx_students_name";
+    private static final String SURNAME_INDEX = "idx_students_surname";
+
+    // Режим outbox: журнал изменений, который заполняют триггеры на Students
+    public static final String OUTBOX_TABLE = "StudentChanges";
+    static final String[] OUTBOX_TRIGGERS = {
+            "trg_students_outbox_insert", "trg_students_outbox_update", "trg_students_outbox_delete"};
+
+    // DDL доступен в пакете: тесты на H2 создают по нему те же таблицы и триггеры
+    // (проверки через information_schema там не работают)
+    static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS Students ("
+                    + " Id INT NOT NULL PRIMARY KEY,"
+                    + " Name VARCHAR(100) NOT NULL,"
+                    + " Surname VARCHAR(100) NOT NULL,"
+                    + " Age INT NOT NULL,"
+                    + " Phone VARCHAR(20) NULL,"
+                    + " Email VARCHAR(255) NOT NULL,"
+                    + " Version BIGINT NOT NULL DEFAULT 1,"
+                    + " UNIQUE INDEX " + EMAIL_INDEX + " (Email),"
+                    + " INDEX " + AGE_INDEX + " (Age),"
+                    + " INDEX " + NAME_INDEX + " (Name),"
+                    + " INDEX " + SURNAME_INDEX + " (Surname)"
+                    + ")";
+
+    static final String CREATE_OUTBOX_SQL =
+            "CREATE TABLE IF NOT EXISTS " + OUTBOX_TABLE + " ("
+                    + " Version BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,"
+                    + " ChangeType VARCHAR(16) NOT NULL,"
+                    + " StudentId INT NOT NULL,"
+                    + " Name VARCHAR(100) NULL,"
+                    + " Surname VARCHAR(100) NULL,"
+                    + " Age INT NULL,"
+                    + " Phone VARCHAR(20) NULL,"
+                    + " Email VARCHAR(255) NULL,"
+                    + " RowVersion BIGINT NOT NULL DEFAULT 0,"
+                    + " CreatedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)"
+                    + ")";
+
+    // Триггеры: вставка/обновление пишут новое состояние, удаление - только Id;
+    // все три - версию строки Students, чтобы потребитель мог отбросить устаревшее событие
+    static final String[] CREATE_OUTBOX_TRIGGER_SQL = {
+            "CREATE TRIGGER " + OUTBOX_TRIGGERS[0] + " AFTER INSERT ON Students FOR EACH ROW"
+                    + " INSERT INTO " + OUTBOX_TABLE
+                    + " (ChangeType, StudentId, Name, Surname, Age, Phone, Email, RowVersion)"
+                    + " VALUES ('SAVED', NEW.Id, NEW.Name, NEW.Surname, NEW.Age, NEW.Phone, NEW.Email, NEW.Version)",
+            "CREATE TRIGGER " + OUTBOX_TRIGGERS[1] + " AFTER UPDATE ON Students FOR EACH ROW"
+                    + " INSERT INTO " + OUTBOX_TABLE
+                    + " (ChangeType, StudentId, Name, Surname, Age, Phone, Email, RowVersion)"
+                    + " VALUES ('SAVED', NEW.Id, NEW.Name, NEW.Surname, NEW.Age, NEW.Phone, NEW.Email, NEW.Version)",
+            "CREATE TRIGGER " + OUTBOX_TRIGGERS[2] + " AFTER DELETE ON Students FOR EACH ROW"
+                    + " INSERT INTO " + OUTBOX_TABLE + " (ChangeType, StudentId, RowVersion)"
+                    + " VALUES ('DELETED', OLD.Id, OLD.Version)"
+    };
+
+    // Столбец версии строки в журнале (журналы, созданные до его появления)
+    private static final String FIND_OUTBOX_ROW_VERSION_SQL =
+            "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()"
+                    + " AND TABLE_NAME = '" + OUTBOX_TABLE + "' AND COLUMN_NAME = 'RowVersion'";
+    private static final String ADD_OUTBOX_ROW_VERSION_SQL =
+            "ALTER TABLE " + OUTBOX_TABLE + " ADD COLUMN RowVersion BIGINT NOT NULL DEFAULT 0";
+
+    private static final String FIND_TRIGGER_SQL =
+            "SELECT COUNT(*) FROM information_schema.TRIGGERS"
+                    + " WHERE TRIGGER_SCHEMA = DATABASE() AND TRIGGER_NAME = ?";
+
+    private static final String FIND_INDEX_BY_NAME_SQL =
+            "SELECT COUNT(*) FROM information_schema.STATISTICS"
+                    + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Students' AND INDEX_NAME = ?";
+
+    // Есть ли уникальный индекс, состоящий только из столбца Email
+    private static final String FIND_EMAIL_INDEX_SQL =
+            "SELECT COUNT(*) FROM information_schema.STATISTICS s"
+                    + " WHERE s.TABLE_SCHEMA = DATABASE() AND s.TABLE_NAME = 'Students'"
+                    + " AND s.NON_UNIQUE = 0 AND s.COLUMN_NAME = 'Email' AND s.SEQ_IN_INDEX = 1"
+                    + " AND NOT EXISTS (SELECT 1 FROM information_schema.STATISTICS o"
+                    + "   WHERE o.TABLE_SCHEMA = s.TABLE_SCHEMA AND o.TABLE_NAME = s.TABLE_NAME"
+                    + "   AND o.INDEX_NAME = s.INDEX_NAME AND o.SEQ_IN_INDEX > 1)";
+
+    // Столбец версии для оптимистической блокировки (таблицы, созданные до его появления)
+    private static final String FIND_VERSION_COLUMN_SQL =
+            "SELECT COUNT(*) FROM information_schema.COLUMNS"
+                    + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Students' AND COLUMN_NAME = 'Version'";
+    private static final String ADD_VERSION_COLUMN_SQL =
+            "ALTER TABLE Students ADD COLUMN Version BIGINT NOT NULL DEFAULT 1";
+
+    // Email-справочник шардов: email (в нижнем регистре) -> Id владельца
+    public static final String EMAIL_DIRECTORY_TABLE = "StudentEmailIndex";
+    static final String CREATE_EMAIL_DIRECTORY_SQL =
+            "CREATE TABLE IF NOT EXISTS " + EMAIL_DIRECTORY_TABLE + " ("
+                    + " Email VARCHAR(255) NOT NULL PRIMARY KEY,"
+                    + " StudentId INT NOT NULL,"
+                    + " ClaimedAt TIMESTAMP(3) NOT NULL"
+                    + ")";
+
+    private static final String ADD_EMAIL_INDEX_SQL =
+            "ALTER TABLE Students ADD UNIQUE INDEX " + EMAIL_INDEX + " (Email)";
+
+    /**
+     * Создает таблицу, если ее нет, и добавляет недостающие столбец Version и индексы
+     * в уже существующую таблицу. Повторный вызов ничего не меняет.
+     */
+    public static void ensureSchema() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            ensureSchema(conn);
+        }
+    }
+
+    /**
+     * То же для одного шарда (см. ShardedStudentRepository) плюс таблица email-справочника,
+     * в которой шард хранит свою часть email всех студентов.
+     */
+    public static void ensureShardSchema(ConnectionPool pool) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            ensureSchema(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_EMAIL_DIRECTORY_SQL);
+            }
+        }
+    }
+
+    private static void ensureSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(CREATE_TABLE_SQL);
+        }
+
+        if (!hasVersionColumn(conn)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(ADD_VERSION_COLUMN_SQL);
+            }
+        }
+
+        if (!hasUniqueEmailIndex(conn)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(ADD_EMAIL_INDEX_SQL);
+            } catch (SQLException e) {
+                if (DuplicateStudentException.isIntegrityViolation(e)) {
+                    throw new SQLException("Не удалось создать уникальный индекс по Email: "
+                            + "в таблице Students уже есть повторяющиеся email.", e.getSQLState(), e);
+                }
+                throw e;
+            }
+        }
+
+        ensureIndex(conn, AGE_INDEX, "ALTER TABLE Students ADD INDEX " + AGE_INDEX + " (Age)");
+        ensureIndex(conn, NAME_INDEX, "ALTER TABLE Students ADD INDEX " + NAME_INDEX + " (Name)");
+        ensureIndex(conn, SURNAME_INDEX, "ALTER TABLE Students ADD INDEX " + SURNAME_INDEX + " (Surname)");
+    }
+
+    /**
+     * Включает режим outbox: создает таблицу StudentChanges и триггеры, которые в той же
+     * транзакции записывают туда каждое изменение Students (читать - через StudentOutbox).
+     * Очистка таблицы (DELETE FROM Students) дает по событию на каждую удаленную строку.
+     * В журнал без столбца RowVersion он добавляется, а триггеры пересоздаются.
+     * Нужна привилегия TRIGGER. Повторный вызов ничего не меняет.
+     */
+    public static void ensureOutbox() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_OUTBOX_SQL);
+            }
+            boolean recreateTriggers = false;
+            if (!hasOutboxRowVersion(conn)) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(ADD_OUTBOX_ROW_VERSION_SQL);
+                }
+                recreateTriggers = true;
+            }
+            for (int i = 0; i < OUTBOX_TRIGGERS.length; i++) {
+                boolean exists = triggerExists(conn, OUTBOX_TRIGGERS[i]);
+                if (exists && recreateTriggers) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DROP TRIGGER " + OUTBOX_TRIGGERS[i]);
+                    }
+                    exists = false;
+                }
+                if (!exists) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate(CREATE_OUTBOX_TRIGGER_SQL[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean triggerExists(Connection conn, String triggerName) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_TRIGGER_SQL)) {
+            pstmt.setString(1, triggerName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    private static void ensureIndex(Connection conn, String indexName, String ddl) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_INDEX_BY_NAME_SQL)) {
+            pstmt.setString(1, indexName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(ddl);
+        }
+    }
+
+    private static boolean hasVersionColumn(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_VERSION_COLUMN_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private static boolean hasOutboxRowVersion(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_OUTBOX_ROW_VERSION_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private static boolean hasUniqueEmailIndex(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_EMAIL_INDEX_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+}
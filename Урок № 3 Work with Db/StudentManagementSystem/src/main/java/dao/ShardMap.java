@@ -0,0 +1,78 @@
+package dao;
+
+import java.util.Arrays;
+
+/**
+ * Распределение студентов по шардам (отдельным БД) по Id.
+ *
+ * byHash(n) - равномерно по хешу Id: соседние Id попадают на разные шарды.
+ * byRange(границы) - диапазонами: шард i хранит Id меньше границы i (и не меньше
+ * предыдущей), последний шард - все остальные Id. Удобно, когда новые Id растут
+ * и старые диапазоны можно держать на отдельных серверах.
+ *
+ * Email-справочник (см. ShardedStudentRepository) всегда распределяется по хешу email.
+ * Изменение числа шардов или границ требует переноса данных.
+ */
+public class ShardMap {
+
+    // Золотое сечение * 2^32: умножение на него перемешивает биты Id
+    private static final long HASH_MULTIPLIER = 0x9E3779B9L;
+
+    private final int shardCount;
+    // null - распределение по хешу
+    private final int[] upperBounds;
+
+    private ShardMap(int shardCount, int[] upperBounds) {
+        this.shardCount = shardCount;
+        this.upperBounds = upperBounds;
+    }
+
+    public static ShardMap byHash(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Количество шардов должно быть положительным: " + shardCount);
+        }
+        return new ShardMap(shardCount, null);
+    }
+
+    /** Шардов на один больше, чем границ; границы должны строго возрастать. */
+    public static ShardMap byRange(int... upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("Границы шардов должны возрастать: " + Arrays.toString(upperBounds));
+            }
+        }
+        return new ShardMap(upperBounds.length + 1, upperBounds.clone());
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /** Номер шарда (с 0), на котором хранится студент с данным Id. */
+    public int shardOf(int id) {
+        if (upperBounds == null) {
+            return spread(id);
+        }
+        int pos = Arrays.binarySearch(upperBounds, id);
+        // Граница не входит в свой шард: Id, равный границе i, - уже шард i + 1
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /** Номер шарда, на котором хранится запись email-справочника (ключ - email в нижнем регистре). */
+    public int shardOfEmail(String emailKey) {
+        return spread(emailKey.hashCode());
+    }
+
+    // Умножение со сдвигом: старшие 32 бита произведения (hash * 2^32/φ mod 2^32) * n
+    private int spread(int hash) {
+        long mixed = (hash * HASH_MULTIPLIER) & 0xFFFFFFFFL;
+        return (int) ((mixed * shardCount) >>> 32);
+    }
+
+    @Override
+    public String toString() {
+        return upperBounds == null
+                ? "Шардов: " + shardCount + " (по хешу Id)"
+                : "Шардов: " + shardCount + " (по диапазонам Id, границы " + Arrays.toString(upperBounds) + ")";
+    }
+}
@@ -0,0 +1,959 @@
+package dao;
+
+import model.Student;
+import model.StudentSummary;
+import util.ThreadPools;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище, разделенное на несколько БД (шардов) по Id: в каждом шарде своя таблица
+ * Students, а ShardMap решает, в каком шарде лежит студент.
+ *
+ * Операции с одним студентом (по Id) выполняются только на его шарде. Выборки по всем
+ * студентам (getAllStudents, findStudents, searchByName, filterByAge...) отправляются на все
+ * шарды параллельно, а отсортированные ответы сливаются в один список в том же порядке,
+ * что дал бы StudentDAO на одной БД.
+ *
+ * Уникальность email между шардами держит email-справочник: таблица StudentEmailIndex
+ * (email в нижнем регистре -> Id владельца), разложенная по шардам по хешу email.
+ * Перед записью студент "занимает" свой email одной вставкой в справочник на одном шарде;
+ * опрашивать все шарды не нужно. Пакетная запись занимает email всех строк многострочными
+ * вставками - по одной на шард справочника (и на каждые MAX_IN_LIST_SIZE строк), шарды параллельно. Если запись студента затем не удалась, email освобождается.
+ * Запись справочника, владелец которой не существует или сменил email (например, после сбоя
+ * между занятием email и записью студента), считается брошенной и может быть занята другим
+ * студентом, но не раньше чем через CLAIM_GRACE_MS, чтобы не отнять email у записи,
+ * которая еще выполняется.
+ *
+ * Изменения шардов, сделанные мимо этого хранилища, справочник не видит.
+ */
+public class ShardedStudentRepository implements StudentRepository, AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ShardedStudentRepository.class.getName());
+
+    // Сколько запись справочника защищена от захвата, пока ее владелец еще не записан
+    static final long CLAIM_GRACE_MS = 60_000;
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO " + SchemaInitializer.EMAIL_DIRECTORY_TABLE + " (Email, StudentId, ClaimedAt) VALUES (?, ?, ?)";
+    private static final String OWNER_SQL =
+            "SELECT StudentId, ClaimedAt FROM " + SchemaInitializer.EMAIL_DIRECTORY_TABLE + " WHERE Email = ?";
+    // Захват брошенной записи: только если ее за это время никто не занял и не обновил
+    private static final String TAKEOVER_SQL =
+            "UPDATE " + SchemaInitializer.EMAIL_DIRECTORY_TABLE + " SET StudentId = ?, ClaimedAt = ?"
+                    + " WHERE Email = ? AND StudentId = ? AND ClaimedAt = ?";
+    private static final String RELEASE_SQL =
+            "DELETE FROM " + SchemaInitializer.EMAIL_DIRECTORY_TABLE + " WHERE Email = ? AND StudentId = ?";
+    // Сколько раз пробовать занять email, если запись справочника одновременно занимают и освобождают
+    private static final int MAX_CLAIM_ATTEMPTS = 5;
+    // Многострочная вставка справочника: занятые email не меняются, владельцев затем читает readClaims
+    private static final String CLAIM_ALL_SQL_PREFIX =
+            "INSERT INTO " + SchemaInitializer.EMAIL_DIRECTORY_TABLE + " (Email, StudentId, ClaimedAt) VALUES ";
+    private static final String CLAIM_ALL_SQL_SUFFIX = " ON DUPLICATE KEY UPDATE StudentId = StudentId";
+    private static final String CLEAR_DIRECTORY_SQL =
+            "DELETE FROM " + SchemaInitializer.EMAIL_DIRECTORY_TABLE;
+
+    private static final List<String> DIRECTORY_STATEMENTS = List.of(CLAIM_SQL, OWNER_SQL, TAKEOVER_SQL, RELEASE_SQL);
+
+    private final List<ConnectionPool> pools;
+    private final List<StudentDAO> shards;
+    private final ShardMap shardMap;
+    private final ExecutorService executor;
+    private final ChangeListeners listeners = new ChangeListeners();
+
+    public ShardedStudentRepository(List<ConnectionPool> pools, ShardMap shardMap) {
+        if (pools.size() != shardMap.shardCount()) {
+            throw new IllegalArgumentException("Пулов " + pools.size() + ", а шардов в ShardMap "
+                    + shardMap.shardCount() + ".");
+        }
+        this.pools = List.copyOf(pools);
+        this.shardMap = shardMap;
+
+        // Изменения в шардах пересылаются подписчикам этого хранилища; очистку
+        // deleteAllStudents сообщает сам - один раз, а не по разу на шард
+        StudentChangeListener forwarder = new StudentChangeListener() {
+            @Override
+            public void onStudentSaved(Student student) {
+                listeners.fireSaved(student);
+            }
+
+            @Override
+            public void onStudentCreated(Student student) {
+                listeners.fireCreated(student);
+            }
+
+            @Override
+            public void onStudentDeleted(int id, long version) {
+                listeners.fireDeleted(id, version);
+            }
+
+            @Override
+            public void onAllStudentsDeleted() {
+            }
+        };
+        List<StudentDAO> daos = new ArrayList<>(pools.size());
+        for (ConnectionPool pool : this.pools) {
+            pool.registerStatements(DIRECTORY_STATEMENTS);
+            StudentDAO dao = new StudentDAO(pool);
+            dao.addChangeListener(forwarder);
+            daos.add(dao);
+        }
+        this.shards = List.copyOf(daos);
+
+        this.executor = ThreadPools.newDaemonPool("shard-query", pools.size());
+    }
+
+    /** Шарды из настроек db.shards и db.shardRanges (см. DatabaseConfig). */
+    public static ShardedStudentRepository fromConfig() {
+        List<ConnectionPool> pools = DatabaseConfig.getShardPools();
+        if (pools.isEmpty()) {
+            throw new IllegalStateException("Шарды не настроены: задайте db.shards.");
+        }
+        return new ShardedStudentRepository(pools, DatabaseConfig.getShardMap());
+    }
+
+    /** Создает таблицы Students и StudentEmailIndex на всех шардах. */
+    public void ensureSchema() throws SQLException {
+        for (ConnectionPool pool : pools) {
+            SchemaInitializer.ensureShardSchema(pool);
+        }
+    }
+
+    public ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    /** DAO отдельного шарда (например, для его метрик). */
+    public StudentDAO getShard(int index) {
+        return shards.get(index);
+    }
+
+    /** Останавливает потоки параллельных запросов; пулы закрывает их владелец. */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // --- Подписка на изменения ---
+
+    @Override
+    public void addChangeListener(StudentChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(StudentChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- Добавление ---
+
+    @Override
+    public void addStudent(Student student) throws SQLException {
+        String email = emailKey(student.getEmail());
+        boolean claimed = claimEmail(student.getEmail(), student.getId());
+        try {
+            shardFor(student.getId()).addStudent(student);
+        } catch (SQLException | RuntimeException e) {
+            if (claimed) {
+                releaseQuietly(email, student.getId());
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public BatchResult addStudents(Iterable<Student> students) throws SQLException {
+        return addStudents(students, StudentDAO.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Занимает email каждой строки (занятые другими - в отчет), затем пишет строки
+     * пакетами на их шарды, все шарды параллельно. Входные данные целиком держатся в памяти.
+     */
+    @Override
+    public BatchResult addStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        BatchResult result = new BatchResult();
+        List<ShardBatch> batches = claimAll(students, result);
+        List<BatchResult> shardResults = scatter(shard -> {
+            ShardBatch batch = batches.get(shard);
+            return batch.rows.isEmpty() ? new BatchResult() : shards.get(shard).addStudents(batch.rows, batchSize);
+        });
+        mergeBatchResults(batches, shardResults, result);
+        return result;
+    }
+
+    /**
+     * Вставка или обновление по Id. У обновленных строк, сменивших email,
+     * старый email освобождается.
+     */
+    @Override
+    public BatchResult upsertStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        BatchResult result = new BatchResult();
+        List<ShardBatch> batches = claimAll(students, result);
+
+        List<Integer> ids = new ArrayList<>();
+        for (ShardBatch batch : batches) {
+            for (Student s : batch.rows) {
+                ids.add(s.getId());
+            }
+        }
+        Map<Integer, Student> before = getStudentsByIds(ids);
+
+        List<BatchResult> shardResults = scatter(shard -> {
+            ShardBatch batch = batches.get(shard);
+            return batch.rows.isEmpty() ? new BatchResult() : shards.get(shard).upsertStudents(batch.rows, batchSize);
+        });
+        mergeBatchResults(batches, shardResults, result);
+
+        // Отклоненные строки не изменились - их старый email остается занятым
+        LinkedHashSet<Integer> rejectedIds = new LinkedHashSet<>();
+        for (BatchResult.Rejection r : result.getRejections()) {
+            if (r.getStudent() != null) {
+                rejectedIds.add(r.getStudent().getId());
+            }
+        }
+        for (ShardBatch batch : batches) {
+            for (Student s : batch.rows) {
+                Student old = before.get(s.getId());
+                if (old != null && !rejectedIds.contains(s.getId())
+                        && !emailKey(old.getEmail()).equals(emailKey(s.getEmail()))) {
+                    releaseQuietly(emailKey(old.getEmail()), s.getId());
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Строки одного шарда: сами строки, их номера во входных данных и занят ли email этим вызовом. */
+    private static class ShardBatch {
+        final List<Student> rows = new ArrayList<>();
+        final List<Integer> indexes = new ArrayList<>();
+        final List<Boolean> claimed = new ArrayList<>();
+    }
+
+    /**
+     * Занимает email всех строк и раскладывает строки по шардам (занятые другими email - в отчет).
+     * Строки группируются по шардам справочника; на каждом шарде, все параллельно, email
+     * занимаются многострочной вставкой и проверяются одним чтением IN (...).
+     */
+    private List<ShardBatch> claimAll(Iterable<Student> students, BatchResult result) throws SQLException {
+        List<Student> rows = new ArrayList<>();
+        List<List<Integer>> byEmailShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byEmailShard.add(new ArrayList<>());
+        }
+        for (Student s : students) {
+            byEmailShard.get(shardMap.shardOfEmail(emailKey(s.getEmail()))).add(rows.size());
+            rows.add(s);
+        }
+        // Каждый шард заполняет только ячейки своих строк; результаты видны после scatter
+        boolean[] claimed = new boolean[rows.size()];
+        String[] rejected = new String[rows.size()];
+        scatter(shard -> claimShard(shard, rows, byEmailShard.get(shard), claimed, rejected));
+
+        List<ShardBatch> batches = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            batches.add(new ShardBatch());
+        }
+        for (int index = 0; index < rows.size(); index++) {
+            Student s = rows.get(index);
+            if (rejected[index] != null) {
+                result.reject(index, s, rejected[index]);
+                continue;
+            }
+            ShardBatch batch = batches.get(shardMap.shardOf(s.getId()));
+            batch.rows.add(s);
+            batch.indexes.add(index);
+            batch.claimed.add(claimed[index]);
+        }
+        return batches;
+    }
+
+    /**
+     * Занимает email строк indexes на шарде справочника shard: вставка и чтение владельцев
+     * на каждые MAX_IN_LIST_SIZE строк. Строка заняла email этим вызовом, если владелец - ее Id
+     * с отметкой времени этой вставки и раньше в пакете того же email не было. Email другого
+     * студента в пределах CLAIM_GRACE_MS - отказ сразу; возможно брошенные записи и записи,
+     * освобожденные между вставкой и чтением, занимаются по одной через claimEmail.
+     * Возвращает число строк, занявших email.
+     */
+    private int claimShard(int shard, List<Student> rows, List<Integer> indexes,
+                           boolean[] claimed, String[] rejected) throws SQLException {
+        if (indexes.isEmpty()) {
+            return 0;
+        }
+        List<Integer> oneByOne = new ArrayList<>();
+        Set<String> claimedHere = new HashSet<>();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (Connection conn = pools.get(shard).getConnection()) {
+            for (int from = 0; from < indexes.size(); from += StudentDAO.MAX_IN_LIST_SIZE) {
+                List<Integer> chunk = indexes.subList(from, Math.min(from + StudentDAO.MAX_IN_LIST_SIZE, indexes.size()));
+                // Первая строка с каждым email; повторы разбираются по записанному владельцу
+                Map<String, Integer> firstOwner = new LinkedHashMap<>();
+                for (int i : chunk) {
+                    firstOwner.putIfAbsent(emailKey(rows.get(i).getEmail()), rows.get(i).getId());
+                }
+                insertClaims(conn, firstOwner, now);
+                Map<String, Claim> claims = readClaims(conn, new ArrayList<>(firstOwner.keySet()));
+
+                for (int i : chunk) {
+                    Student s = rows.get(i);
+                    String email = emailKey(s.getEmail());
+                    Claim claim = claims.get(email);
+                    if (claim == null) {
+                        oneByOne.add(i); // запись успели освободить
+                    } else if (claim.studentId == s.getId()) {
+                        claimed[i] = claim.claimedAt.equals(now) && claimedHere.add(email);
+                    } else if (System.currentTimeMillis() - claim.claimedAt.getTime() < CLAIM_GRACE_MS) {
+                        rejected[i] = "Email '" + s.getEmail() + "' уже используется.";
+                    } else {
+                        oneByOne.add(i); // возможно, брошенная запись - проверит claimEmail
+                    }
+                }
+            }
+        }
+        for (int i : oneByOne) {
+            Student s = rows.get(i);
+            try {
+                claimed[i] = claimEmail(s.getEmail(), s.getId());
+            } catch (DuplicateStudentException e) {
+                rejected[i] = e.getMessage();
+            }
+        }
+        int count = 0;
+        for (int i : indexes) {
+            if (claimed[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Вставляет записи справочника email -> Id; уже занятые email остаются как были. */
+    private static void insertClaims(Connection conn, Map<String, Integer> owners, Timestamp claimedAt)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(CLAIM_ALL_SQL_PREFIX);
+        for (int i = 0; i < owners.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        sql.append(CLAIM_ALL_SQL_SUFFIX);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Map.Entry<String, Integer> e : owners.entrySet()) {
+                pstmt.setString(p++, e.getKey());
+                pstmt.setInt(p++, e.getValue());
+                pstmt.setTimestamp(p++, claimedAt);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void mergeBatchResults(List<ShardBatch> batches, List<BatchResult> shardResults,
+                                   BatchResult result) {
+        for (int shard = 0; shard < batches.size(); shard++) {
+            ShardBatch batch = batches.get(shard);
+            BatchResult shardResult = shardResults.get(shard);
+            result.addWritten(shardResult.getWritten());
+            for (BatchResult.Rejection r : shardResult.getRejections()) {
+                // Номер строки в шарде -> номер во входных данных; занятый для нее email освобождается
+                result.reject(batch.indexes.get(r.getIndex()), r.getStudent(), r.getReason());
+                if (batch.claimed.get(r.getIndex())) {
+                    Student s = batch.rows.get(r.getIndex());
+                    releaseQuietly(emailKey(s.getEmail()), s.getId());
+                }
+            }
+        }
+    }
+
+    // --- Чтение ---
+
+    @Override
+    public boolean isEmailExists(String email) throws SQLException {
+        return getStudentByEmail(email) != null;
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherId(String email, int id) throws SQLException {
+        Student owner = getStudentByEmail(email);
+        return owner != null && owner.getId() != id;
+    }
+
+    @Override
+    public List<Student> getAllStudents() throws SQLException {
+        return merge(scatter(shard -> shards.get(shard).getAllStudents()), BY_ID, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int forEachStudent(Consumer<Student> action) throws SQLException {
+        int count = 0;
+        try (Stream<Student> students = streamAllStudents()) {
+            Iterator<Student> it = students.iterator();
+            while (it.hasNext()) {
+                action.accept(it.next());
+                count++;
+            }
+        } catch (IllegalStateException e) {
+            // Ошибку чтения шарда поток передает как IllegalStateException
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+        return count;
+    }
+
+    /**
+     * Потоковое слияние: с каждого шарда читается свой поток по возрастанию Id,
+     * в памяти - по одной текущей записи на шард.
+     */
+    @Override
+    public Stream<Student> streamAllStudents() throws SQLException {
+        List<Stream<Student>> streams = new ArrayList<>(shards.size());
+        List<Iterator<Student>> iterators = new ArrayList<>(shards.size());
+        try {
+            for (StudentDAO shard : shards) {
+                Stream<Student> s = shard.streamAllStudents();
+                streams.add(s);
+                iterators.add(s.iterator());
+            }
+        } catch (SQLException | RuntimeException e) {
+            closeAll(streams);
+            throw e;
+        }
+        Iterator<Student> merged = new MergingIterator<>(iterators, BY_ID);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeAll(streams));
+    }
+
+    private static void closeAll(List<Stream<Student>> streams) {
+        for (Stream<Student> s : streams) {
+            try {
+                s.close();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Не удалось закрыть поток чтения шарда", e);
+            }
+        }
+    }
+
+    @Override
+    public List<Student> getStudentsAfterId(int lastId, int limit) throws SQLException {
+        return merge(scatter(shard -> shards.get(shard).getStudentsAfterId(lastId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public Student getStudentById(int id) throws SQLException {
+        return shardFor(id).getStudentById(id);
+    }
+
+    /** Поиск через справочник: один запрос на шард email и один - на шард владельца. */
+    @Override
+    public Student getStudentByEmail(String email) throws SQLException {
+        if (email == null) {
+            return null;
+        }
+        Claim claim = readClaim(emailKey(email));
+        if (claim == null) {
+            return null;
+        }
+        Student owner = getStudentById(claim.studentId);
+        return owner != null && email.equalsIgnoreCase(owner.getEmail()) ? owner : null;
+    }
+
+    @Override
+    public Map<Integer, Student> getStudentsByIds(Collection<Integer> ids) throws SQLException {
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinct.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        List<List<Integer>> byShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Integer id : distinct) {
+            byShard.get(shardMap.shardOf(id)).add(id);
+        }
+        List<Map<Integer, Student>> parts = scatter(shard -> byShard.get(shard).isEmpty()
+                ? Map.of() : shards.get(shard).getStudentsByIds(byShard.get(shard)));
+
+        Map<Integer, Student> found = new HashMap<>();
+        for (Map<Integer, Student> part : parts) {
+            found.putAll(part);
+        }
+        Map<Integer, Student> result = new LinkedHashMap<>();
+        for (Integer id : distinct) {
+            Student s = found.get(id);
+            if (s != null) {
+                result.put(id, s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Владельцы email ищутся в справочнике (по запросу на каждый шард, где лежат эти email),
+     * затем студенты читаются одним getStudentsByIds. Ключи - email в том виде, в каком переданы.
+     */
+    @Override
+    public Map<String, Student> getStudentsByEmails(Collection<String> emails) throws SQLException {
+        Map<String, String> requested = new LinkedHashMap<>();
+        for (String email : emails) {
+            if (email != null) {
+                requested.putIfAbsent(emailKey(email), email);
+            }
+        }
+        if (requested.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        List<List<String>> byShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (String key : requested.keySet()) {
+            byShard.get(shardMap.shardOfEmail(key)).add(key);
+        }
+        List<Map<String, Claim>> parts = scatter(shard -> {
+            if (byShard.get(shard).isEmpty()) {
+                return Map.of();
+            }
+            try (Connection conn = pools.get(shard).getConnection()) {
+                return readClaims(conn, byShard.get(shard));
+            }
+        });
+
+        Map<String, Integer> owners = new HashMap<>();
+        for (Map<String, Claim> part : parts) {
+            for (Map.Entry<String, Claim> e : part.entrySet()) {
+                owners.put(e.getKey(), e.getValue().studentId);
+            }
+        }
+        Map<Integer, Student> students = getStudentsByIds(owners.values());
+
+        Map<String, Student> result = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : requested.entrySet()) {
+            Integer ownerId = owners.get(e.getKey());
+            Student s = ownerId != null ? students.get(ownerId) : null;
+            // Брошенная запись справочника: владелец уже с другим email
+            if (s != null && e.getKey().equals(emailKey(s.getEmail()))) {
+                result.put(e.getValue(), s);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Student> searchByName(String query) throws SQLException {
+        List<Student> result = new ArrayList<>();
+        for (List<Student> part : scatter(shard -> shards.get(shard).searchByName(query))) {
+            result.addAll(part);
+        }
+        result.sort(BY_ID);
+        return result;
+    }
+
+    /** Каждый шард отдает до limit лучших совпадений; слияние - по рангу, затем по Id. */
+    @Override
+    public List<Student> searchByName(String query, int limit) throws SQLException {
+        String q = query.trim();
+        Comparator<Student> order = Comparator.<Student>comparingInt(s -> rank(s.getName(), s.getSurname(), q))
+                .thenComparingInt(Student::getId);
+        return merge(scatter(shard -> shards.get(shard).searchByName(query, limit)), order, limit);
+    }
+
+    @Override
+    public List<StudentSummary> searchSummariesByName(String query, int limit) throws SQLException {
+        String q = query.trim();
+        Comparator<StudentSummary> order = Comparator
+                .<StudentSummary>comparingInt(s -> rank(s.getName(), s.getSurname(), q))
+                .thenComparingInt(StudentSummary::getId);
+        return merge(scatter(shard -> shards.get(shard).searchSummariesByName(query, limit)), order, limit);
+    }
+
+    // Ранг совпадения, как NAME_RANK_ORDER в StudentDAO: 0 - полное, 1 - начало, 2 - вхождение
+    private static int rank(String name, String surname, String q) {
+        if (q.equalsIgnoreCase(name) || q.equalsIgnoreCase(surname)) {
+            return 0;
+        }
+        if (startsWithIgnoreCase(name, q) || startsWithIgnoreCase(surname, q)) {
+            return 1;
+        }
+        return 2;
+    }
+
+    private static boolean startsWithIgnoreCase(String value, String prefix) {
+        return value != null && value.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    @Override
+    public List<Student> filterByAge(int age) throws SQLException {
+        return findStudents(new StudentQuery().ageEquals(age));
+    }
+
+    @Override
+    public List<Student> filterByAgeRange(int minAge, int maxAge) throws SQLException {
+        return findStudents(new StudentQuery().ageBetween(minAge, maxAge));
+    }
+
+    /**
+     * Каждый шард выполняет запрос без offset и с limit = offset + limit;
+     * страница вырезается из слитого результата.
+     */
+    @Override
+    public List<Student> findStudents(StudentQuery query) throws SQLException {
+        StudentQuery shardQuery = query.forShard();
+        List<Student> merged = merge(scatter(shard -> shards.get(shard).findStudents(shardQuery)),
+                query.comparator(), Integer.MAX_VALUE);
+        int from = Math.min(query.getOffset(), merged.size());
+        int to = query.getLimit() >= 0 ? Math.min(merged.size(), from + query.getLimit()) : merged.size();
+        return new ArrayList<>(merged.subList(from, to));
+    }
+
+    // --- Обновление и удаление ---
+
+    /**
+     * Обновляет студента на его шарде. Шард читает текущую строку и перед записью вызывает
+     * проверку, которая при смене email занимает новый; старый освобождается после записи.
+     * Строка записывается, только если не изменилась после чтения, - отдельного запроса
+     * getStudentById не нужно.
+     */
+    @Override
+    public boolean updateStudent(Student student) throws SQLException {
+        int id = student.getId();
+        String newEmail = emailKey(student.getEmail());
+        // Проверка может вызываться повторно, если строку изменили между чтением и записью
+        String[] oldEmail = new String[1];
+        boolean[] claimed = new boolean[1];
+        StudentDAO.BeforeWrite claimNewEmail = current -> {
+            oldEmail[0] = emailKey(current.getEmail());
+            if (!claimed[0] && !oldEmail[0].equals(newEmail)) {
+                claimed[0] = claimEmail(student.getEmail(), id);
+            }
+        };
+
+        boolean updated;
+        try {
+            updated = shardFor(id).update(student, claimNewEmail);
+        } catch (SQLException | RuntimeException e) {
+            if (claimed[0]) {
+                releaseQuietly(newEmail, id);
+            }
+            throw e;
+        }
+        if (!updated && claimed[0]) {
+            releaseQuietly(newEmail, id);
+        }
+        if (updated && oldEmail[0] != null && !oldEmail[0].equals(newEmail)) {
+            releaseQuietly(oldEmail[0], id);
+        }
+        return updated;
+    }
+
+    /** Удаляет студента; шард возвращает удаленную строку, по ней освобождается email. */
+    @Override
+    public boolean deleteStudent(int id) throws SQLException {
+        Student deleted = shardFor(id).delete(id);
+        if (deleted != null) {
+            releaseQuietly(emailKey(deleted.getEmail()), id);
+        }
+        return deleted != null;
+    }
+
+    @Override
+    public int deleteAllStudents() throws SQLException {
+        List<Integer> counts = scatter(shard -> {
+            int count = shards.get(shard).deleteAllStudents();
+            try (Connection conn = pools.get(shard).getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(CLEAR_DIRECTORY_SQL)) {
+                pstmt.executeUpdate();
+            }
+            return count;
+        });
+        listeners.fireAllDeleted();
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // --- Email-справочник ---
+
+    private static String emailKey(String email) {
+        return email == null ? "" : email.toLowerCase(Locale.ROOT);
+    }
+
+    private StudentDAO shardFor(int id) {
+        return shards.get(shardMap.shardOf(id));
+    }
+
+    /** Запись справочника: владелец и время, когда email был занят. */
+    private static class Claim {
+        final int studentId;
+        final Timestamp claimedAt;
+
+        Claim(int studentId, Timestamp claimedAt) {
+            this.studentId = studentId;
+            this.claimedAt = claimedAt;
+        }
+    }
+
+    /**
+     * Занимает email (без учета регистра) для студента id. Возвращает true, если email занят этим вызовом
+     * (при неудаче записи его нужно освободить), false - если он уже принадлежал id.
+     * Email действующего другого студента - DuplicateStudentException. Если запись справочника
+     * успевают освободить или захватить между вставкой и чтением, попытка повторяется,
+     * но не больше MAX_CLAIM_ATTEMPTS раз.
+     */
+    private boolean claimEmail(String address, int id) throws SQLException {
+        String email = emailKey(address);
+        ConnectionPool pool = pools.get(shardMap.shardOfEmail(email));
+        try (Connection conn = pool.getConnection()) {
+            for (int attempt = 1; attempt <= MAX_CLAIM_ATTEMPTS; attempt++) {
+                if (insertClaim(conn, email, id)) {
+                    return true;
+                }
+                Claim claim = readClaim(conn, email);
+                if (claim == null) {
+                    continue; // запись успели освободить - пробуем еще раз
+                }
+                if (claim.studentId == id) {
+                    return false;
+                }
+                if (!isAbandoned(claim, email)) {
+                    throw new DuplicateStudentException("Email '" + address + "' уже используется.",
+                            DuplicateStudentException.Field.EMAIL);
+                }
+                if (takeOver(conn, email, claim, id)) {
+                    return true;
+                }
+                // Брошенную запись успели захватить или освободить - начинаем заново
+            }
+        }
+        throw new SQLException("Не удалось занять email '" + address + "' для студента с ID " + id
+                + ": запись справочника непрерывно меняется другими запросами (" + MAX_CLAIM_ATTEMPTS
+                + " попыток).", StaleStudentException.CONFLICT_STATE);
+    }
+
+    /** Вставляет запись справочника; false - ее успели создать другим запросом. */
+    private static boolean insertClaim(Connection conn, String email, int id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(CLAIM_SQL)) {
+            pstmt.setString(1, email);
+            pstmt.setInt(2, id);
+            pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            if (!DuplicateStudentException.isIntegrityViolation(e)) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    // Владельца нет или у него другой email, и запись старше CLAIM_GRACE_MS
+    private boolean isAbandoned(Claim claim, String email) throws SQLException {
+        if (System.currentTimeMillis() - claim.claimedAt.getTime() < CLAIM_GRACE_MS) {
+            return false;
+        }
+        Student owner = getStudentById(claim.studentId);
+        return owner == null || !email.equals(emailKey(owner.getEmail()));
+    }
+
+    private static boolean takeOver(Connection conn, String email, Claim claim, int id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(TAKEOVER_SQL)) {
+            pstmt.setInt(1, id);
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            pstmt.setString(3, email);
+            pstmt.setInt(4, claim.studentId);
+            pstmt.setTimestamp(5, claim.claimedAt);
+            return pstmt.executeUpdate() == 1;
+        }
+    }
+
+    private Claim readClaim(String email) throws SQLException {
+        try (Connection conn = pools.get(shardMap.shardOfEmail(email)).getConnection()) {
+            return readClaim(conn, email);
+        }
+    }
+
+    private static Claim readClaim(Connection conn, String email) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(OWNER_SQL)) {
+            pstmt.setString(1, email);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new Claim(rs.getInt(1), rs.getTimestamp(2)) : null;
+            }
+        }
+    }
+
+    /** Записи справочника для emails (одного шарда) запросами IN (...) по MAX_IN_LIST_SIZE. */
+    private static Map<String, Claim> readClaims(Connection conn, List<String> emails) throws SQLException {
+        Map<String, Claim> claims = new HashMap<>();
+        for (int from = 0; from < emails.size(); from += StudentDAO.MAX_IN_LIST_SIZE) {
+            List<String> chunk = emails.subList(from, Math.min(from + StudentDAO.MAX_IN_LIST_SIZE, emails.size()));
+            StringBuilder sql = new StringBuilder("SELECT Email, StudentId, ClaimedAt FROM ")
+                    .append(SchemaInitializer.EMAIL_DIRECTORY_TABLE).append(" WHERE Email IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        claims.put(rs.getString(1), new Claim(rs.getInt(2), rs.getTimestamp(3)));
+                    }
+                }
+            }
+        }
+        return claims;
+    }
+
+    private void release(String email, int id) throws SQLException {
+        try (Connection conn = pools.get(shardMap.shardOfEmail(email)).getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(RELEASE_SQL)) {
+            pstmt.setString(1, email);
+            pstmt.setInt(2, id);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Неосвобожденная запись не мешает работе: через CLAIM_GRACE_MS ее можно будет захватить
+    private void releaseQuietly(String email, int id) {
+        try {
+            release(email, id);
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Не удалось освободить email '" + email + "'", e);
+        }
+    }
+
+    // --- Параллельные запросы и слияние ---
+
+    private static final Comparator<Student> BY_ID = Comparator.comparingInt(Student::getId);
+
+    /** Запрос к одному шарду по его номеру. */
+    private interface ShardCall<T> {
+        T call(int shard) throws SQLException;
+    }
+
+    /** Выполняет call на всех шардах параллельно; результаты - в порядке шардов. */
+    private <T> List<T> scatter(ShardCall<T> call) throws SQLException {
+        if (shards.size() == 1) {
+            return List.of(call.call(0));
+        }
+        List<Callable<T>> tasks = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            tasks.add(() -> call.call(shard));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> f : executor.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Запрос к шардам прерван.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Ошибка запроса к шарду: " + cause, cause);
+        }
+        return results;
+    }
+
+    /** K-путевое слияние отсортированных списков; не больше limit элементов. */
+    private static <T> List<T> merge(List<? extends List<T>> parts, Comparator<? super T> order, int limit) {
+        List<Iterator<T>> iterators = new ArrayList<>(parts.size());
+        int total = 0;
+        for (List<T> part : parts) {
+            iterators.add(part.iterator());
+            total += part.size();
+        }
+        List<T> result = new ArrayList<>(Math.min(total, limit));
+        Iterator<T> merged = new MergingIterator<>(iterators, order);
+        while (merged.hasNext() && result.size() < limit) {
+            result.add(merged.next());
+        }
+        return result;
+    }
+
+    /** Слияние отсортированных источников: очередь с приоритетом по текущему элементу каждого. */
+    private static class MergingIterator<T> implements Iterator<T> {
+        private final PriorityQueue<Head<T>> heads;
+
+        MergingIterator(List<Iterator<T>> sources, Comparator<? super T> order) {
+            heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value, b.value));
+            for (Iterator<T> source : sources) {
+                if (source.hasNext()) {
+                    heads.add(new Head<>(source.next(), source));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            T value = head.value;
+            if (head.source.hasNext()) {
+                head.value = head.source.next();
+                heads.add(head);
+            }
+            return value;
+        }
+    }
+
+    private static class Head<T> {
+        T value;
+        final Iterator<T> source;
+
+        Head(T value, Iterator<T> source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
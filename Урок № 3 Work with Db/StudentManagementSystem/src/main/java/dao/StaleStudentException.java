@@ -0,0 +1,36 @@
+package dao;
+
+import java.sql.SQLException;
+
+/**
+ * Конфликт оптимистической блокировки: студента изменили после того, как он был прочитан
+ * (версия в базе уже не та, что в объекте). Запись не выполнена - нужно перечитать
+ * студента и повторить изменение поверх актуальных данных.
+ */
+public class StaleStudentException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    // SQLState "serialization failure": транзакция не применена из-за параллельного изменения
+    static final String CONFLICT_STATE = "40001";
+
+    private final int studentId;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    StaleStudentException(int studentId, long expectedVersion, long actualVersion) {
+        super("Студент с ID " + studentId + " был изменен другим пользователем (версия "
+                + expectedVersion + ", текущая " + actualVersion + ").", CONFLICT_STATE);
+        this.studentId = studentId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public int getStudentId() { return studentId; }
+
+    /** Версия, с которой был прочитан студент. */
+    public long getExpectedVersion() { return expectedVersion; }
+
+    /** Версия в хранилище на момент конфликта. */
+    public long getActualVersion() { return actualVersion; }
+}
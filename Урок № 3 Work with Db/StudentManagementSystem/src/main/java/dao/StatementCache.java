@@ -0,0 +1,251 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш подготовленных запросов одного физического соединения пула.
+ * prepareStatement(sql) с уже встречавшимся текстом возвращает ранее подготовленный
+ * PreparedStatement; его close() только сбрасывает параметры и возвращает запрос в кэш.
+ * С useServerPrepStmts=true запрос остается подготовленным и на стороне MySQL.
+ *
+ * Кэшируются только зарегистрированные в пуле постоянные запросы (ConnectionPool.registerStatements),
+ * в том числе формы StudentQuery - их число ограничено, и StudentDAO регистрирует каждую при
+ * первой встрече. Запросы, собранные на лету без ограничения форм (списки IN произвольной длины),
+ * готовятся обычным образом и закрываются вызывающим кодом: иначе каждая новая форма вытесняла бы
+ * из кэша постоянные запросы, а на сервере копились бы подготовленные запросы.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    // Тексты, которые разрешено кэшировать (общий набор пула, пополняется при регистрации)
+    private final Set<String> cacheable;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    // Текст SQL -> подготовленный запрос; порядок доступа для вытеснения (LRU)
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, Set<String> cacheable, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.cacheable = cacheable;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Выдает подготовленный запрос для sql. owner - соединение, которое видит вызывающий код
+     * (его возвращает getConnection() у запроса).
+     */
+    synchronized PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        if (!cacheable.contains(sql)) {
+            return physical.prepareStatement(sql);
+        }
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+            return entry.checkOut(owner);
+        }
+        misses.incrementAndGet();
+        if (entry != null) {
+            // Тот же запрос уже выдан и не закрыт (вложенное использование) - даем обычный, без кэша
+            return physical.prepareStatement(sql);
+        }
+
+        entry = new Entry(sql, physical.prepareStatement(sql));
+        entries.put(sql, entry);
+        evictIfNeeded();
+        return entry.checkOut(owner);
+    }
+
+    /**
+     * Заранее готовит запрос (при создании соединения). Ошибки игнорируются -
+     * запрос будет подготовлен при первом использовании.
+     */
+    synchronized void warmUp(String sql) {
+        if (entries.containsKey(sql) || entries.size() >= maxSize) {
+            return;
+        }
+        try {
+            entries.put(sql, new Entry(sql, physical.prepareStatement(sql)));
+        } catch (SQLException ignored) {
+            // например, таблицы еще нет
+        }
+    }
+
+    /**
+     * Соединение вернулось в пул: все выданные запросы снова считаются свободными.
+     */
+    synchronized void releaseAll() {
+        for (Entry e : entries.values()) {
+            if (e.inUse) {
+                e.inUse = false;
+                try {
+                    reset(e);
+                } catch (SQLException ignored) {
+                    // будет обнаружено при следующем использовании
+                }
+            }
+        }
+    }
+
+    synchronized void closeAll() {
+        for (Entry e : entries.values()) {
+            closeQuietly(e.statement);
+        }
+        entries.clear();
+    }
+
+    private synchronized void release(Entry entry, long checkout) {
+        if (entry.checkout != checkout || !entry.inUse) {
+            return; // запрос уже освобожден вместе с соединением и, возможно, выдан заново
+        }
+        entry.inUse = false;
+        try {
+            reset(entry);
+        } catch (SQLException e) {
+            entries.remove(entry.sql, entry);
+            closeQuietly(entry.statement);
+            return;
+        }
+        if (entries.get(entry.sql) != entry) {
+            // Вытеснен из кэша, пока был выдан
+            closeQuietly(entry.statement);
+        }
+    }
+
+    // Следующий получатель запроса должен увидеть его в исходном состоянии
+    private static void reset(Entry entry) throws SQLException {
+        PreparedStatement statement = entry.statement;
+        statement.clearParameters();
+        statement.clearBatch();
+        if (entry.settingsChanged) {
+            // Сначала maxRows: некоторые драйверы не принимают fetchSize больше maxRows
+            statement.setMaxRows(entry.defaultMaxRows);
+            statement.setFetchSize(entry.defaultFetchSize);
+            statement.setQueryTimeout(entry.defaultQueryTimeout);
+            entry.settingsChanged = false;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry e = it.next().getValue();
+            it.remove();
+            if (!e.inUse) {
+                closeQuietly(e.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // запрос больше не нужен
+        }
+    }
+
+    private class Entry {
+        final String sql;
+        final PreparedStatement statement;
+        final int defaultFetchSize;
+        final int defaultMaxRows;
+        final int defaultQueryTimeout;
+        boolean inUse;
+        long checkout; // номер выдачи: устаревший Handle не должен освободить чужую выдачу
+        // Получатель менял fetchSize, maxRows или таймаут - при возврате их нужно сбросить
+        boolean settingsChanged;
+
+        Entry(String sql, PreparedStatement statement) throws SQLException {
+            this.sql = sql;
+            this.statement = statement;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultMaxRows = statement.getMaxRows();
+            this.defaultQueryTimeout = statement.getQueryTimeout();
+        }
+
+        PreparedStatement checkOut(Connection owner) {
+            inUse = true;
+            checkout++;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Handle(this, checkout, owner));
+        }
+    }
+
+    /**
+     * Выданный из кэша запрос: close() возвращает его в кэш, повторный close() ничего не делает.
+     */
+    private class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final long checkout;
+        private final Connection owner;
+        private boolean closed;
+
+        Handle(Entry entry, long checkout, Connection owner) {
+            this.entry = entry;
+            this.checkout = checkout;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry, checkout);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "setFetchSize":
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setQueryTimeout":
+                    if (!closed) {
+                        synchronized (StatementCache.this) {
+                            entry.settingsChanged = true;
+                        }
+                    }
+                    return invokeStatement(method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.sql + "]";
+                default:
+                    return invokeStatement(method, args);
+            }
+        }
+
+        private Object invokeStatement(Method method, Object[] args) throws Throwable {
+            if (closed) {
+                throw new SQLException("Запрос уже закрыт.");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
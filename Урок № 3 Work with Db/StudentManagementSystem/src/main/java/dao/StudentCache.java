@@ -0,0 +1,304 @@
+package dao;
+
+import model.Student;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный кэш студентов в памяти процесса с двумя индексами: по Id и по Email.
+ * Вытесняет давно не использованные записи (LRU) при превышении размера
+ * и записи старше TTL. Хранит и отдает копии, т.к. Student изменяемый.
+ *
+ * Записи разбиты на SEGMENTS сегментов по Id, у каждого своя блокировка и свой LRU
+ * (размер - доля maxSize), поэтому обращения к разным студентам не ждут друг друга.
+ * Индекс email -> Id общий и неблокирующий; запись по email проверяется по самой записи.
+ *
+ * Загрузка, начатая до инвалидации студента, не кладет его в кэш: beginLoad выдает отметку
+ * времени кэша, invalidate(id) запоминает отметку инвалидации этого Id, и put сравнивает их.
+ * Инвалидация одного студента не мешает загрузкам остальных.
+ */
+public class StudentCache {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    // Сколько последних инвалидаций помнит сегмент; более старые учитываются одной отметкой
+    private static final int MAX_INVALIDATIONS = 1024;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<String, Integer> idByEmail = new ConcurrentHashMap<>();
+
+    // Часы кэша: отметки beginLoad и инвалидаций
+    private final AtomicLong clock = new AtomicLong();
+    // Отметка последней invalidateAll: загрузки, начатые до нее, в кэш не попадают
+    private volatile long clearedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public StudentCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Размер и TTL кэша должны быть положительными.");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        int segmentSize = (maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public Student getById(int id) {
+        Student student = segmentFor(id).get(id, null);
+        (student != null ? hits : misses).increment();
+        return student;
+    }
+
+    public Student getByEmail(String email) {
+        Integer id = email != null ? idByEmail.get(emailKey(email)) : null;
+        // Email мог уже перейти к другому студенту - запись проверяется по ее собственному email
+        Student student = id != null ? segmentFor(id).get(id, emailKey(email)) : null;
+        (student != null ? hits : misses).increment();
+        return student;
+    }
+
+    /**
+     * Отметка перед чтением из БД; передается затем в put.
+     */
+    public long beginLoad() {
+        return clock.get();
+    }
+
+    /**
+     * Кладет студента в кэш, если с момента beginLoad его не инвалидировали.
+     * Более старая версия строки, чем уже лежащая в кэше, его не заменяет
+     * (например, чтение с отстающей реплики).
+     */
+    public void put(Student student, long loadStamp) {
+        if (student == null || loadStamp < clearedAt) {
+            return;
+        }
+        Student copy = new Student(student);
+        if (!segmentFor(copy.getId()).put(copy, loadStamp)) {
+            return;
+        }
+        // Email мог перейти от другого студента (тот изменил email) - убираем чужую запись
+        if (copy.getEmail() != null) {
+            String key = emailKey(copy.getEmail());
+            Integer previousOwner = idByEmail.put(key, copy.getId());
+            if (previousOwner != null && previousOwner != copy.getId()) {
+                segmentFor(previousOwner).removeIfEmail(previousOwner, key);
+            }
+        }
+    }
+
+    /**
+     * Удаляет запись студента вместе с ее email из обоих индексов.
+     */
+    public void invalidate(int id) {
+        segmentFor(id).invalidate(id);
+    }
+
+    public void invalidateAll() {
+        clearedAt = clock.incrementAndGet();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentFor(int id) {
+        // Старшие биты хеша, как у полос InMemoryStudentRepository
+        return segments[(id * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private static String emailKey(String email) {
+        // В MySQL сравнение email регистронезависимое - повторяем это в кэше
+        return email.toLowerCase();
+    }
+
+    public Stats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return new Stats(size, maxSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    /** Часть кэша: свой LRU и свои отметки инвалидаций, все под блокировкой сегмента. */
+    private final class Segment {
+        private final int maxSize;
+        // Записи в порядке доступа (для LRU)
+        private final LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<>(16, 0.75f, true);
+        // Id -> отметка его последней инвалидации; вытесненные отметки поднимают invalidatedFloor
+        private final LinkedHashMap<Integer, Long> invalidations = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+                if (size() > MAX_INVALIDATIONS) {
+                    invalidatedFloor = Math.max(invalidatedFloor, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        private long invalidatedFloor;
+
+        Segment(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        // emailKey != null - запись нужна, только если у нее этот email
+        synchronized Student get(int id, String emailKey) {
+            Entry entry = byId.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.currentTimeMillis())) {
+                removeEntry(id, entry);
+                expirations.increment();
+                return null;
+            }
+            if (emailKey != null && !emailKey.equals(entry.emailKey)) {
+                return null;
+            }
+            return new Student(entry.student);
+        }
+
+        synchronized boolean put(Student student, long loadStamp) {
+            int id = student.getId();
+            Long invalidatedAt = invalidations.get(id);
+            if (loadStamp < (invalidatedAt != null ? invalidatedAt : invalidatedFloor)) {
+                return false; // студента инвалидировали после начала загрузки
+            }
+            Entry old = byId.get(id);
+            if (old != null) {
+                if (Tombstones.isOlder(student.getVersion(), old.student.getVersion())) {
+                    return false;
+                }
+                removeEntry(id, old);
+            }
+            byId.put(id, new Entry(student, System.currentTimeMillis() + ttlMillis));
+            evictIfNeeded();
+            return true;
+        }
+
+        synchronized void invalidate(int id) {
+            // Отметка берется под блокировкой: put этого сегмента увидит ее или будет до нее
+            long stamp = clock.incrementAndGet();
+            invalidations.remove(id);
+            invalidations.put(id, stamp);
+            removeEntry(id, byId.get(id));
+        }
+
+        synchronized void removeIfEmail(int id, String emailKey) {
+            Entry entry = byId.get(id);
+            if (entry != null && emailKey.equals(entry.emailKey)) {
+                byId.remove(id);
+            }
+        }
+
+        synchronized void clear() {
+            for (Map.Entry<Integer, Entry> e : byId.entrySet()) {
+                removeEmail(e.getKey(), e.getValue());
+            }
+            // Отметки инвалидаций остаются: инвалидация, прошедшая во время invalidateAll,
+            // должна отклонить и загрузки, начатые после clearedAt
+            byId.clear();
+        }
+
+        synchronized int size() {
+            return byId.size();
+        }
+
+        private void evictIfNeeded() {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<Integer, Entry>> it = byId.entrySet().iterator();
+            // Сначала самые давно использованные
+            while (byId.size() > maxSize && it.hasNext()) {
+                Map.Entry<Integer, Entry> e = it.next();
+                it.remove();
+                removeEmail(e.getKey(), e.getValue());
+                if (e.getValue().isExpired(now)) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+
+        private void removeEntry(int id, Entry entry) {
+            if (entry == null) {
+                return;
+            }
+            byId.remove(id);
+            removeEmail(id, entry);
+        }
+
+        private void removeEmail(int id, Entry entry) {
+            if (entry.emailKey != null) {
+                // Удаляем, только если email все еще указывает на этого студента
+                idByEmail.remove(entry.emailKey, id);
+            }
+        }
+    }
+
+    /** Снимок счетчиков кэша. */
+    public static class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        Stats(int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getSize() { return size; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Кэш: %d/%d записей | попаданий %d | промахов %d (%.1f%% попаданий)"
+                            + " | вытеснено %d | устарело %d",
+                    size, maxSize, hits, misses, getHitRate() * 100, evictions, expirations);
+        }
+    }
+
+    private static class Entry {
+        final Student student;
+        final String emailKey;
+        final long expiresAt;
+
+        Entry(Student student, long expiresAt) {
+            this.student = student;
+            this.emailKey = student.getEmail() != null ? emailKey(student.getEmail()) : null;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
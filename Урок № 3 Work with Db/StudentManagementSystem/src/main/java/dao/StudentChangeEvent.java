@@ -0,0 +1,66 @@
+package dao;
+
+import model.Student;
+
+/**
+ * Событие изменения студентов с номером версии.
+ * Версии одного источника (StudentChangePublisher или таблицы StudentChanges) строго
+ * возрастают; у издателя в памяти они идут подряд, поэтому пропуск версии означает
+ * потерянные события.
+ */
+public class StudentChangeEvent {
+
+    public enum Type {
+        /** Студент добавлен или обновлен; getStudent() - новое состояние. */
+        SAVED,
+        /** Студент удален. */
+        DELETED,
+        /** Удалены все студенты; getStudentId() не используется. */
+        ALL_DELETED
+    }
+
+    private final long version;
+    private final Type type;
+    private final int studentId;
+    private final Student student;
+    private final long rowVersion;
+    private final long timestampMillis;
+
+    StudentChangeEvent(long version, Type type, int studentId, Student student, long rowVersion,
+                       long timestampMillis) {
+        this.version = version;
+        this.type = type;
+        this.studentId = studentId;
+        this.student = student != null ? new Student(student) : null;
+        this.rowVersion = rowVersion;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public long getVersion() { return version; }
+    public Type getType() { return type; }
+    public int getStudentId() { return studentId; }
+
+    /**
+     * Версия строки студента (Students.Version): для SAVED - сохраненной, для DELETED - удаленной;
+     * 0 - неизвестна. В отличие от getVersion(), задает порядок изменений одного студента.
+     */
+    public long getRowVersion() { return rowVersion; }
+    public long getTimestampMillis() { return timestampMillis; }
+
+    /** Состояние студента для SAVED (копия), иначе null. */
+    public Student getStudent() {
+        return student != null ? new Student(student) : null;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case SAVED:
+                return "#" + version + " Сохранен: " + student;
+            case DELETED:
+                return "#" + version + " Удален студент с ID " + studentId;
+            default:
+                return "#" + version + " Удалены все студенты";
+        }
+    }
+}
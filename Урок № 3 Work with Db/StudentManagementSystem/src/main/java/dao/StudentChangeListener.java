@@ -0,0 +1,38 @@
+package dao;
+
+import model.Student;
+
+/**
+ * Получает уведомления об успешных изменениях студентов,
+ * сделанных через хранилище (StudentDAO или другой StudentRepository). Вызывается после фиксации изменений,
+ * в потоке, который выполнял запись.
+ *
+ * Уведомления о параллельных записях одного студента могут прийти не в том порядке,
+ * в котором записи зафиксированы. Поэтому каждое уведомление несет версию строки (Version):
+ * подписчик, который хранит состояние, должен пропускать уведомление с версией меньше
+ * уже учтенной. Версия новой строки - 1, каждое изменение увеличивает ее на единицу.
+ * Добавление новой строки приходит отдельным уведомлением (onStudentCreated): строка,
+ * удаленная и добавленная заново с тем же Id, снова начинается с версии 1.
+ */
+public interface StudentChangeListener {
+
+    /**
+     * Студент добавлен или обновлен; передается состояние записи, student.getVersion() - ее версия
+     * (0 - неизвестна: обновление без проверки версии).
+     */
+    void onStudentSaved(Student student);
+
+    /**
+     * Добавлена новая строка студента (addStudent, добавление или вставка в пакете);
+     * по умолчанию обрабатывается как onStudentSaved.
+     */
+    default void onStudentCreated(Student student) {
+        onStudentSaved(student);
+    }
+
+    /** Студент с данным Id удален; version - версия удаленной строки (0 - неизвестна). */
+    void onStudentDeleted(int id, long version);
+
+    /** Удалены все студенты. */
+    void onAllStudentsDeleted();
+}
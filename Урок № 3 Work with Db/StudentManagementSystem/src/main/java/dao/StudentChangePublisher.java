@@ -0,0 +1,126 @@
+package dao;
+
+import model.Student;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поток изменений хранилища для подписчиков в том же процессе (индексы, кэши, отчеты)
+ * вместо периодического опроса getAllStudents().
+ * Подписывается на StudentRepository и публикует StudentChangeEvent с версиями 1, 2, 3...
+ * в порядке уведомлений от хранилища; подписчики - обычные Flow.Subscriber.
+ *
+ * Обратное давление: у каждого подписчика буфер bufferSize событий, подписчик сам
+ * запрашивает следующие через request(n). Если буфер полон, запись в хранилище ждет
+ * до maxWaitMillis, после чего событие для отставшего подписчика отбрасывается
+ * (счетчик dropped, а у подписчика - пропуск версии). Такой подписчик должен
+ * перечитать данные или дочитать изменения из таблицы StudentChanges (StudentOutbox).
+ */
+public class StudentChangePublisher implements StudentChangeListener, AutoCloseable {
+
+    private static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+    private static final long DEFAULT_MAX_WAIT_MS = 1_000;
+
+    private final StudentRepository repository;
+    private final ExecutorService executor;
+    private final SubmissionPublisher<StudentChangeEvent> publisher;
+    private final long maxWaitMillis;
+
+    // Номер версии выдается и событие отправляется под одной блокировкой - порядок совпадает
+    private final Object publishLock = new Object();
+    private long version;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public StudentChangePublisher(StudentRepository repository) {
+        this(repository, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_WAIT_MS);
+    }
+
+    public StudentChangePublisher(StudentRepository repository, int bufferSize, long maxWaitMillis) {
+        this.repository = repository;
+        this.maxWaitMillis = maxWaitMillis;
+        // Свои потоки доставки: медленный подписчик не должен занимать общий ForkJoinPool
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "student-changes-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.publisher = new SubmissionPublisher<>(executor, bufferSize);
+        repository.addChangeListener(this);
+    }
+
+    public void subscribe(Flow.Subscriber<? super StudentChangeEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /** Версия последнего опубликованного события (0 - событий еще не было). */
+    public long getVersion() {
+        synchronized (publishLock) {
+            return version;
+        }
+    }
+
+    public long getPublishedCount() { return published.get(); }
+
+    /** Сколько раз событие не было доставлено отставшему подписчику. */
+    public long getDroppedCount() { return dropped.get(); }
+
+    public int getSubscriberCount() { return publisher.getNumberOfSubscribers(); }
+
+    // --- События хранилища ---
+
+    @Override
+    public void onStudentSaved(Student student) {
+        publish(StudentChangeEvent.Type.SAVED, student.getId(), student, student.getVersion());
+    }
+
+    @Override
+    public void onStudentDeleted(int id, long rowVersion) {
+        publish(StudentChangeEvent.Type.DELETED, id, null, rowVersion);
+    }
+
+    @Override
+    public void onAllStudentsDeleted() {
+        publish(StudentChangeEvent.Type.ALL_DELETED, 0, null, 0);
+    }
+
+    private void publish(StudentChangeEvent.Type type, int id, Student student, long rowVersion) {
+        synchronized (publishLock) {
+            if (publisher.isClosed()) {
+                return;
+            }
+            StudentChangeEvent event = new StudentChangeEvent(++version, type, id, student, rowVersion,
+                    System.currentTimeMillis());
+            publisher.offer(event, maxWaitMillis, TimeUnit.MILLISECONDS, (subscriber, item) -> {
+                dropped.incrementAndGet();
+                return false; // не повторять: запись в хранилище важнее отставшего подписчика
+            });
+            published.incrementAndGet();
+        }
+    }
+
+    /**
+     * Отписывается от хранилища; подписчики получают onComplete после уже отправленных событий.
+     */
+    @Override
+    public void close() {
+        repository.removeChangeListener(this);
+        synchronized (publishLock) {
+            publisher.close();
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Поток изменений: версия %d, опубликовано %d, не доставлено %d, подписчиков %d",
+                getVersion(), getPublishedCount(), getDroppedCount(), getSubscriberCount());
+    }
+}
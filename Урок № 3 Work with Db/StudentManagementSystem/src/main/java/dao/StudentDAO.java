@@ -1,56 +1,291 @@
 package dao;
 
 import model.Student;
+import model.StudentBatch;
+import model.StudentSummary;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class StudentDAO {
+/**
+ * Хранилище студентов в MySQL (таблица Students).
+ */
+public class StudentDAO implements StudentRepository {
+
+    // Размер пакета по умолчанию для addStudents/upsertStudents
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // Явный список столбцов вместо SELECT *: порядок фиксирован, поэтому строка разбирается
+    // по номерам столбцов, без поиска столбца по имени для каждого поля каждой строки
+    static final String STUDENT_COLUMNS = "Id, Name, Surname, Age, Phone, Email, Version";
+    private static final int COL_ID = 1;
+    private static final int COL_NAME = 2;
+    private static final int COL_SURNAME = 3;
+    private static final int COL_AGE = 4;
+    private static final int COL_PHONE = 5;
+    private static final int COL_EMAIL = 6;
+    private static final int COL_VERSION = 7;
+    private static final String SELECT_STUDENTS = "SELECT " + STUDENT_COLUMNS + " FROM Students";
+    // Проекция для результатов поиска: только Id, имя и фамилия
+    private static final String SELECT_SUMMARIES = "SELECT Id, Name, Surname FROM Students";
+
+    // Размеры списков IN (...) для getStudentsByIds/ByEmails. Неполный кусок дополняется
+    // повтором последнего значения до ближайшего размера - так форм SQL всего несколько
+    private static final int[] IN_LIST_SIZES = {1, 4, 16, 64, 256};
+    public static final int MAX_IN_LIST_SIZE = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+    private static final String[] SELECT_BY_IDS_SQL = new String[IN_LIST_SIZES.length];
+    private static final String[] SELECT_BY_EMAILS_SQL = new String[IN_LIST_SIZES.length];
+
+    static {
+        for (int i = 0; i < IN_LIST_SIZES.length; i++) {
+            String placeholders = "?" + ",?".repeat(IN_LIST_SIZES[i] - 1);
+            SELECT_BY_IDS_SQL[i] = SELECT_STUDENTS + " WHERE Id IN (" + placeholders + ")";
+            SELECT_BY_EMAILS_SQL[i] = SELECT_STUDENTS + " WHERE Email IN (" + placeholders + ")";
+        }
+    }
+
+    // Сколько раз update(student, beforeWrite) и delete(id) повторяют чтение и запись,
+    // если строку изменили между чтением ее версии и записью
+    private static final int MAX_WRITE_ATTEMPTS = 10;
+    // ER_LOCK_WAIT_TIMEOUT: MySQL сообщает его с общим SQLState HY000
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+
+    // Для MySQL Connector/J fetchSize = Integer.MIN_VALUE означает построчное чтение
+    // с сервера (курсор только вперед) - в памяти одновременно находится одна строка
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int FALLBACK_FETCH_SIZE = 1000;
+
+    // Постоянные запросы: регистрируются в пуле и готовятся на каждом соединении один раз
+    private static final String EMAIL_EXISTS_SQL =
+            "SELECT COUNT(*) FROM Students WHERE Email = ?";
+    private static final String EMAIL_EXISTS_FOR_OTHER_ID_SQL =
+            "SELECT COUNT(*) FROM Students WHERE Email = ? AND Id != ?";
+    private static final String SELECT_AFTER_ID_SQL =
+            SELECT_STUDENTS + " WHERE Id > ? ORDER BY Id LIMIT ?";
+    private static final String SELECT_BY_ID_SQL =
+            SELECT_STUDENTS + " WHERE Id = ?";
+    private static final String SELECT_BY_EMAIL_SQL =
+            SELECT_STUDENTS + " WHERE Email = ?";
+    // Любое изменение строки увеличивает Version; условие по версии - только когда она известна
+    private static final String UPDATE_SQL =
+            "UPDATE Students SET Name=?, Surname=?, Age=?, Phone=?, Email=?, Version=Version+1 WHERE Id=?";
+    private static final String UPDATE_VERSIONED_SQL = UPDATE_SQL + " AND Version=?";
+    private static final String SELECT_VERSION_SQL =
+            "SELECT Version FROM Students WHERE Id = ?";
+    private static final String DELETE_SQL =
+            "DELETE FROM Students WHERE Id=?";
+    private static final String DELETE_VERSIONED_SQL = DELETE_SQL + " AND Version=?";
+    private static final String INSERT_SQL =
+            "INSERT INTO Students (Id, Name, Surname, Age, Phone, Email) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_ALL_SQL = SELECT_STUDENTS + " ORDER BY Id";
+    // Поиск по части имени ИЛИ фамилии (нечувствительный к регистру)
+    private static final String NAME_FILTER = " WHERE Name LIKE ? OR Surname LIKE ?";
+    // Ранжирование: полное совпадение, затем начало, затем вхождение
+    private static final String NAME_RANK_ORDER = " ORDER BY CASE WHEN Name = ? OR Surname = ? THEN 0"
+            + " WHEN Name LIKE ? OR Surname LIKE ? THEN 1 ELSE 2 END, Id LIMIT ?";
+    private static final String SEARCH_SQL = SELECT_STUDENTS + NAME_FILTER;
+    private static final String SEARCH_RANKED_SQL = SELECT_STUDENTS + NAME_FILTER + NAME_RANK_ORDER;
+    private static final String SEARCH_SUMMARIES_SQL = SELECT_SUMMARIES + NAME_FILTER + NAME_RANK_ORDER;
+    private static final String UPSERT_SQL = INSERT_SQL
+            + " ON DUPLICATE KEY UPDATE Name=VALUES(Name), Surname=VALUES(Surname), Age=VALUES(Age),"
+            + " Phone=VALUES(Phone), Email=VALUES(Email), Version=Version+1";
+
+    // Постоянные запросы: готовятся на каждом новом соединении и кэшируются пулом
+    private static final List<String> FIXED_STATEMENTS = fixedStatements();
+
+    // Подписчики на изменения (индексы, кэши и т.п.)
+    private final ChangeListeners listeners = new ChangeListeners();
+    // Триграммный индекс для searchByName; null - поиск идет через LIKE в БД
+    private volatile NameSearchIndex nameIndex;
+    // Время, ошибки и число строк по каждой операции
+    private final DaoMetrics metrics = new DaoMetrics();
+    // Пул отдельного узла; null - DatabaseConfig (основной сервер и реплики)
+    private final ConnectionPool pool;
+    // Формы StudentQuery, уже зарегистрированные в пуле (их SQL кэшируется как постоянный)
+    private final Set<String> queryShapes = ConcurrentHashMap.newKeySet();
+
+    private static List<String> fixedStatements() {
+        List<String> sqls = new ArrayList<>(List.of(
+                SELECT_BY_ID_SQL, SELECT_BY_EMAIL_SQL, EMAIL_EXISTS_SQL, EMAIL_EXISTS_FOR_OTHER_ID_SQL,
+                SELECT_AFTER_ID_SQL, INSERT_SQL, UPSERT_SQL, UPDATE_SQL, UPDATE_VERSIONED_SQL, SELECT_VERSION_SQL,
+                DELETE_SQL, DELETE_VERSIONED_SQL, SEARCH_SQL, SEARCH_RANKED_SQL, SEARCH_SUMMARIES_SQL));
+        // Формы списков IN фиксированы (IN_LIST_SIZES), поэтому тоже постоянные
+        sqls.addAll(List.of(SELECT_BY_IDS_SQL));
+        sqls.addAll(List.of(SELECT_BY_EMAILS_SQL));
+        return List.copyOf(sqls);
+    }
+
+    public StudentDAO() {
+        this.pool = null;
+        DatabaseConfig.registerStatements(FIXED_STATEMENTS);
+    }
+
+    /**
+     * DAO отдельного узла БД (например, шарда в ShardedStudentRepository): все запросы,
+     * и чтение, и запись, идут в пул pool, мимо DatabaseConfig и реплик.
+     */
+    public StudentDAO(ConnectionPool pool) {
+        this.pool = pool;
+        pool.registerStatements(FIXED_STATEMENTS);
+    }
+
+    // Регистрирует постоянные запросы других классов пакета (StudentStats) там же, где свои
+    void registerStatements(List<String> sqls) {
+        if (pool != null) {
+            pool.registerStatements(sqls);
+        } else {
+            DatabaseConfig.registerStatements(sqls);
+        }
+    }
+
+    /**
+     * SQL составного запроса. Число форм StudentQuery ограничено, поэтому форма при первой
+     * встрече регистрируется как постоянный запрос: дальше он берется из кэша запросов
+     * соединения, а не готовится заново (на сервере - отдельным PREPARE) при каждом вызове.
+     */
+    private String queryStatement(StudentQuery query) {
+        String sql = query.toSql();
+        if (queryShapes.add(sql)) {
+            registerStatements(List.of(sql));
+        }
+        return sql;
+    }
+
+    // Соединение для записи: свой пул узла или основной сервер из DatabaseConfig
+    Connection connection() throws SQLException {
+        return pool != null ? pool.getConnection() : DatabaseConfig.getConnection();
+    }
+
+    // Соединение для чтения: свой пул узла или реплика; доступно и StudentStats
+    Connection readConnection() throws SQLException {
+        return pool != null ? pool.getConnection() : DatabaseConfig.getReadConnection();
+    }
+
+    // Чтение, которое должно видеть все записи (проверка email перед записью): свой пул узла
+    // или основной сервер; ReadSession вызывающего не отмечается
+    Connection primaryReadConnection() throws SQLException {
+        return pool != null ? pool.getConnection() : DatabaseConfig.getPrimaryReadConnection();
+    }
+
+    // Соединение для чтения отдельных студентов (по Id и email); CachedStudentDAO читает их
+    // с основного сервера, чтобы не положить в кэш отставшую копию с реплики
+    Connection lookupConnection() throws SQLException {
+        return readConnection();
+    }
+
+    /** Метрики операций этого DAO (вывод в консоль - toString(), экспорт - toPrometheus()). */
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
+
+    // --- Подписка на изменения ---
+
+    @Override
+    public void addChangeListener(StudentChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(StudentChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Строит триграммный индекс по именам и фамилиям и переключает searchByName на него.
+     * Индекс обновляется при каждой записи через этот DAO.
+     */
+    public void enableNameIndex() throws SQLException {
+        NameSearchIndex index = new NameSearchIndex();
+        // Подписываемся до построения, чтобы не пропустить изменения во время обхода таблицы
+        addChangeListener(index);
+        // Обход - с основного сервера: реплика может еще не видеть последних записей
+        try {
+            ReadSession.primaryOnly().call(() -> {
+                index.rebuild(this);
+                return null;
+            });
+        } catch (SQLException e) {
+            removeChangeListener(index);
+            throw e;
+        }
+        nameIndex = index;
+    }
 
     // --- Методы ---
 
     /** * Создает объект Student.
+     * Строка должна быть прочитана запросом со столбцами STUDENT_COLUMNS (в том же порядке).
      */
     private Student extractStudentFromResultSet(ResultSet rs) throws SQLException {
-        return new Student(
-                rs.getInt("Id"),
-                rs.getString("Name"),
-                rs.getString("Surname"),
-                rs.getInt("Age"),
-                rs.getString("Phone"),
-                rs.getString("Email")
+        Student student = new Student(
+                rs.getInt(COL_ID),
+                rs.getString(COL_NAME),
+                rs.getString(COL_SURNAME),
+                rs.getInt(COL_AGE),
+                rs.getString(COL_PHONE),
+                rs.getString(COL_EMAIL)
         );
+        student.setVersion(rs.getLong(COL_VERSION));
+        return student;
     }
 
     /** * Проверяет, существует ли email в таблице.
+     * Читает с основного сервера: проверка идет перед записью, и отставшая реплика пропустила бы дубликат.
      */
+    @Override
     public boolean isEmailExists(String email) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM Students WHERE Email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        DaoMetrics.Sample m = metrics.start("isEmailExists");
+        try (Connection conn = primaryReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EMAIL_EXISTS_SQL)) {
+            m.acquired();
             pstmt.setString(1, email);
             try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
                 if (rs.next()) {
                     return rs.getInt(1) > 0;
                 }
             }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
         }
         return false;
     }
 
     /** * Проверяет, существует ли email в таблице.
      */
+    @Override
     public boolean isEmailExistsForOtherId(String email, int id) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM Students WHERE Email = ? AND Id != ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        DaoMetrics.Sample m = metrics.start("isEmailExistsForOtherId");
+        try (Connection conn = primaryReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EMAIL_EXISTS_FOR_OTHER_ID_SQL)) {
+            m.acquired();
             pstmt.setString(1, email);
             pstmt.setInt(2, id);
             try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
                 if (rs.next()) {
                     return rs.getInt(1) > 0;
                 }
             }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
         }
         return false;
     }
@@ -58,167 +293,1279 @@ public class StudentDAO {
 
     // --- 1.Операция Добавление ---
 
+    @Override
     public void addStudent(Student student) throws SQLException {
-        // Проверка уникальности email
-        if (isEmailExists(student.getEmail())) {
-            throw new SQLException("Email '" + student.getEmail() + "' уже используется.");
+        // Уникальность ID и email проверяет сама БД (PRIMARY KEY и уникальный индекс по Email),
+        // поэтому добавление - ровно один запрос
+        DaoMetrics.Sample m = metrics.start("addStudent");
+        try (Connection conn = connection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            m.acquired();
+
+            bindInsert(pstmt, student);
+
+            m.rows(pstmt.executeUpdate());
+            m.executed();
+
+        } catch (SQLException e) {
+            throw translateIntegrityViolation(m.failed(e), student);
+        } finally {
+            m.stop();
         }
+        student.setVersion(1); // значение Version по умолчанию для новой строки
+        listeners.fireCreated(student);
+    }
 
-        String sql = "INSERT INTO Students (Id, Name, Surname, Age, Phone, Email) VALUES (?, ?, ?, ?, ?, ?)";
+    /**
+     * Превращает нарушение уникальности (SQLState 23xxx) в DuplicateStudentException
+     * с указанием, что именно занято: ID или email. Прочие ошибки возвращает как есть.
+     */
+    private static SQLException translateIntegrityViolation(SQLException e, Student student) {
+        if (e instanceof DuplicateStudentException || !DuplicateStudentException.isIntegrityViolation(e)) {
+            return e;
+        }
+        DuplicateStudentException.Field field = DuplicateStudentException.detectField(e);
+        switch (field) {
+            case ID:
+                return new DuplicateStudentException("Студент с ID " + student.getId() + " уже существует.", field, e);
+            case EMAIL:
+                return new DuplicateStudentException("Email '" + student.getEmail() + "' уже используется.", field, e);
+            default:
+                return new DuplicateStudentException("Ошибка: Студент с ID " + student.getId()
+                        + " или email уже существует (нарушение уникальности).", field, e);
+        }
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, student.getId());
-            pstmt.setString(2, student.getName());
-            pstmt.setString(3, student.getSurname());
-            pstmt.setInt(4, student.getAge());
-            pstmt.setString(5, student.getPhone());
-            pstmt.setString(6, student.getEmail());
+    // --- 1.1 Пакетное добавление ---
+
+    /**
+     * Добавляет студентов пакетами по DEFAULT_BATCH_SIZE.
+     */
+    @Override
+    public BatchResult addStudents(Iterable<Student> students) throws SQLException {
+        return addStudents(students, DEFAULT_BATCH_SIZE);
+    }
 
-            pstmt.executeUpdate();
+    /**
+     * Добавляет студентов пакетами: каждый пакет - одна транзакция и один JDBC batch.
+     * Уникальность email проверяется одним запросом на пакет. Строки с занятым
+     * email или ID не прерывают загрузку, а попадают в отчет BatchResult.
+     */
+    @Override
+    public BatchResult addStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        return writeInBatches(students, batchSize, false);
+    }
+
+    /**
+     * Как addStudents, но существующие записи (по ID) обновляются.
+     * Email не должен принадлежать другому студенту.
+     */
+    @Override
+    public BatchResult upsertStudents(Iterable<Student> students, int batchSize) throws SQLException {
+        return writeInBatches(students, batchSize, true);
+    }
+
+    private BatchResult writeInBatches(Iterable<Student> students, int batchSize, boolean upsert) throws SQLException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пакета должен быть положительным: " + batchSize);
+        }
+        BatchResult result = new BatchResult();
+        List<Student> chunk = new ArrayList<>(batchSize);
+        int chunkStart = 0;
 
+        // Проверки и запись пакетов - все относится к фазе выполнения
+        DaoMetrics.Sample m = metrics.start(upsert ? "upsertStudents" : "addStudents");
+        try (Connection conn = connection()) {
+            m.acquired();
+            int index = 0;
+            for (Student student : students) {
+                chunk.add(student);
+                index++;
+                if (chunk.size() == batchSize) {
+                    writeChunk(conn, chunk, chunkStart, upsert, result);
+                    chunk.clear();
+                    chunkStart = index;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(conn, chunk, chunkStart, upsert, result);
+            }
         } catch (SQLException e) {
-            // Обработка дубликата ID (MySQL State 23000 - Integrity constraint violation)
-            if (e.getSQLState().startsWith("23")) {
-                throw new SQLException("Ошибка: Студент с ID " + student.getId() + " или email уже существует (нарушение уникальности).", e);
+            throw m.failed(e);
+        } finally {
+            m.rows(result.getWritten());
+            m.stop();
+        }
+        return result;
+    }
+
+    private void writeChunk(Connection conn, List<Student> chunk, int chunkStart,
+                            boolean upsert, BatchResult result) throws SQLException {
+        // 1. Дубликаты внутри самого пакета (первое вхождение выигрывает)
+        List<Student> accepted = new ArrayList<>(chunk.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(chunk.size());
+        Set<String> chunkEmails = new HashSet<>();
+        Set<Integer> chunkIds = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Student s = chunk.get(i);
+            if (s.getEmail() == null) {
+                result.reject(chunkStart + i, s, "Email не указан.");
+            } else if (!chunkIds.add(s.getId())) {
+                result.reject(chunkStart + i, s, "ID " + s.getId() + " повторяется во входных данных.");
+            } else if (!chunkEmails.add(s.getEmail().toLowerCase())) {
+                result.reject(chunkStart + i, s, "Email '" + s.getEmail() + "' повторяется во входных данных.");
+            } else {
+                accepted.add(s);
+                acceptedIndexes.add(chunkStart + i);
             }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        // 2. Email, уже занятые в базе, - одним запросом на весь пакет
+        Map<String, Integer> taken = findEmailOwners(conn, chunkEmails);
+        List<Student> toWrite = new ArrayList<>(accepted.size());
+        List<Integer> toWriteIndexes = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            Student s = accepted.get(i);
+            Integer owner = taken.get(s.getEmail().toLowerCase());
+            if (owner != null && (!upsert || owner != s.getId())) {
+                result.reject(acceptedIndexes.get(i), s, "Email '" + s.getEmail() + "' уже используется.");
+            } else {
+                toWrite.add(s);
+                toWriteIndexes.add(acceptedIndexes.get(i));
+            }
+        }
+        if (toWrite.isEmpty()) {
+            return;
+        }
+
+        // 3. Запись пакета одной транзакцией
+        String sql = upsert ? UPSERT_SQL : INSERT_SQL;
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Student s : toWrite) {
+                    bindInsert(pstmt, s);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                List<Student> saved = withVersions(conn, toWrite, upsert);
+                conn.commit();
+                result.addWritten(toWrite.size());
+                for (Student s : saved) {
+                    listeners.fireWritten(s);
+                }
+            } catch (BatchUpdateException e) {
+                // Пакет целиком не прошел (например, занятый ID) - откатываем
+                // и пишем построчно, чтобы узнать, какие именно строки виноваты
+                conn.rollback();
+                writeRowByRow(conn, sql, upsert, toWrite, toWriteIndexes, result);
+            }
+        } catch (SQLException e) {
+            conn.rollback();
             throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
     }
 
+    private void writeRowByRow(Connection conn, String sql, boolean upsert, List<Student> rows,
+                               List<Integer> indexes, BatchResult result) throws SQLException {
+        List<Student> written = new ArrayList<>(rows.size());
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < rows.size(); i++) {
+                Student s = rows.get(i);
+                bindInsert(pstmt, s);
+                try {
+                    pstmt.executeUpdate();
+                    written.add(s);
+                } catch (SQLException e) {
+                    if (!DuplicateStudentException.isIntegrityViolation(e)) {
+                        throw e;
+                    }
+                    result.reject(indexes.get(i), s, translateIntegrityViolation(e, s).getMessage());
+                }
+            }
+        }
+        List<Student> saved = withVersions(conn, written, upsert);
+        conn.commit();
+        result.addWritten(written.size());
+        for (Student s : saved) {
+            listeners.fireWritten(s);
+        }
+    }
+
+    /**
+     * Копии записанных строк с их версиями - для подписчиков. Новая строка - версия 1;
+     * после upsert или обновления версия читается в той же транзакции (строки еще заблокированы).
+     */
+    private static List<Student> withVersions(Connection conn, List<Student> rows, boolean read) throws SQLException {
+        Map<Integer, Long> versions = Map.of();
+        if (read && !rows.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(rows.size());
+            for (Student s : rows) {
+                ids.add(s.getId());
+            }
+            versions = readVersions(conn, ids, false);
+        }
+        List<Student> copies = new ArrayList<>(rows.size());
+        for (Student s : rows) {
+            Student copy = new Student(s);
+            copy.setVersion(read ? versions.getOrDefault(s.getId(), 0L) : 1);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Возвращает владельцев (email в нижнем регистре -> Id) для тех email, что уже есть в таблице.
+     */
+    private Map<String, Integer> findEmailOwners(Connection conn, Set<String> emails) throws SQLException {
+        Map<String, Integer> owners = new HashMap<>();
+        StringBuilder sql = new StringBuilder("SELECT Id, Email FROM Students WHERE Email IN (");
+        for (int i = 0; i < emails.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(')');
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (String email : emails) {
+                pstmt.setString(i++, email);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    owners.put(rs.getString(2).toLowerCase(), rs.getInt(1));
+                }
+            }
+        }
+        return owners;
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Student student) throws SQLException {
+        pstmt.setInt(1, student.getId());
+        pstmt.setString(2, student.getName());
+        pstmt.setString(3, student.getSurname());
+        pstmt.setInt(4, student.getAge());
+        pstmt.setString(5, student.getPhone());
+        pstmt.setString(6, student.getEmail());
+    }
+
 
     // --- 2. Операция Чтение ---
 
+    @Override
     public List<Student> getAllStudents() throws SQLException {
         List<Student> students = new ArrayList<>();
-        String sql = "SELECT * FROM Students ORDER BY Id";
+        String sql = SELECT_ALL_SQL;
+
+        DaoMetrics.Sample m = metrics.start("getAllStudents");
+        try (Connection conn = readConnection();
+             Statement stmt = conn.createStatement()) {
+            m.acquired();
+
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                m.executed();
+                while (rs.next()) {
+                    students.add(extractStudentFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(students.size());
+            m.stop();
+        }
+        return students;
+    }
+
+    /**
+     * Обходит всех студентов (по возрастанию Id), не загружая их в память целиком.
+     * Возвращает количество обработанных записей.
+     */
+    @Override
+    public int forEachStudent(Consumer<Student> action) throws SQLException {
+        String sql = SELECT_ALL_SQL;
+        int count = 0;
+
+        // Время обработчика action входит в фазу разбора
+        DaoMetrics.Sample m = metrics.start("forEachStudent");
+        try (Connection conn = readConnection();
+             Statement stmt = createStreamingStatement(conn)) {
+            m.acquired();
+
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                m.executed();
+                while (rs.next()) {
+                    action.accept(extractStudentFromResultSet(rs));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(count);
+            m.stop();
+        }
+        return count;
+    }
+
+    /**
+     * Поток всех студентов (по возрастанию Id), читаемый с сервера по мере обхода.
+     * Поток держит соединение из пула, поэтому его обязательно нужно закрыть:
+     * try (Stream&lt;Student&gt; s = dao.streamAllStudents()) { ... }
+     */
+    @Override
+    public Stream<Student> streamAllStudents() throws SQLException {
+        String sql = SELECT_ALL_SQL;
+        // Замер длится до закрытия потока
+        DaoMetrics.Sample m = metrics.start("streamAllStudents");
+        Connection conn;
+        try {
+            conn = readConnection();
+        } catch (SQLException e) {
+            m.failed(e);
+            m.stop();
+            throw e;
+        }
+        Statement stmt = null;
+        ResultSet rs;
+        try {
+            stmt = createStreamingStatement(conn);
+            m.acquired();
+            rs = stmt.executeQuery(sql);
+            m.executed();
+        } catch (SQLException e) {
+            m.failed(e);
+            m.stop();
+            if (stmt != null) {
+                stmt.close();
+            }
+            conn.close();
+            throw e;
+        }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        Statement statement = stmt;
+        Spliterator<Student> spliterator = new Spliterators.AbstractSpliterator<Student>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Student> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(extractStudentFromResultSet(rs));
+                    m.rows(1);
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Ошибка чтения студентов: " + m.failed(e).getMessage(), e);
+                }
+            }
+        };
 
-            while (rs.next()) {
-                students.add(extractStudentFromResultSet(rs));
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            m.stop();
+            try (conn; statement; rs) {
+                // ресурсы закрываются в обратном порядке
+            } catch (SQLException e) {
+                throw new IllegalStateException("Ошибка закрытия курсора: " + e.getMessage(), e);
             }
+        });
+    }
+
+    /**
+     * Постраничное чтение по ключу: следующие limit студентов с Id больше lastId.
+     * Для первой страницы передайте lastId = 0 (или Integer.MIN_VALUE, если бывают отрицательные Id).
+     */
+    @Override
+    public List<Student> getStudentsAfterId(int lastId, int limit) throws SQLException {
+        List<Student> students = new ArrayList<>(Math.min(limit, 1000));
+
+        DaoMetrics.Sample m = metrics.start("getStudentsAfterId");
+        try (Connection conn = readConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_AFTER_ID_SQL)) {
+            m.acquired();
+
+            pstmt.setInt(1, lastId);
+            pstmt.setInt(2, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
+                while (rs.next()) {
+                    students.add(extractStudentFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(students.size());
+            m.stop();
         }
         return students;
     }
 
+    private static Statement createStreamingStatement(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // Отрицательный fetchSize понимает только драйвер MySQL; другим БД даем обычную порцию
+        boolean mysql = conn.getMetaData().getURL().startsWith("jdbc:mysql:");
+        stmt.setFetchSize(mysql ? STREAMING_FETCH_SIZE : FALLBACK_FETCH_SIZE);
+        return stmt;
+    }
+
+    @Override
     public Student getStudentById(int id) throws SQLException {
-        String sql = "SELECT * FROM Students WHERE Id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        DaoMetrics.Sample m = metrics.start("getStudentById");
+        try (Connection conn = lookupConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_BY_ID_SQL)) {
+            m.acquired();
             pstmt.setInt(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
                 if (rs.next()) {
+                    m.rows(1);
                     return extractStudentFromResultSet(rs);
                 }
             }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
         }
         return null;
     }
 
+    @Override
     public Student getStudentByEmail(String email) throws SQLException {
-        String sql = "SELECT * FROM Students WHERE Email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        DaoMetrics.Sample m = metrics.start("getStudentByEmail");
+        try (Connection conn = lookupConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_BY_EMAIL_SQL)) {
+            m.acquired();
             pstmt.setString(1, email);
             try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
                 if (rs.next()) {
+                    m.rows(1);
                     return extractStudentFromResultSet(rs);
                 }
             }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
         }
         return null;
     }
 
+    /**
+     * Загружает студентов по списку Id запросами WHERE Id IN (...) по MAX_IN_LIST_SIZE значений.
+     * В результате только найденные, в порядке первого появления Id во входном списке.
+     */
+    @Override
+    public Map<Integer, Student> getStudentsByIds(Collection<Integer> ids) throws SQLException {
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Integer, Student> found = new HashMap<>();
+        if (distinct.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        // Несколько запросов подряд: разбор входит в фазу выполнения
+        DaoMetrics.Sample m = metrics.start("getStudentsByIds");
+        try (Connection conn = lookupConnection()) {
+            m.acquired();
+            for (int from = 0; from < distinct.size(); from += MAX_IN_LIST_SIZE) {
+                List<Integer> chunk = distinct.subList(from, Math.min(from + MAX_IN_LIST_SIZE, distinct.size()));
+                int shape = inListShape(chunk.size());
+                try (PreparedStatement pstmt = conn.prepareStatement(SELECT_BY_IDS_SQL[shape])) {
+                    for (int i = 0; i < IN_LIST_SIZES[shape]; i++) {
+                        pstmt.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Student s = extractStudentFromResultSet(rs);
+                            found.put(s.getId(), s);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(found.size());
+            m.stop();
+        }
+
+        Map<Integer, Student> result = new LinkedHashMap<>();
+        for (Integer id : distinct) {
+            Student s = found.get(id);
+            if (s != null) {
+                result.put(id, s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Загружает студентов по списку email (без учета регистра, как в MySQL).
+     * Ключи результата - email в том виде, в каком они переданы.
+     */
+    @Override
+    public Map<String, Student> getStudentsByEmails(Collection<String> emails) throws SQLException {
+        // email в нижнем регистре -> email как передан (первое вхождение)
+        Map<String, String> requested = new LinkedHashMap<>();
+        for (String email : emails) {
+            if (email != null) {
+                requested.putIfAbsent(email.toLowerCase(), email);
+            }
+        }
+        List<String> distinct = new ArrayList<>(requested.values());
+        Map<String, Student> found = new HashMap<>();
+        if (distinct.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        DaoMetrics.Sample m = metrics.start("getStudentsByEmails");
+        try (Connection conn = lookupConnection()) {
+            m.acquired();
+            for (int from = 0; from < distinct.size(); from += MAX_IN_LIST_SIZE) {
+                List<String> chunk = distinct.subList(from, Math.min(from + MAX_IN_LIST_SIZE, distinct.size()));
+                int shape = inListShape(chunk.size());
+                try (PreparedStatement pstmt = conn.prepareStatement(SELECT_BY_EMAILS_SQL[shape])) {
+                    for (int i = 0; i < IN_LIST_SIZES[shape]; i++) {
+                        pstmt.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Student s = extractStudentFromResultSet(rs);
+                            found.put(s.getEmail().toLowerCase(), s);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(found.size());
+            m.stop();
+        }
+
+        Map<String, Student> result = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : requested.entrySet()) {
+            Student s = found.get(e.getKey());
+            if (s != null) {
+                result.put(e.getValue(), s);
+            }
+        }
+        return result;
+    }
+
+    /** Индекс наименьшего размера IN-списка, вмещающего count значений. */
+    private static int inListShape(int count) {
+        for (int i = 0; i < IN_LIST_SIZES.length; i++) {
+            if (IN_LIST_SIZES[i] >= count) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Слишком длинный список: " + count);
+    }
+
+    @Override
     public List<Student> searchByName(String query) throws SQLException {
+        NameSearchIndex index = nameIndex;
+        if (index != null) {
+            return searchIndex(index, query, Integer.MAX_VALUE);
+        }
+
         List<Student> students = new ArrayList<>();
-        // Поиск по части имени ИЛИ фамилии (нечувствительный к регистру)
-        String sql = "SELECT * FROM Students WHERE Name LIKE ? OR Surname LIKE ?";
+        String sql = SEARCH_SQL;
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        DaoMetrics.Sample m = metrics.start("searchByName");
+        try (Connection conn = readConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            m.acquired();
 
             String likeQuery = "%" + query + "%";
             pstmt.setString(1, likeQuery);
             pstmt.setString(2, likeQuery);
 
             try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
+                while (rs.next()) {
+                    students.add(extractStudentFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(students.size());
+            m.stop();
+        }
+        return students;
+    }
+
+    /**
+     * Поиск по части имени или фамилии с ранжированием (полное совпадение, затем
+     * начало слова, затем вхождение) и ограничением количества результатов.
+     * При включенном индексе (enableNameIndex) запрос в БД не выполняется.
+     */
+    @Override
+    public List<Student> searchByName(String query, int limit) throws SQLException {
+        NameSearchIndex index = nameIndex;
+        if (index != null) {
+            return searchIndex(index, query, limit);
+        }
+
+        List<Student> students = new ArrayList<>();
+        String sql = SEARCH_RANKED_SQL;
+
+        DaoMetrics.Sample m = metrics.start("searchByNameRanked");
+        try (Connection conn = readConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            m.acquired();
+
+            bindRankedSearch(pstmt, query, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
                 while (rs.next()) {
                     students.add(extractStudentFromResultSet(rs));
                 }
             }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(students.size());
+            m.stop();
         }
         return students;
     }
 
+    /**
+     * Как searchByName(query, limit), но читает только Id, имя и фамилию -
+     * для списков результатов, где остальные поля не нужны.
+     */
+    @Override
+    public List<StudentSummary> searchSummariesByName(String query, int limit) throws SQLException {
+        NameSearchIndex index = nameIndex;
+        if (index != null) {
+            List<StudentSummary> summaries = new ArrayList<>();
+            for (Student s : searchIndex(index, query, limit)) {
+                summaries.add(new StudentSummary(s.getId(), s.getName(), s.getSurname()));
+            }
+            return summaries;
+        }
+
+        List<StudentSummary> summaries = new ArrayList<>();
+        DaoMetrics.Sample m = metrics.start("searchSummariesByName");
+        try (Connection conn = readConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SEARCH_SUMMARIES_SQL)) {
+            m.acquired();
+
+            bindRankedSearch(pstmt, query, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
+                while (rs.next()) {
+                    summaries.add(new StudentSummary(rs.getInt(1), rs.getString(2), rs.getString(3)));
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(summaries.size());
+            m.stop();
+        }
+        return summaries;
+    }
+
+    private static void bindRankedSearch(PreparedStatement pstmt, String query, int limit) throws SQLException {
+        String q = query.trim();
+        String likeQuery = "%" + q + "%";
+        String prefixQuery = q + "%";
+        pstmt.setString(1, likeQuery);
+        pstmt.setString(2, likeQuery);
+        pstmt.setString(3, q);
+        pstmt.setString(4, q);
+        pstmt.setString(5, prefixQuery);
+        pstmt.setString(6, prefixQuery);
+        pstmt.setInt(7, limit);
+    }
+
+    private List<Student> searchIndex(NameSearchIndex index, String query, int limit) {
+        DaoMetrics.Sample m = metrics.start("searchByName.index");
+        try {
+            List<Student> found = index.search(query, limit);
+            m.rows(found.size());
+            return found;
+        } finally {
+            m.stop();
+        }
+    }
+
+    @Override
     public List<Student> filterByAge(int age) throws SQLException {
+        return findStudents(new StudentQuery().ageEquals(age), "filterByAge");
+    }
+
+    @Override
+    public List<Student> filterByAgeRange(int minAge, int maxAge) throws SQLException {
+        return findStudents(new StudentQuery().ageBetween(minAge, maxAge), "filterByAgeRange");
+    }
+
+    /**
+     * Выполняет составной запрос StudentQuery одним параметризованным SQL.
+     */
+    @Override
+    public List<Student> findStudents(StudentQuery query) throws SQLException {
+        return findStudents(query, "findStudents");
+    }
+
+    // operation - имя операции в DaoMetrics: у фильтров по возрасту свои метрики
+    private List<Student> findStudents(StudentQuery query, String operation) throws SQLException {
         List<Student> students = new ArrayList<>();
-        String sql = "SELECT * FROM Students WHERE Age = ?";
+        String sql = queryStatement(query);
+        List<Object> params = query.parameters();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        DaoMetrics.Sample m = metrics.start(operation);
+        try (Connection conn = readConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            m.acquired();
 
-            pstmt.setInt(1, age);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
 
             try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
                 while (rs.next()) {
                     students.add(extractStudentFromResultSet(rs));
                 }
             }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(students.size());
+            m.stop();
         }
         return students;
     }
 
+    /**
+     * Все студенты (по возрастанию Id) сразу в компактном StudentBatch: строки читаются
+     * курсором, как в forEachStudent, и укладываются в столбцы без создания Student.
+     */
+    @Override
+    public StudentBatch getAllStudentsBatch() throws SQLException {
+        StudentBatch.Builder builder = new StudentBatch.Builder();
+
+        DaoMetrics.Sample m = metrics.start("getAllStudentsBatch");
+        try (Connection conn = readConnection();
+             Statement stmt = createStreamingStatement(conn)) {
+            m.acquired();
+
+            try (ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
+                m.executed();
+                while (rs.next()) {
+                    addToBatch(rs, builder);
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(builder.size());
+            m.stop();
+        }
+        return builder.build();
+    }
+
+    @Override
+    public StudentBatch findStudentsBatch(StudentQuery query) throws SQLException {
+        StudentBatch.Builder builder = new StudentBatch.Builder();
+        List<Object> params = query.parameters();
+
+        DaoMetrics.Sample m = metrics.start("findStudentsBatch");
+        try (Connection conn = readConnection();
+             PreparedStatement pstmt = conn.prepareStatement(queryStatement(query))) {
+            m.acquired();
+
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                m.executed();
+                while (rs.next()) {
+                    addToBatch(rs, builder);
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(builder.size());
+            m.stop();
+        }
+        return builder.build();
+    }
+
+    private static void addToBatch(ResultSet rs, StudentBatch.Builder builder) throws SQLException {
+        builder.add(rs.getInt(COL_ID), rs.getString(COL_NAME), rs.getString(COL_SURNAME), rs.getInt(COL_AGE),
+                rs.getString(COL_PHONE), rs.getString(COL_EMAIL), rs.getLong(COL_VERSION));
+    }
+
 
     // --- 3. Операция Обновление) ---
 
+    /**
+     * Обновляет студента. Если версия в объекте известна (getVersion() &gt; 0 - студент
+     * прочитан из хранилища), запись выполняется только при совпадении версии в базе;
+     * иначе - StaleStudentException, и ничего не меняется. После успешной записи версия
+     * в объекте увеличивается. Студент с версией 0 обновляется без проверки (побеждает
+     * последняя запись) одним запросом; подписчики получают его с версией 0 (неизвестна).
+     * Строка не блокируется между чтением и записью.
+     */
+    @Override
     public boolean updateStudent(Student student) throws SQLException {
-        // Проверка уникальности email
-        if (isEmailExistsForOtherId(student.getEmail(), student.getId())) {
-            throw new SQLException("Email '" + student.getEmail() + "' уже используется другим студентом.");
+        // Email, занятый другим студентом, отклонит уникальный индекс - отдельной проверки не нужно
+        long expectedVersion = student.getVersion();
+        boolean updated;
+
+        DaoMetrics.Sample m = metrics.start("updateStudent");
+        try (Connection conn = connection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     expectedVersion > 0 ? UPDATE_VERSIONED_SQL : UPDATE_SQL)) {
+            m.acquired();
+
+            bindUpdate(pstmt, student);
+            if (expectedVersion > 0) {
+                pstmt.setLong(7, expectedVersion);
+            }
+
+            int count = pstmt.executeUpdate();
+            m.executed();
+            m.rows(count);
+            if (count == 0 && expectedVersion > 0) {
+                // Не нашлось по Id и версии: студента удалили или он уже изменен
+                long actualVersion = readVersion(conn, student.getId());
+                if (actualVersion > 0) {
+                    throw new StaleStudentException(student.getId(), expectedVersion, actualVersion);
+                }
+            }
+            updated = count > 0;
+        } catch (SQLException e) {
+            throw translateIntegrityViolation(m.failed(e), student);
+        } finally {
+            m.stop();
         }
+        if (!updated) {
+            return false;
+        }
+        Student saved = new Student(student);
+        if (expectedVersion > 0) {
+            student.setVersion(expectedVersion + 1);
+            saved.setVersion(expectedVersion + 1);
+        }
+        listeners.fireSaved(saved);
+        return true;
+    }
 
-        String sql = "UPDATE Students SET Name=?, Surname=?, Age=?, Phone=?, Email=? WHERE Id=?";
+    /** Проверка перед записью: получает строку студента в том виде, в каком она будет перезаписана. */
+    interface BeforeWrite {
+        void check(Student current) throws SQLException;
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * updateStudent с проверкой beforeWrite перед записью (ShardedStudentRepository занимает
+     * в ней новый email). Текущая строка читается, а запись идет при условии, что ее версия
+     * не изменилась; иначе чтение повторяется. Подписчики получают точную версию записи.
+     * Проверка вызывается без занятого соединения: ей может понадобиться свое из того же пула.
+     */
+    boolean update(Student student, BeforeWrite beforeWrite) throws SQLException {
+        // Email, занятый другим студентом, отклонит уникальный индекс - отдельной проверки не нужно
+        int id = student.getId();
+        long expectedVersion = student.getVersion();
+        long writtenVersion = 0;
+
+        DaoMetrics.Sample m = metrics.start("updateStudent");
+        try {
+            for (int attempt = 1; writtenVersion == 0; attempt++) {
+                Student current;
+                try (Connection conn = connection()) {
+                    if (attempt == 1) {
+                        m.acquired();
+                    }
+                    current = readStudent(conn, id);
+                }
+                if (current == null) {
+                    break; // студента нет
+                }
+                if (expectedVersion > 0 && current.getVersion() != expectedVersion) {
+                    throw new StaleStudentException(id, expectedVersion, current.getVersion());
+                }
+                beforeWrite.check(current);
+                long version = current.getVersion();
+
+                try (Connection conn = connection();
+                     PreparedStatement pstmt = conn.prepareStatement(UPDATE_VERSIONED_SQL)) {
+                    bindUpdate(pstmt, student);
+                    pstmt.setLong(7, version);
 
-            pstmt.setString(1, student.getName());
-            pstmt.setString(2, student.getSurname());
-            pstmt.setInt(3, student.getAge());
-            pstmt.setString(4, student.getPhone());
-            pstmt.setString(5, student.getEmail());
-            pstmt.setInt(6, student.getId()); // Условие WHERE
+                    int count = pstmt.executeUpdate();
+                    m.executed();
+                    m.rows(count);
+                    if (count > 0) {
+                        writtenVersion = version + 1;
+                    } else if (expectedVersion > 0) {
+                        // Не нашлось по Id и версии: студента удалили или он уже изменен
+                        long actualVersion = readVersion(conn, id);
+                        if (actualVersion > 0) {
+                            throw new StaleStudentException(id, expectedVersion, actualVersion);
+                        }
+                        break;
+                    } else if (attempt == MAX_WRITE_ATTEMPTS) {
+                        throw new SQLException("Студент с ID " + id + " непрерывно изменяется другими запросами:"
+                                + " обновление не выполнено за " + MAX_WRITE_ATTEMPTS + " попыток.",
+                                StaleStudentException.CONFLICT_STATE);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw translateIntegrityViolation(m.failed(e), student);
+        } finally {
+            m.stop();
+        }
+        if (writtenVersion == 0) {
+            return false;
+        }
+        Student saved = new Student(student);
+        saved.setVersion(writtenVersion);
+        if (expectedVersion > 0) {
+            student.setVersion(writtenVersion);
+        }
+        listeners.fireSaved(saved);
+        return true;
+    }
+
+    /** Текущая версия строки или 0, если студента нет. */
+    private static long readVersion(Connection conn, int id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_VERSION_SQL)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private Student readStudent(Connection conn, int id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_BY_ID_SQL)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? extractStudentFromResultSet(rs) : null;
+            }
+        }
+    }
 
-            return pstmt.executeUpdate() > 0;
+    /**
+     * Версии строк ids (отсутствующих в результате нет). forUpdate - с блокировкой строк
+     * до конца транзакции. Списки IN - по MAX_IN_LIST_SIZE значений.
+     */
+    private static Map<Integer, Long> readVersions(Connection conn, Collection<Integer> ids,
+                                                   boolean forUpdate) throws SQLException {
+        Map<Integer, Long> versions = new HashMap<>();
+        List<Integer> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += MAX_IN_LIST_SIZE) {
+            List<Integer> chunk = all.subList(from, Math.min(from + MAX_IN_LIST_SIZE, all.size()));
+            StringBuilder sql = new StringBuilder("SELECT Id, Version FROM Students WHERE Id IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ",?");
+            }
+            sql.append(forUpdate ? ") FOR UPDATE" : ")");
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        versions.put(rs.getInt(1), rs.getLong(2));
+                    }
+                }
+            }
         }
+        return versions;
+    }
+
+
+    private static void bindUpdate(PreparedStatement pstmt, Student student) throws SQLException {
+        pstmt.setString(1, student.getName());
+        pstmt.setString(2, student.getSurname());
+        pstmt.setInt(3, student.getAge());
+        pstmt.setString(4, student.getPhone());
+        pstmt.setString(5, student.getEmail());
+        pstmt.setInt(6, student.getId()); // Условие WHERE
     }
 
 
     // --- 4. Операция Удаление ---
 
+    /** Удаляет студента одним запросом; подписчики получают версию 0 (неизвестна). */
+    @Override
     public boolean deleteStudent(int id) throws SQLException {
-        String sql = "DELETE FROM Students WHERE Id=?";
+        boolean deleted;
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        DaoMetrics.Sample m = metrics.start("deleteStudent");
+        try (Connection conn = connection();
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
+            m.acquired();
 
             pstmt.setInt(1, id);
 
-            return pstmt.executeUpdate() > 0;
+            int count = pstmt.executeUpdate();
+            m.executed();
+            m.rows(count);
+            deleted = count > 0;
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
+        }
+        if (deleted) {
+            listeners.fireDeleted(id, 0);
+        }
+        return deleted;
+    }
+
+    /**
+     * Удаляет студента и возвращает удаленную строку (null - студента не было) - для
+     * ShardedStudentRepository, которому нужен ее email. Строка читается и удаляется
+     * при условии, что ее версия не изменилась; подписчики получают версию удаленной строки.
+     */
+    Student delete(int id) throws SQLException {
+        Student deleted = null;
+
+        DaoMetrics.Sample m = metrics.start("deleteStudent");
+        try (Connection conn = connection();
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_VERSIONED_SQL)) {
+            m.acquired();
+
+            for (int attempt = 1; deleted == null; attempt++) {
+                Student current = readStudent(conn, id);
+                if (current == null) {
+                    break;
+                }
+                pstmt.setInt(1, id);
+                pstmt.setLong(2, current.getVersion());
+
+                int count = pstmt.executeUpdate();
+                m.executed();
+                m.rows(count);
+                if (count > 0) {
+                    deleted = current;
+                } else if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw new SQLException("Студент с ID " + id + " непрерывно изменяется другими запросами: удаление"
+                            + " не выполнено за " + MAX_WRITE_ATTEMPTS + " попыток.", StaleStudentException.CONFLICT_STATE);
+                }
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
+        }
+        if (deleted != null) {
+            listeners.fireDeleted(id, deleted.getVersion());
         }
+        return deleted;
     }
 
+    @Override
     public int deleteAllStudents() throws SQLException {
         String sql = "DELETE FROM Students";
+        int count;
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        DaoMetrics.Sample m = metrics.start("deleteAllStudents");
+        try (Connection conn = connection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            m.acquired();
+
+            count = pstmt.executeUpdate(); // Возвращает количество удаленных строк
+            m.executed();
+            m.rows(count);
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.stop();
+        }
+        listeners.fireAllDeleted();
+        return count;
+    }
+
+
+    // --- 5. Отложенная запись ---
+
+    /**
+     * Применяет накопленные обновления и удаления одной транзакцией (по JDBC batch на каждый вид).
+     * Вызывается WriteBehindQueue; Id в updates и deletes не повторяются.
+     * Изменение, которое не пройдет и при повторе (нарушение уникальности email, слишком
+     * длинное значение и другие ошибки данных), не прерывает остальные, а попадает в отчет
+     * (индекс - позиция в updates, для удалений - updates.size() + позиция в deletes).
+     * Исключение бросается только при временных ошибках (см. isTransient) и сбоях всего пакета.
+     * getWritten() отчета - число измененных строк.
+     * Версия строки не проверяется (побеждает последняя запись), но увеличивается;
+     * подписчики получают версии, прочитанные в той же транзакции.
+     */
+    protected BatchResult applyWrites(List<Student> updates, List<Integer> deletes) throws SQLException {
+        BatchResult result = new BatchResult();
+        if (updates.isEmpty() && deletes.isEmpty()) {
+            return result;
+        }
+        List<Student> saved = new ArrayList<>(updates.size());
+        // Id удаленного студента -> версия удаленной строки
+        Map<Integer, Long> deleted = new LinkedHashMap<>();
+
+        DaoMetrics.Sample m = metrics.start("applyWrites");
+        try (Connection conn = connection()) {
+            m.acquired();
+            conn.setAutoCommit(false);
+            try {
+                try {
+                    executeWriteBatches(conn, updates, deletes, saved, deleted);
+                    saved = withVersions(conn, saved, true);
+                } catch (BatchUpdateException e) {
+                    if (isTransient(e)) {
+                        throw e;
+                    }
+                    // Какое-то изменение не проходит - повторяем по одному, чтобы найти его
+                    conn.rollback();
+                    saved.clear();
+                    deleted.clear();
+                    executeWritesOneByOne(conn, updates, deletes, saved, deleted, result);
+                    saved = withVersions(conn, saved, true);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw m.failed(e);
+        } finally {
+            m.rows(saved.size() + deleted.size());
+            m.stop();
+        }
+
+        result.addWritten(saved.size() + deleted.size());
+        for (Student student : saved) {
+            listeners.fireSaved(student);
+        }
+        for (Map.Entry<Integer, Long> e : deleted.entrySet()) {
+            listeners.fireDeleted(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    private static void executeWriteBatches(Connection conn, List<Student> updates, List<Integer> deletes,
+                                            List<Student> saved, Map<Integer, Long> deleted) throws SQLException {
+        if (!updates.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+                for (Student student : updates) {
+                    bindUpdate(pstmt, student);
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (isChanged(counts[i])) {
+                        saved.add(updates.get(i));
+                    }
+                }
+            }
+        }
+        if (!deletes.isEmpty()) {
+            // Версии удаляемых строк - с блокировкой, чтобы до удаления их никто не изменил
+            Map<Integer, Long> versions = readVersions(conn, deletes, true);
+            try (PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
+                for (int id : deletes) {
+                    pstmt.setInt(1, id);
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    Long version = versions.get(deletes.get(i));
+                    if (isChanged(counts[i]) && version != null) {
+                        deleted.put(deletes.get(i), version);
+                    }
+                }
+            }
+        }
+    }
 
-            return pstmt.executeUpdate(); // Возвращает количество удаленных строк
+    private void executeWritesOneByOne(Connection conn, List<Student> updates, List<Integer> deletes,
+                                       List<Student> saved, Map<Integer, Long> deleted,
+                                       BatchResult result) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+            for (int i = 0; i < updates.size(); i++) {
+                Student student = updates.get(i);
+                bindUpdate(pstmt, student);
+                try {
+                    if (pstmt.executeUpdate() > 0) {
+                        saved.add(student);
+                    }
+                } catch (SQLException e) {
+                    if (isTransient(e)) {
+                        throw e;
+                    }
+                    result.reject(i, student, translateIntegrityViolation(e, student).getMessage());
+                }
+            }
+        }
+        Map<Integer, Long> versions = readVersions(conn, deletes, true);
+        try (PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
+            for (int i = 0; i < deletes.size(); i++) {
+                int id = deletes.get(i);
+                pstmt.setInt(1, id);
+                try {
+                    Long version = versions.get(id);
+                    if (pstmt.executeUpdate() > 0 && version != null) {
+                        deleted.put(id, version);
+                    }
+                } catch (SQLException e) {
+                    if (isTransient(e)) {
+                        throw e;
+                    }
+                    result.reject(updates.size() + i, null,
+                            "Студент с ID " + id + " не удален: " + e.getMessage());
+                }
+            }
         }
     }
+
+    /**
+     * Временная ошибка, которая может пройти при повторе: нет соединения (SQLState 08xxx),
+     * откат из-за взаимной блокировки или конфликта (40xxx), таймаут (HYT00, ожидание
+     * блокировки MySQL 1205). Ошибки данных (22xxx, 23xxx) и запроса при повторе не исчезнут.
+     */
+    static boolean isTransient(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException || t instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                String state = sql.getSQLState();
+                if (state != null && (state.startsWith("08") || state.startsWith("40") || state.startsWith("HYT"))) {
+                    return true;
+                }
+                if (sql.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Строка изменена; SUCCESS_NO_INFO - драйвер не сообщил количество (считаем, что изменена). */
+    private static boolean isChanged(int updateCount) {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
 }
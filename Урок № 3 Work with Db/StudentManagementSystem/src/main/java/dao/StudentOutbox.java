@@ -0,0 +1,126 @@
+package dao;
+
+import model.Student;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение таблицы изменений StudentChanges (режим outbox, см. SchemaInitializer.ensureOutbox()).
+ * Строки пишут триггеры в той же транзакции, что и изменение Students, поэтому журнал
+ * не расходится с таблицей и видит записи не только через StudentDAO.
+ * Потребитель запоминает версию последнего обработанного события и продолжает с нее:
+ * readSince(lastVersion, n) вместо полного перечитывания таблицы.
+ *
+ * Версия - AUTO_INCREMENT: при параллельных транзакциях строка с меньшей версией может
+ * стать видимой позже большей. Поэтому readSince отдает события только до первого пропуска
+ * в нумерации: следующий вызов с той же версией перечитает это место. Пропуск, за которым
+ * событие старше maxCommitLag по часам БД, считается окончательным (откат транзакции или
+ * удаленные purgeUpTo события) и пропускается. Событие транзакции, которая фиксируется
+ * дольше maxCommitLag после вставки более поздней строки журнала, может быть потеряно.
+ */
+public class StudentOutbox {
+
+    private static final String READ_SINCE_SQL =
+            "SELECT Version, ChangeType, StudentId, Name, Surname, Age, Phone, Email, CreatedAt, RowVersion,"
+                    + " CURRENT_TIMESTAMP(3)"
+                    + " FROM " + SchemaInitializer.OUTBOX_TABLE + " WHERE Version > ? ORDER BY Version LIMIT ?";
+    private static final String LATEST_VERSION_SQL =
+            "SELECT COALESCE(MAX(Version), 0) FROM " + SchemaInitializer.OUTBOX_TABLE;
+    private static final String PURGE_SQL =
+            "DELETE FROM " + SchemaInitializer.OUTBOX_TABLE + " WHERE Version <= ?";
+
+    // Сколько ждать, пока пропуск в нумерации заполнится незафиксированной транзакцией
+    public static final long DEFAULT_MAX_COMMIT_LAG_MS = 5_000;
+
+    private final long maxCommitLagMillis;
+
+    public StudentOutbox() {
+        this(DEFAULT_MAX_COMMIT_LAG_MS);
+    }
+
+    public StudentOutbox(long maxCommitLagMillis) {
+        if (maxCommitLagMillis < 0) {
+            throw new IllegalArgumentException("Допустимая задержка фиксации не может быть отрицательной: "
+                    + maxCommitLagMillis);
+        }
+        this.maxCommitLagMillis = maxCommitLagMillis;
+        DatabaseConfig.registerStatements(List.of(READ_SINCE_SQL, PURGE_SQL));
+    }
+
+    /**
+     * Следующие (не больше limit) события после версии afterVersion (0 - с начала журнала)
+     * без пропусков в нумерации, кроме окончательных (см. описание класса). Пустой список
+     * или список короче limit не означает, что новых событий нет, - вызов нужно повторять
+     * с версией последнего полученного события.
+     */
+    public List<StudentChangeEvent> readSince(long afterVersion, int limit) throws SQLException {
+        List<StudentChangeEvent> events = new ArrayList<>(Math.min(limit, 1000));
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(READ_SINCE_SQL)) {
+            pstmt.setLong(1, afterVersion);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long expected = afterVersion + 1;
+                while (rs.next()) {
+                    StudentChangeEvent event = toEvent(rs);
+                    // С начала журнала (afterVersion = 0) первые версии могли быть удалены purgeUpTo
+                    boolean gap = event.getVersion() != expected && !(afterVersion <= 0 && events.isEmpty());
+                    if (gap && !isSettled(event, rs.getTimestamp(11))) {
+                        break; // пропущенная версия может еще появиться - перечитаем в следующий раз
+                    }
+                    events.add(event);
+                    expected = event.getVersion() + 1;
+                }
+            }
+        }
+        return events;
+    }
+
+    // Событие после пропуска старше maxCommitLag: пропущенная версия уже не появится
+    private boolean isSettled(StudentChangeEvent event, Timestamp now) {
+        return now != null && now.getTime() - event.getTimestampMillis() >= maxCommitLagMillis;
+    }
+
+    /** Версия последнего записанного события (0 - журнал пуст). */
+    public long getLatestVersion() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LATEST_VERSION_SQL)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Удаляет события до версии version включительно (когда все потребители их обработали).
+     */
+    public int purgeUpTo(long version) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(PURGE_SQL)) {
+            pstmt.setLong(1, version);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static StudentChangeEvent toEvent(ResultSet rs) throws SQLException {
+        long version = rs.getLong(1);
+        StudentChangeEvent.Type type = StudentChangeEvent.Type.valueOf(rs.getString(2));
+        int id = rs.getInt(3);
+        Student student = null;
+        if (type == StudentChangeEvent.Type.SAVED) {
+            student = new Student(id, rs.getString(4), rs.getString(5), rs.getInt(6), rs.getString(7), rs.getString(8));
+        }
+        Timestamp createdAt = rs.getTimestamp(9);
+        long rowVersion = rs.getLong(10);
+        if (student != null) {
+            student.setVersion(rowVersion);
+        }
+        return new StudentChangeEvent(version, type, id, student, rowVersion, createdAt != null ? createdAt.getTime() : 0);
+    }
+}
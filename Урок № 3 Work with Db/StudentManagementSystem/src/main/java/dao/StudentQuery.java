@@ -0,0 +1,286 @@
+package dao;
+
+import model.Student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Составной запрос к таблице Students: диапазон возраста, префикс имени/фамилии,
+ * домен email, сортировка и постраничность (LIMIT/OFFSET или по ключу Id).
+ * Компилируется в один параметризованный SQL; текст SQL зависит только от набора
+ * заданных критериев ("формы" запроса) и кэшируется.
+ *
+ * Пример: new StudentQuery().ageBetween(18, 25).emailDomain("mail.ru").orderBy(SortField.AGE, false).limit(50)
+ */
+public class StudentQuery {
+
+    public enum SortField {
+        ID("Id"), NAME("Name"), SURNAME("Surname"), AGE("Age"), EMAIL("Email");
+
+        private final String column;
+
+        SortField(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() { return column; }
+    }
+
+    // Форма запроса -> готовый текст SQL
+    private static final Map<String, String> SQL_BY_SHAPE = new ConcurrentHashMap<>();
+
+    private Integer minAge;
+    private Integer maxAge;
+    private String namePrefix;
+    private String surnamePrefix;
+    private String emailDomain;
+    private SortField sortField = SortField.ID;
+    private boolean ascending = true;
+    private Integer afterId;
+    private int limit = -1;
+    private int offset;
+
+    // --- Критерии ---
+
+    /** Возраст в диапазоне [min, max] включительно. */
+    public StudentQuery ageBetween(int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Нижняя граница возраста больше верхней: " + min + " > " + max);
+        }
+        this.minAge = min;
+        this.maxAge = max;
+        return this;
+    }
+
+    public StudentQuery ageAtLeast(int min) {
+        this.minAge = min;
+        return this;
+    }
+
+    public StudentQuery ageAtMost(int max) {
+        this.maxAge = max;
+        return this;
+    }
+
+    public StudentQuery ageEquals(int age) {
+        return ageBetween(age, age);
+    }
+
+    /** Имя начинается с prefix (без учета регистра). */
+    public StudentQuery namePrefix(String prefix) {
+        this.namePrefix = prefix;
+        return this;
+    }
+
+    /** Фамилия начинается с prefix (без учета регистра). */
+    public StudentQuery surnamePrefix(String prefix) {
+        this.surnamePrefix = prefix;
+        return this;
+    }
+
+    /** Email в домене domain (часть после '@'). */
+    public StudentQuery emailDomain(String domain) {
+        this.emailDomain = domain.startsWith("@") ? domain.substring(1) : domain;
+        return this;
+    }
+
+    public StudentQuery orderBy(SortField field, boolean ascending) {
+        this.sortField = field;
+        this.ascending = ascending;
+        return this;
+    }
+
+    public StudentQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public StudentQuery offset(int offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Постраничность по ключу: только записи с Id больше lastId, сортировка по Id.
+     * Не сочетается с offset и сортировкой по другим полям.
+     */
+    public StudentQuery afterId(int lastId) {
+        this.afterId = lastId;
+        this.sortField = SortField.ID;
+        this.ascending = true;
+        return this;
+    }
+
+    // --- Геттеры (для проверки в памяти и в других хранилищах) ---
+
+    public Integer getMinAge() { return minAge; }
+    public Integer getMaxAge() { return maxAge; }
+    public String getNamePrefix() { return namePrefix; }
+    public String getSurnamePrefix() { return surnamePrefix; }
+    public String getEmailDomain() { return emailDomain; }
+    public SortField getSortField() { return sortField; }
+    public boolean isAscending() { return ascending; }
+    public Integer getAfterId() { return afterId; }
+    public int getLimit() { return limit; }
+    public int getOffset() { return offset; }
+
+    /**
+     * Копия запроса для одного шарда: без offset и с limit = offset + limit -
+     * страницу можно вырезать только после слияния результатов всех шардов.
+     */
+    StudentQuery forShard() {
+        StudentQuery copy = new StudentQuery();
+        copy.minAge = minAge;
+        copy.maxAge = maxAge;
+        copy.namePrefix = namePrefix;
+        copy.surnamePrefix = surnamePrefix;
+        copy.emailDomain = emailDomain;
+        copy.sortField = sortField;
+        copy.ascending = ascending;
+        copy.afterId = afterId;
+        copy.limit = limit >= 0 ? limit + offset : -1;
+        copy.offset = 0;
+        return copy;
+    }
+
+    // --- Проверка в памяти (для хранилищ без SQL) ---
+
+    /**
+     * Подходит ли студент под критерии (без учета сортировки, limit и offset).
+     * Сравнение строк - без учета регистра, как LIKE в MySQL.
+     */
+    public boolean matches(Student s) {
+        if (minAge != null && s.getAge() < minAge) return false;
+        if (maxAge != null && s.getAge() > maxAge) return false;
+        if (namePrefix != null && !startsWithIgnoreCase(s.getName(), namePrefix)) return false;
+        if (surnamePrefix != null && !startsWithIgnoreCase(s.getSurname(), surnamePrefix)) return false;
+        if (emailDomain != null && !endsWithIgnoreCase(s.getEmail(), "@" + emailDomain)) return false;
+        if (afterId != null && s.getId() <= afterId) return false;
+        return true;
+    }
+
+    /**
+     * Порядок результатов, как в ORDER BY из toSql(): по выбранному полю, затем по Id.
+     */
+    public Comparator<Student> comparator() {
+        Comparator<Student> byField;
+        switch (sortField) {
+            case NAME:
+                byField = Comparator.comparing(Student::getName, String.CASE_INSENSITIVE_ORDER);
+                break;
+            case SURNAME:
+                byField = Comparator.comparing(Student::getSurname, String.CASE_INSENSITIVE_ORDER);
+                break;
+            case AGE:
+                byField = Comparator.comparingInt(Student::getAge);
+                break;
+            case EMAIL:
+                byField = Comparator.comparing(Student::getEmail, String.CASE_INSENSITIVE_ORDER);
+                break;
+            default:
+                return ascending ? Comparator.comparingInt(Student::getId)
+                        : Comparator.comparingInt(Student::getId).reversed();
+        }
+        if (!ascending) {
+            byField = byField.reversed();
+        }
+        return byField.thenComparingInt(Student::getId);
+    }
+
+    private static boolean startsWithIgnoreCase(String value, String prefix) {
+        return value != null && value.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static boolean endsWithIgnoreCase(String value, String suffix) {
+        return value != null && value.length() >= suffix.length()
+                && value.regionMatches(true, value.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    // --- Компиляция в SQL ---
+
+    /**
+     * Текст SQL для этого набора критериев. Значения не подставляются - только "?".
+     */
+    String toSql() {
+        if (afterId != null && (offset > 0 || sortField != SortField.ID || !ascending)) {
+            throw new IllegalStateException("afterId нельзя сочетать с offset или другой сортировкой.");
+        }
+        return SQL_BY_SHAPE.computeIfAbsent(shapeKey(), k -> buildSql());
+    }
+
+    /**
+     * Значения параметров в том же порядке, что и "?" в toSql().
+     */
+    List<Object> parameters() {
+        List<Object> params = new ArrayList<>();
+        if (minAge != null) params.add(minAge);
+        if (maxAge != null) params.add(maxAge);
+        if (namePrefix != null) params.add(escapeLike(namePrefix) + "%");
+        if (surnamePrefix != null) params.add(escapeLike(surnamePrefix) + "%");
+        if (emailDomain != null) params.add("%@" + escapeLike(emailDomain));
+        if (afterId != null) params.add(afterId);
+        if (limit >= 0) {
+            params.add(limit);
+            if (offset > 0) params.add(offset);
+        } else if (offset > 0) {
+            params.add(offset);
+        }
+        return Collections.unmodifiableList(params);
+    }
+
+    private String shapeKey() {
+        // По одному символу на критерий + сортировка
+        return (minAge != null ? "a" : "-")
+                + (maxAge != null ? "A" : "-")
+                + (namePrefix != null ? "n" : "-")
+                + (surnamePrefix != null ? "s" : "-")
+                + (emailDomain != null ? "e" : "-")
+                + (afterId != null ? "k" : "-")
+                + (limit >= 0 ? "l" : "-")
+                + (offset > 0 ? "o" : "-")
+                + sortField.ordinal() + (ascending ? "+" : "-");
+    }
+
+    private String buildSql() {
+        List<String> where = new ArrayList<>();
+        // Диапазон возраста - по индексу на Age, если он есть
+        if (minAge != null) where.add("Age >= ?");
+        if (maxAge != null) where.add("Age <= ?");
+        // LIKE 'prefix%' может использовать индекс, в отличие от '%...%'
+        if (namePrefix != null) where.add("Name LIKE ?");
+        if (surnamePrefix != null) where.add("Surname LIKE ?");
+        if (emailDomain != null) where.add("Email LIKE ?");
+        if (afterId != null) where.add("Id > ?");
+
+        StringBuilder sql = new StringBuilder("SELECT " + StudentDAO.STUDENT_COLUMNS + " FROM Students");
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        sql.append(" ORDER BY ").append(sortField.getColumn()).append(ascending ? " ASC" : " DESC");
+        if (sortField != SortField.ID) {
+            sql.append(", Id ASC"); // стабильный порядок при равных значениях
+        }
+        if (limit >= 0) {
+            sql.append(" LIMIT ?");
+            if (offset > 0) sql.append(" OFFSET ?");
+        } else if (offset > 0) {
+            // В MySQL OFFSET без LIMIT не бывает - берем максимально возможный LIMIT
+            sql.append(" LIMIT 18446744073709551615 OFFSET ?");
+        }
+        return sql.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Override
+    public String toString() {
+        return toSql() + " " + parameters();
+    }
+}
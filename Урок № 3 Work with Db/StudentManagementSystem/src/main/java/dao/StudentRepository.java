@@ -0,0 +1,96 @@
+package dao;
+
+import model.Student;
+import model.StudentBatch;
+import model.StudentSummary;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище студентов. Реализации: StudentDAO (MySQL) и InMemoryStudentRepository
+ * (весь набор данных в памяти процесса).
+ * Методы объявляют SQLException, чтобы реализации были взаимозаменяемы;
+ * нарушение уникальности ID или email - DuplicateStudentException.
+ */
+public interface StudentRepository {
+
+    // --- Подписка на изменения ---
+
+    void addChangeListener(StudentChangeListener listener);
+
+    void removeChangeListener(StudentChangeListener listener);
+
+    // --- Добавление ---
+
+    void addStudent(Student student) throws SQLException;
+
+    BatchResult addStudents(Iterable<Student> students) throws SQLException;
+
+    BatchResult addStudents(Iterable<Student> students, int batchSize) throws SQLException;
+
+    BatchResult upsertStudents(Iterable<Student> students, int batchSize) throws SQLException;
+
+    // --- Чтение ---
+
+    boolean isEmailExists(String email) throws SQLException;
+
+    boolean isEmailExistsForOtherId(String email, int id) throws SQLException;
+
+    /** Все студенты по возрастанию Id. */
+    List<Student> getAllStudents() throws SQLException;
+
+    /** Обход всех студентов по возрастанию Id; возвращает количество записей. */
+    int forEachStudent(Consumer<Student> action) throws SQLException;
+
+    /** Поток всех студентов по возрастанию Id; поток нужно закрыть. */
+    Stream<Student> streamAllStudents() throws SQLException;
+
+    List<Student> getStudentsAfterId(int lastId, int limit) throws SQLException;
+
+    Student getStudentById(int id) throws SQLException;
+
+    Student getStudentByEmail(String email) throws SQLException;
+
+    Map<Integer, Student> getStudentsByIds(Collection<Integer> ids) throws SQLException;
+
+    Map<String, Student> getStudentsByEmails(Collection<String> emails) throws SQLException;
+
+    List<Student> searchByName(String query) throws SQLException;
+
+    List<Student> searchByName(String query, int limit) throws SQLException;
+
+    List<StudentSummary> searchSummariesByName(String query, int limit) throws SQLException;
+
+    List<Student> filterByAge(int age) throws SQLException;
+
+    List<Student> filterByAgeRange(int minAge, int maxAge) throws SQLException;
+
+    List<Student> findStudents(StudentQuery query) throws SQLException;
+
+    // --- Компактные выборки (StudentBatch) ---
+
+    /** Все студенты по возрастанию Id в компактном виде; по умолчанию - через forEachStudent. */
+    default StudentBatch getAllStudentsBatch() throws SQLException {
+        StudentBatch.Builder builder = new StudentBatch.Builder();
+        forEachStudent(builder::add);
+        return builder.build();
+    }
+
+    /** Результат findStudents в компактном виде. */
+    default StudentBatch findStudentsBatch(StudentQuery query) throws SQLException {
+        return StudentBatch.of(findStudents(query));
+    }
+
+    // --- Обновление и удаление ---
+
+    boolean updateStudent(Student student) throws SQLException;
+
+    boolean deleteStudent(int id) throws SQLException;
+
+    int deleteAllStudents() throws SQLException;
+}
@@ -0,0 +1,230 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Отчеты по студентам, посчитанные на стороне БД: каждый отчет - один запрос
+ * с COUNT/MIN/MAX/SUM и GROUP BY, по сети передаются только итоги, а не вся таблица.
+ *
+ * Для шардированного хранилища запрос выполняется на каждом шарде по очереди,
+ * итоги складываются (поэтому средний возраст считается как SUM / COUNT).
+ * Если отчеты нужны часто, а записей много - см. StudentStatsAggregate: те же
+ * итоги в памяти, обновляемые при каждой записи.
+ */
+public class StudentStats {
+
+    // Домен email - все после '@' в нижнем регистре; LOCATE и SUBSTRING есть и в MySQL, и в H2
+    static final String DOMAIN_EXPR = "LOWER(SUBSTRING(Email, LOCATE('@', Email) + 1))";
+
+    private static final String SUMMARY_SQL =
+            "SELECT COUNT(*), MIN(Age), MAX(Age), SUM(Age), COUNT(Phone) FROM Students";
+    // Группировка по Age читает только индекс idx_students_age
+    private static final String COUNT_BY_AGE_SQL =
+            "SELECT Age, COUNT(*) FROM Students GROUP BY Age ORDER BY Age";
+    private static final String COUNT_BY_AGE_BUCKET_SQL =
+            "SELECT FLOOR(Age / ?) AS Bucket, COUNT(*) FROM Students GROUP BY Bucket ORDER BY Bucket";
+    private static final String COUNT_BY_DOMAIN_SQL =
+            "SELECT " + DOMAIN_EXPR + " AS Domain, COUNT(*) AS Cnt FROM Students"
+                    + " GROUP BY Domain ORDER BY Cnt DESC, Domain";
+    private static final String TOP_DOMAINS_SQL = COUNT_BY_DOMAIN_SQL + " LIMIT ?";
+
+    private static final List<String> STATEMENTS = List.of(
+            SUMMARY_SQL, COUNT_BY_AGE_SQL, COUNT_BY_AGE_BUCKET_SQL, COUNT_BY_DOMAIN_SQL, TOP_DOMAINS_SQL);
+
+    private final List<StudentDAO> sources;
+
+    public StudentStats(StudentDAO dao) {
+        this.sources = List.of(dao);
+        dao.registerStatements(STATEMENTS);
+    }
+
+    /** Отчеты по всем шардам хранилища. */
+    public StudentStats(ShardedStudentRepository repository) {
+        List<StudentDAO> daos = new ArrayList<>();
+        for (int i = 0; i < repository.getShardMap().shardCount(); i++) {
+            StudentDAO dao = repository.getShard(i);
+            dao.registerStatements(STATEMENTS);
+            daos.add(dao);
+        }
+        this.sources = List.copyOf(daos);
+    }
+
+    /** Общие итоги: количество, возраст (мин., макс., средний) и сколько указали телефон. */
+    public Summary getSummary() throws SQLException {
+        long count = 0;
+        long ageSum = 0;
+        long withPhone = 0;
+        int minAge = Integer.MAX_VALUE;
+        int maxAge = Integer.MIN_VALUE;
+        for (StudentDAO dao : sources) {
+            DaoMetrics.Sample m = dao.getMetrics().start("stats.summary");
+            try (Connection conn = dao.readConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(SUMMARY_SQL)) {
+                m.acquired();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    m.executed();
+                    rs.next();
+                    long shardCount = rs.getLong(1);
+                    if (shardCount > 0) {
+                        count += shardCount;
+                        minAge = Math.min(minAge, rs.getInt(2));
+                        maxAge = Math.max(maxAge, rs.getInt(3));
+                        ageSum += rs.getLong(4);
+                        withPhone += rs.getLong(5);
+                    }
+                    m.rows(1);
+                }
+            } catch (SQLException e) {
+                throw m.failed(e);
+            } finally {
+                m.stop();
+            }
+        }
+        return new Summary(count, minAge, maxAge, ageSum, withPhone);
+    }
+
+    /** Количество студентов каждого возраста, по возрастанию возраста. */
+    public SortedMap<Integer, Long> countByAge() throws SQLException {
+        SortedMap<Integer, Long> result = new TreeMap<>();
+        for (StudentDAO dao : sources) {
+            DaoMetrics.Sample m = dao.getMetrics().start("stats.countByAge");
+            try (Connection conn = dao.readConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(COUNT_BY_AGE_SQL)) {
+                m.acquired();
+                readCounts(pstmt, result, m, 1);
+            } catch (SQLException e) {
+                throw m.failed(e);
+            } finally {
+                m.stop();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Распределение по возрастным интервалам шириной width: ключ - начало интервала
+     * (при width = 5: 15 - это 15..19 лет). Пустые интервалы не включаются.
+     */
+    public SortedMap<Integer, Long> countByAgeBucket(int width) throws SQLException {
+        if (width < 1) {
+            throw new IllegalArgumentException("Ширина интервала должна быть положительной: " + width);
+        }
+        SortedMap<Integer, Long> result = new TreeMap<>();
+        for (StudentDAO dao : sources) {
+            DaoMetrics.Sample m = dao.getMetrics().start("stats.countByAgeBucket");
+            try (Connection conn = dao.readConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(COUNT_BY_AGE_BUCKET_SQL)) {
+                m.acquired();
+                pstmt.setInt(1, width);
+                readCounts(pstmt, result, m, width);
+            } catch (SQLException e) {
+                throw m.failed(e);
+            } finally {
+                m.stop();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Самые частые домены email (без учета регистра): не больше limit доменов,
+     * по убыванию количества, при равенстве - по имени домена.
+     */
+    public Map<String, Long> countByEmailDomain(int limit) throws SQLException {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (StudentDAO dao : sources) {
+            DaoMetrics.Sample m = dao.getMetrics().start("stats.countByEmailDomain");
+            int rows = 0;
+            // Одна БД обрезает по limit сама; с нескольких шардов нужны все домены для сложения
+            boolean single = sources.size() == 1;
+            try (Connection conn = dao.readConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(single ? TOP_DOMAINS_SQL : COUNT_BY_DOMAIN_SQL)) {
+                m.acquired();
+                if (single) {
+                    pstmt.setInt(1, Math.max(0, limit));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    m.executed();
+                    while (rs.next()) {
+                        totals.merge(rs.getString(1), rs.getLong(2), Long::sum);
+                        rows++;
+                    }
+                }
+            } catch (SQLException e) {
+                throw m.failed(e);
+            } finally {
+                m.rows(rows);
+                m.stop();
+            }
+        }
+        return topCounts(totals, limit);
+    }
+
+    private static void readCounts(PreparedStatement pstmt, Map<Integer, Long> result,
+                                   DaoMetrics.Sample m, int keyScale) throws SQLException {
+        int rows = 0;
+        try (ResultSet rs = pstmt.executeQuery()) {
+            m.executed();
+            while (rs.next()) {
+                result.merge(rs.getInt(1) * keyScale, rs.getLong(2), Long::sum);
+                rows++;
+            }
+        } finally {
+            m.rows(rows);
+        }
+    }
+
+    /** limit ключей с наибольшими значениями (при равенстве - по ключу), в порядке убывания. */
+    static Map<String, Long> topCounts(Map<String, Long> counts, int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Collections.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> e : entries) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /** Общие итоги по студентам. Для пустой таблицы возраст не определен (0). */
+    public static class Summary {
+        private final long count;
+        private final int minAge;
+        private final int maxAge;
+        private final long ageSum;
+        private final long withPhone;
+
+        Summary(long count, int minAge, int maxAge, long ageSum, long withPhone) {
+            this.count = count;
+            this.minAge = count > 0 ? minAge : 0;
+            this.maxAge = count > 0 ? maxAge : 0;
+            this.ageSum = ageSum;
+            this.withPhone = withPhone;
+        }
+
+        public long getCount() { return count; }
+        public int getMinAge() { return minAge; }
+        public int getMaxAge() { return maxAge; }
+        public double getAverageAge() { return count > 0 ? (double) ageSum / count : 0; }
+        public long getWithPhone() { return withPhone; }
+
+        @Override
+        public String toString() {
+            return String.format("Студентов: %d | Возраст: мин. %d, макс. %d, средний %.1f | С телефоном: %d",
+                    count, minAge, maxAge, getAverageAge(), withPhone);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package dao;
+
+import model.Student;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Те же итоги, что StudentStats, но в памяти: считаются один раз при rebuild,
+ * а затем обновляются при каждой записи через хранилище (подписчик StudentChangeListener),
+ * так что отчет не требует запроса к БД.
+ *
+ * Для каждого студента хранится только возраст, домен email, признак телефона и версия -
+ * этого достаточно, чтобы при обновлении или удалении вычесть его старый вклад, а
+ * уведомление, опоздавшее относительно более новой версии, пропустить.
+ * Изменения, сделанные мимо хранилища, не видны до следующего rebuild.
+ */
+public class StudentStatsAggregate implements StudentChangeListener {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Текущие итоги; rebuild считает новые и подменяет их целиком
+    private Totals totals = new Totals();
+    // Изменения, пришедшие во время rebuild (null - пересчета нет): применяются к новым итогам
+    private List<Change> pending;
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Подписывается на хранилище и считает итоги по его текущему содержимому.
+     * Подписка - до обхода, чтобы не пропустить изменения, сделанные во время него.
+     */
+    public static StudentStatsAggregate attach(StudentRepository repository) throws SQLException {
+        StudentStatsAggregate aggregate = new StudentStatsAggregate();
+        repository.addChangeListener(aggregate);
+        // Обход - с основного сервера: реплика может еще не видеть последних записей
+        try {
+            ReadSession.primaryOnly().call(() -> {
+                aggregate.rebuild(repository);
+                return null;
+            });
+        } catch (SQLException e) {
+            repository.removeChangeListener(aggregate);
+            throw e;
+        }
+        return aggregate;
+    }
+
+    /**
+     * Пересчитывает итоги по текущему содержимому хранилища. Обход идет без блокировки:
+     * отчеты отдают прежние итоги, а запись в хранилище не ждет конца обхода.
+     * Изменения, пришедшие за время обхода, применяются к новым итогам перед подменой.
+     */
+    public void rebuild(StudentRepository repository) throws SQLException {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Totals fresh = new Totals();
+            boolean done = false;
+            try {
+                repository.forEachStudent(fresh::add);
+                done = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (done) {
+                        for (Change change : pending) {
+                            change.applyTo(fresh);
+                        }
+                        totals = fresh;
+                    }
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // --- Отчеты (как в StudentStats) ---
+
+    public StudentStats.Summary getSummary() {
+        lock.readLock().lock();
+        try {
+            Totals t = totals;
+            if (t.entries.isEmpty()) {
+                return new StudentStats.Summary(0, 0, 0, 0, 0);
+            }
+            return new StudentStats.Summary(t.entries.size(), t.ageCounts.firstKey(), t.ageCounts.lastKey(),
+                    t.ageSum, t.withPhone);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SortedMap<Integer, Long> countByAge() {
+        lock.readLock().lock();
+        try {
+            return new TreeMap<>(totals.ageCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ключ - начало интервала шириной width, как в StudentStats.countByAgeBucket. */
+    public SortedMap<Integer, Long> countByAgeBucket(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Ширина интервала должна быть положительной: " + width);
+        }
+        SortedMap<Integer, Long> result = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, Long> e : totals.ageCounts.entrySet()) {
+                result.merge(Math.floorDiv(e.getKey(), width) * width, e.getValue(), Long::sum);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public Map<String, Long> countByEmailDomain(int limit) {
+        lock.readLock().lock();
+        try {
+            return StudentStats.topCounts(totals.domainCounts, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Подписка на изменения ---
+
+    @Override
+    public void onStudentSaved(Student student) {
+        Student copy = new Student(student);
+        apply(t -> t.save(copy, false));
+    }
+
+    @Override
+    public void onStudentCreated(Student student) {
+        Student copy = new Student(student);
+        apply(t -> t.save(copy, true));
+    }
+
+    @Override
+    public void onStudentDeleted(int id, long version) {
+        apply(t -> t.delete(id, version));
+    }
+
+    @Override
+    public void onAllStudentsDeleted() {
+        apply(Totals::clear);
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            change.applyTo(totals);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Изменение итогов (запоминается, пока идет rebuild). */
+    private interface Change {
+        void applyTo(Totals totals);
+    }
+
+    /** Итоги и вклад каждого студента; меняются только под блокировкой записи. */
+    private static class Totals {
+        // Id -> вклад студента в итоги
+        final Map<Integer, Entry> entries = new HashMap<>();
+        final TreeMap<Integer, Long> ageCounts = new TreeMap<>();
+        final Map<String, Long> domainCounts = new HashMap<>();
+        final Tombstones deleted = new Tombstones();
+        long ageSum;
+        long withPhone;
+
+        void save(Student s, boolean created) {
+            int id = s.getId();
+            Entry current = entries.get(id);
+            if (current != null && Tombstones.isOlder(s.getVersion(), current.version)) {
+                return; // уже учтена более новая версия
+            }
+            if (current == null && deleted.hides(id, s.getVersion(), created)) {
+                return; // опоздавшее уведомление об уже удаленном студенте
+            }
+            boolean createSeen = created || current != null && current.createSeen;
+            remove(id);
+            put(id, Entry.of(s, createSeen));
+        }
+
+        void delete(int id, long version) {
+            Entry current = entries.get(id);
+            if (current != null && Tombstones.isOlder(version, current.version)) {
+                return;
+            }
+            remove(id);
+            deleted.add(id, version, current != null && current.createSeen);
+        }
+
+        /** Студент из обхода хранилища: уведомление о его добавлении считается полученным. */
+        void add(Student s) {
+            put(s.getId(), Entry.of(s, true));
+        }
+
+        private void put(int id, Entry entry) {
+            entries.put(id, entry);
+            ageCounts.merge(entry.age, 1L, Long::sum);
+            domainCounts.merge(entry.domain, 1L, Long::sum);
+            ageSum += entry.age;
+            if (entry.hasPhone) {
+                withPhone++;
+            }
+        }
+
+        private void remove(int id) {
+            Entry entry = entries.remove(id);
+            if (entry == null) {
+                return;
+            }
+            decrement(ageCounts, entry.age);
+            decrement(domainCounts, entry.domain);
+            ageSum -= entry.age;
+            if (entry.hasPhone) {
+                withPhone--;
+            }
+        }
+
+        void clear() {
+            entries.clear();
+            ageCounts.clear();
+            domainCounts.clear();
+            deleted.clear();
+            ageSum = 0;
+            withPhone = 0;
+        }
+    }
+
+    // Счетчик, дошедший до нуля, удаляется - как пустая группа в GROUP BY
+    private static <K> void decrement(Map<K, Long> counts, K key) {
+        counts.computeIfPresent(key, (k, v) -> v > 1 ? v - 1 : null);
+    }
+
+    /** Домен email так же, как StudentStats.DOMAIN_EXPR: все после '@' в нижнем регистре. */
+    private static String domainOf(String email) {
+        if (email == null) {
+            return "";
+        }
+        return email.substring(email.indexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry {
+        final int age;
+        final String domain;
+        final boolean hasPhone;
+        final long version;
+        // Получено ли уведомление о добавлении этой строки (см. Tombstones)
+        final boolean createSeen;
+
+        Entry(int age, String domain, boolean hasPhone, long version, boolean createSeen) {
+            this.age = age;
+            this.domain = domain;
+            this.hasPhone = hasPhone;
+            this.version = version;
+            this.createSeen = createSeen;
+        }
+
+        static Entry of(Student s, boolean createSeen) {
+            return new Entry(s.getAge(), domainOf(s.getEmail()), s.getPhone() != null, s.getVersion(), createSeen);
+        }
+    }
+}
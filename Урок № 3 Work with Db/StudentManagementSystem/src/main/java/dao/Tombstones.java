@@ -0,0 +1,78 @@
+package dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Версии недавно удаленных студентов - для подписчиков, хранящих состояние (индекс, итоги).
+ * Уведомление о сохранении, опоздавшее относительно удаления, не должно вернуть студента:
+ * изменение с версией не больше удаленной (или с неизвестной версией) пропускается.
+ * Новая строка с тем же Id приходит как onStudentCreated: если добавление удаленной строки
+ * подписчик уже видел, это повторное добавление и отметка снимается, иначе это опоздавшее
+ * добавление самой удаленной строки, и оно пропускается (один раз).
+ * Хранятся только последние MAX_SIZE удалений - опоздание уведомлений измеряется миллисекундами.
+ * Не потокобезопасен: вызывается под блокировкой подписчика.
+ */
+final class Tombstones {
+
+    private static final int MAX_SIZE = 4096;
+
+    private final Map<Integer, Mark> marks = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Mark> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /** Отметка об удалении: версия удаленной строки и ждем ли еще уведомления о ее добавлении. */
+    private static final class Mark {
+        final long version;
+        boolean awaitingCreate;
+
+        Mark(long version, boolean awaitingCreate) {
+            this.version = version;
+            this.awaitingCreate = awaitingCreate;
+        }
+    }
+
+    /**
+     * Уведомление с версией incoming устарело относительно уже учтенной held.
+     * 0 - версия неизвестна, такое уведомление применяется.
+     */
+    static boolean isOlder(long incoming, long held) {
+        return incoming > 0 && incoming < held;
+    }
+
+    /**
+     * Отмечает удаление студента id с версией version (0 - неизвестна).
+     * createSeen - подписчик уже получил уведомление о добавлении удаленной строки.
+     */
+    void add(int id, long version, boolean createSeen) {
+        marks.put(id, new Mark(version, !createSeen));
+    }
+
+    /**
+     * Пропустить ли сохранение студента id с версией version; created - это уведомление
+     * о добавлении новой строки. Принятое сохранение снимает отметку об удалении.
+     */
+    boolean hides(int id, long version, boolean created) {
+        Mark mark = marks.get(id);
+        if (mark == null) {
+            return false;
+        }
+        if (created) {
+            if (mark.awaitingCreate) {
+                mark.awaitingCreate = false; // опоздавшее добавление удаленной строки
+                return true;
+            }
+        } else if (version == 0 || mark.version == 0 || version <= mark.version) {
+            return true;
+        }
+        marks.remove(id);
+        return false;
+    }
+
+    void clear() {
+        marks.clear();
+    }
+}
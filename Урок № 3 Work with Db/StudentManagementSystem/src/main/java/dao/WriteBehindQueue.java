@@ -0,0 +1,701 @@
+package dao;
+
+import model.Student;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Отложенная запись (write-behind) обновлений и удалений студентов.
+ * updateStudent/deleteStudent только ставят изменение в очередь и сразу возвращаются;
+ * изменения одного Id схлопываются (в БД уходит последнее состояние), а фоновый поток
+ * сбрасывает очередь одной транзакцией через StudentDAO.applyWrites - когда накопилось
+ * maxPending записей или прошел flushInterval.
+ *
+ * Каждое изменение до возврата дописывается в журнал на диске (с fsync), поэтому после сбоя
+ * очередь восстанавливается при следующем запуске. Повторное применение журнала безопасно:
+ * обновление и удаление по Id идемпотентны. fsync выполняется вне общей блокировки и один
+ * на группу: пока идет один, следующие изменения дописываются в файл, а затем все они
+ * подтверждаются следующим fsync (group commit). Если дописать или сбросить на диск не
+ * удалось, журнал обрезается до последнего подтвержденного размера и вызов получает IOException.
+ *
+ * Повторяются только временные ошибки БД (StudentDAO.isTransient). Изменение, которое не
+ * пройдет и при повторе (например, слишком длинное значение), убирается из очереди и журнала
+ * и дописывается с причиной в файл отклоненных изменений рядом с журналом ("*.rejected").
+ *
+ * Порядок относительно прямых вызовов DAO не гарантируется: кому нужно прочитать
+ * собственную запись или добавить студента с тем же Id, сначала вызывает flush() или awaitFlushed().
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(WriteBehindQueue.class.getName());
+
+    public static final Path DEFAULT_JOURNAL = Path.of("student-writes.journal");
+    private static final int DEFAULT_MAX_PENDING = 500;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+    // Пауза перед повтором, если БД недоступна
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final StudentDAO dao;
+    private final Path journal;
+    private final int maxPending;
+    private final long flushIntervalMillis;
+
+    private final Path rejectedFile;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushedChanged = lock.newCondition();
+    // Одновременно выполняется не больше одного сброса
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Одновременно выполняется не больше одного fsync журнала; берется до lock
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    // Id -> последнее состояние; null - удаление. Защищено lock
+    private Map<Integer, Student> pending = new LinkedHashMap<>();
+    private FileChannel journalChannel;
+    // Дописанные в журнал, но еще не сброшенные на диск изменения (в порядке записи). Защищено lock
+    private List<Append> unsynced = new ArrayList<>();
+    private long syncedSize;  // размер журнала, сброшенный на диск
+    private long enqueuedSeq; // номер последнего поставленного изменения
+    private long flushedSeq;  // все изменения с номером <= flushedSeq уже в БД
+    private int awaiting;     // сколько потоков ждет сброса
+    private boolean closed;
+    private final Thread flusher;
+
+    // Счетчики для статистики (защищены lock)
+    private long enqueued;
+    private long coalesced;
+    private long flushes;
+    private long failedFlushes;
+    private long writtenRows;
+    private long rejected;
+
+    public WriteBehindQueue(StudentDAO dao) throws IOException {
+        this(dao, DEFAULT_JOURNAL, DEFAULT_MAX_PENDING, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public WriteBehindQueue(StudentDAO dao, Path journal, int maxPending, long flushIntervalMillis) throws IOException {
+        if (maxPending <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Размер очереди и интервал сброса должны быть положительными.");
+        }
+        this.dao = dao;
+        this.journal = journal;
+        this.maxPending = maxPending;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.rejectedFile = journal.resolveSibling(journal.getFileName() + ".rejected");
+
+        replayJournal();
+        journalChannel = openJournal();
+        syncedSize = journalChannel.size();
+
+        flusher = new Thread(this::runFlusher, "student-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // --- Постановка в очередь ---
+
+    /** Ставит обновление в очередь; в БД уйдет состояние на момент вызова. */
+    public void updateStudent(Student student) throws IOException {
+        Student copy = new Student(student);
+        enqueue(copy.getId(), copy, "U\t" + encode(copy));
+    }
+
+    /** Ставит удаление в очередь. */
+    public void deleteStudent(int id) throws IOException {
+        enqueue(id, null, "D\t" + id);
+    }
+
+    private void enqueue(int id, Student student, String journalLine) throws IOException {
+        Append append = new Append(id, student, journalLine);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Очередь отложенной записи закрыта.");
+            }
+            // Сначала журнал: изменение, о котором вызывающий узнал, не должно потеряться
+            long size = journalChannel.size();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap((journalLine + "\n").getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    journalChannel.write(buffer);
+                }
+            } catch (IOException e) {
+                // Недописанная строка испортила бы следующую запись журнала
+                truncateJournal(size);
+                throw e;
+            }
+            unsynced.add(append);
+        } finally {
+            lock.unlock();
+        }
+
+        syncLock.lock();
+        try {
+            if (!append.done) {
+                syncJournal();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+        if (append.error != null) {
+            throw new IOException("Изменение студента с ID " + id + " не записано в журнал: "
+                    + append.error.getMessage(), append.error);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск все, что дописано в журнал к этому моменту, и ставит эти изменения
+     * в очередь. fsync - без lock, чтобы другие потоки могли дописывать в журнал.
+     * При ошибке журнал обрезается до последнего сброшенного размера, а все еще не
+     * сброшенные изменения (и дописанные во время fsync) завершаются с ошибкой.
+     * Вызывается под syncLock.
+     */
+    private void syncJournal() {
+        List<Append> group;
+        FileChannel channel;
+        long groupEnd;
+        lock.lock();
+        try {
+            group = unsynced;
+            if (group.isEmpty()) {
+                return;
+            }
+            unsynced = new ArrayList<>();
+            channel = journalChannel;
+            groupEnd = channel.size();
+        } catch (IOException e) {
+            failUnsynced(e);
+            return;
+        } finally {
+            lock.unlock();
+        }
+
+        IOException error = null;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        lock.lock();
+        try {
+            if (error == null) {
+                syncedSize = groupEnd;
+                accept(group);
+            } else {
+                unsynced.addAll(0, group);
+                failUnsynced(error);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ставит сброшенные на диск изменения в очередь. Вызывается под lock. */
+    private void accept(List<Append> appends) {
+        for (Append a : appends) {
+            enqueuedSeq++;
+            enqueued++;
+            merge(pending, a.id, a.student);
+            a.done = true;
+        }
+        if (pending.size() >= maxPending) {
+            flushNeeded.signal();
+        }
+    }
+
+    /** Отменяет все не сброшенные на диск изменения и обрезает их из журнала. Вызывается под lock. */
+    private void failUnsynced(IOException error) {
+        truncateJournal(syncedSize);
+        for (Append a : unsynced) {
+            a.error = error;
+            a.done = true;
+        }
+        unsynced = new ArrayList<>();
+    }
+
+    private void truncateJournal(long size) {
+        try {
+            journalChannel.truncate(size);
+        } catch (IOException e) {
+            // При повторном запуске недописанная строка будет пропущена
+            LOG.log(Level.WARNING, "Не удалось обрезать журнал до " + size + " байт", e);
+        }
+    }
+
+    /** Изменение, дописанное в журнал и ждущее fsync. Поля done и error защищены lock. */
+    private static class Append {
+        final int id;
+        final Student student; // null - удаление
+        final String line;
+        boolean done;
+        IOException error;
+
+        Append(int id, Student student, String line) {
+            this.id = id;
+            this.student = student;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Схлопывает изменение с уже стоящим в очереди: остается последнее состояние.
+     * Обновление после удаления ничего не меняет (в БД строки уже не будет).
+     */
+    private void merge(Map<Integer, Student> target, int id, Student student) {
+        if (target.containsKey(id)) {
+            coalesced++;
+            if (student != null && target.get(id) == null) {
+                return;
+            }
+        }
+        target.put(id, student);
+    }
+
+    // --- Сброс ---
+
+    /**
+     * Синхронно записывает в БД все, что стоит в очереди на момент вызова.
+     * При временной ошибке БД изменения остаются в очереди (и в журнале) и будут повторены;
+     * при любой другой ошибке весь пакет отклоняется (см. файл отклоненных изменений).
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            Map<Integer, Student> batch;
+            long upTo;
+            lock.lock();
+            try {
+                batch = pending;
+                upTo = enqueuedSeq;
+                if (batch.isEmpty()) {
+                    markFlushed(upTo);
+                    return;
+                }
+                pending = new LinkedHashMap<>();
+            } finally {
+                lock.unlock();
+            }
+
+            List<Student> updates = new ArrayList<>();
+            List<Integer> deletes = new ArrayList<>();
+            for (Map.Entry<Integer, Student> e : batch.entrySet()) {
+                if (e.getValue() != null) {
+                    updates.add(e.getValue());
+                } else {
+                    deletes.add(e.getKey());
+                }
+            }
+
+            BatchResult result;
+            try {
+                result = dao.applyWrites(updates, deletes);
+            } catch (SQLException e) {
+                if (StudentDAO.isTransient(e)) {
+                    restore(batch);
+                    throw e;
+                }
+                // Ошибка не связана с отдельной строкой и при повторе не исчезнет
+                rejectBatch(batch, e.getMessage());
+                finishFlush(0, batch.size(), upTo);
+                throw e;
+            } catch (RuntimeException e) {
+                restore(batch);
+                throw e;
+            }
+
+            List<String> rejectedLines = new ArrayList<>();
+            for (BatchResult.Rejection r : result.getRejections()) {
+                LOG.warning("Изменение отклонено: " + r);
+                int i = r.getIndex();
+                rejectedLines.add(comment(r.getReason()));
+                rejectedLines.add(i < updates.size()
+                        ? "U\t" + encode(updates.get(i)) : "D\t" + deletes.get(i - updates.size()));
+            }
+            writeRejected(rejectedLines);
+            finishFlush(result.getWritten(), result.getRejectedCount(), upTo);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Счетчики, сокращение журнала и отметка о сбросе после обработанного пакета. */
+    private void finishFlush(int written, int rejectedCount, long upTo) {
+        syncLock.lock();
+        try {
+            lock.lock();
+            try {
+                flushes++;
+                writtenRows += written;
+                rejected += rejectedCount;
+                compactJournal();
+                markFlushed(upTo);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void rejectBatch(Map<Integer, Student> batch, String reason) {
+        LOG.warning("Пакет из " + batch.size() + " изменений отклонен: " + reason);
+        List<String> lines = new ArrayList<>(batch.size() + 1);
+        lines.add(comment(reason));
+        for (Map.Entry<Integer, Student> e : batch.entrySet()) {
+            lines.add(e.getValue() == null ? "D\t" + e.getKey() : "U\t" + encode(e.getValue()));
+        }
+        writeRejected(lines);
+    }
+
+    // Причина - одной строкой (сообщения драйвера бывают многострочными)
+    private static String comment(String reason) {
+        return "# " + String.valueOf(reason).replaceAll("\\s*[\\r\\n]+\\s*", " ");
+    }
+
+    /**
+     * Дописывает отклоненные изменения в формате журнала; перед ними - строка "# причина".
+     * Такой файл можно вручную вернуть в журнал, когда причина устранена.
+     */
+    private void writeRejected(List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        try {
+            Files.write(rejectedFile, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Не удалось записать отклоненные изменения в " + rejectedFile + ": " + lines, e);
+        }
+    }
+
+    /**
+     * Ждет, пока в БД окажутся все изменения, поставленные до вызова (сброс запускается сразу).
+     * Возвращает false, если не дождались за timeoutMillis.
+     */
+    public boolean awaitFlushed(long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long target = enqueuedSeq;
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            awaiting++;
+            try {
+                flushNeeded.signal();
+                while (flushedSeq < target) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = flushedChanged.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                awaiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Возвращает неудачно сброшенные изменения в очередь; более новые изменения тех же Id важнее. */
+    private void restore(Map<Integer, Student> batch) {
+        lock.lock();
+        try {
+            failedFlushes++;
+            Map<Integer, Student> merged = new LinkedHashMap<>(batch);
+            long before = coalesced;
+            for (Map.Entry<Integer, Student> e : pending.entrySet()) {
+                merge(merged, e.getKey(), e.getValue());
+            }
+            coalesced = before; // это не новые схлопывания, а возврат в очередь
+            pending = merged;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markFlushed(long upTo) {
+        if (upTo > flushedSeq) {
+            flushedSeq = upTo;
+            flushedChanged.signalAll();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            boolean stop;
+            lock.lock();
+            try {
+                if (!closed && pending.size() < maxPending && awaiting == 0) {
+                    flushNeeded.await(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                stop = closed;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (stop) {
+                return; // последний сброс делает close()
+            }
+            try {
+                flush();
+            } catch (SQLException | RuntimeException e) {
+                if (e instanceof SQLException && !StudentDAO.isTransient((SQLException) e)) {
+                    continue; // пакет уже отклонен, повторять нечего
+                }
+                LOG.log(Level.WARNING, "Не удалось записать очередь, повтор через " + RETRY_DELAY_MS + " мс", e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Останавливает фоновый поток и записывает остаток очереди.
+     * Если БД недоступна, изменения остаются в журнале до следующего запуска.
+     */
+    @Override
+    public void close() throws SQLException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            syncLock.lock();
+            try {
+                // Изменения, дописанные до закрытия, но еще ждущие fsync
+                syncJournal();
+                lock.lock();
+                try {
+                    journalChannel.close();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Ошибка закрытия журнала", e);
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    // --- Журнал ---
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /** Восстанавливает очередь из журнала, оставшегося после предыдущего запуска. */
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    String[] f = line.split("\t", -1);
+                    if (f[0].equals("D") && f.length == 2) {
+                        merge(pending, Integer.parseInt(f[1]), null);
+                    } else if (f[0].equals("U") && f.length == 7) {
+                        Student s = new Student(Integer.parseInt(f[1]), unescape(f[2]), unescape(f[3]),
+                                Integer.parseInt(f[4]), unescape(f[5]), unescape(f[6]));
+                        merge(pending, s.getId(), s);
+                    } else {
+                        throw new IllegalArgumentException("неизвестный формат");
+                    }
+                    enqueuedSeq++;
+                } catch (RuntimeException e) {
+                    // Обычно недописанная последняя строка при сбое
+                    LOG.warning("Пропущена строка журнала " + lineNumber + ": " + line);
+                }
+            }
+        }
+        coalesced = 0;
+    }
+
+    /**
+     * После успешного сброса в журнале оставляем только то, что еще в очереди, и изменения,
+     * ждущие fsync (новый журнал сбрасывается на диск целиком - они тоже подтверждаются).
+     * Вызывается под syncLock и lock, поэтому дописывание в журнал и fsync в это время невозможны.
+     */
+    private void compactJournal() {
+        try {
+            if (pending.isEmpty() && unsynced.isEmpty()) {
+                journalChannel.truncate(0);
+                journalChannel.force(false);
+                syncedSize = 0;
+                return;
+            }
+            Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+            List<String> lines = new ArrayList<>(pending.size() + unsynced.size());
+            for (Map.Entry<Integer, Student> e : pending.entrySet()) {
+                lines.add(e.getValue() == null ? "D\t" + e.getKey() : "U\t" + encode(e.getValue()));
+            }
+            for (Append a : unsynced) {
+                lines.add(a.line);
+            }
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                tmpChannel.force(true);
+            }
+            journalChannel.close();
+            Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalChannel = openJournal();
+            syncedSize = journalChannel.size();
+            List<Append> synced = unsynced;
+            unsynced = new ArrayList<>();
+            accept(synced);
+        } catch (IOException e) {
+            // Журнал просто останется длиннее: повторное применение безопасно
+            LOG.log(Level.WARNING, "Не удалось сократить журнал", e);
+            if (!journalChannel.isOpen()) {
+                try {
+                    journalChannel = openJournal();
+                } catch (IOException reopen) {
+                    throw new IllegalStateException("Журнал отложенной записи недоступен: " + reopen.getMessage(), reopen);
+                }
+            }
+        }
+    }
+
+    private static String encode(Student s) {
+        return s.getId() + "\t" + escape(s.getName()) + "\t" + escape(s.getSurname()) + "\t"
+                + s.getAge() + "\t" + escape(s.getPhone()) + "\t" + escape(s.getEmail());
+    }
+
+    // null записывается как \N, служебные символы экранируются обратной косой чертой
+    private static String escape(String value) {
+        if (value == null) {
+            return "\\N";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.equals("\\N")) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // --- Статистика ---
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(enqueued, coalesced, flushes, failedFlushes, writtenRows, rejected, pending.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Снимок счетчиков очереди. */
+    public static class Stats {
+        private final long enqueued;
+        private final long coalesced;
+        private final long flushes;
+        private final long failedFlushes;
+        private final long writtenRows;
+        private final long rejected;
+        private final int pending;
+
+        Stats(long enqueued, long coalesced, long flushes, long failedFlushes,
+              long writtenRows, long rejected, int pending) {
+            this.enqueued = enqueued;
+            this.coalesced = coalesced;
+            this.flushes = flushes;
+            this.failedFlushes = failedFlushes;
+            this.writtenRows = writtenRows;
+            this.rejected = rejected;
+            this.pending = pending;
+        }
+
+        public long getEnqueued() { return enqueued; }
+        public long getCoalesced() { return coalesced; }
+        public long getFlushes() { return flushes; }
+        public long getFailedFlushes() { return failedFlushes; }
+        public long getWrittenRows() { return writtenRows; }
+        public long getRejected() { return rejected; }
+        public int getPending() { return pending; }
+
+        @Override
+        public String toString() {
+            return String.format("Отложенная запись: в очереди %d, принято %d, схлопнуто %d, записано строк %d, "
+                            + "сбросов %d (неудачных %d), отклонено %d",
+                    pending, enqueued, coalesced, writtenRows, flushes, failedFlushes, rejected);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Таблица различных строк для StudentBatch: каждая строка хранится один раз,
+ * а записи ссылаются на нее номером. -1 - null.
+ * Словарь для поиска нужен только при заполнении; готовый пакет хранит лишь массив строк.
+ */
+class StringTable {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private String[] values = new String[16];
+    private int size;
+
+    /** Номер строки (новая строка добавляется в конец). */
+    int indexOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = indexes.get(value);
+        if (index != null) {
+            return index;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        indexes.put(value, size);
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
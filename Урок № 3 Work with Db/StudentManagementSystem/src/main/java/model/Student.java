@@ -7,6 +7,8 @@ public class Student {
     private int age;
     private String phone;
     private String email;
+    // Версия строки для оптимистической блокировки; 0 - версия неизвестна
+    private long version;
 
     // Конструктор
     public Student(int id, String name, String surname, int age, String phone, String email) {
@@ -18,6 +20,12 @@ public class Student {
         this.email = email;
     }
 
+    // Копия (для кэшей и индексов, которые не должны зависеть от изменений исходного объекта)
+    public Student(Student other) {
+        this(other.id, other.name, other.surname, other.age, other.phone, other.email);
+        this.version = other.version;
+    }
+
     // Геттеры
     public int getId() { return id; }
     public String getName() { return name; }
@@ -25,6 +33,7 @@ public class Student {
     public int getAge() { return age; }
     public String getPhone() { return phone; }
     public String getEmail() { return email; }
+    public long getVersion() { return version; }
 
     // Сеттеры
     public void setName(String name) { this.name = name; }
@@ -32,6 +41,7 @@ public class Student {
     public void setAge(int age) { this.age = age; }
     public void setPhone(String phone) { this.phone = phone; }
     public void setEmail(String email) { this.email = email; }
+    public void setVersion(long version) { this.version = version; }
 
     @Override
     public String toString() {
@@ -0,0 +1,271 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Компактный неизменяемый набор студентов для больших выборок: хранение по столбцам.
+ *
+ * Id, возраст и версия - массивы примитивов; имена и фамилии - номера в общей таблице
+ * различных строк (повторяющиеся "Иван" хранятся один раз); email разделен на часть
+ * до '@' (байты UTF-8 всех записей подряд в одном массиве) и номер домена в таблице
+ * доменов. Вместо объекта Student с шестью ссылками
+ * и отдельными строками на каждую запись - несколько элементов массивов, что в разы
+ * уменьшает занятую память и работу сборщика мусора.
+ *
+ * Чтение отдельных полей (getId(i), getName(i)...) объектов не создает, кроме getEmail(i),
+ * который собирает строку заново. get(i) возвращает StudentRecord с общими строками.
+ */
+public final class StudentBatch {
+
+    private static final int NO_DOMAIN = -1;
+    private static final int NULL_EMAIL = -2;
+
+    private static final StudentBatch EMPTY = new Builder(0).build();
+
+    private final int size;
+    private final int[] ids;
+    private final int[] ages;
+    private final long[] versions;
+    private final int[] nameIndexes;
+    private final int[] surnameIndexes;
+    private final String[] phones;
+    // Часть email до '@' (или весь email без '@') записи i - байты emailBytes[emailEnds[i-1]..emailEnds[i])
+    private final byte[] emailBytes;
+    private final int[] emailEnds;
+    private final int[] domainIndexes;    // NO_DOMAIN - в email нет '@', NULL_EMAIL - email null
+    private final String[] words;         // имена и фамилии
+    private final String[] domains;
+
+    private StudentBatch(Builder b) {
+        this.size = b.size;
+        this.ids = Arrays.copyOf(b.ids, b.size);
+        this.ages = Arrays.copyOf(b.ages, b.size);
+        this.versions = Arrays.copyOf(b.versions, b.size);
+        this.nameIndexes = Arrays.copyOf(b.nameIndexes, b.size);
+        this.surnameIndexes = Arrays.copyOf(b.surnameIndexes, b.size);
+        this.phones = Arrays.copyOf(b.phones, b.size);
+        this.emailBytes = Arrays.copyOf(b.emailBytes, b.size > 0 ? b.emailEnds[b.size - 1] : 0);
+        this.emailEnds = Arrays.copyOf(b.emailEnds, b.size);
+        this.domainIndexes = Arrays.copyOf(b.domainIndexes, b.size);
+        this.words = b.words.toArray();
+        this.domains = b.domains.toArray();
+    }
+
+    public static StudentBatch empty() {
+        return EMPTY;
+    }
+
+    public static StudentBatch of(Iterable<Student> students) {
+        Builder builder = new Builder();
+        for (Student s : students) {
+            builder.add(s);
+        }
+        return builder.build();
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    // --- Поля записи i (0 <= i < size) ---
+
+    public int getId(int i) {
+        checkIndex(i);
+        return ids[i];
+    }
+
+    public int getAge(int i) {
+        checkIndex(i);
+        return ages[i];
+    }
+
+    public long getVersion(int i) {
+        checkIndex(i);
+        return versions[i];
+    }
+
+    public String getName(int i) {
+        checkIndex(i);
+        return word(nameIndexes[i]);
+    }
+
+    public String getSurname(int i) {
+        checkIndex(i);
+        return word(surnameIndexes[i]);
+    }
+
+    public String getPhone(int i) {
+        checkIndex(i);
+        return phones[i];
+    }
+
+    /** Часть email после '@' (общая строка для всех записей с этим доменом). */
+    public String getEmailDomain(int i) {
+        checkIndex(i);
+        return domainIndexes[i] >= 0 ? domains[domainIndexes[i]] : null;
+    }
+
+    public String getEmail(int i) {
+        checkIndex(i);
+        int domain = domainIndexes[i];
+        if (domain == NULL_EMAIL) {
+            return null;
+        }
+        int start = i > 0 ? emailEnds[i - 1] : 0;
+        String local = new String(emailBytes, start, emailEnds[i] - start, StandardCharsets.UTF_8);
+        return domain >= 0 ? local + '@' + domains[domain] : local;
+    }
+
+    public StudentRecord get(int i) {
+        return new StudentRecord(getId(i), getName(i), getSurname(i), getAge(i), getPhone(i), getEmail(i),
+                getVersion(i));
+    }
+
+    public Student toStudent(int i) {
+        return get(i).toStudent();
+    }
+
+    /** Копия столбца Id (например, для getStudentsByIds по результатам выборки). */
+    public int[] ids() {
+        return ids.clone();
+    }
+
+    /** Неизменяемое представление в виде списка; записи создаются при обращении. */
+    public List<StudentRecord> asList() {
+        return new AbstractList<StudentRecord>() {
+            @Override
+            public StudentRecord get(int index) {
+                return StudentBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Изменяемые копии всех записей - для кода, работающего со списком Student. */
+    public List<Student> toStudents() {
+        List<Student> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(toStudent(i));
+        }
+        return result;
+    }
+
+    /** Сколько различных имен/фамилий и доменов хранится в таблицах строк. */
+    public int getDistinctWords() { return words.length; }
+    public int getDistinctDomains() { return domains.length; }
+
+    private String word(int index) {
+        return index >= 0 ? words[index] : null;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + i + " вне пакета размером " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Студентов: " + size + ", различных имен/фамилий: " + words.length
+                + ", доменов email: " + domains.length;
+    }
+
+    /**
+     * Заполнение пакета по одной записи (например, прямо из ResultSet). Не потокобезопасен.
+     * Строки сравниваются точно: "Mail.ru" и "mail.ru" - разные домены, email восстанавливается как был.
+     */
+    public static class Builder {
+        private int size;
+        private int[] ids;
+        private int[] ages;
+        private long[] versions;
+        private int[] nameIndexes;
+        private int[] surnameIndexes;
+        private String[] phones;
+        private byte[] emailBytes;
+        private int[] emailEnds;
+        private int[] domainIndexes;
+        private final StringTable words = new StringTable();
+        private final StringTable domains = new StringTable();
+
+        public Builder() {
+            this(256);
+        }
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 1);
+            ids = new int[capacity];
+            ages = new int[capacity];
+            versions = new long[capacity];
+            nameIndexes = new int[capacity];
+            surnameIndexes = new int[capacity];
+            phones = new String[capacity];
+            emailBytes = new byte[capacity * 16];
+            emailEnds = new int[capacity];
+            domainIndexes = new int[capacity];
+        }
+
+        public Builder add(Student s) {
+            return add(s.getId(), s.getName(), s.getSurname(), s.getAge(), s.getPhone(), s.getEmail(), s.getVersion());
+        }
+
+        public Builder add(int id, String name, String surname, int age, String phone, String email, long version) {
+            if (size == ids.length) {
+                grow();
+            }
+            ids[size] = id;
+            ages[size] = age;
+            versions[size] = version;
+            nameIndexes[size] = words.indexOf(name);
+            surnameIndexes[size] = words.indexOf(surname);
+            phones[size] = phone;
+            if (email == null) {
+                appendEmailLocal(new byte[0]);
+                domainIndexes[size] = NULL_EMAIL;
+            } else {
+                int at = email.lastIndexOf('@');
+                appendEmailLocal((at >= 0 ? email.substring(0, at) : email).getBytes(StandardCharsets.UTF_8));
+                domainIndexes[size] = at >= 0 ? domains.indexOf(email.substring(at + 1)) : NO_DOMAIN;
+            }
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Готовый пакет; массивы обрезаются по числу записей. */
+        public StudentBatch build() {
+            return new StudentBatch(this);
+        }
+
+        private void appendEmailLocal(byte[] local) {
+            int start = size > 0 ? emailEnds[size - 1] : 0;
+            if (start + local.length > emailBytes.length) {
+                emailBytes = Arrays.copyOf(emailBytes, Math.max(start + local.length, emailBytes.length * 2));
+            }
+            System.arraycopy(local, 0, emailBytes, start, local.length);
+            emailEnds[size] = start + local.length;
+        }
+
+        private void grow() {
+            int capacity = ids.length + (ids.length >> 1) + 1;
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            nameIndexes = Arrays.copyOf(nameIndexes, capacity);
+            surnameIndexes = Arrays.copyOf(surnameIndexes, capacity);
+            phones = Arrays.copyOf(phones, capacity);
+            emailEnds = Arrays.copyOf(emailEnds, capacity);
+            domainIndexes = Arrays.copyOf(domainIndexes, capacity);
+        }
+    }
+}
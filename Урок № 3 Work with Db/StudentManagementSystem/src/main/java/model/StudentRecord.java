@@ -0,0 +1,74 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Неизменяемый студент: для кэшей, индексов и результатов, которые передаются между потоками
+ * без копирования. Строки, полученные из StudentBatch, общие для всех записей с тем же
+ * именем, фамилией или доменом email.
+ */
+public final class StudentRecord {
+    private final int id;
+    private final String name;
+    private final String surname;
+    private final int age;
+    private final String phone;
+    private final String email;
+    private final long version;
+
+    public StudentRecord(int id, String name, String surname, int age, String phone, String email, long version) {
+        this.id = id;
+        this.name = name;
+        this.surname = surname;
+        this.age = age;
+        this.phone = phone;
+        this.email = email;
+        this.version = version;
+    }
+
+    public static StudentRecord of(Student s) {
+        return new StudentRecord(s.getId(), s.getName(), s.getSurname(), s.getAge(),
+                s.getPhone(), s.getEmail(), s.getVersion());
+    }
+
+    /** Изменяемая копия - для updateStudent и других API, принимающих Student. */
+    public Student toStudent() {
+        Student s = new Student(id, name, surname, age, phone, email);
+        s.setVersion(version);
+        return s;
+    }
+
+    // Геттеры
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public String getSurname() { return surname; }
+    public int getAge() { return age; }
+    public String getPhone() { return phone; }
+    public String getEmail() { return email; }
+    public long getVersion() { return version; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StudentRecord)) {
+            return false;
+        }
+        StudentRecord other = (StudentRecord) o;
+        return id == other.id && age == other.age && version == other.version
+                && Objects.equals(name, other.name) && Objects.equals(surname, other.surname)
+                && Objects.equals(phone, other.phone) && Objects.equals(email, other.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, surname, age, phone, email, version);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ID: %d | Имя: %s %s | Возраст: %d | Email: %s | Телефон: %s",
+                id, name, surname, age, email, phone != null ? phone : "Нет");
+    }
+}
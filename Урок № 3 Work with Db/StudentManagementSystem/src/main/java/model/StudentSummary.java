@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Краткие сведения о студенте для списков результатов поиска: только Id, имя и фамилия.
+ */
+public class StudentSummary {
+    private final int id;
+    private final String name;
+    private final String surname;
+
+    public StudentSummary(int id, String name, String surname) {
+        this.id = id;
+        this.name = name;
+        this.surname = surname;
+    }
+
+    // Геттеры
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public String getSurname() { return surname; }
+
+    @Override
+    public String toString() {
+        return String.format("ID: %d | Имя: %s %s", id, name, surname);
+    }
+}
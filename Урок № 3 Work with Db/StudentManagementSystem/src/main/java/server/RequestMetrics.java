@@ -0,0 +1,75 @@
+package server;
+
+import dao.DaoMetrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики HTTP-запросов: задержка по маршрутам (перцентили - гистограммой DaoMetrics)
+ * и количество ответов по маршруту и коду статуса.
+ * Маршрут - шаблон пути ("GET /students/{id}"), а не сам путь, чтобы число рядов не росло.
+ */
+public class RequestMetrics {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final DaoMetrics latency = new DaoMetrics();
+    private final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+
+    /** Начинает замер запроса к маршруту route. */
+    DaoMetrics.Sample start(String route) {
+        return latency.start(route);
+    }
+
+    /** Учитывает код ответа. */
+    void status(String route, int status) {
+        responses.computeIfAbsent(route + '\t' + status, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Метрики в текстовом формате Prometheus.
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP student_http_responses_total Ответы HTTP по маршруту и коду статуса.\n");
+        sb.append("# TYPE student_http_responses_total counter\n");
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(responses).entrySet()) {
+            int tab = e.getKey().indexOf('\t');
+            sb.append("student_http_responses_total{route=\"").append(e.getKey(), 0, tab)
+                    .append("\",status=\"").append(e.getKey().substring(tab + 1)).append("\"} ")
+                    .append(e.getValue().sum()).append('\n');
+        }
+        sb.append("# HELP student_http_latency_seconds Время обработки HTTP-запроса.\n");
+        sb.append("# TYPE student_http_latency_seconds summary\n");
+        for (DaoMetrics.OperationStats s : latency.snapshot()) {
+            long[] values = {s.getP50Nanos(), s.getP90Nanos(), s.getP99Nanos(), s.getP999Nanos()};
+            String[] quantiles = {"0.5", "0.9", "0.99", "0.999"};
+            for (int i = 0; i < values.length; i++) {
+                sb.append("student_http_latency_seconds{route=\"").append(s.getName())
+                        .append("\",quantile=\"").append(quantiles[i]).append("\"} ")
+                        .append(values[i] / NANOS_PER_SECOND).append('\n');
+            }
+            sb.append("student_http_latency_seconds_sum{route=\"").append(s.getName()).append("\"} ")
+                    .append(s.getTotalNanos() / NANOS_PER_SECOND).append('\n');
+            sb.append("student_http_latency_seconds_count{route=\"").append(s.getName()).append("\"} ")
+                    .append(s.getCalls()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Таблица для вывода в консоль.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Запросы HTTP (время в мс):\n");
+        for (DaoMetrics.OperationStats s : latency.snapshot()) {
+            sb.append(String.format("%-28s %8d  p50 %8.3f  p99 %8.3f  max %8.3f%n", s.getName(), s.getCalls(),
+                    s.getP50Nanos() / 1e6, s.getP99Nanos() / 1e6, s.getMaxNanos() / 1e6));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,481 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dao.DaoMetrics;
+import dao.DuplicateStudentException;
+import dao.ReadSession;
+import dao.StaleStudentException;
+import dao.StudentDAO;
+import dao.StudentRepository;
+import model.Student;
+import transfer.StudentFormat;
+import util.ThreadPools;
+import util.Validator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP/JSON-доступ к хранилищу студентов на встроенном в JDK сервере (com.sun.net.httpserver).
+ *
+ * GET    /students                  - все студенты (JSON-массив, выдается потоком по мере чтения)
+ * GET    /students?email=...        - по email (массив из 0 или 1 элемента)
+ * GET    /students?age=N            - по возрасту; ?minAge=A&amp;maxAge=B - по диапазону
+ * GET    /students/search?q=...&amp;limit=N - поиск по имени/фамилии
+ * GET    /students/{id}             - один студент; заголовок ETag - его версия
+ * POST   /students                  - добавить (201, Location)
+ * PUT    /students/{id}             - обновить; с If-Match - только если версия не изменилась (иначе 412)
+ * DELETE /students/{id}             - удалить (204)
+ * GET    /metrics                   - метрики запросов и DAO в формате Prometheus
+ * GET    /health                    - проверка, что сервер отвечает
+ *
+ * Чтение своих записей: ответ на POST, PUT и DELETE несет заголовок X-Read-Session -
+ * маркер ReadSession. Клиент, который передает его в следующих запросах, читает с основного
+ * сервера, пока реплики могут еще не видеть его запись; без заголовка чтения идут на реплики.
+ *
+ * Каждый запрос обрабатывается в своем виртуальном потоке (Java 21+); на Java 17
+ * - в пуле обычных потоков: обработчики ждут БД и блокируются, поток на запрос дешев
+ * только когда он виртуальный.
+ */
+public class StudentHttpServer implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(StudentHttpServer.class.getName());
+
+    private static final String STUDENTS_PATH = "/students";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    // Маркер ReadSession: выдается в ответ на запись, клиент возвращает его в следующих запросах
+    private static final String READ_SESSION_HEADER = "X-Read-Session";
+    private static final String PROMETHEUS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final int MAX_SEARCH_LIMIT = 1000;
+    // Студентов в одном запросе к БД при выдаче всего списка
+    private static final int LIST_PAGE_SIZE = 1000;
+    // Без виртуальных потоков: запросы сверх этого числа ждут в очереди пула
+    private static final int FALLBACK_THREADS = 32;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final StudentRepository repository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final RequestMetrics metrics = new RequestMetrics();
+
+    public StudentHttpServer(StudentRepository repository, int port) throws IOException {
+        this.repository = repository;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+
+        ExecutorService virtual = ThreadPools.newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : ThreadPools.newDaemonPool("student-http", FALLBACK_THREADS);
+        server.setExecutor(executor);
+
+        server.createContext(STUDENTS_PATH, this::handleStudents);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", this::handleHealth);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** Порт, на котором сервер принимает запросы (полезно при запуске с портом 0). */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Перестает принимать запросы, дает текущим до секунды на завершение. */
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+    }
+
+    // --- Потоки обработки ---
+
+    // --- /students ---
+
+    private void handleStudents(HttpExchange exchange) {
+        String method = exchange.getRequestMethod();
+        String rest = subPath(exchange.getRequestURI().getPath());
+        String route = routeName(method, rest);
+
+        DaoMetrics.Sample m = metrics.start(route);
+        int status = 500;
+        ReadSession session = ReadSession.fromToken(exchange.getRequestHeaders().getFirst(READ_SESSION_HEADER));
+        try (ReadSession.Scope ignored = session.open()) {
+            status = dispatch(exchange, method, rest, session);
+        } catch (HttpError e) {
+            status = sendError(exchange, e.status, e.getMessage());
+        } catch (StaleStudentException e) {
+            status = sendError(exchange, 412, e.getMessage());
+        } catch (DuplicateStudentException e) {
+            status = sendError(exchange, 409, e.getMessage());
+        } catch (SQLException e) {
+            m.failed(e);
+            LOG.log(Level.WARNING, "Ошибка базы данных (" + route + ")", e);
+            status = sendError(exchange, 500, "Ошибка базы данных.");
+        } catch (IllegalArgumentException e) {
+            status = sendError(exchange, 400, e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            // Клиент закрыл соединение - отвечать некому
+            status = 499;
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Необработанная ошибка (" + route + ")", e);
+            status = sendError(exchange, 500, "Внутренняя ошибка сервера.");
+        } finally {
+            exchange.close();
+            m.stop();
+            metrics.status(route, status);
+        }
+    }
+
+    private int dispatch(HttpExchange exchange, String method, String rest, ReadSession session)
+            throws IOException, SQLException {
+        if (rest.isEmpty()) {
+            switch (method) {
+                case "GET": return listStudents(exchange);
+                case "POST": return createStudent(exchange, session);
+                default: throw methodNotAllowed(method);
+            }
+        }
+        if (rest.equals("search")) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed(method);
+            }
+            return search(exchange);
+        }
+        int id = parseId(rest);
+        switch (method) {
+            case "GET": return getStudent(exchange, id);
+            case "PUT": return updateStudent(exchange, id, session);
+            case "DELETE": return deleteStudent(exchange, id, session);
+            default: throw methodNotAllowed(method);
+        }
+    }
+
+    private int listStudents(HttpExchange exchange) throws IOException, SQLException {
+        Map<String, String> params = queryParams(exchange.getRequestURI());
+        if (params.containsKey("email")) {
+            Student student = repository.getStudentByEmail(params.get("email"));
+            return sendStudents(exchange, student != null ? List.of(student) : List.of());
+        }
+        if (params.containsKey("age")) {
+            return sendStudents(exchange, repository.filterByAge(intParam(params, "age", 0)));
+        }
+        if (params.containsKey("minAge") || params.containsKey("maxAge")) {
+            int minAge = intParam(params, "minAge", 0);
+            int maxAge = intParam(params, "maxAge", Integer.MAX_VALUE);
+            return sendStudents(exchange, repository.filterByAgeRange(minAge, maxAge));
+        }
+        return streamAllStudents(exchange);
+    }
+
+    /**
+     * Весь список выдается потоком (chunked) страницами по LIST_PAGE_SIZE в порядке Id
+     * (getStudentsAfterId): соединение с БД занято только на время чтения страницы, а не
+     * пока медленный клиент принимает ответ, и память сервера не зависит от размера таблицы.
+     * Список не является снимком на один момент: изменения, сделанные во время выдачи,
+     * могут попасть в него частично. Ошибка БД посреди выдачи обрывает ответ без
+     * закрывающей ']' - клиент получит некорректный JSON.
+     */
+    private int streamAllStudents(HttpExchange exchange) throws IOException, SQLException {
+        // Первая страница - до заголовков: ошибка БД на ней вернется обычным ответом 500
+        List<Student> page = repository.getStudentsAfterId(Integer.MIN_VALUE, LIST_PAGE_SIZE);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            out.write('[');
+            StringBuilder record = new StringBuilder(256);
+            while (!page.isEmpty()) {
+                for (Student s : page) {
+                    if (record.length() > 0) {
+                        record.setLength(0);
+                        record.append(',');
+                    }
+                    record.append('\n');
+                    StudentFormat.JSON_LINES.format(s, record);
+                    out.append(record);
+                }
+                if (page.size() < LIST_PAGE_SIZE) {
+                    break;
+                }
+                page = repository.getStudentsAfterId(page.get(page.size() - 1).getId(), LIST_PAGE_SIZE);
+            }
+            out.write("\n]\n");
+        }
+        return 200;
+    }
+
+    private int search(HttpExchange exchange) throws IOException, SQLException {
+        Map<String, String> params = queryParams(exchange.getRequestURI());
+        String query = params.get("q");
+        if (query == null || query.isBlank()) {
+            throw new HttpError(400, "Не указан параметр q.");
+        }
+        int limit = intParam(params, "limit", DEFAULT_SEARCH_LIMIT);
+        if (limit <= 0 || limit > MAX_SEARCH_LIMIT) {
+            throw new HttpError(400, "Параметр limit должен быть от 1 до " + MAX_SEARCH_LIMIT + ".");
+        }
+        return sendStudents(exchange, repository.searchByName(query, limit));
+    }
+
+    private int getStudent(HttpExchange exchange, int id) throws IOException, SQLException {
+        Student student = repository.getStudentById(id);
+        if (student == null) {
+            throw notFound(id);
+        }
+        return sendStudent(exchange, 200, student);
+    }
+
+    private int createStudent(HttpExchange exchange, ReadSession session) throws IOException, SQLException {
+        Student student = readStudent(exchange);
+        repository.addStudent(student);
+        exchange.getResponseHeaders().set(READ_SESSION_HEADER, session.token());
+        exchange.getResponseHeaders().set("Location", STUDENTS_PATH + "/" + student.getId());
+        return sendStudent(exchange, 201, student);
+    }
+
+    private int updateStudent(HttpExchange exchange, int id, ReadSession session) throws IOException, SQLException {
+        Student student = readStudent(exchange);
+        if (student.getId() != id) {
+            throw new HttpError(400, "ID в теле (" + student.getId() + ") не совпадает с ID в пути (" + id + ").");
+        }
+        student.setVersion(ifMatchVersion(exchange));
+        if (!repository.updateStudent(student)) {
+            throw notFound(id);
+        }
+        exchange.getResponseHeaders().set(READ_SESSION_HEADER, session.token());
+        return sendStudent(exchange, 200, student);
+    }
+
+    private int deleteStudent(HttpExchange exchange, int id, ReadSession session) throws IOException, SQLException {
+        if (!repository.deleteStudent(id)) {
+            throw notFound(id);
+        }
+        exchange.getResponseHeaders().set(READ_SESSION_HEADER, session.token());
+        exchange.sendResponseHeaders(204, -1);
+        return 204;
+    }
+
+    // --- /metrics и /health ---
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Метод не поддерживается.");
+                return;
+            }
+            String text = metrics.toPrometheus();
+            if (repository instanceof StudentDAO) {
+                text += ((StudentDAO) repository).getMetrics().toPrometheus();
+            }
+            send(exchange, 200, PROMETHEUS_TYPE, text);
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, "text/plain; charset=utf-8", "OK\n");
+        }
+    }
+
+    // --- Запрос ---
+
+    private static String subPath(String path) {
+        String rest = path.length() > STUDENTS_PATH.length() ? path.substring(STUDENTS_PATH.length() + 1) : "";
+        return rest.endsWith("/") ? rest.substring(0, rest.length() - 1) : rest;
+    }
+
+    /** Шаблон маршрута для метрик: без конкретных Id и с известными методами. */
+    private static String routeName(String method, String rest) {
+        String m = method.equals("GET") || method.equals("POST") || method.equals("PUT") || method.equals("DELETE")
+                ? method : "OTHER";
+        if (rest.isEmpty()) {
+            return m + " " + STUDENTS_PATH;
+        }
+        return m + " " + STUDENTS_PATH + (rest.equals("search") ? "/search" : "/{id}");
+    }
+
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Ресурс не найден: " + STUDENTS_PATH + "/" + value);
+        }
+    }
+
+    private static Map<String, String> queryParams(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.putIfAbsent(key, value);
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Параметр " + name + " должен быть целым числом.");
+        }
+    }
+
+    /** Студент из тела запроса (JSON-объект как в выгрузке JSON Lines) с проверкой Validator. */
+    private static Student readStudent(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            throw new HttpError(413, "Слишком большое тело запроса.");
+        }
+        Student student = StudentFormat.JSON_LINES.parse(new String(body, StandardCharsets.UTF_8).trim());
+        List<Validator.Violation> violations = Validator.validate(student);
+        if (!violations.isEmpty()) {
+            List<String> messages = new ArrayList<>(violations.size());
+            for (Validator.Violation v : violations) {
+                messages.add(v.getMessage());
+            }
+            throw new HttpError(400, String.join(" ", messages));
+        }
+        return student;
+    }
+
+    /** Версия из If-Match ("3" или W/"3"); без заголовка или "*" - 0, обновление без проверки. */
+    private static long ifMatchVersion(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("If-Match");
+        if (value == null || value.trim().equals("*")) {
+            return 0;
+        }
+        String tag = value.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            long version = Long.parseLong(tag);
+            if (version > 0) {
+                return version;
+            }
+        } catch (NumberFormatException ignored) {
+            // ниже - тот же ответ, что и для неположительной версии
+        }
+        throw new HttpError(400, "Некорректный заголовок If-Match: " + value);
+    }
+
+    // --- Ответ ---
+
+    private static int sendStudent(HttpExchange exchange, int status, Student student) throws IOException {
+        if (student.getVersion() > 0) {
+            exchange.getResponseHeaders().set("ETag", "\"" + student.getVersion() + "\"");
+        }
+        StringBuilder json = new StringBuilder(256);
+        StudentFormat.JSON_LINES.format(student, json);
+        json.append('\n');
+        send(exchange, status, JSON_TYPE, json.toString());
+        return status;
+    }
+
+    private static int sendStudents(HttpExchange exchange, List<Student> students) throws IOException {
+        StringBuilder json = new StringBuilder(64 + students.size() * 128);
+        json.append('[');
+        for (int i = 0; i < students.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            StudentFormat.JSON_LINES.format(students.get(i), json);
+        }
+        json.append("\n]\n");
+        send(exchange, 200, JSON_TYPE, json.toString());
+        return 200;
+    }
+
+    /** Ответ с ошибкой {"error": "..."}; если заголовки уже отправлены - только код для метрик. */
+    private static int sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return exchange.getResponseCode();
+        }
+        StringBuilder json = new StringBuilder("{\"error\":\"");
+        String text = message != null ? message : "";
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(' ');
+            } else {
+                json.append(c);
+            }
+        }
+        json.append("\"}\n");
+        try {
+            send(exchange, status, JSON_TYPE, json.toString());
+        } catch (IOException e) {
+            // Клиент уже отключился
+        }
+        return status;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static HttpError notFound(int id) {
+        return new HttpError(404, "Студент с ID " + id + " не найден.");
+    }
+
+    private static HttpError methodNotAllowed(String method) {
+        return new HttpError(405, "Метод " + method + " не поддерживается.");
+    }
+
+    /** Ошибка запроса с готовым HTTP-статусом. */
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
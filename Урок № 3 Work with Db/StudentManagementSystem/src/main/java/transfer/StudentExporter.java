@@ -0,0 +1,78 @@
+package transfer;
+
+import dao.StudentRepository;
+import model.Student;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * Выгрузка всех студентов в файл CSV или JSON Lines.
+ * Строки читаются курсором (forEachStudent) и сразу пишутся в буферизованный поток,
+ * поэтому память не зависит от размера таблицы.
+ * Запись идет во временный файл, который в конце переименовывается: при сбое
+ * прежний файл остается целым, а недописанный не выдается за готовую выгрузку.
+ */
+public class StudentExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StudentRepository repository;
+
+    public StudentExporter(StudentRepository repository) {
+        this.repository = repository;
+    }
+
+    public TransferReport export(Path file, StudentFormat format) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path target = file.toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long written;
+
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(tmp), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            String header = format.header();
+            if (header != null) {
+                out.write(header);
+                out.write('\n');
+            }
+            StringBuilder line = new StringBuilder(256);
+            try {
+                written = repository.forEachStudent(s -> writeRecord(out, format, s, line));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new TransferReport(written, written, 0, 0, System.nanoTime() - start, Collections.emptyList());
+    }
+
+    private static void writeRecord(Writer out, StudentFormat format, Student s, StringBuilder line) {
+        line.setLength(0);
+        format.format(s, line);
+        line.append('\n');
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
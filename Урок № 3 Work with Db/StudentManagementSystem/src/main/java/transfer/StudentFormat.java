@@ -0,0 +1,397 @@
+package transfer;
+
+import model.Student;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Формат файла выгрузки студентов: CSV (RFC 4180, первая строка - заголовок)
+ * или JSON Lines (один объект на строку).
+ * Пустой телефон в CSV - пустое поле, в JSON - null.
+ */
+public enum StudentFormat {
+
+    CSV {
+        @Override
+        String header() {
+            return "Id,Name,Surname,Age,Phone,Email";
+        }
+
+        @Override
+        public void format(Student s, StringBuilder out) {
+            out.append(s.getId()).append(',');
+            appendCsv(out, s.getName());
+            out.append(',');
+            appendCsv(out, s.getSurname());
+            out.append(',').append(s.getAge()).append(',');
+            appendCsv(out, s.getPhone());
+            out.append(',');
+            appendCsv(out, s.getEmail());
+        }
+
+        @Override
+        String readRecord(BufferedReader reader) throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            // Поле в кавычках может содержать перевод строки - дочитываем, пока кавычки не закрыты
+            StringBuilder record = null;
+            while (countQuotes(record != null ? record : line) % 2 != 0) {
+                String next = reader.readLine();
+                if (next == null) {
+                    break; // незакрытая кавычка - ошибку покажет parse()
+                }
+                if (record == null) {
+                    record = new StringBuilder(line);
+                }
+                record.append('\n').append(next);
+            }
+            return record != null ? record.toString() : line;
+        }
+
+        @Override
+        boolean isHeader(String record) {
+            return record.regionMatches(true, 0, "Id,", 0, 3);
+        }
+
+        @Override
+        public Student parse(String record) {
+            List<String> f = splitCsv(record);
+            if (f.size() != 6) {
+                throw new IllegalArgumentException("Ожидалось 6 полей, получено " + f.size() + ".");
+            }
+            return new Student(parseInt(f.get(0), "Id"), f.get(1), f.get(2),
+                    parseInt(f.get(3), "Age"), f.get(4), f.get(5));
+        }
+    },
+
+    JSON_LINES {
+        @Override
+        String header() {
+            return null;
+        }
+
+        @Override
+        public void format(Student s, StringBuilder out) {
+            out.append("{\"id\":").append(s.getId()).append(",\"name\":");
+            appendJson(out, s.getName());
+            out.append(",\"surname\":");
+            appendJson(out, s.getSurname());
+            out.append(",\"age\":").append(s.getAge()).append(",\"phone\":");
+            appendJson(out, s.getPhone());
+            out.append(",\"email\":");
+            appendJson(out, s.getEmail());
+            out.append('}');
+        }
+
+        @Override
+        String readRecord(BufferedReader reader) throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+            return line;
+        }
+
+        @Override
+        boolean isHeader(String record) {
+            return false;
+        }
+
+        @Override
+        public Student parse(String record) {
+            return new JsonObjectParser(record).parseStudent();
+        }
+    };
+
+    /** Первая строка файла или null, если заголовка нет. */
+    abstract String header();
+
+    /** Дописывает студента в out одной записью (без перевода строки). */
+    public abstract void format(Student s, StringBuilder out);
+
+    /** Читает следующую запись (null - конец файла). */
+    abstract String readRecord(BufferedReader reader) throws IOException;
+
+    abstract boolean isHeader(String record);
+
+    /** Разбирает запись; при ошибке - IllegalArgumentException с понятным сообщением. */
+    public abstract Student parse(String record);
+
+    /** Формат по расширению: .csv - CSV, .jsonl/.ndjson/.json - JSON Lines. */
+    public static StudentFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+            return JSON_LINES;
+        }
+        throw new IllegalArgumentException("Неизвестный формат файла (нужно .csv или .jsonl): " + fileName);
+    }
+
+    // --- CSV ---
+
+    private static void appendCsv(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.isEmpty(); // пустая строка отличается от null только кавычками
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static int countQuotes(CharSequence s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Поля записи; пустое поле без кавычек - null. */
+    private static List<String> splitCsv(String record) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == ',') {
+                fields.add(field.length() == 0 && !quoted ? null : field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (inQuotes) {
+            throw new IllegalArgumentException("Незакрытая кавычка.");
+        }
+        fields.add(field.length() == 0 && !quoted ? null : field.toString());
+        return fields;
+    }
+
+    private static int parseInt(String value, String column) {
+        try {
+            return Integer.parseInt(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Поле " + column + " должно быть целым числом: '" + value + "'.");
+        }
+    }
+
+    // --- JSON ---
+
+    private static void appendJson(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Разбор плоского JSON-объекта студента: строки, целые числа и null.
+     * Неизвестные поля пропускаются.
+     */
+    private static class JsonObjectParser {
+        private final String s;
+        private int pos;
+
+        JsonObjectParser(String s) {
+            this.s = s;
+        }
+
+        Student parseStudent() {
+            Integer id = null;
+            Integer age = null;
+            String name = null;
+            String surname = null;
+            String phone = null;
+            String email = null;
+
+            skipSpaces();
+            expect('{');
+            skipSpaces();
+            if (peek() != '}') {
+                while (true) {
+                    skipSpaces();
+                    String key = readString();
+                    skipSpaces();
+                    expect(':');
+                    skipSpaces();
+                    String value = readValue();
+                    switch (key) {
+                        case "id": id = toInt(value, key); break;
+                        case "age": age = toInt(value, key); break;
+                        case "name": name = value; break;
+                        case "surname": surname = value; break;
+                        case "phone": phone = value; break;
+                        case "email": email = value; break;
+                        default: break;
+                    }
+                    skipSpaces();
+                    if (peek() == ',') {
+                        pos++;
+                        continue;
+                    }
+                    break;
+                }
+            }
+            expect('}');
+            skipSpaces();
+            if (pos != s.length()) {
+                throw error("лишние символы после объекта");
+            }
+            if (id == null || age == null) {
+                throw new IllegalArgumentException("Нет обязательного поля id или age.");
+            }
+            return new Student(id, name, surname, age, phone, email);
+        }
+
+        /** Строка или число (текстом); null для null. */
+        private String readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (s.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (pos < s.length() && (Character.isDigit(s.charAt(pos)) || "-+.eE".indexOf(s.charAt(pos)) >= 0)) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("ожидалось значение");
+            }
+            return s.substring(start, pos);
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length()) {
+                    throw error("незакрытая строка");
+                }
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= s.length()) {
+                    throw error("незакрытая строка");
+                }
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) {
+                            throw error("неполная последовательность \\u");
+                        }
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e); // \" \\ \/
+                }
+            }
+        }
+
+        private static Integer toInt(String value, String key) {
+            if (value == null) {
+                throw new IllegalArgumentException("Поле " + key + " должно быть целым числом.");
+            }
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Поле " + key + " должно быть целым числом: " + value + ".");
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= s.length()) {
+                throw error("неожиданный конец строки");
+            }
+            return s.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("ожидался символ '" + c + "'");
+            }
+            pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Некорректный JSON (позиция " + pos + "): " + message + ".");
+        }
+    }
+}
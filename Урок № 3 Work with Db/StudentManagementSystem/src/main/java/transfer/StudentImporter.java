@@ -0,0 +1,360 @@
+package transfer;
+
+import dao.BatchResult;
+import dao.StudentRepository;
+import model.Student;
+import util.Validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Загрузка студентов из файла CSV или JSON Lines.
+ *
+ * Файл читается одним потоком по частям (chunkSize записей); разбор и проверка
+ * (Validator) частей идут параллельно, а запись - по порядку, пакетами addStudents
+ * или upsertStudents. В обработке одновременно не больше 2 * parallelism частей,
+ * поэтому память не зависит от размера файла.
+ *
+ * После каждой записанной части рядом с файлом сохраняется контрольная точка
+ * (&lt;файл&gt;.checkpoint): сколько записей уже загружено, размер и время изменения файла
+ * и контрольная сумма (CRC32C) загруженного начала файла. Повторный запуск после сбоя
+ * пропускает эти записи; если файл с тех пор изменился (другой размер или время
+ * изменения, другое содержимое загруженного начала), точка игнорируется. Часть, записанная перед самым сбоем, но не отмеченная в точке,
+ * загрузится повторно: в режиме upsert это безопасно, в режиме добавления ее строки
+ * будут отклонены как дубликаты. После успешной загрузки точка удаляется.
+ */
+public class StudentImporter {
+
+    private static final Logger LOG = Logger.getLogger(StudentImporter.class.getName());
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    /** Сколько ошибок сохраняется в отчете (всего их может быть больше). */
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StudentRepository repository;
+    private final int chunkSize;
+    private final int parallelism;
+    private final boolean upsert;
+
+    public StudentImporter(StudentRepository repository) {
+        this(repository, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * @param upsert true - существующие записи (по ID) обновляются, false - отклоняются
+     */
+    public StudentImporter(StudentRepository repository, int chunkSize, int parallelism, boolean upsert) {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Размер части и число потоков должны быть положительными.");
+        }
+        this.repository = repository;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.upsert = upsert;
+    }
+
+    public TransferReport importFile(Path file, StudentFormat format) throws IOException, SQLException {
+        long start = System.nanoTime();
+        FileStamp stamp = FileStamp.of(file);
+        Path checkpoint = checkpointPath(file);
+        Checkpoint saved = readCheckpoint(checkpoint, stamp);
+        if (saved != null && !prefixMatches(file, format, saved)) {
+            LOG.warning("Начало файла " + file + " изменилось после контрольной точки - загрузка с начала.");
+            saved = null;
+        }
+        long committed = saved != null ? saved.records : 0;
+        long skipped = committed;
+
+        Progress progress = new Progress();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "student-import-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+
+        // Сумма прочитанного начала файла; часть запоминает ее значение на своем конце
+        CRC32C prefix = new CRC32C();
+        try (BufferedReader reader = open(file)) {
+            String record = readFirstRecord(reader, format, prefix);
+            // Записи, загруженные предыдущим запуском, только читаются
+            for (long i = 0; i < skipped && record != null; i++) {
+                update(prefix, record);
+                record = format.readRecord(reader);
+            }
+
+            long recordNumber = skipped; // номер записи в файле (с 1, без заголовка)
+            while (record != null) {
+                List<String> raw = new ArrayList<>(chunkSize);
+                long first = recordNumber + 1;
+                while (record != null && raw.size() < chunkSize) {
+                    raw.add(record);
+                    update(prefix, record);
+                    recordNumber++;
+                    record = format.readRecord(reader);
+                }
+                long prefixHash = prefix.getValue();
+                inFlight.add(pool.submit(() -> parse(format, raw, first, prefixHash)));
+                if (inFlight.size() >= 2 * parallelism) {
+                    committed = write(inFlight.poll(), progress, checkpoint, stamp, committed);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                committed = write(inFlight.poll(), progress, checkpoint, stamp, committed);
+            }
+        } finally {
+            for (Future<ParsedChunk> f : inFlight) {
+                f.cancel(true);
+            }
+            pool.shutdownNow();
+        }
+
+        Files.deleteIfExists(checkpoint);
+        return new TransferReport(progress.processed, progress.written, progress.rejected, skipped,
+                System.nanoTime() - start, progress.errors);
+    }
+
+    // --- Разбор и проверка (в пуле) ---
+
+    private static ParsedChunk parse(StudentFormat format, List<String> raw, long firstRecord, long prefixHash) {
+        ParsedChunk chunk = new ParsedChunk(firstRecord, raw.size(), prefixHash);
+        for (int i = 0; i < raw.size(); i++) {
+            try {
+                chunk.add(format.parse(raw.get(i)), i);
+            } catch (IllegalArgumentException e) {
+                chunk.error(i, e.getMessage());
+            }
+        }
+        // Нарушения одного студента объединяются в одну ошибку
+        List<Validator.Violation> violations = Validator.validate(chunk.students);
+        if (!violations.isEmpty()) {
+            boolean[] invalid = new boolean[chunk.students.size()];
+            StringBuilder[] messages = new StringBuilder[invalid.length];
+            for (Validator.Violation v : violations) {
+                invalid[v.getIndex()] = true;
+                if (messages[v.getIndex()] == null) {
+                    messages[v.getIndex()] = new StringBuilder(v.getMessage());
+                } else {
+                    messages[v.getIndex()].append(' ').append(v.getMessage());
+                }
+            }
+            List<Student> valid = new ArrayList<>(chunk.students.size());
+            List<Integer> positions = new ArrayList<>(chunk.students.size());
+            for (int i = 0; i < invalid.length; i++) {
+                if (invalid[i]) {
+                    chunk.error(chunk.positions.get(i), messages[i].toString());
+                } else {
+                    valid.add(chunk.students.get(i));
+                    positions.add(chunk.positions.get(i));
+                }
+            }
+            chunk.students = valid;
+            chunk.positions = positions;
+        }
+        return chunk;
+    }
+
+    // --- Запись (по порядку, в вызывающем потоке) ---
+
+    private long write(Future<ParsedChunk> future, Progress progress, Path checkpoint,
+                       FileStamp stamp, long committed) throws IOException, SQLException {
+        ParsedChunk chunk = await(future);
+        progress.processed += chunk.size;
+        for (String error : chunk.errors) {
+            progress.reject(error);
+        }
+        if (!chunk.students.isEmpty()) {
+            BatchResult result = upsert
+                    ? repository.upsertStudents(chunk.students, chunkSize)
+                    : repository.addStudents(chunk.students, chunkSize);
+            progress.written += result.getWritten();
+            for (BatchResult.Rejection r : result.getRejections()) {
+                progress.reject(recordError(chunk.firstRecord + chunk.positions.get(r.getIndex()), r.getReason()));
+            }
+        }
+        committed += chunk.size;
+        writeCheckpoint(checkpoint, new Checkpoint(committed, chunk.prefixHash), stamp);
+        return committed;
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Импорт прерван.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Ошибка разбора файла.", cause);
+        }
+    }
+
+    private static String recordError(long recordNumber, String message) {
+        return "Запись " + recordNumber + ": " + message;
+    }
+
+    // --- Контрольная точка ---
+
+    static Path checkpointPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+
+    private static BufferedReader open(Path file) throws IOException {
+        return new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /** Первая запись данных; заголовок пропускается, но входит в контрольную сумму. */
+    private static String readFirstRecord(BufferedReader reader, StudentFormat format,
+                                          CRC32C prefix) throws IOException {
+        String record = format.readRecord(reader);
+        if (record != null && format.isHeader(record)) {
+            update(prefix, record);
+            record = format.readRecord(reader);
+        }
+        return record;
+    }
+
+    private static void update(CRC32C prefix, String record) {
+        prefix.update(record.getBytes(StandardCharsets.UTF_8));
+        prefix.update('\n');
+    }
+
+    /** Совпадает ли сумма первых saved.records записей с сохраненной (отдельный проход по началу файла). */
+    private static boolean prefixMatches(Path file, StudentFormat format, Checkpoint saved) throws IOException {
+        CRC32C prefix = new CRC32C();
+        try (BufferedReader reader = open(file)) {
+            String record = readFirstRecord(reader, format, prefix);
+            long read = 0;
+            for (; read < saved.records && record != null; read++) {
+                update(prefix, record);
+                record = format.readRecord(reader);
+            }
+            return read == saved.records && prefix.getValue() == saved.prefixHash;
+        }
+    }
+
+    /** Загруженные записи и сумма начала файла до них включительно. */
+    private static class Checkpoint {
+        final long records;
+        final long prefixHash;
+
+        Checkpoint(long records, long prefixHash) {
+            this.records = records;
+            this.prefixHash = prefixHash;
+        }
+    }
+
+    /** Размер и время изменения файла на момент начала импорта. */
+    private static class FileStamp {
+        final long size;
+        final long modifiedMillis;
+
+        FileStamp(long size, long modifiedMillis) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        static FileStamp of(Path file) throws IOException {
+            return new FileStamp(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+    }
+
+    /**
+     * Точка, если она есть и записана для файла того же размера и времени изменения;
+     * иначе null. Формат: записей, размер, время изменения (мс), сумма начала файла.
+     */
+    private static Checkpoint readCheckpoint(Path checkpoint, FileStamp stamp) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        String[] parts = Files.readString(checkpoint, StandardCharsets.UTF_8).trim().split("\\s+");
+        try {
+            if (parts.length == 4 && Long.parseLong(parts[1]) == stamp.size
+                    && Long.parseLong(parts[2]) == stamp.modifiedMillis) {
+                return new Checkpoint(Long.parseLong(parts[0]), Long.parseLong(parts[3]));
+            }
+        } catch (NumberFormatException ignored) {
+            // Поврежденная точка - загружаем с начала
+        }
+        LOG.warning("Контрольная точка " + checkpoint + " не подходит к файлу и будет проигнорирована.");
+        return null;
+    }
+
+    private static void writeCheckpoint(Path checkpoint, Checkpoint point, FileStamp stamp) throws IOException {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.writeString(tmp, point.records + " " + stamp.size + " " + stamp.modifiedMillis + " "
+                + point.prefixHash + "\n", StandardCharsets.UTF_8);
+        try {
+            Files.move(tmp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Разобранная часть файла: корректные студенты с позициями в части и ошибки. */
+    private static class ParsedChunk {
+        final long firstRecord;
+        final int size;
+        final long prefixHash; // сумма начала файла до конца этой части
+        List<Student> students;
+        List<Integer> positions;
+        final List<String> errors = new ArrayList<>(0);
+
+        ParsedChunk(long firstRecord, int size, long prefixHash) {
+            this.firstRecord = firstRecord;
+            this.size = size;
+            this.prefixHash = prefixHash;
+            this.students = new ArrayList<>(size);
+            this.positions = new ArrayList<>(size);
+        }
+
+        void add(Student student, int position) {
+            students.add(student);
+            positions.add(position);
+        }
+
+        void error(int position, String message) {
+            errors.add(recordError(firstRecord + position, message));
+        }
+    }
+
+    /** Счетчики текущего импорта; меняются только в потоке записи. */
+    private static class Progress {
+        long processed;
+        long written;
+        long rejected;
+        final List<String> errors = new ArrayList<>();
+
+        void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package transfer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Итог экспорта или импорта: сколько записей обработано, записано и отклонено,
+ * сколько пропущено при продолжении с контрольной точки, время и скорость.
+ */
+public class TransferReport {
+
+    private final long processed;
+    private final long written;
+    private final long rejected;
+    private final long skipped;
+    private final long elapsedNanos;
+    private final List<String> errors;
+
+    TransferReport(long processed, long written, long rejected, long skipped,
+                   long elapsedNanos, List<String> errors) {
+        this.processed = processed;
+        this.written = written;
+        this.rejected = rejected;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /** Записей прочитано в этом запуске (без пропущенных). */
+    public long getProcessed() { return processed; }
+    /** Записей выгружено в файл или сохранено в хранилище. */
+    public long getWritten() { return written; }
+    public long getRejected() { return rejected; }
+    /** Записей, уже загруженных предыдущим прерванным запуском. */
+    public long getSkipped() { return skipped; }
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+    /** Первые ошибки (не больше StudentImporter.MAX_REPORTED_ERRORS); всего их getRejected(). */
+    public List<String> getErrors() { return errors; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? processed * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(
+                "Обработано: %d, записано: %d, отклонено: %d", processed, written, rejected));
+        if (skipped > 0) {
+            sb.append(", пропущено (загружено ранее): ").append(skipped);
+        }
+        sb.append(String.format(". Время: %d мс, %.0f записей/с", getElapsedMillis(), getRowsPerSecond()));
+        return sb.toString();
+    }
+}
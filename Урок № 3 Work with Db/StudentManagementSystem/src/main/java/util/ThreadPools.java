@@ -0,0 +1,45 @@
+package util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнители задач для AsyncStudentDAO и HTTP-сервера.
+ */
+public final class ThreadPools {
+
+    private ThreadPools() {
+    }
+
+    /**
+     * На Java 21+ - виртуальный поток на задачу (ожидание JDBC не занимает поток ОС), иначе null.
+     * Проект собирается под Java 17, поэтому метод ищется через reflection.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Нет метода (Java 17-20) или виртуальные потоки недоступны (например, SecurityException)
+            return null;
+        }
+    }
+
+    /** Пул из threads фоновых потоков с именами namePrefix-1, namePrefix-2, ... */
+    public static ExecutorService newDaemonPool(String namePrefix, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, namePrefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Виртуальные потоки, если они есть, иначе пул из fallbackThreads обычных потоков. */
+    public static ExecutorService virtualOrDaemonPool(String namePrefix, int fallbackThreads) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        return virtual != null ? virtual : newDaemonPool(namePrefix, fallbackThreads);
+    }
+}
@@ -1,17 +1,72 @@
 package util;
 
+import model.Student;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public class Validator {
 
     // Шаблон для проверки email: должен содержать @ и .
-    private static final String EMAIL_REGEX =
+    // Регулярное выражение не выполняется: isValidEmail проверяет то же самое за один проход
+    // без компиляции шаблона и без выделения памяти; шаблон остается эталоном для ValidatorTest
+    static final String EMAIL_REGEX =
             "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$";
 
     /**
      * Проверяет, соответствует формату email.
      */
     public static boolean isValidEmail(String email) {
-        // Проверяем, что строка не null и соответствует регулярному выражению
-        return email != null && email.matches(EMAIL_REGEX);
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+
+        // Локальная часть: хотя бы один символ из [a-zA-Z0-9._%+-] до '@'
+        int at = 0;
+        while (at < length && isLocalChar(email.charAt(at))) {
+            at++;
+        }
+        if (at == 0 || at == length || email.charAt(at) != '@') {
+            return false;
+        }
+
+        // Домен: только [a-zA-Z0-9.-]; запоминаем последнюю точку
+        int lastDot = -1;
+        for (int i = at + 1; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+        }
+
+        // Перед последней точкой хотя бы один символ домена,
+        // после нее - зона из 2-6 латинских букв
+        int tld = length - lastDot - 1;
+        if (lastDot <= at + 1 || tld < 2 || tld > 6) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < length; i++) {
+            if (!isLetter(email.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isLetterOrDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
     }
 
     /**
@@ -26,6 +81,83 @@ public class Validator {
      * Проверяет, что строка не пустая.
      */
     public static boolean isNotNullOrEmpty(String value) {
-        return value != null && !value.trim().isEmpty();
+        if (value == null) {
+            return false;
+        }
+        // То же, что !value.trim().isEmpty(), но без создания новой строки
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет одного студента по тем же правилам, что и ввод в MainApp.
+     * Пустой список - ошибок нет.
+     */
+    public static List<Violation> validate(Student student) {
+        List<Violation> violations = new ArrayList<>(0);
+        collectViolations(student, 0, violations);
+        return violations;
+    }
+
+    /**
+     * Проверяет коллекцию студентов (например, перед пакетной загрузкой).
+     * Возвращает нарушения всех студентов; индекс - позиция студента в коллекции.
+     * Исключения не создаются: некорректные данные - обычный результат проверки.
+     */
+    public static List<Violation> validate(Collection<Student> students) {
+        List<Violation> violations = new ArrayList<>();
+        int index = 0;
+        for (Student student : students) {
+            collectViolations(student, index++, violations);
+        }
+        return violations;
+    }
+
+    private static void collectViolations(Student student, int index, List<Violation> out) {
+        if (student == null) {
+            out.add(new Violation(index, Field.STUDENT, "Запись отсутствует."));
+            return;
+        }
+        if (!isNotNullOrEmpty(student.getName())) {
+            out.add(new Violation(index, Field.NAME, "Имя не может быть пустым."));
+        }
+        if (!isNotNullOrEmpty(student.getSurname())) {
+            out.add(new Violation(index, Field.SURNAME, "Фамилия не может быть пустой."));
+        }
+        if (!isValidAge(student.getAge())) {
+            out.add(new Violation(index, Field.AGE, "Некорректный возраст. (От 16 до 100)"));
+        }
+        if (!isValidEmail(student.getEmail())) {
+            out.add(new Violation(index, Field.EMAIL, "Некорректный формат Email."));
+        }
+    }
+
+    /** Поле студента, не прошедшее проверку. */
+    public enum Field { STUDENT, NAME, SURNAME, AGE, EMAIL }
+
+    /** Нарушение: позиция студента во входных данных, поле и сообщение. */
+    public static class Violation {
+        private final int index;
+        private final Field field;
+        private final String message;
+
+        Violation(int index, Field field, String message) {
+            this.index = index;
+            this.field = field;
+            this.message = message;
+        }
+
+        public int getIndex() { return index; }
+        public Field getField() { return field; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "#" + index + " " + field + ": " + message;
+        }
     }
-}
\ No newline at end of file
+}
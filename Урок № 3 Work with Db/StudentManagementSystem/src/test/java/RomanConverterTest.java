@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RomanConverterTest {
+
+    @Test
+    void knownValues() {
+        assertEquals("XV", RomanConverter.intToRoman(15));
+        assertEquals("MCMXCIV", RomanConverter.intToRoman(1994));
+        assertEquals("MMMCMXCIX", RomanConverter.intToRoman(3999));
+        assertEquals("MMMDCCCLXXXVIII", RomanConverter.intToRoman(3888));
+        assertEquals(RomanConverter.MAX_LENGTH, RomanConverter.intToRoman(3888).length());
+    }
+
+    @Test
+    void everyNumberRoundTrips() {
+        for (int n = RomanConverter.MIN_VALUE; n <= RomanConverter.MAX_VALUE; n++) {
+            String roman = RomanConverter.intToRoman(n);
+            assertTrue(roman.length() <= RomanConverter.MAX_LENGTH);
+            assertEquals(n, RomanConverter.romanToInt(roman), roman);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "IIII", "IC", "VX", "IIV", "MMMM", "XM", "VV", "DD", "LL", "iv", " IV", "IV ",
+            "ABC", "Ⅳ", "MMMDCCCLXXXVIIII"})
+    void nonCanonicalFormsAreRejected(String roman) {
+        assertThrows(IllegalArgumentException.class, () -> RomanConverter.romanToInt(roman));
+    }
+
+    @Test
+    void nullIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RomanConverter.romanToInt(null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, 4000, Integer.MIN_VALUE})
+    void outOfRangeNumbersAreRejected(int num) {
+        assertThrows(IllegalArgumentException.class, () -> RomanConverter.intToRoman(num));
+    }
+
+    @Test
+    void bulkConversionsMatchSingle() {
+        int[] nums = {1, 4, 9, 14, 40, 90, 400, 1994, 3999};
+        String[] single = new String[nums.length];
+        for (int i = 0; i < nums.length; i++) {
+            single[i] = RomanConverter.intToRoman(nums[i]);
+        }
+        assertArrayEquals(single, RomanConverter.intToRoman(nums));
+        assertArrayEquals(single, RomanConverter.intToRomanParallel(nums));
+    }
+
+    @Test
+    void encodeAllWritesSeparatedAscii() {
+        int[] nums = {1, 4, 3888};
+        ByteBuffer out = ByteBuffer.allocate(nums.length * (RomanConverter.MAX_LENGTH + 1));
+        int written = RomanConverter.encodeAll(nums, out, (byte) '\n');
+        assertEquals(out.position(), written);
+        assertEquals("I\nIV\nMMMDCCCLXXXVIII", new String(out.array(), 0, written, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void encodeLeavesBufferUnchangedOnOverflow() {
+        ByteBuffer out = ByteBuffer.allocate(3);
+        assertThrows(BufferOverflowException.class, () -> RomanConverter.encode(3888, out));
+        assertEquals(0, out.position());
+    }
+}
@@ -0,0 +1,96 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncStudentDAOTest {
+
+    private static final int LIMIT = 3;
+
+    /** Хранилище, чтение по Id в котором ждет release и считает одновременные вызовы. */
+    private static class BlockingRepository extends InMemoryStudentRepository {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public Student getStudentById(int id) {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+                return super.getStudentById(id);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Прервано.", e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    void callsBeyondLimitWaitForPermit() throws Exception {
+        BlockingRepository repository = new BlockingRepository();
+        repository.addStudent(new Student(1, "Анна", "Смирнова", 20, null, "anna@mail.ru"));
+        try (AsyncStudentDAO async = new AsyncStudentDAO(repository, LIMIT)) {
+            List<CompletableFuture<Student>> calls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                calls.add(async.getStudentById(1));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (repository.running.get() < LIMIT && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(100); // лишние вызовы, если бы лимита не было, успели бы войти
+            assertEquals(LIMIT, repository.running.get());
+            assertFalse(calls.stream().anyMatch(CompletableFuture::isDone));
+
+            repository.release.countDown();
+            for (CompletableFuture<Student> call : calls) {
+                assertEquals("Анна", call.get(5, TimeUnit.SECONDS).getName());
+            }
+            assertEquals(LIMIT, repository.peak.get(), "одновременно не больше лимита");
+        }
+    }
+
+    @Test
+    void errorsAndMultiGetGoThroughFutures() throws Exception {
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+        try (AsyncStudentDAO async = new AsyncStudentDAO(repository, LIMIT)) {
+            List<Student> students = new ArrayList<>();
+            for (int id = 1; id <= 2 * StudentDAO.MAX_IN_LIST_SIZE + 5; id++) {
+                students.add(new Student(id, "Имя", "Фамилия", 20, null, "s" + id + "@mail.ru"));
+            }
+            assertEquals(students.size(), async.addStudents(students, 100).join().getWritten());
+
+            CompletionException error = assertThrows(CompletionException.class,
+                    () -> async.addStudent(new Student(1, "Ян", "Ли", 22, null, "yan@mail.ru")).join());
+            assertInstanceOf(DuplicateStudentException.class, error.getCause());
+
+            // Несколько кусков IN (...) параллельно; результат - в порядке входного списка
+            List<Integer> ids = new ArrayList<>();
+            for (int id = students.size() + 3; id >= 1; id--) {
+                ids.add(id);
+            }
+            Map<Integer, Student> found = async.getStudentsByIds(ids).get(5, TimeUnit.SECONDS);
+            assertEquals(students.size(), found.size());
+            assertEquals(students.size(), (int) found.keySet().iterator().next());
+            assertTrue(async.deleteStudent(1).join());
+        }
+    }
+}
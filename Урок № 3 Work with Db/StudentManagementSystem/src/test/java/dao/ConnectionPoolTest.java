@@ -0,0 +1,182 @@
+package dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.sql.SQLTransientException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool_test;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool newPool(int maxSize, long borrowTimeoutMillis, long leakThresholdMillis) {
+        pool = new ConnectionPool(URL, "sa", "", 0, maxSize, borrowTimeoutMillis, 60_000, leakThresholdMillis);
+        return pool;
+    }
+
+    @Test
+    void closedConnectionReturnsToPoolAndIsReused() throws SQLException {
+        newPool(2, 1_000, 0);
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        assertTrue(first.isClosed());
+        assertEquals(0, pool.getActiveCount());
+
+        try (Connection second = pool.getConnection()) {
+            assertNotSame(first, second, "каждая выдача - новая обертка");
+            assertSame(physical, second.unwrap(Connection.class), "физическое соединение переиспользуется");
+        }
+        ConnectionPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.getCreated());
+        assertEquals(2, stats.getBorrowed());
+    }
+
+    @Test
+    void closeTwiceReturnsOnce() throws SQLException {
+        newPool(1, 1_000, 0);
+        Connection conn = pool.getConnection();
+        conn.close();
+        conn.close();
+        assertEquals(0, pool.getActiveCount());
+        assertThrows(SQLException.class, () -> conn.prepareStatement("SELECT 1"));
+    }
+
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        newPool(1, 100, 0);
+        try (Connection ignored = pool.getConnection()) {
+            long start = System.nanoTime();
+            SQLException e = assertThrows(SQLException.class, pool::getConnection);
+            long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertInstanceOf(PoolExhaustedException.class, e);
+            assertInstanceOf(SQLTransientException.class, e, "занятый пул - временная ошибка");
+            assertEquals("08001", e.getSQLState());
+            assertTrue(waitedMillis >= 90, "ждали " + waitedMillis + " мс");
+        }
+        assertEquals(1, pool.getStats().getTimeouts());
+        // Освободившееся соединение снова выдается
+        try (Connection conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+    }
+
+    @Test
+    void waitingBorrowGetsReturnedConnection() throws Exception {
+        newPool(1, 5_000, 0);
+        Connection held = pool.getConnection();
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                held.close();
+            } catch (InterruptedException | SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        releaser.start();
+        try (Connection conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+        releaser.join();
+        assertEquals(0, pool.getStats().getTimeouts());
+    }
+
+    @Test
+    void connectionHeldTooLongIsReportedAsLeak() throws Exception {
+        newPool(1, 1_000, 50);
+        try (Connection ignored = pool.getConnection()) {
+            // Проверка утечек идет в фоне не чаще раза в секунду
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (pool.getStats().getLeaks() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+        assertEquals(1, pool.getStats().getLeaks(), "утечка учитывается один раз");
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void sessionSettingsAreResetOnReturn() throws SQLException {
+        newPool(1, 1_000, 0);
+        int isolation;
+        try (Connection conn = pool.getConnection()) {
+            isolation = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        }
+        try (Connection conn = pool.getConnection()) {
+            assertTrue(conn.getAutoCommit());
+            assertFalse(conn.isReadOnly());
+            assertEquals(isolation, conn.getTransactionIsolation());
+        }
+    }
+
+    @Test
+    void closedPoolRejectsBorrow() {
+        newPool(1, 1_000, 0);
+        pool.close();
+        assertThrows(SQLException.class, pool::getConnection);
+    }
+
+    @Test
+    void registeredStatementsAreReusedAndReset() throws SQLException {
+        newPool(1, 1_000, 0);
+        String registered = "SELECT ? + 1";
+        pool.registerStatements(List.of(registered));
+
+        PreparedStatement first;
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement pstmt = conn.prepareStatement(registered);
+            first = pstmt.unwrap(PreparedStatement.class);
+            pstmt.setInt(1, 1);
+            pstmt.setMaxRows(5);
+            pstmt.close();
+            assertTrue(pstmt.isClosed());
+            pstmt.close(); // повторное закрытие ничего не делает
+
+            try (PreparedStatement again = conn.prepareStatement(registered)) {
+                assertSame(first, again.unwrap(PreparedStatement.class), "запрос взят из кэша");
+                assertEquals(0, again.getMaxRows(), "настройки прежнего получателя сброшены");
+                assertSame(conn, again.getConnection());
+                // Тот же текст, пока первый не закрыт, - отдельный запрос вне кэша
+                try (PreparedStatement nested = conn.prepareStatement(registered)) {
+                    assertNotSame(first, nested.unwrap(PreparedStatement.class));
+                }
+            }
+            try (PreparedStatement adHoc = conn.prepareStatement("SELECT 2");
+                 PreparedStatement adHocAgain = conn.prepareStatement("SELECT 2")) {
+                assertNotSame(adHoc.unwrap(PreparedStatement.class), adHocAgain.unwrap(PreparedStatement.class),
+                        "незарегистрированный текст не кэшируется");
+            }
+        }
+        // Соединение вернулось в пул, кэш его запросов остался
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(registered)) {
+            assertSame(first, pstmt.unwrap(PreparedStatement.class));
+        }
+        assertTrue(pool.getStats().getStatementHits() >= 2);
+    }
+}
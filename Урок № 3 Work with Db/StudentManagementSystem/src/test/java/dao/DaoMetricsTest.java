@@ -0,0 +1,68 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DaoMetricsTest {
+
+    @Test
+    void histogramQuantilesStayWithinBucketError() {
+        DaoMetrics.Histogram histogram = new DaoMetrics.Histogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1_000); // 1 мкс .. 100 мс
+        }
+        long[] counts = histogram.counts();
+        long max = histogram.max.get();
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (double q : quantiles) {
+            double exact = q * 100_000 * 1_000;
+            long estimate = DaoMetrics.Histogram.valueAt(counts, q, max);
+            assertTrue(Math.abs(estimate - exact) / exact < 1.0 / 32, q + ": " + estimate + " vs " + exact);
+        }
+        long top = DaoMetrics.Histogram.valueAt(counts, 1.0, max);
+        assertTrue(top <= max && top > max * 31 / 32, "середина последней ячейки, не больше максимума: " + top);
+
+        for (long v : new long[]{0, 1, 31, 32, 33, 1_000, Long.MAX_VALUE}) {
+            int bucket = DaoMetrics.Histogram.bucketOf(v);
+            assertTrue(DaoMetrics.Histogram.lowerBound(bucket) <= v, "нижняя граница ячейки " + v);
+        }
+    }
+
+    @Test
+    void samplesRecordCallsRowsAndErrorsBySqlState() {
+        DaoMetrics metrics = new DaoMetrics();
+        for (int i = 0; i < 3; i++) {
+            DaoMetrics.Sample m = metrics.start("getStudentById");
+            m.acquired();
+            m.executed();
+            m.rows(1);
+            m.stop();
+        }
+        DaoMetrics.Sample failing = metrics.start("addStudent");
+        SQLException error = new SQLException("Duplicate entry", "23000");
+        assertSame(error, failing.failed(error));
+        failing.stop();
+
+        List<DaoMetrics.OperationStats> stats = metrics.snapshot();
+        assertEquals("addStudent", stats.get(0).getName(), "операции по имени");
+        assertEquals(Map.of("23000", 1L), stats.get(0).getErrorsBySqlState());
+        assertEquals(3, stats.get(1).getCalls());
+        assertEquals(3, stats.get(1).getRows());
+        assertEquals(0, stats.get(1).getErrors());
+
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("student_dao_calls_total{operation=\"getStudentById\"} 3"), text);
+        assertTrue(text.contains("student_dao_errors_total{operation=\"addStudent\",sqlstate=\"23000\"} 1"), text);
+        assertTrue(text.contains("student_dao_latency_seconds{operation=\"getStudentById\",quantile=\"0.99\"}"), text);
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateStudentExceptionTest {
+
+    // Ошибка уникальности в том виде, в каком ее возвращает MySQL Connector/J
+    private static SQLException mysqlDuplicate(String key) {
+        return new SQLIntegrityConstraintViolationException(
+                "Duplicate entry 'x' for key '" + key + "'", "23000", 1062);
+    }
+
+    @Test
+    void fieldIsDetectedFromViolatedKey() {
+        assertEquals(DuplicateStudentException.Field.ID,
+                DuplicateStudentException.detectField(mysqlDuplicate("PRIMARY")));
+        assertEquals(DuplicateStudentException.Field.ID,
+                DuplicateStudentException.detectField(mysqlDuplicate("Students.PRIMARY")));
+        assertEquals(DuplicateStudentException.Field.EMAIL,
+                DuplicateStudentException.detectField(mysqlDuplicate("Students." + SchemaInitializer.EMAIL_INDEX)));
+        assertEquals(DuplicateStudentException.Field.UNKNOWN,
+                DuplicateStudentException.detectField(mysqlDuplicate("Students.uq_other")));
+        assertEquals(DuplicateStudentException.Field.UNKNOWN,
+                DuplicateStudentException.detectField(new SQLException("Unique index violation", "23505")));
+
+        assertTrue(DuplicateStudentException.isIntegrityViolation(mysqlDuplicate("PRIMARY")));
+        assertFalse(DuplicateStudentException.isIntegrityViolation(new SQLException("Нет связи", "08S01")));
+    }
+
+    @Test
+    void daoReportsDuplicatesWithoutPrecheckQueries() throws SQLException {
+        ConnectionPool pool = TestDatabase.newPool("duplicates", 2);
+        try {
+            StudentDAO dao = new StudentDAO(pool);
+            dao.addStudent(new Student(1, "Анна", "Смирнова", 20, null, "anna@mail.ru"));
+            dao.addStudent(new Student(2, "Олег", "Петров", 21, null, "oleg@mail.ru"));
+
+            DuplicateStudentException sameId = assertThrows(DuplicateStudentException.class,
+                    () -> dao.addStudent(new Student(1, "Ян", "Ли", 22, null, "yan@mail.ru")));
+            assertEquals("23", sameId.getSQLState().substring(0, 2));
+            assertThrows(DuplicateStudentException.class,
+                    () -> dao.addStudent(new Student(3, "Ян", "Ли", 22, null, "oleg@mail.ru")));
+            assertThrows(DuplicateStudentException.class,
+                    () -> dao.updateStudent(new Student(1, "Анна", "Смирнова", 20, null, "oleg@mail.ru")));
+
+            assertEquals("anna@mail.ru", dao.getStudentById(1).getEmail(), "неудачная запись ничего не изменила");
+            assertEquals(2, dao.getAllStudents().size());
+        } finally {
+            pool.close();
+        }
+    }
+}
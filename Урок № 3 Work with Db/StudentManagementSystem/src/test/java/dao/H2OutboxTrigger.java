@@ -0,0 +1,76 @@
+package dao;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Триггер outbox для H2: выполняет тело триггера MySQL из SchemaInitializer
+ * (INSERT INTO StudentChanges ... VALUES (..., NEW.Version)), подставляя значения
+ * NEW.столбец и OLD.столбец из изменяемой строки. H2 не исполняет SQL-тела триггеров,
+ * поэтому проверяется тот же текст, что создается на MySQL.
+ */
+public class H2OutboxTrigger implements Trigger {
+
+    static final String FOR_EACH_ROW = "FOR EACH ROW";
+    private static final Pattern ROW_REFERENCE = Pattern.compile("\\b(NEW|OLD)\\.(\\w+)");
+
+    private String sql;
+    // Для каждого параметра: из новой строки или из старой и номер столбца в ней
+    private final List<Boolean> fromNew = new ArrayList<>();
+    private final List<Integer> columns = new ArrayList<>();
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                     boolean before, int type) throws SQLException {
+        List<String> tableColumns = new ArrayList<>();
+        try (ResultSet rs = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (rs.next()) {
+                tableColumns.add(rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
+            }
+        }
+        String body = bodyOf(triggerName);
+        Matcher m = ROW_REFERENCE.matcher(body);
+        StringBuilder parameterized = new StringBuilder();
+        while (m.find()) {
+            int column = tableColumns.indexOf(m.group(2).toUpperCase(Locale.ROOT));
+            if (column < 0) {
+                throw new SQLException("Нет столбца " + m.group(2) + " в таблице " + tableName);
+            }
+            fromNew.add(m.group(1).equals("NEW"));
+            columns.add(column);
+            m.appendReplacement(parameterized, "?");
+        }
+        m.appendTail(parameterized);
+        sql = parameterized.toString();
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < columns.size(); i++) {
+                Object[] row = fromNew.get(i) ? newRow : oldRow;
+                pstmt.setObject(i + 1, row[columns.get(i)]);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static String bodyOf(String triggerName) throws SQLException {
+        for (int i = 0; i < SchemaInitializer.OUTBOX_TRIGGERS.length; i++) {
+            if (SchemaInitializer.OUTBOX_TRIGGERS[i].equalsIgnoreCase(triggerName)) {
+                String ddl = SchemaInitializer.CREATE_OUTBOX_TRIGGER_SQL[i];
+                return ddl.substring(ddl.indexOf(FOR_EACH_ROW) + FOR_EACH_ROW.length()).trim();
+            }
+        }
+        throw new SQLException("Неизвестный триггер outbox: " + triggerName);
+    }
+}
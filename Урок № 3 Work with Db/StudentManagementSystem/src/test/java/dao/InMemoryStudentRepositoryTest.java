@@ -0,0 +1,126 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryStudentRepositoryTest {
+
+    private static Student student(int id, String name, int age) {
+        return new Student(id, name, "Фамилия", age, null, "s" + id + "@mail.ru");
+    }
+
+    private static List<Integer> ids(List<Student> students) {
+        return students.stream().map(Student::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void ageIndexFollowsChanges() throws SQLException {
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+        repository.addStudent(student(1, "Анна", 20));
+        repository.addStudent(student(2, "Олег", 25));
+        repository.addStudent(student(3, "Петр", 20));
+        repository.addStudent(student(-4, "Ян", 18));
+
+        assertEquals(List.of(1, 3), ids(repository.filterByAge(20)));
+        assertEquals(List.of(-4, 1, 3), ids(repository.filterByAgeRange(Integer.MIN_VALUE, 24)));
+
+        repository.updateStudent(student(3, "Петр", 31));
+        repository.deleteStudent(1);
+        assertTrue(repository.filterByAge(20).isEmpty(), "опустевший возраст");
+        assertEquals(List.of(2, 3), ids(repository.filterByAgeRange(21, Integer.MAX_VALUE)));
+        assertTrue(repository.filterByAgeRange(26, 30).isEmpty());
+
+        StudentQuery oldestFirst = new StudentQuery().ageAtLeast(0)
+                .orderBy(StudentQuery.SortField.AGE, false).limit(2);
+        assertEquals(List.of(3, 2), ids(repository.findStudents(oldestFirst)));
+
+        repository.deleteAllStudents();
+        assertTrue(repository.filterByAgeRange(0, 100).isEmpty());
+    }
+
+    @Test
+    void writesKeepCopiesVersionsAndUniqueness() throws SQLException {
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+        Student anna = student(1, "Анна", 20);
+        repository.addStudent(anna);
+        assertEquals(1, anna.getVersion());
+        anna.setName("Изменено снаружи");
+        assertEquals("Анна", repository.getStudentById(1).getName(), "хранилище держит свою копию");
+
+        assertThrows(DuplicateStudentException.class, () -> repository.addStudent(student(1, "Другая", 30)));
+        Student sameEmail = new Student(2, "Олег", "Фамилия", 25, null, "S1@MAIL.RU");
+        assertThrows(DuplicateStudentException.class, () -> repository.addStudent(sameEmail));
+
+        Student read = repository.getStudentById(1);
+        read.setAge(21);
+        assertTrue(repository.updateStudent(read));
+        assertEquals(2, read.getVersion());
+        Student stale = repository.getStudentById(1);
+        stale.setVersion(1);
+        assertThrows(StaleStudentException.class, () -> repository.updateStudent(stale));
+        assertEquals(List.of(1), ids(repository.searchByName("анн", 10)));
+    }
+
+    @Test
+    void concurrentWritersLeaveIndexesMatchingRows() throws Exception {
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+        int threads = 8;
+        int ids = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                done.add(pool.submit(() -> {
+                    for (int step = 0; step < 2_000; step++) {
+                        int id = (step * 31 + seed * 7) % ids;
+                        int age = 18 + (step + seed) % 10;
+                        try {
+                            if (step % 5 == 0) {
+                                repository.deleteStudent(id);
+                            } else if (repository.getStudentById(id) == null) {
+                                repository.upsertStudents(List.of(student(id, "Имя" + age, age)), 1);
+                            } else {
+                                repository.updateStudent(student(id, "Имя" + age, age));
+                            }
+                        } catch (SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Student> all = repository.getAllStudents();
+        assertEquals(ids(all), ids(repository.filterByAgeRange(0, 100)), "индекс возраста совпадает со строками");
+        for (Student s : all) {
+            assertEquals(List.of(s.getId()), ids(repository.filterByAge(s.getAge()).stream()
+                    .filter(found -> found.getId() == s.getId()).collect(Collectors.toList())));
+            List<Integer> byName = ids(repository.searchByName(s.getName(), ids));
+            assertTrue(byName.contains(s.getId()), "в индексе имен последнее имя студента " + s.getId());
+        }
+        int indexed = 0;
+        for (int age = 18; age < 28; age++) {
+            indexed += repository.searchByName("Имя" + age, ids).size();
+        }
+        assertEquals(all.size(), indexed, "в индексе имен нет удаленных и прежних имен");
+    }
+}
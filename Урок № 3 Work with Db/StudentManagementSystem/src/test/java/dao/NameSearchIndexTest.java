@@ -0,0 +1,142 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameSearchIndexTest {
+
+    private static Student student(int id, String name, String surname, long version) {
+        Student s = new Student(id, name, surname, 20, null, "s" + id + "@mail.ru");
+        s.setVersion(version);
+        return s;
+    }
+
+    private static NameSearchIndex indexOf(Student... students) throws SQLException {
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+        for (Student s : students) {
+            repository.addStudent(s);
+        }
+        NameSearchIndex index = new NameSearchIndex();
+        index.rebuild(repository);
+        return index;
+    }
+
+    private static List<Integer> ids(List<Student> students) {
+        return students.stream().map(Student::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void exactThenPrefixThenInfixThenById() throws SQLException {
+        NameSearchIndex index = indexOf(
+                student(1, "Марина", "Иванова", 1),
+                student(2, "Анна", "Мариненко", 1),
+                student(3, "Мари", "Петрова", 1),
+                student(4, "Тамара", "Амари", 1),
+                student(5, "Олег", "Сидоров", 1));
+
+        assertEquals(List.of(3, 1, 2, 4), ids(index.search("МАРИ", 10)));
+        assertEquals(List.of(3, 1), ids(index.search("мари", 2)), "limit берет лучших");
+    }
+
+    @Test
+    void shortQueriesAndNameSurnameJunction() throws SQLException {
+        NameSearchIndex index = indexOf(
+                student(1, "Ян", "Ли", 1),
+                student(2, "Анна", "Ли", 1));
+
+        assertEquals(List.of(1, 2), ids(index.search("ли", 10)));
+        assertEquals(List.of(1), ids(index.search("ян", 10)));
+        assertEquals(List.of(2), ids(index.search("нн", 10)));
+        assertEquals(List.of(2), ids(index.search("а", 10)));
+        assertEquals(List.of(1, 2), ids(index.search("л", 10)));
+        assertTrue(index.search("нл", 10).isEmpty(), "короткая подстрока тоже не переходит из имени в фамилию");
+        assertTrue(index.search("янли", 10).isEmpty(), "подстрока не переходит из имени в фамилию");
+        assertTrue(index.search("  ", 10).isEmpty());
+
+        // Списки коротких подстрок следуют за изменениями
+        index.onStudentSaved(student(1, "Юн", "Ли", 2));
+        assertTrue(index.search("я", 10).isEmpty());
+        assertEquals(List.of(1), ids(index.search("ю", 10)));
+    }
+
+    @Test
+    void followsChangesAndIgnoresStaleEvents() throws SQLException {
+        NameSearchIndex index = indexOf(student(1, "Петр", "Иванов", 1));
+
+        index.onStudentSaved(student(1, "Павел", "Иванов", 3));
+        assertTrue(index.search("петр", 10).isEmpty());
+        // Опоздавшее уведомление о версии 2 не возвращает старое имя
+        index.onStudentSaved(student(1, "Петр", "Иванов", 2));
+        assertEquals(List.of(1), ids(index.search("павел", 10)));
+
+        index.onStudentDeleted(1, 4);
+        assertEquals(0, index.size());
+        // Сохранение версии до удаления не воскрешает студента
+        index.onStudentSaved(student(1, "Павел", "Иванов", 3));
+        assertEquals(0, index.size());
+
+        index.onStudentSaved(student(2, "Ольга", "Павлова", 1));
+        assertEquals(List.of(2), ids(index.search("павл", 10)));
+        index.onAllStudentsDeleted();
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void lateCreateDoesNotResurrectButReinsertDoes() throws SQLException {
+        NameSearchIndex index = indexOf();
+
+        // Удаление пришло раньше уведомления о добавлении той же строки
+        index.onStudentDeleted(1, 1);
+        index.onStudentCreated(student(1, "Петр", "Иванов", 1));
+        assertEquals(0, index.size(), "опоздавшее добавление удаленной строки пропущено");
+        index.onStudentSaved(student(1, "Петр", "Иванов", 1));
+        assertEquals(0, index.size(), "изменение удаленной строки тоже");
+
+        // Добавление, удаление и новая строка с тем же Id - снова версия 1
+        index.onStudentCreated(student(2, "Ольга", "Павлова", 1));
+        index.onStudentDeleted(2, 1);
+        index.onStudentCreated(student(2, "Ольга", "Смирнова", 1));
+        assertEquals(List.of(2), ids(index.search("смирн", 10)));
+    }
+
+    @Test
+    void intHashSetMatchesHashSet() {
+        Random random = new Random(7);
+        NameSearchIndex.IntHashSet set = new NameSearchIndex.IntHashSet();
+        Set<Integer> reference = new HashSet<>();
+        // Служебные значения ячеек тоже должны храниться как обычные
+        int[] special = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, 0, -1, Integer.MAX_VALUE};
+        for (int step = 0; step < 20_000; step++) {
+            int value = random.nextInt(10) == 0 ? special[random.nextInt(special.length)] : random.nextInt(500) - 250;
+            if (random.nextInt(3) == 0) {
+                set.remove(value);
+                reference.remove(value);
+            } else {
+                set.add(value);
+                reference.add(value);
+            }
+            assertEquals(reference.size(), set.size());
+        }
+        for (int value = -300; value <= 300; value++) {
+            assertEquals(reference.contains(value), set.contains(value), "значение " + value);
+        }
+        for (int value : special) {
+            assertEquals(reference.contains(value), set.contains(value), "значение " + value);
+        }
+        List<Integer> visited = new ArrayList<>();
+        set.forEach(visited::add);
+        assertEquals(reference, new HashSet<>(visited));
+        assertEquals(reference.size(), visited.size(), "каждое значение - один раз");
+    }
+}
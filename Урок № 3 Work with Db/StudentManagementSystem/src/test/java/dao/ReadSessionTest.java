@@ -0,0 +1,56 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadSessionTest {
+
+    private static final long WINDOW_MS = 5_000;
+
+    @Test
+    void writeInSessionSendsItsReadsToPrimary() {
+        ReadSession session = new ReadSession();
+        assertFalse(session.readsFromPrimary(WINDOW_MS));
+        session.markWrite();
+        assertTrue(session.readsFromPrimary(WINDOW_MS));
+        assertFalse(session.readsFromPrimary(0), "окно истекло");
+    }
+
+    @Test
+    void tokenCarriesLastWrite() {
+        ReadSession session = new ReadSession();
+        assertEquals("0", session.token());
+        session.markWrite();
+
+        assertTrue(ReadSession.fromToken(session.token()).readsFromPrimary(WINDOW_MS));
+        assertFalse(ReadSession.fromToken(null).readsFromPrimary(WINDOW_MS));
+        assertFalse(ReadSession.fromToken("не число").readsFromPrimary(WINDOW_MS));
+    }
+
+    @Test
+    void tokenFromFutureIsClamped() {
+        ReadSession session = ReadSession.fromToken(Long.toString(Long.MAX_VALUE));
+        assertTrue(Long.parseLong(session.token()) <= System.currentTimeMillis());
+    }
+
+    @Test
+    void scopesNestAndRestore() throws SQLException {
+        ReadSession outer = new ReadSession();
+        ReadSession inner = ReadSession.primaryOnly();
+        assertNull(ReadSession.current());
+        try (ReadSession.Scope ignored = outer.open()) {
+            assertSame(outer, ReadSession.current());
+            assertTrue(inner.call(() -> ReadSession.current() == inner));
+            assertSame(outer, ReadSession.current());
+        }
+        assertNull(ReadSession.current());
+        assertTrue(inner.readsFromPrimary(WINDOW_MS));
+    }
+}
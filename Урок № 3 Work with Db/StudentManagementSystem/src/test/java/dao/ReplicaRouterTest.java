@@ -0,0 +1,112 @@
+package dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaRouterTest {
+
+    private static final long CHECK_MS = 100;
+
+    private ReplicaRouter router;
+
+    @AfterEach
+    void closeRouter() {
+        if (router != null) {
+            router.close();
+        }
+    }
+
+    private ReplicaRouter newRouter(long borrowTimeoutMillis, String... urls) {
+        List<ConnectionPool> pools = new ArrayList<>();
+        for (String url : urls) {
+            pools.add(new ConnectionPool(url, "sa", "", 0, 1, borrowTimeoutMillis, 60_000, 0));
+        }
+        router = new ReplicaRouter(List.of(urls), pools, CHECK_MS);
+        return router;
+    }
+
+    // Базы с IFEXISTS=TRUE нет, пока ее не создаст кто-то другой: подключение к ней - сбой сервера
+    private static String missingUrl(String name) {
+        return TestDatabase.newUrl(name) + ";IFEXISTS=TRUE";
+    }
+
+    @Test
+    void readsSpreadOverReplicas() throws SQLException {
+        String first = TestDatabase.newUrl("replica_a");
+        String second = TestDatabase.newUrl("replica_b");
+        newRouter(1_000, first, second);
+
+        try (Connection a = router.getConnection(); Connection b = router.getConnection()) {
+            assertNotNull(a);
+            assertNotNull(b);
+            // Пул каждой реплики - одно соединение: второе чтение досталось другой реплике
+            assertFalse(a.getMetaData().getURL().equals(b.getMetaData().getURL()));
+        }
+    }
+
+    @Test
+    void failedReplicaIsSkippedUntilHealthCheckRestoresIt() throws Exception {
+        String healthy = TestDatabase.newUrl("replica_ok");
+        String broken = missingUrl("replica_down");
+        newRouter(1_000, broken, healthy);
+
+        for (int i = 0; i < 4; i++) {
+            try (Connection conn = router.getConnection()) {
+                assertNotNull(conn, "есть доступная реплика");
+                assertTrue(healthy.startsWith(conn.getMetaData().getURL()));
+            }
+        }
+        assertTrue(router.toString().contains("НЕДОСТУПНА"), router.toString());
+
+        // Сервер поднялся: фоновая проверка возвращает реплику в работу
+        String created = broken.substring(0, broken.indexOf(";IFEXISTS"));
+        try (Connection ignored = DriverManager.getConnection(created, "sa", "")) {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (router.toString().contains("НЕДОСТУПНА") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(CHECK_MS);
+            }
+            assertFalse(router.toString().contains("НЕДОСТУПНА"), router.toString());
+        }
+    }
+
+    @Test
+    void noConnectionWhenAllReplicasAreDown() {
+        newRouter(1_000, missingUrl("replica_x"), missingUrl("replica_y"));
+        assertNull(router.getConnection());
+        assertNull(router.getConnection(), "недоступные реплики больше не опрашиваются");
+    }
+
+    @Test
+    void exhaustedPoolDoesNotMarkReplicaDown() throws SQLException {
+        newRouter(50, TestDatabase.newUrl("replica_busy"));
+        try (Connection held = router.getConnection()) {
+            assertNotNull(held);
+            assertNull(router.getConnection(), "занятый пул - чтение уходит на основной сервер");
+            assertFalse(router.toString().contains("НЕДОСТУПНА"), router.toString());
+        }
+        try (Connection conn = router.getConnection()) {
+            assertNotNull(conn, "после освобождения реплика снова выдает соединения");
+        }
+    }
+
+    @Test
+    void failureCountsAreReported() {
+        newRouter(1_000, missingUrl("replica_z"));
+        router.getConnection();
+        String stats = router.toString();
+        assertTrue(stats.contains("сбоев 1") || stats.contains("сбоев 2"), stats);
+        assertEquals(-1, stats.indexOf("IFEXISTS"), "параметры URL не выводятся");
+    }
+}
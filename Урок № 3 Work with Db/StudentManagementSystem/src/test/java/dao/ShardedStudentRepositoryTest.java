@@ -0,0 +1,144 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedStudentRepositoryTest {
+
+    private static final int SHARDS = 3;
+    private static final int STUDENTS = 90;
+
+    private List<ConnectionPool> pools;
+    private ShardedStudentRepository repository;
+    // Те же студенты в памяти - с ними сравниваются слитые результаты
+    private final List<Student> expected = new ArrayList<>();
+
+    private void fill(ShardMap shardMap) throws SQLException {
+        pools = TestDatabase.newShardPools("shard", SHARDS);
+        repository = new ShardedStudentRepository(pools, shardMap);
+        List<Student> students = new ArrayList<>();
+        for (int id = 1; id <= STUDENTS; id++) {
+            students.add(new Student(id, "Имя" + (id % 7), "Фамилия" + id, 18 + id % 11, null, "s" + id + "@mail.ru"));
+        }
+        Collections.shuffle(students, new Random(42));
+        BatchResult result = repository.addStudents(students, 25);
+        assertEquals(STUDENTS, result.getWritten(), result.toString());
+        expected.addAll(students);
+        expected.sort(Comparator.comparingInt(Student::getId));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.close();
+            pools.forEach(ConnectionPool::close);
+        }
+    }
+
+    @Test
+    void allStudentsAreMergedInIdOrder() throws SQLException {
+        fill(ShardMap.byHash(SHARDS));
+        assertEquals(ids(expected), ids(repository.getAllStudents()));
+        try (Stream<Student> stream = repository.streamAllStudents()) {
+            assertEquals(ids(expected), ids(stream.collect(Collectors.toList())));
+        }
+        List<Integer> visited = new ArrayList<>();
+        assertEquals(STUDENTS, repository.forEachStudent(s -> visited.add(s.getId())));
+        assertEquals(ids(expected), visited);
+    }
+
+    @Test
+    void keysetPagesCrossShards() throws SQLException {
+        fill(ShardMap.byRange(30, 60));
+        List<Integer> paged = new ArrayList<>();
+        int lastId = Integer.MIN_VALUE;
+        while (true) {
+            List<Student> page = repository.getStudentsAfterId(lastId, 7);
+            if (page.isEmpty()) {
+                break;
+            }
+            assertTrue(page.size() <= 7);
+            for (Student s : page) {
+                paged.add(s.getId());
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+        assertEquals(ids(expected), paged);
+    }
+
+    @Test
+    void sortedPageIsCutFromMergedResult() throws SQLException {
+        fill(ShardMap.byHash(SHARDS));
+        StudentQuery query = new StudentQuery().ageBetween(20, 25)
+                .orderBy(StudentQuery.SortField.AGE, false).offset(5).limit(10);
+
+        List<Student> matching = expected.stream().filter(query::matches).sorted(query.comparator())
+                .collect(Collectors.toList());
+        assertEquals(ids(matching.subList(5, 15)), ids(repository.findStudents(query)));
+        assertEquals(expected.stream().filter(s -> s.getAge() == 20).count(), repository.filterByAge(20).size());
+    }
+
+    @Test
+    void lookupsRouteToOwningShard() throws SQLException {
+        fill(ShardMap.byHash(SHARDS));
+        assertEquals("s17@mail.ru", repository.getStudentById(17).getEmail());
+        assertEquals(17, repository.getStudentByEmail("S17@MAIL.RU").getId());
+        Map<Integer, Student> byIds = repository.getStudentsByIds(List.of(90, 1, 999, 45));
+        assertEquals(List.of(90, 1, 45), new ArrayList<>(byIds.keySet()), "порядок входного списка, без ненайденных");
+        assertNull(repository.getStudentById(999));
+    }
+
+    @Test
+    void emailIsUniqueAcrossShards() throws SQLException {
+        fill(ShardMap.byHash(SHARDS));
+        // Шард нового студента выбирается по Id, поэтому уникальность держит email-справочник
+        assertThrows(DuplicateStudentException.class,
+                () -> repository.addStudent(new Student(91, "Новый", "Студент", 20, null, "S5@mail.ru")));
+
+        assertTrue(repository.deleteStudent(5));
+        assertFalse(repository.isEmailExists("s5@mail.ru"));
+        repository.addStudent(new Student(91, "Новый", "Студент", 20, null, "s5@mail.ru"));
+        assertEquals(91, repository.getStudentByEmail("s5@mail.ru").getId());
+    }
+
+    @Test
+    void batchClaimsEmailsPerDirectoryShard() throws SQLException {
+        fill(ShardMap.byHash(SHARDS));
+        List<Student> batch = new ArrayList<>();
+        for (int id = 91; id <= 130; id++) {
+            batch.add(new Student(id, "Новый", "Студент", 20, null, "n" + id + "@mail.ru"));
+        }
+        batch.add(new Student(131, "Повтор", "В пакете", 20, null, "N91@mail.ru"));
+        batch.add(new Student(132, "Повтор", "В базе", 20, null, "s7@MAIL.ru"));
+        batch.add(new Student(10, "Занятый", "Id", 20, null, "fresh@mail.ru"));
+
+        BatchResult result = repository.addStudents(batch, 16);
+        assertEquals(40, result.getWritten(), result.toString());
+        assertEquals(List.of(40, 41, 42), result.getRejections().stream()
+                .map(BatchResult.Rejection::getIndex).collect(Collectors.toList()));
+        assertEquals(91, repository.getStudentByEmail("n91@mail.ru").getId());
+        assertEquals(7, repository.getStudentByEmail("s7@mail.ru").getId());
+        assertFalse(repository.isEmailExists("fresh@mail.ru"), "email отклоненной строки освобожден");
+    }
+
+    private static List<Integer> ids(List<Student> students) {
+        return students.stream().map(Student::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,103 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentCacheTest {
+
+    private static Student student(int id, String email, long version) {
+        Student s = new Student(id, "Имя" + id, "Фамилия", 20, null, email);
+        s.setVersion(version);
+        return s;
+    }
+
+    @Test
+    void loadStartedBeforeInvalidationIsDroppedOnlyForThatId() {
+        StudentCache cache = new StudentCache(100, 60_000);
+        long stamp = cache.beginLoad();
+        cache.invalidate(1);
+        cache.put(student(1, "a@mail.ru", 1), stamp);
+        cache.put(student(2, "b@mail.ru", 1), stamp);
+
+        assertNull(cache.getById(1), "загрузка устарела: студента 1 изменили, пока она шла");
+        assertNotNull(cache.getById(2), "инвалидация другого Id загрузку не отменяет");
+
+        cache.put(student(1, "a@mail.ru", 2), cache.beginLoad());
+        assertEquals(2, cache.getById(1).getVersion());
+
+        long beforeClear = cache.beginLoad();
+        cache.invalidateAll();
+        cache.put(student(3, "c@mail.ru", 1), beforeClear);
+        assertNull(cache.getById(3));
+        assertNull(cache.getById(2));
+    }
+
+    @Test
+    void olderVersionDoesNotReplaceNewer() {
+        StudentCache cache = new StudentCache(100, 60_000);
+        cache.put(student(1, "a@mail.ru", 3), cache.beginLoad());
+        cache.put(student(1, "old@mail.ru", 2), cache.beginLoad());
+        assertEquals(3, cache.getById(1).getVersion());
+        assertNull(cache.getByEmail("old@mail.ru"));
+        assertEquals(1, cache.getByEmail("A@MAIL.RU").getId());
+    }
+
+    @Test
+    void emailFollowsItsCurrentOwner() {
+        StudentCache cache = new StudentCache(100, 60_000);
+        cache.put(student(1, "x@mail.ru", 1), cache.beginLoad());
+        // Студент 1 сменил email, x@mail.ru занял студент 2
+        cache.invalidate(1);
+        cache.put(student(2, "x@mail.ru", 1), cache.beginLoad());
+        assertEquals(2, cache.getByEmail("x@mail.ru").getId());
+
+        // Устаревшая запись студента 1 со старым email (загрузка без инвалидации) вытесняет
+        // его из индекса email, но не отдается по чужому email
+        cache.put(student(1, "x@mail.ru", 1), cache.beginLoad());
+        cache.put(student(2, "x@mail.ru", 1), cache.beginLoad());
+        assertNull(cache.getById(1), "чужая запись с тем же email убрана");
+        assertEquals(2, cache.getByEmail("x@mail.ru").getId());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWithinSize() {
+        StudentCache cache = new StudentCache(16, 60_000);
+        for (int id = 0; id < 1_000; id++) {
+            cache.put(student(id, id + "@mail.ru", 1), cache.beginLoad());
+        }
+        StudentCache.Stats stats = cache.getStats();
+        assertEquals(1_000 - stats.getSize(), stats.getEvictions());
+        assertTrue(stats.getSize() <= 16, "размер не больше maxSize: " + stats.getSize());
+    }
+
+    @Test
+    void cachedDaoDropsOldEmailOnUpdate() throws SQLException {
+        ConnectionPool pool = TestDatabase.newPool("cached_dao", 2);
+        try {
+            CachedStudentDAO dao = new CachedStudentDAO(new StudentCache(100, 60_000), pool);
+            dao.addStudent(student(1, "old@mail.ru", 0));
+            assertEquals(1, dao.getStudentByEmail("old@mail.ru").getId());
+            assertEquals(1, dao.getStudentById(1).getVersion());
+
+            dao.updateStudent(student(1, "new@mail.ru", 0));
+            assertNull(dao.getStudentByEmail("old@mail.ru"), "старый email не остался в кэше");
+            assertEquals("new@mail.ru", dao.getStudentById(1).getEmail());
+            assertEquals(2, dao.getStudentById(1).getVersion());
+
+            dao.addStudent(student(2, "old@mail.ru", 0));
+            assertEquals(2, dao.getStudentByEmail("old@mail.ru").getId());
+            dao.deleteStudent(2);
+            assertNull(dao.getStudentByEmail("old@mail.ru"));
+            assertEquals(1, dao.getCacheStats().getSize());
+        } finally {
+            pool.close();
+        }
+    }
+}
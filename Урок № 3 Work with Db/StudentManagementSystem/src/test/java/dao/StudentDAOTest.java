@@ -0,0 +1,307 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentDAOTest {
+
+    private ConnectionPool pool;
+    private StudentDAO dao;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = TestDatabase.newPool("student_dao", 4);
+        dao = new StudentDAO(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private static Student student(int id, int age) {
+        return new Student(id, "Имя" + id, "Фамилия", age, null, "s" + id + "@mail.ru");
+    }
+
+    // --- Пакетная запись ---
+
+    @Test
+    void batchRejectsBadRowsAndWritesTheRest() throws SQLException {
+        dao.addStudent(student(1, 20));
+        List<Student> batch = List.of(
+                student(2, 21),
+                student(3, 22),
+                new Student(4, "Имя4", "Фамилия", 23, null, "s2@mail.ru"),
+                new Student(1, "Имя1", "Фамилия", 24, null, "x1@mail.ru"),
+                new Student(5, "Имя5", "Фамилия", 25, null, "s1@mail.ru"),
+                new Student(6, "Имя6", "Фамилия", 26, null, null));
+
+        BatchResult result = dao.addStudents(batch, 3);
+        assertEquals(2, result.getWritten(), result.toString());
+        Map<Integer, String> reasons = new TreeMap<>();
+        for (BatchResult.Rejection r : result.getRejections()) {
+            reasons.put(r.getIndex(), r.getReason());
+        }
+        assertEquals(List.of(2, 3, 4, 5), new ArrayList<>(reasons.keySet()));
+        assertTrue(reasons.get(2).contains("повторяется во входных данных"), reasons.get(2));
+        assertTrue(reasons.get(4).contains("уже используется"), reasons.get(4));
+        assertEquals(List.of(1, 2, 3), ids(dao.getAllStudents()));
+        assertEquals(20, dao.getStudentById(1).getAge(), "строка с занятым ID не изменила существующую");
+
+        BatchResult upserted = dao.upsertStudents(List.of(
+                student(1, 30),
+                new Student(7, "Имя7", "Фамилия", 27, null, "s2@mail.ru")), 10);
+        assertEquals(1, upserted.getWritten(), upserted.toString());
+        assertEquals(1, upserted.getRejections().get(0).getIndex(), "email принадлежит другому студенту");
+        assertEquals(30, dao.getStudentById(1).getAge());
+        assertEquals(2, dao.getStudentById(1).getVersion());
+        assertThrows(IllegalArgumentException.class, () -> dao.addStudents(batch, 0));
+    }
+
+    // --- Потоковое и постраничное чтение ---
+
+    @Test
+    void keysetPagesAndStreamsVisitEveryRowInIdOrder() throws SQLException {
+        List<Student> students = new ArrayList<>();
+        for (int id = -5; id <= 20; id += 3) {
+            students.add(student(id, 20));
+        }
+        Collections.reverse(students);
+        assertEquals(students.size(), dao.addStudents(students, 4).getWritten());
+        List<Integer> expected = List.of(-5, -2, 1, 4, 7, 10, 13, 16, 19);
+
+        List<Integer> paged = new ArrayList<>();
+        int lastId = Integer.MIN_VALUE;
+        for (List<Student> page; !(page = dao.getStudentsAfterId(lastId, 4)).isEmpty(); ) {
+            assertTrue(page.size() <= 4);
+            for (Student s : page) {
+                paged.add(s.getId());
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+        assertEquals(expected, paged);
+
+        List<Integer> visited = new ArrayList<>();
+        assertEquals(expected.size(), dao.forEachStudent(s -> visited.add(s.getId())));
+        assertEquals(expected, visited);
+
+        try (Stream<Student> stream = dao.streamAllStudents()) {
+            assertEquals(expected.subList(0, 3), ids(stream.limit(3).collect(Collectors.toList())));
+            assertEquals(1, pool.getActiveCount(), "открытый поток держит соединение");
+        }
+        assertEquals(0, pool.getActiveCount(), "закрытие потока возвращает соединение в пул");
+    }
+
+    // --- Выборка по списку Id и email ---
+
+    @Test
+    void multiGetKeepsInputOrderAcrossInListChunks() throws SQLException {
+        List<Student> students = new ArrayList<>();
+        for (int id = 1; id <= 300; id++) {
+            students.add(student(id, 20));
+        }
+        dao.addStudents(students, 100);
+
+        List<Integer> requested = new ArrayList<>(List.of(300, 5, 999, 5));
+        for (int id = 1; id <= StudentDAO.MAX_IN_LIST_SIZE + 10; id++) {
+            requested.add(id); // второй кусок IN (...) - 14 значений, дополненных до формы 16
+        }
+        Map<Integer, Student> byIds = dao.getStudentsByIds(requested);
+        assertEquals(StudentDAO.MAX_IN_LIST_SIZE + 11, byIds.size(), "без повторов и ненайденных");
+        List<Integer> order = new ArrayList<>(byIds.keySet());
+        assertEquals(List.of(300, 5, 1, 2), order.subList(0, 4), "порядок первого появления");
+        assertEquals("s300@mail.ru", byIds.get(300).getEmail());
+        assertTrue(dao.getStudentsByIds(List.of()).isEmpty());
+
+        Map<String, Student> byEmails = dao.getStudentsByEmails(
+                Arrays.asList("s7@mail.ru", null, "nobody@mail.ru", "s3@mail.ru", "s7@mail.ru"));
+        assertEquals(List.of("s7@mail.ru", "s3@mail.ru"), new ArrayList<>(byEmails.keySet()));
+        assertEquals(3, byEmails.get("s3@mail.ru").getId());
+    }
+
+    // --- Явный список столбцов ---
+
+    @Test
+    void readsMapColumnsByPositionRegardlessOfTableLayout() throws SQLException {
+        // Лишний столбец в таблице не попадает в выборку и не сдвигает поля
+        TestDatabase.execute(pool, "ALTER TABLE Students ADD COLUMN Notes VARCHAR(100) DEFAULT 'заметка'");
+        dao.addStudent(new Student(1, "Анна", "Смирнова", 20, "+7 900 000-00-00", "anna@mail.ru"));
+        dao.addStudent(new Student(2, "Олег", "Петров", 21, null, "oleg@mail.ru"));
+        dao.updateStudent(new Student(2, "Олег", "Петров", 22, null, "oleg@mail.ru"));
+
+        List<Student> reads = new ArrayList<>();
+        reads.add(dao.getStudentById(1));
+        reads.add(dao.getStudentByEmail("oleg@mail.ru"));
+        reads.addAll(dao.getAllStudents());
+        reads.addAll(dao.searchByName("Олег", 10));
+        reads.addAll(dao.getStudentsByIds(List.of(2, 1)).values());
+        reads.addAll(dao.findStudentsBatch(new StudentQuery()).toStudents());
+        for (Student s : reads) {
+            if (s.getId() == 1) {
+                assertEquals(List.of("Анна", "Смирнова", "20", "+7 900 000-00-00", "anna@mail.ru", "1"), fields(s));
+            } else {
+                assertEquals(Arrays.asList("Олег", "Петров", "22", null, "oleg@mail.ru", "2"), fields(s));
+            }
+        }
+        assertEquals(9, reads.size());
+    }
+
+    private static List<String> fields(Student s) {
+        return Arrays.asList(s.getName(), s.getSurname(), String.valueOf(s.getAge()), s.getPhone(), s.getEmail(),
+                String.valueOf(s.getVersion()));
+    }
+
+    // --- Версии строк и оптимистическая блокировка ---
+
+    @Test
+    void versionGrowsWithEachWrite() throws SQLException {
+        Student s = student(1, 20);
+        dao.addStudent(s);
+        Student read = dao.getStudentById(1);
+        assertEquals(1, read.getVersion());
+
+        read.setAge(21);
+        assertTrue(dao.updateStudent(read));
+        assertEquals(2, read.getVersion(), "версия в объекте увеличена после записи");
+        assertEquals(2, dao.getStudentById(1).getVersion());
+
+        // Без версии - запись без проверки, но версия в базе все равно растет
+        assertTrue(dao.updateStudent(student(1, 22)));
+        Student last = dao.getStudentById(1);
+        assertEquals(3, last.getVersion());
+        assertEquals(22, last.getAge());
+    }
+
+    @Test
+    void staleUpdateIsRejectedAndChangesNothing() throws SQLException {
+        dao.addStudent(student(1, 20));
+        Student first = dao.getStudentById(1);
+        Student second = dao.getStudentById(1);
+
+        first.setAge(30);
+        assertTrue(dao.updateStudent(first));
+
+        second.setAge(40);
+        StaleStudentException e = assertThrows(StaleStudentException.class, () -> dao.updateStudent(second));
+        assertEquals(1, e.getStudentId());
+        assertEquals(1, e.getExpectedVersion());
+        assertEquals(2, e.getActualVersion());
+        assertEquals(StaleStudentException.CONFLICT_STATE, e.getSQLState());
+        assertEquals(1, second.getVersion(), "версия в объекте не изменена");
+        assertEquals(30, dao.getStudentById(1).getAge());
+
+        // Удаленного студента обновить нельзя, но это не конфликт версий
+        assertTrue(dao.deleteStudent(1));
+        assertFalse(dao.updateStudent(first));
+    }
+
+    @Test
+    void listenersReceiveRowVersions() throws SQLException {
+        List<String> events = new ArrayList<>();
+        dao.addChangeListener(new StudentChangeListener() {
+            @Override
+            public void onStudentCreated(Student student) {
+                events.add("created " + student.getId() + " v" + student.getVersion());
+            }
+
+            @Override
+            public void onStudentSaved(Student student) {
+                events.add("saved " + student.getId() + " v" + student.getVersion());
+            }
+
+            @Override
+            public void onStudentDeleted(int id, long version) {
+                events.add("deleted " + id + " v" + version);
+            }
+
+            @Override
+            public void onAllStudentsDeleted() {
+                events.add("all deleted");
+            }
+        });
+
+        dao.addStudent(student(1, 20));
+        Student read = dao.getStudentById(1);
+        dao.updateStudent(read);
+        dao.updateStudent(student(1, 25));
+        assertTrue(dao.update(student(1, 26), current -> { }), "update с проверкой знает точную версию");
+        assertEquals(4, dao.delete(1).getVersion());
+        dao.addStudent(student(2, 20));
+        dao.deleteStudent(2);
+
+        assertEquals(List.of("created 1 v1", "saved 1 v2", "saved 1 v0", "saved 1 v4", "deleted 1 v4",
+                "created 2 v1", "deleted 2 v0"), events);
+    }
+
+    // --- Составные запросы ---
+
+    @Test
+    void findStudentsPagesAndReusesPreparedShape() throws SQLException {
+        for (int id = 1; id <= 7; id++) {
+            dao.addStudent(student(id, 18 + id % 3));
+        }
+
+        List<Integer> keyset = new ArrayList<>();
+        int lastId = 0;
+        long hitsBefore = pool.getStats().getStatementHits();
+        for (List<Student> page; !(page = dao.findStudents(new StudentQuery().afterId(lastId).limit(3))).isEmpty(); ) {
+            for (Student s : page) {
+                keyset.add(s.getId());
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), keyset);
+        // Форма зарегистрирована при первом вызове: следующие страницы - из кэша запросов
+        assertTrue(pool.getStats().getStatementHits() - hitsBefore >= 2, "форма запроса берется из кэша");
+
+        StudentQuery byAge = new StudentQuery().ageBetween(19, 20)
+                .orderBy(StudentQuery.SortField.AGE, false).limit(2).offset(1);
+        assertEquals(List.of(5, 1), ids(dao.findStudents(byAge)), "возраст 20: 2 и 5, затем 19: 1, 4, 7");
+        assertEquals(List.of(5, 1), ids(dao.findStudentsBatch(byAge).toStudents()));
+    }
+
+    @Test
+    void ageFiltersRecordTheirOwnMetrics() throws SQLException {
+        for (int id = 1; id <= 4; id++) {
+            dao.addStudent(student(id, 18 + id));
+        }
+        assertEquals(List.of(2), ids(dao.filterByAge(20)));
+        assertEquals(List.of(2, 3), ids(dao.filterByAgeRange(20, 21)));
+        assertEquals(List.of(2, 3), ids(dao.filterByAgeRange(20, 21)));
+
+        Map<String, DaoMetrics.OperationStats> stats = new HashMap<>();
+        for (DaoMetrics.OperationStats op : dao.getMetrics().snapshot()) {
+            stats.put(op.getName(), op);
+        }
+        assertEquals(1, stats.get("filterByAge").getCalls());
+        assertEquals(2, stats.get("filterByAgeRange").getCalls());
+        assertEquals(4, stats.get("filterByAgeRange").getRows());
+        assertFalse(stats.containsKey("findStudents"), "фильтры не смешиваются с findStudents");
+    }
+
+    private static List<Integer> ids(List<Student> students) {
+        List<Integer> result = new ArrayList<>();
+        for (Student s : students) {
+            result.add(s.getId());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentOutboxTest {
+
+    // Пропуск в нумерации никогда не считается окончательным
+    private static final long LONG_LAG_MS = 60_000;
+
+    // Таблицы и триггеры - по DDL из SchemaInitializer, база - по умолчанию (db.url)
+    @BeforeEach
+    void createSchema() throws SQLException {
+        execute("DROP TABLE IF EXISTS Students");
+        execute("DROP TABLE IF EXISTS " + SchemaInitializer.OUTBOX_TABLE);
+        execute(SchemaInitializer.CREATE_TABLE_SQL);
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            TestDatabase.createOutbox(conn);
+        }
+    }
+
+    @Test
+    void triggersRecordRowVersionOfEachWrite() throws SQLException {
+        StudentDAO dao = new StudentDAO();
+        Student student = new Student(7, "Анна", "Смирнова", 19, null, "anna@mail.ru");
+        dao.addStudent(student);
+
+        Student versioned = new Student(7, "Анна", "Смирнова", 20, null, "anna@mail.ru");
+        versioned.setVersion(1);
+        dao.updateStudent(versioned);
+        // Без версии: тот же UPDATE, версию строки все равно записывает триггер
+        dao.updateStudent(new Student(7, "Анна", "Смирнова", 21, null, "anna.s@mail.ru"));
+        dao.deleteStudent(7);
+
+        List<StudentChangeEvent> events = new StudentOutbox(LONG_LAG_MS).readSince(0, 10);
+        assertEquals(4, events.size());
+        assertEquals(List.of(1L, 2L, 3L, 3L), rowVersions(events));
+        assertEquals(StudentChangeEvent.Type.SAVED, events.get(0).getType());
+        assertEquals(19, events.get(0).getStudent().getAge());
+        assertEquals(20, events.get(1).getStudent().getAge());
+        assertEquals("anna.s@mail.ru", events.get(2).getStudent().getEmail());
+        assertEquals(3, events.get(2).getStudent().getVersion());
+        StudentChangeEvent deleted = events.get(3);
+        assertEquals(StudentChangeEvent.Type.DELETED, deleted.getType());
+        assertEquals(7, deleted.getStudentId());
+        assertNull(deleted.getStudent());
+    }
+
+    @Test
+    void consumerResumesFromLastVersion() throws SQLException {
+        for (int v = 1; v <= 5; v++) {
+            insertDeleted(v);
+        }
+        StudentOutbox outbox = new StudentOutbox(LONG_LAG_MS);
+
+        List<StudentChangeEvent> first = outbox.readSince(0, 2);
+        assertEquals(List.of(1L, 2L), versions(first));
+        long last = first.get(first.size() - 1).getVersion();
+        assertEquals(List.of(3L, 4L, 5L), versions(outbox.readSince(last, 10)));
+        assertTrue(outbox.readSince(5, 10).isEmpty());
+        assertEquals(5, outbox.getLatestVersion());
+    }
+
+    @Test
+    void savedEventCarriesStudentAndRowVersion() throws SQLException {
+        execute("INSERT INTO " + SchemaInitializer.OUTBOX_TABLE
+                + " (Version, ChangeType, StudentId, Name, Surname, Age, Phone, Email, RowVersion)"
+                + " VALUES (1, 'SAVED', 7, 'Анна', 'Смирнова', 19, NULL, 'anna@mail.ru', 3)");
+        insertDeleted(2);
+
+        List<StudentChangeEvent> events = new StudentOutbox(LONG_LAG_MS).readSince(0, 10);
+        StudentChangeEvent saved = events.get(0);
+        assertEquals(StudentChangeEvent.Type.SAVED, saved.getType());
+        assertEquals("anna@mail.ru", saved.getStudent().getEmail());
+        assertEquals(3, saved.getRowVersion());
+        assertEquals(3, saved.getStudent().getVersion());
+        assertEquals(StudentChangeEvent.Type.DELETED, events.get(1).getType());
+        assertNull(events.get(1).getStudent());
+        assertEquals(2, events.get(1).getRowVersion());
+    }
+
+    @Test
+    void readStopsAtGapUntilCommitLagPasses() throws Exception {
+        for (int v : new int[]{1, 2, 4, 5}) {
+            insertDeleted(v);
+        }
+        StudentOutbox waiting = new StudentOutbox(LONG_LAG_MS);
+        assertEquals(List.of(1L, 2L), versions(waiting.readSince(0, 10)));
+        assertTrue(waiting.readSince(2, 10).isEmpty(), "версия 3 может еще зафиксироваться");
+
+        // Пропущенная версия появилась - чтение продолжается без пропуска
+        insertDeleted(3);
+        assertEquals(List.of(3L, 4L, 5L), versions(waiting.readSince(2, 10)));
+    }
+
+    @Test
+    void settledGapIsSkipped() throws Exception {
+        for (int v : new int[]{1, 2, 4, 5}) {
+            insertDeleted(v);
+        }
+        StudentOutbox outbox = new StudentOutbox(100);
+        Thread.sleep(200);
+        assertEquals(List.of(4L, 5L), versions(outbox.readSince(2, 10)));
+    }
+
+    @Test
+    void readFromStartAfterPurge() throws SQLException {
+        for (int v = 1; v <= 5; v++) {
+            insertDeleted(v);
+        }
+        StudentOutbox outbox = new StudentOutbox(LONG_LAG_MS);
+        assertEquals(3, outbox.purgeUpTo(3));
+        assertEquals(List.of(4L, 5L), versions(outbox.readSince(0, 10)));
+    }
+
+    private static void insertDeleted(long version) throws SQLException {
+        execute("INSERT INTO " + SchemaInitializer.OUTBOX_TABLE + " (Version, ChangeType, StudentId, RowVersion)"
+                + " VALUES (" + version + ", 'DELETED', " + version + ", " + version + ")");
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection(); Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static List<Long> rowVersions(List<StudentChangeEvent> events) {
+        List<Long> result = new ArrayList<>();
+        for (StudentChangeEvent e : events) {
+            result.add(e.getRowVersion());
+        }
+        return result;
+    }
+
+    private static List<Long> versions(List<StudentChangeEvent> events) {
+        List<Long> result = new ArrayList<>();
+        for (StudentChangeEvent e : events) {
+            result.add(e.getVersion());
+        }
+        return result;
+    }
+}
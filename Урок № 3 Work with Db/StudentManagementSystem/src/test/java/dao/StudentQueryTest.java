@@ -0,0 +1,55 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StudentQueryTest {
+
+    private static final String SELECT = "SELECT " + StudentDAO.STUDENT_COLUMNS + " FROM Students";
+
+    @Test
+    void compilesCriteriaInParameterOrder() {
+        StudentQuery query = new StudentQuery().ageBetween(18, 25).namePrefix("Ан_").emailDomain("@mail.ru")
+                .orderBy(StudentQuery.SortField.AGE, false).limit(50).offset(100);
+
+        assertEquals(SELECT + " WHERE Age >= ? AND Age <= ? AND Name LIKE ? AND Email LIKE ?"
+                + " ORDER BY Age DESC, Id ASC LIMIT ? OFFSET ?", query.toSql());
+        assertEquals(List.of(18, 25, "Ан\\_%", "%@mail.ru", 50, 100), query.parameters(),
+                "символы шаблона LIKE в значениях экранируются");
+    }
+
+    @Test
+    void sqlDependsOnlyOnShape() {
+        String first = new StudentQuery().ageAtLeast(18).limit(10).toSql();
+        assertSame(first, new StudentQuery().ageAtLeast(40).limit(1).toSql(), "та же форма - тот же текст из кэша");
+
+        assertEquals(SELECT + " ORDER BY Id ASC", new StudentQuery().toSql());
+        assertEquals(SELECT + " ORDER BY Id ASC LIMIT 18446744073709551615 OFFSET ?",
+                new StudentQuery().offset(5).toSql(), "OFFSET без LIMIT в MySQL невозможен");
+    }
+
+    @Test
+    void keysetPagingExcludesOffsetAndOtherOrder() {
+        StudentQuery page = new StudentQuery().surnamePrefix("Ив").afterId(40).limit(20);
+        assertEquals(SELECT + " WHERE Surname LIKE ? AND Id > ? ORDER BY Id ASC LIMIT ?", page.toSql());
+        assertEquals(List.of("Ив%", 40, 20), page.parameters());
+
+        assertThrows(IllegalStateException.class, () -> new StudentQuery().afterId(1).offset(10).toSql());
+        assertThrows(IllegalStateException.class,
+                () -> new StudentQuery().afterId(1).orderBy(StudentQuery.SortField.NAME, true).toSql());
+        assertThrows(IllegalArgumentException.class, () -> new StudentQuery().ageBetween(30, 20));
+    }
+
+    @Test
+    void shardCopyMovesOffsetIntoLimit() {
+        StudentQuery shard = new StudentQuery().ageAtMost(30).limit(10).offset(20).forShard();
+        assertEquals(30, shard.getLimit());
+        assertEquals(0, shard.getOffset());
+        assertEquals(List.of(30, 30), shard.parameters());
+    }
+}
@@ -0,0 +1,104 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentStatsTest {
+
+    private ConnectionPool pool;
+    private StudentDAO dao;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = TestDatabase.newPool("student_stats", 2);
+        dao = new StudentDAO(pool);
+        List<Student> students = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            String domain = id % 3 == 0 ? "Gmail.com" : id % 3 == 1 ? "mail.ru" : "yandex.ru";
+            students.add(new Student(id, "Имя", "Фамилия", 16 + id % 7, id % 4 == 0 ? "+7 900" : null,
+                    "s" + id + "@" + domain));
+        }
+        dao.addStudents(students, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void databaseReportsMatchRows() throws SQLException {
+        StudentStats stats = new StudentStats(dao);
+        List<Student> rows = dao.getAllStudents();
+        SortedMap<Integer, Long> byAge = new TreeMap<>();
+        SortedMap<Integer, Long> byBucket = new TreeMap<>();
+        long ageSum = 0;
+        for (Student s : rows) {
+            byAge.merge(s.getAge(), 1L, Long::sum);
+            byBucket.merge(s.getAge() / 5 * 5, 1L, Long::sum);
+            ageSum += s.getAge();
+        }
+
+        StudentStats.Summary summary = stats.getSummary();
+        assertEquals(20, summary.getCount());
+        assertEquals(16, summary.getMinAge());
+        assertEquals(22, summary.getMaxAge());
+        assertEquals(ageSum / 20.0, summary.getAverageAge(), 1e-9);
+        assertEquals(5, summary.getWithPhone());
+        assertEquals(byAge, stats.countByAge());
+        assertEquals(byBucket, stats.countByAgeBucket(5));
+        assertEquals(List.of("mail.ru", "yandex.ru"), new ArrayList<>(stats.countByEmailDomain(2).keySet()),
+                "mail.ru и yandex.ru по 7 - при равенстве по имени домена");
+        assertEquals(6L, stats.countByEmailDomain(10).get("gmail.com"), "домен без учета регистра");
+        assertThrows(IllegalArgumentException.class, () -> stats.countByAgeBucket(0));
+    }
+
+    @Test
+    void aggregateFollowsWritesAndSkipsLateNotifications() throws SQLException {
+        StudentStatsAggregate aggregate = StudentStatsAggregate.attach(dao);
+        StudentStats stats = new StudentStats(dao);
+        assertSameReports(stats, aggregate);
+
+        // Запись по версии: подписчики получают точную версию строки
+        Student changed = dao.getStudentById(3);
+        changed.setAge(40);
+        changed.setPhone("+7 901");
+        changed.setEmail("s3@list.ru");
+        dao.updateStudent(changed);
+        dao.delete(4);
+        dao.addStudent(new Student(21, "Имя", "Фамилия", 18, null, "s21@MAIL.ru"));
+        assertSameReports(stats, aggregate);
+
+        // Опоздавшие уведомления: старая версия студента 3 и сохранение уже удаленного 4
+        Student stale = new Student(3, "Имя", "Фамилия", 19, null, "s3@gmail.com");
+        stale.setVersion(1);
+        aggregate.onStudentSaved(stale);
+        Student deleted = new Student(4, "Имя", "Фамилия", 20, null, "s4@mail.ru");
+        deleted.setVersion(1);
+        aggregate.onStudentSaved(deleted);
+        assertSameReports(stats, aggregate);
+
+        dao.deleteAllStudents();
+        assertEquals(0, aggregate.getSummary().getCount());
+        assertTrue(aggregate.countByAge().isEmpty());
+    }
+
+    private static void assertSameReports(StudentStats stats, StudentStatsAggregate aggregate) throws SQLException {
+        assertEquals(stats.getSummary().toString(), aggregate.getSummary().toString());
+        assertEquals(stats.countByAge(), aggregate.countByAge());
+        assertEquals(stats.countByAgeBucket(10), aggregate.countByAgeBucket(10));
+        assertEquals(stats.countByEmailDomain(10), aggregate.countByEmailDomain(10));
+    }
+}
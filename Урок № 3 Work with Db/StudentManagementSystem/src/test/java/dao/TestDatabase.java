@@ -0,0 +1,63 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенная H2 в режиме MySQL для тестов: каждая база - отдельная, в памяти.
+ * Таблицы и триггеры создаются по DDL из SchemaInitializer.
+ */
+final class TestDatabase {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private TestDatabase() {
+    }
+
+    /** JDBC URL новой пустой базы; name попадает в URL для читаемых сообщений. */
+    static String newUrl(String name) {
+        return "jdbc:h2:mem:" + name + "_" + COUNTER.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    /** Пул на новой базе с таблицей Students. */
+    static ConnectionPool newPool(String name, int maxSize) throws SQLException {
+        ConnectionPool pool = new ConnectionPool(newUrl(name), "sa", "", 0, maxSize, 2_000, 60_000, 0);
+        execute(pool, SchemaInitializer.CREATE_TABLE_SQL);
+        return pool;
+    }
+
+    /** Пулы шардов: в каждой базе таблица Students и email-справочник. */
+    static List<ConnectionPool> newShardPools(String name, int shards) throws SQLException {
+        List<ConnectionPool> pools = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            ConnectionPool pool = newPool(name + i, 2);
+            execute(pool, SchemaInitializer.CREATE_EMAIL_DIRECTORY_SQL);
+            pools.add(pool);
+        }
+        return pools;
+    }
+
+    /**
+     * Журнал outbox и его триггеры (заголовки и тела - из SchemaInitializer,
+     * тела выполняет H2OutboxTrigger).
+     */
+    static void createOutbox(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(SchemaInitializer.CREATE_OUTBOX_SQL);
+            for (String ddl : SchemaInitializer.CREATE_OUTBOX_TRIGGER_SQL) {
+                int end = ddl.indexOf(H2OutboxTrigger.FOR_EACH_ROW) + H2OutboxTrigger.FOR_EACH_ROW.length();
+                st.execute(ddl.substring(0, end) + " CALL '" + H2OutboxTrigger.class.getName() + "'");
+            }
+        }
+    }
+
+    static void execute(ConnectionPool pool, String sql) throws SQLException {
+        try (Connection conn = pool.getConnection(); Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dao;
+
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+
+    // Сброс только по flush()/close(): фоновый поток за время теста не срабатывает
+    private static final long NEVER_MS = 60_000;
+
+    @TempDir
+    Path dir;
+
+    private ConnectionPool pool;
+    private StudentDAO dao;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = TestDatabase.newPool("write_behind", 4);
+        dao = new StudentDAO(pool);
+        for (int id = 1; id <= 5; id++) {
+            dao.addStudent(new Student(id, "Имя" + id, "Фамилия", 20, null, "s" + id + "@mail.ru"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void replayAppliesJournalAndRejectsBadRow() throws Exception {
+        Path journal = dir.resolve("writes.journal");
+        // Журнал, оставшийся после сбоя: годное обновление, обновление со слишком длинным
+        // телефоном (не пройдет и при повторе) и удаление
+        Files.write(journal, List.of(
+                "U\t1\tИван\tПетров\t30\t\\N\ts1@mail.ru",
+                "U\t2\tАнна\tСмирнова\t31\t" + "9".repeat(40) + "\ts2@mail.ru",
+                "D\t3"));
+
+        try (WriteBehindQueue queue = new WriteBehindQueue(dao, journal, 1_000, 50)) {
+            assertTrue(queue.awaitFlushed(5_000));
+            assertEquals(0, Files.size(journal), "после применения журнал пуст");
+            assertEquals(1, queue.getStats().getRejected());
+        }
+
+        assertEquals(30, dao.getStudentById(1).getAge());
+        assertEquals("Иван", dao.getStudentById(1).getName());
+        assertEquals(20, dao.getStudentById(2).getAge(), "отклоненное изменение не применено");
+        assertNull(dao.getStudentById(3));
+
+        String rejected = Files.readString(journal.resolveSibling("writes.journal.rejected"));
+        List<String> lines = rejected.lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("# "), "первая строка - причина: " + lines.get(0));
+        assertTrue(lines.get(1).startsWith("U\t2\t"), "вторая - сама строка журнала: " + lines.get(1));
+    }
+
+    @Test
+    void pendingChangesSurviveRestart() throws Exception {
+        Path journal = dir.resolve("writes.journal");
+        Path crashed = dir.resolve("crashed.journal");
+        try (WriteBehindQueue queue = new WriteBehindQueue(dao, journal, 1_000, NEVER_MS)) {
+            // Табуляция и перевод строки в значении проверяют экранирование в журнале
+            queue.updateStudent(new Student(1, "Имя\tс табуляцией", "Фамилия\nвторая строка", 40, "+79001234567", "s1@mail.ru"));
+            queue.deleteStudent(4);
+            assertEquals(2, queue.getPendingCount());
+            // Копия журнала до сброса - то, что осталось бы на диске после сбоя
+            Files.copy(journal, crashed);
+        }
+        // Возвращаем строки к исходному состоянию: изменения должны прийти только из журнала
+        dao.updateStudent(new Student(1, "Имя1", "Фамилия", 20, null, "s1@mail.ru"));
+        dao.addStudent(new Student(4, "Имя4", "Фамилия", 20, null, "s4@mail.ru"));
+
+        try (WriteBehindQueue queue = new WriteBehindQueue(dao, crashed, 1_000, 50)) {
+            assertTrue(queue.awaitFlushed(5_000));
+        }
+        Student updated = dao.getStudentById(1);
+        assertEquals("Имя\tс табуляцией", updated.getName());
+        assertEquals("Фамилия\nвторая строка", updated.getSurname());
+        assertEquals("+79001234567", updated.getPhone());
+        assertNull(dao.getStudentById(4));
+    }
+
+    @Test
+    void changesOfOneIdAreCoalesced() throws Exception {
+        Path journal = dir.resolve("writes.journal");
+        try (WriteBehindQueue queue = new WriteBehindQueue(dao, journal, 1_000, NEVER_MS)) {
+            for (int age = 21; age <= 25; age++) {
+                queue.updateStudent(new Student(2, "Анна", "Смирнова", age, null, "s2@mail.ru"));
+            }
+            assertEquals(1, queue.getPendingCount());
+            queue.flush();
+
+            WriteBehindQueue.Stats stats = queue.getStats();
+            assertEquals(5, stats.getEnqueued());
+            assertEquals(4, stats.getCoalesced());
+            assertEquals(1, stats.getWrittenRows());
+            assertEquals(0, Files.size(journal));
+        }
+        assertEquals(25, dao.getStudentById(2).getAge());
+    }
+
+    @Test
+    void closeFlushesPendingChanges() throws Exception {
+        Path journal = dir.resolve("writes.journal");
+        WriteBehindQueue queue = new WriteBehindQueue(dao, journal, 1_000, NEVER_MS);
+        queue.deleteStudent(5);
+        queue.close();
+
+        assertNull(dao.getStudentById(5));
+        assertFalse(Files.exists(journal) && Files.size(journal) > 0, "журнал пуст после close()");
+    }
+}
@@ -0,0 +1,73 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentBatchTest {
+
+    private static Student student(int id, String name, String surname, String phone, String email, long version) {
+        Student s = new Student(id, name, surname, 18 + id % 10, phone, email);
+        s.setVersion(version);
+        return s;
+    }
+
+    @Test
+    void recordsRoundTripExactly() {
+        List<Student> students = List.of(
+                student(1, "Анна", "Смирнова", "+7 900", "anna@mail.ru", 3),
+                student(2, "Олег", null, null, "Oleg.P@Mail.RU", 1),
+                student(-3, "Ян", "Ли", "", "без-собаки", 0),
+                student(4, null, "Ли", null, null, 7),
+                student(5, "Эмили", "Браун", null, "émilie@почта.рф", 2));
+
+        StudentBatch batch = StudentBatch.of(students);
+        assertEquals(students.size(), batch.size());
+        for (int i = 0; i < students.size(); i++) {
+            Student expected = students.get(i);
+            StudentRecord record = batch.get(i);
+            assertEquals(StudentRecord.of(expected), record, "запись " + i);
+            Student copy = batch.toStudent(i);
+            assertEquals(expected.getEmail(), copy.getEmail());
+            assertEquals(expected.getPhone(), copy.getPhone(), "null и пустая строка различаются");
+            assertEquals(expected.getVersion(), copy.getVersion());
+        }
+        assertEquals("Mail.RU", batch.getEmailDomain(1), "регистр домена сохраняется");
+        assertNull(batch.getEmailDomain(2));
+        assertNull(batch.getEmail(3));
+        assertArrayEquals(new int[]{1, 2, -3, 4, 5}, batch.ids());
+        assertEquals(batch.toStudents().size(), batch.asList().size());
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.getId(5));
+        assertThrows(UnsupportedOperationException.class, () -> batch.asList().add(batch.get(0)));
+    }
+
+    @Test
+    void repeatedStringsAreStoredOnce() {
+        StudentBatch.Builder builder = new StudentBatch.Builder(1);
+        for (int id = 0; id < 1_000; id++) {
+            String domain = id % 2 == 0 ? "mail.ru" : "gmail.com";
+            builder.add(id, id % 3 == 0 ? "Иван" : "Анна", "Фамилия" + id % 5, 20, null,
+                    "очень.длинный.адрес.студента." + id + "@" + domain, 1);
+        }
+        StudentBatch batch = builder.build();
+        assertEquals(1_000, batch.size());
+        assertEquals(2 + 5, batch.getDistinctWords());
+        assertEquals(2, batch.getDistinctDomains());
+        assertSame(batch.getName(0), batch.getName(3), "одна строка на все повторы");
+        assertSame(batch.getEmailDomain(0), batch.getEmailDomain(998));
+        assertEquals("очень.длинный.адрес.студента.999@gmail.com", batch.getEmail(999));
+        assertTrue(batch.toString().contains("доменов email: 2"), batch.toString());
+
+        List<Student> empty = new ArrayList<>();
+        assertEquals(0, StudentBatch.empty().size());
+        assertTrue(StudentBatch.of(empty).isEmpty());
+    }
+}
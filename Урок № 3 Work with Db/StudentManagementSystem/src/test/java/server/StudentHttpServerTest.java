@@ -0,0 +1,202 @@
+package server;
+
+import dao.InMemoryStudentRepository;
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentHttpServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private InMemoryStudentRepository repository;
+    private StudentHttpServer server;
+
+    @BeforeEach
+    void start() throws IOException, SQLException {
+        repository = new InMemoryStudentRepository();
+        repository.addStudent(new Student(1, "Анна", "Смирнова", 20, null, "anna@mail.ru"));
+        // Порт 0 - свободный порт, выбранный системой
+        server = new StudentHttpServer(repository, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private static String json(int id, int age, String email) {
+        return "{\"id\":" + id + ",\"name\":\"Анна\",\"surname\":\"Смирнова\",\"age\":" + age
+                + ",\"phone\":null,\"email\":\"" + email + "\"}";
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> put(int id, String body, String ifMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = request("/students/" + id).PUT(HttpRequest.BodyPublishers.ofString(body));
+        if (ifMatch != null) {
+            request.header("If-Match", ifMatch);
+        }
+        return send(request);
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        return send(request("/students").POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    // --- Маршруты и коды ответов ---
+
+    @Test
+    void routesCoverCrudAndQueries() throws Exception {
+        HttpResponse<String> created = post(json(2, 25, "oleg@mail.ru"));
+        assertEquals(201, created.statusCode());
+        assertEquals("/students/2", created.headers().firstValue("Location").orElseThrow());
+        assertEquals("\"1\"", created.headers().firstValue("ETag").orElseThrow());
+
+        assertTrue(send(request("/students/2")).body().contains("\"email\":\"oleg@mail.ru\""));
+        assertTrue(send(request("/students?email=OLEG%40mail.ru")).body().contains("\"id\":2"));
+        assertEquals(List.of(1), ids(send(request("/students?age=20")).body()));
+        assertEquals(List.of(2), ids(send(request("/students?minAge=21&maxAge=30")).body()));
+        assertEquals(List.of(1, 2), ids(send(request("/students/search?q=%D0%B0%D0%BD%D0%BD&limit=5")).body()),
+                "поиск по имени: у обоих имя Анна");
+
+        HttpResponse<String> deleted = send(request("/students/2").DELETE());
+        assertEquals(204, deleted.statusCode());
+        assertNull(repository.getStudentById(2));
+        assertEquals(404, send(request("/students/2")).statusCode());
+        assertEquals(404, send(request("/students/2").DELETE()).statusCode());
+
+        assertEquals("OK\n", send(request("/health")).body());
+        String metrics = send(request("/metrics")).body();
+        assertTrue(metrics.contains("student_http_responses_total{route=\"DELETE /students/{id}\",status=\"204\"} 1"),
+                metrics);
+        assertTrue(metrics.contains("route=\"GET /students/search\""), metrics);
+    }
+
+    @Test
+    void errorsMapToStatusCodes() throws Exception {
+        HttpResponse<String> duplicateId = post(json(1, 30, "other@mail.ru"));
+        assertEquals(409, duplicateId.statusCode());
+        assertTrue(duplicateId.body().startsWith("{\"error\":"), duplicateId.body());
+        assertEquals(409, post(json(2, 30, "ANNA@mail.ru")).statusCode(), "email уже занят");
+
+        assertEquals(400, post(json(2, 15, "young@mail.ru")).statusCode(), "возраст не проходит проверку");
+        assertEquals(400, post("{\"id\":2,").statusCode(), "некорректный JSON");
+        assertEquals(400, put(1, json(2, 21, "anna@mail.ru"), null).statusCode(), "ID в теле и в пути различаются");
+        assertEquals(400, send(request("/students/search")).statusCode());
+        assertEquals(400, send(request("/students/search?q=x&limit=0")).statusCode());
+        assertEquals(400, send(request("/students?age=двадцать")).statusCode());
+
+        assertEquals(404, send(request("/students/abc")).statusCode());
+        assertEquals(404, put(7, json(7, 21, "new@mail.ru"), null).statusCode());
+        assertEquals(405, send(request("/students").DELETE()).statusCode());
+        assertEquals(405, send(request("/students/1").method("PATCH", HttpRequest.BodyPublishers.noBody())).statusCode());
+        assertEquals(20, repository.getStudentById(1).getAge());
+    }
+
+    @Test
+    void fullListIsStreamedAcrossPages() throws Exception {
+        List<Student> more = new ArrayList<>();
+        for (int id = 2; id <= 2_500; id++) {
+            more.add(new Student(id, "Имя", "Фамилия", 18 + id % 50, null, "s" + id + "@mail.ru"));
+        }
+        repository.addStudents(more, 500);
+
+        HttpResponse<String> response = send(request("/students"));
+        assertEquals(200, response.statusCode());
+        assertFalse(response.headers().firstValue("Content-Length").isPresent(), "ответ выдается потоком (chunked)");
+        assertTrue(response.body().startsWith("[\n") && response.body().endsWith("\n]\n"));
+        List<Integer> ids = ids(response.body());
+        assertEquals(2_500, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, ids.get(i), "порядок Id на стыках страниц");
+        }
+    }
+
+    // --- Чтение своих записей: X-Read-Session ---
+
+    @Test
+    void readSessionTokenIsCarriedThroughWrites() throws Exception {
+        // Хранилище в памяти записей в сессии не отмечает - в ответе тот же маркер, что пришел
+        HttpResponse<String> fresh = post(json(2, 25, "oleg@mail.ru"));
+        assertEquals("0", fresh.headers().firstValue("X-Read-Session").orElseThrow());
+
+        HttpResponse<String> carried = send(request("/students/2").header("X-Read-Session", "12345")
+                .PUT(HttpRequest.BodyPublishers.ofString(json(2, 26, "oleg@mail.ru"))));
+        assertEquals("12345", carried.headers().firstValue("X-Read-Session").orElseThrow());
+
+        HttpResponse<String> future = send(request("/students/2").header("X-Read-Session", Long.toString(Long.MAX_VALUE))
+                .DELETE());
+        assertTrue(Long.parseLong(future.headers().firstValue("X-Read-Session").orElseThrow())
+                <= System.currentTimeMillis(), "время из будущего ограничено текущим");
+        assertFalse(send(request("/students/1")).headers().firstValue("X-Read-Session").isPresent(),
+                "чтение маркер не выдает");
+    }
+
+    // --- Версии: ETag и If-Match ---
+
+    @Test
+    void ifMatchGuardsAgainstLostUpdates() throws Exception {
+        HttpResponse<String> read = send(request("/students/1"));
+        assertEquals(200, read.statusCode());
+        String etag = read.headers().firstValue("ETag").orElseThrow();
+        assertEquals("\"1\"", etag);
+
+        HttpResponse<String> first = put(1, json(1, 21, "anna@mail.ru"), etag);
+        assertEquals(200, first.statusCode());
+        assertEquals("\"2\"", first.headers().firstValue("ETag").orElseThrow(), "новая версия после записи");
+
+        // Второй клиент прочитал версию 1 - его изменение отклоняется
+        HttpResponse<String> stale = put(1, json(1, 30, "anna@mail.ru"), etag);
+        assertEquals(412, stale.statusCode());
+        assertEquals(21, repository.getStudentById(1).getAge());
+
+        assertEquals(200, put(1, json(1, 22, "anna@mail.ru"), "W/\"2\"").statusCode(), "слабый ETag тоже принимается");
+        assertEquals(200, put(1, json(1, 23, "anna@mail.ru"), "*").statusCode(), "* - без проверки версии");
+        assertEquals(200, put(1, json(1, 24, "anna@mail.ru"), null).statusCode());
+        assertEquals(24, repository.getStudentById(1).getAge());
+        assertEquals(5, repository.getStudentById(1).getVersion());
+    }
+
+    @Test
+    void invalidIfMatchIsBadRequest() throws Exception {
+        for (String header : new String[]{"abc", "\"0\"", "-1"}) {
+            HttpResponse<String> response = put(1, json(1, 21, "anna@mail.ru"), header);
+            assertEquals(400, response.statusCode(), header);
+            assertTrue(response.body().contains("If-Match"), response.body());
+        }
+        assertEquals(20, repository.getStudentById(1).getAge());
+    }
+
+    /** Id студентов из JSON-массива ответа, по порядку. */
+    private static List<Integer> ids(String body) {
+        List<Integer> ids = new ArrayList<>();
+        for (int at = body.indexOf("{\"id\":"); at >= 0; at = body.indexOf("{\"id\":", at + 1)) {
+            int from = at + 6;
+            int to = body.indexOf(',', from);
+            ids.add(Integer.parseInt(body.substring(from, to)));
+        }
+        return ids;
+    }
+}
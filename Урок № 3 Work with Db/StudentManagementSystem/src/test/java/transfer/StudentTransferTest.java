@@ -0,0 +1,152 @@
+package transfer;
+
+import dao.BatchResult;
+import dao.InMemoryStudentRepository;
+import model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StudentTransferTest {
+
+    @TempDir
+    Path dir;
+
+    /** Хранилище, в котором addStudents с номером failOnCall падает (имитация сбоя посреди импорта). */
+    private static class FailingRepository extends InMemoryStudentRepository {
+        private final int failOnCall;
+        private int calls;
+
+        FailingRepository(int failOnCall) {
+            this.failOnCall = failOnCall;
+        }
+
+        @Override
+        public BatchResult addStudents(Iterable<Student> students, int batchSize) throws SQLException {
+            if (++calls == failOnCall) {
+                throw new SQLException("Соединение потеряно.");
+            }
+            return super.addStudents(students, batchSize);
+        }
+    }
+
+    private static List<String> csv(int count) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Id,Name,Surname,Age,Phone,Email");
+        for (int id = 1; id <= count; id++) {
+            lines.add(id + ",Имя" + id + ",Фамилия," + (18 + id) + ",,s" + id + "@mail.ru");
+        }
+        return lines;
+    }
+
+    @Test
+    void resumesFromCheckpointAfterFailure() throws IOException, SQLException {
+        Path file = dir.resolve("students.csv");
+        Files.write(file, csv(10), StandardCharsets.UTF_8);
+        FailingRepository repository = new FailingRepository(3);
+
+        // Части по 3 записи: первые две записаны, третья упала
+        StudentImporter importer = new StudentImporter(repository, 3, 1, false);
+        assertThrows(SQLException.class, () -> importer.importFile(file, StudentFormat.CSV));
+        assertTrue(Files.exists(StudentImporter.checkpointPath(file)));
+        assertEquals(6, repository.getAllStudents().size());
+
+        TransferReport report = importer.importFile(file, StudentFormat.CSV);
+        assertEquals(6, report.getSkipped());
+        assertEquals(4, report.getWritten());
+        assertEquals(0, report.getRejected(), report.getErrors().toString());
+        assertEquals(10, repository.getAllStudents().size());
+        assertFalse(Files.exists(StudentImporter.checkpointPath(file)), "после успешной загрузки точка удалена");
+    }
+
+    @Test
+    void changedFileIgnoresCheckpoint() throws IOException, SQLException {
+        Path file = dir.resolve("students.csv");
+        List<String> lines = csv(10);
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        FailingRepository repository = new FailingRepository(3);
+        StudentImporter importer = new StudentImporter(repository, 3, 1, false);
+        assertThrows(SQLException.class, () -> importer.importFile(file, StudentFormat.CSV));
+
+        // Загруженное начало изменено без изменения размера и времени изменения файла
+        FileTime modified = Files.getLastModifiedTime(file);
+        lines.set(1, lines.get(1).replace("Имя1", "Иван"));
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, modified);
+
+        TransferReport report = importer.importFile(file, StudentFormat.CSV);
+        assertEquals(0, report.getSkipped(), "загрузка с начала файла");
+        assertEquals(10, report.getProcessed());
+        assertEquals(4, report.getWritten());
+        assertEquals(6, report.getRejected(), "уже загруженные строки отклонены как дубликаты");
+    }
+
+    @Test
+    void invalidRecordsAreReportedWithTheirNumbers() throws IOException, SQLException {
+        Path file = dir.resolve("students.csv");
+        Files.write(file, List.of(
+                "Id,Name,Surname,Age,Phone,Email",
+                "1,Анна,Иванова,20,,anna@mail.ru",
+                "2,Олег,Петров,15,,oleg@mail.ru",
+                "3,Петр,Сидоров,30,,not-an-email",
+                "x,Ян,Ли,30,,yan@mail.ru",
+                "5,Ян,Ли,30",
+                "6,,Ли,200,,li@mail.ru"), StandardCharsets.UTF_8);
+        InMemoryStudentRepository repository = new InMemoryStudentRepository();
+
+        TransferReport report = new StudentImporter(repository, 2, 2, false).importFile(file, StudentFormat.CSV);
+        assertEquals(6, report.getProcessed());
+        assertEquals(1, report.getWritten());
+        assertEquals(5, report.getRejected());
+        // Внутри части ошибки разбора идут раньше ошибок проверки - сравниваем по номерам записей
+        List<String> errors = new ArrayList<>(report.getErrors());
+        errors.sort(null);
+        assertTrue(errors.get(0).startsWith("Запись 2: Некорректный возраст"), errors.toString());
+        assertTrue(errors.get(1).startsWith("Запись 3: Некорректный формат Email"), errors.toString());
+        assertTrue(errors.get(2).startsWith("Запись 4: Поле Id"), errors.toString());
+        assertTrue(errors.get(3).startsWith("Запись 5: Ожидалось 6 полей"), errors.toString());
+        assertEquals("Запись 6: Имя не может быть пустым. Некорректный возраст. (От 16 до 100)", errors.get(4),
+                "нарушения одного студента - одна ошибка");
+        assertEquals("Анна", repository.getStudentById(1).getName());
+    }
+
+    @Test
+    void exportedFilesImportBackUnchanged() throws IOException, SQLException {
+        InMemoryStudentRepository source = new InMemoryStudentRepository();
+        source.addStudent(new Student(1, "Анна", "Иванова-\"Петрова\"", 20, null, "anna@mail.ru"));
+        source.addStudent(new Student(2, "Олег, мл.", "Петров", 25, "+7 900 000-00-00", "oleg@mail.ru"));
+        source.addStudent(new Student(3, "Ян\nЛи", "Ли", 30, "", "yan@mail.ru"));
+
+        for (StudentFormat format : StudentFormat.values()) {
+            Path file = dir.resolve("students." + (format == StudentFormat.CSV ? "csv" : "jsonl"));
+            TransferReport exported = new StudentExporter(source).export(file, format);
+            assertEquals(3, exported.getWritten());
+            assertEquals(format, StudentFormat.fromFileName(file.toString()));
+
+            InMemoryStudentRepository target = new InMemoryStudentRepository();
+            TransferReport imported = new StudentImporter(target).importFile(file, format);
+            assertEquals(3, imported.getWritten(), format + ": " + imported.getErrors());
+            for (Student expected : source.getAllStudents()) {
+                Student actual = target.getStudentById(expected.getId());
+                assertEquals(expected.getName(), actual.getName(), format.toString());
+                assertEquals(expected.getSurname(), actual.getSurname(), format.toString());
+                assertEquals(expected.getAge(), actual.getAge(), format.toString());
+                assertEquals(expected.getPhone(), actual.getPhone(), format + ": null и пустой телефон различаются");
+                assertEquals(expected.getEmail(), actual.getEmail(), format.toString());
+            }
+        }
+    }
+}
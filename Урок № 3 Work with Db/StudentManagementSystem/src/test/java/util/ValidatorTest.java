@@ -0,0 +1,78 @@
+package util;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidatorTest {
+
+    private static final Pattern EMAIL = Pattern.compile(Validator.EMAIL_REGEX);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"user@mail.ru", "a.b-c_d%e+f@sub.domain-x.info", "U1@X.COM", "a@b.co", "a@b.c.museum",
+            "a@.b.ru", "a@b..ru", "..@--.ru", "a@b-.ru", "a@1.ru"})
+    void acceptsWhatRegexAccepts(String email) {
+        assertTrue(EMAIL.matcher(email).matches(), "эталон: " + email);
+        assertTrue(Validator.isValidEmail(email), email);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "user@", "@mail.ru", "user.mail.ru", "user@mail", "user@mail.r", "user@mail.abcdefg",
+            "us er@mail.ru", "user@@mail.ru", "user@.ru", "user@mail.ru1", "user@mail.r-u", "юзер@mail.ru",
+            "user@почта.рф", "user@mail.ru\n", "a@b.c_m"})
+    void rejectsWhatRegexRejects(String email) {
+        assertFalse(EMAIL.matcher(email).matches(), "эталон: " + email);
+        assertFalse(Validator.isValidEmail(email), email);
+    }
+
+    @Test
+    void scannerAgreesWithRegexOnRandomStrings() {
+        // Алфавит из символов, на которых шаблон меняет решение
+        String alphabet = "ab.@-_%+Z9 .@\nя";
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            int length = random.nextInt(14);
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String email = sb.toString();
+            assertEquals(EMAIL.matcher(email).matches(), Validator.isValidEmail(email), "[" + email + "]");
+        }
+        assertFalse(Validator.isValidEmail(null));
+    }
+
+    @Test
+    void notNullOrEmptyMatchesTrim() {
+        for (String value : new String[]{"", " ", "\t\n", " x ", "x", "\u0000", "   "}) {
+            assertEquals(!value.trim().isEmpty(), Validator.isNotNullOrEmpty(value), "[" + value + "]");
+        }
+        assertFalse(Validator.isNotNullOrEmpty(null));
+    }
+
+    @Test
+    void ageBounds() {
+        assertFalse(Validator.isValidAge(15));
+        assertTrue(Validator.isValidAge(16));
+        assertTrue(Validator.isValidAge(100));
+        assertFalse(Validator.isValidAge(101));
+    }
+
+    @Test
+    void validateReportsEveryViolation() {
+        Student student = new Student(1, " ", "Иванов", 12, null, "bad-email");
+        List<Validator.Violation> violations = Validator.validate(student);
+        assertEquals(List.of(Validator.Field.NAME, Validator.Field.AGE, Validator.Field.EMAIL),
+                violations.stream().map(Validator.Violation::getField).toList());
+        assertTrue(Validator.validate(new Student(1, "Иван", "Иванов", 20, null, "ivan@mail.ru")).isEmpty());
+    }
+}